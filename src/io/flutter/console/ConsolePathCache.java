@@ -0,0 +1,185 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.console;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.project.ProjectTopics;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.util.Key;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileContentChangeEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The files that paths printed to a console resolve to, relative to the content roots of a module.
+ * <p>
+ * Both found and missing files are remembered, so a path repeated across a long build log is only
+ * looked up once. Entries are dropped when a file at or under their path is created, deleted, moved
+ * or renamed, and the whole cache is dropped when the content roots change.
+ */
+class ConsolePathCache {
+  private static final Key<ConsolePathCache> CACHE_KEY = Key.create("FLUTTER_CONSOLE_PATH_CACHE");
+
+  /**
+   * The number of paths remembered before the cache is started over.
+   */
+  private static final int MAX_ENTRIES = 10000;
+
+  /**
+   * The directory relative to a content root that is also searched, for packages whose example app
+   * is not a content root.
+   */
+  private static final String EXAMPLE_DIR = "example/";
+
+  private static final Object MISSING = new Object();
+
+  @NotNull private final Module module;
+
+  /**
+   * Each path, relative to a content root, to its file or {@link #MISSING}.
+   */
+  private final Map<String, Object> files = new ConcurrentHashMap<>();
+
+  private ConsolePathCache(@NotNull Module module) {
+    this.module = module;
+
+    final MessageBusConnection connection = module.getProject().getMessageBus().connect(module);
+    connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+      @Override
+      public void after(@NotNull List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+          onFileEvent(event);
+        }
+      }
+    });
+    connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+      @Override
+      public void rootsChanged(@NotNull ModuleRootEvent event) {
+        files.clear();
+      }
+    });
+  }
+
+  @NotNull
+  static ConsolePathCache getInstance(@NotNull Module module) {
+    final ConsolePathCache cache = module.getUserData(CACHE_KEY);
+    if (cache != null) {
+      return cache;
+    }
+    return module.putUserDataIfAbsent(CACHE_KEY, new ConsolePathCache(module));
+  }
+
+  /**
+   * Returns the file at the path under one of the content roots, or under the example directory of
+   * one, or null if there is none.
+   */
+  @Nullable
+  VirtualFile findFile(@NotNull String relativePath) {
+    final String key = FileUtil.toCanonicalPath(relativePath);
+    final Object cached = files.get(key);
+    if (cached instanceof VirtualFile && ((VirtualFile)cached).isValid()) {
+      return (VirtualFile)cached;
+    }
+    if (cached == MISSING) {
+      return null;
+    }
+
+    final VirtualFile file = lookUp(key);
+    if (files.size() >= MAX_ENTRIES) {
+      files.clear();
+    }
+    files.put(key, file == null ? MISSING : file);
+    return file;
+  }
+
+  @Nullable
+  private VirtualFile lookUp(@NotNull String relativePath) {
+    for (VirtualFile root : ModuleRootManager.getInstance(module).getContentRoots()) {
+      final String baseDirPath = root.getPath();
+      VirtualFile file = findFileByPath(baseDirPath + "/" + relativePath);
+      if (file == null) {
+        // TODO(pq): remove when `example` is a content root: https://github.com/flutter/flutter-intellij/issues/2519
+        file = findFileByPath(baseDirPath + "/" + EXAMPLE_DIR + relativePath);
+      }
+      if (file != null) {
+        return file;
+      }
+    }
+    return null;
+  }
+
+  @Nullable
+  private static VirtualFile findFileByPath(@NotNull String path) {
+    final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+    return file != null && file.exists() ? file : null;
+  }
+
+  private void onFileEvent(@NotNull VFileEvent event) {
+    if (files.isEmpty() || event instanceof VFileContentChangeEvent) {
+      return;
+    }
+    if (event instanceof VFilePropertyChangeEvent && !((VFilePropertyChangeEvent)event).isRename()) {
+      return;
+    }
+    final boolean directory;
+    if (event instanceof VFileCreateEvent) {
+      directory = ((VFileCreateEvent)event).isDirectory();
+    }
+    else {
+      final VirtualFile file = event.getFile();
+      directory = file == null || file.isDirectory();
+    }
+    forget(event.getPath(), directory);
+    if (event instanceof VFileMoveEvent) {
+      forget(((VFileMoveEvent)event).getOldPath(), directory);
+    }
+    else if (event instanceof VFilePropertyChangeEvent) {
+      forget(((VFilePropertyChangeEvent)event).getOldPath(), directory);
+    }
+  }
+
+  /**
+   * Drops the entry for the path, and for a directory, the entries under it.
+   */
+  private void forget(@NotNull String path, boolean directory) {
+    for (VirtualFile root : ModuleRootManager.getInstance(module).getContentRoots()) {
+      final String rootPath = root.getPath();
+      if (path.length() <= rootPath.length() || !path.startsWith(rootPath) || path.charAt(rootPath.length()) != '/') {
+        continue;
+      }
+      String relativePath = path.substring(rootPath.length() + 1);
+      forgetRelative(relativePath, directory);
+      if (relativePath.startsWith(EXAMPLE_DIR)) {
+        relativePath = relativePath.substring(EXAMPLE_DIR.length());
+        forgetRelative(relativePath, directory);
+      }
+    }
+  }
+
+  private void forgetRelative(@NotNull String relativePath, boolean directory) {
+    files.remove(relativePath);
+    if (directory) {
+      final String prefix = relativePath + "/";
+      files.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+  }
+}
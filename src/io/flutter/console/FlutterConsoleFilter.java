@@ -20,7 +20,6 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ModuleRootManager;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.JBColor;
 import com.intellij.util.ui.UIUtil;
@@ -73,6 +72,11 @@ public class FlutterConsoleFilter implements Filter {
     }
   }
 
+  /**
+   * Matches compiler errors, e.g., "lib/registerC.dart:104:73: Error: Expected ';' after this."
+   */
+  private static final Pattern ERROR_PATTERN = Pattern.compile("(^.*?):(\\d+?):\\d+?:\\s*?Error");
+
   private final @NotNull Module module;
 
   public FlutterConsoleFilter(@NotNull Module module) {
@@ -83,7 +87,10 @@ public class FlutterConsoleFilter implements Filter {
   @Nullable
   public VirtualFile fileAtPath(@NotNull String pathPart) {
     // "lib/main.dart:6"
-    pathPart = pathPart.split(":")[0];
+    final int colon = pathPart.indexOf(':');
+    if (colon >= 0) {
+      pathPart = pathPart.substring(0, colon);
+    }
 
     // We require the pathPart reference to be a file reference, otherwise we'd match things like
     // "Build: Running build completed, took 191ms".
@@ -91,30 +98,7 @@ public class FlutterConsoleFilter implements Filter {
       return null;
     }
 
-    final VirtualFile[] roots = ModuleRootManager.getInstance(module).getContentRoots();
-    for (VirtualFile root : roots) {
-      if (!pathPart.isEmpty()) {
-        final String baseDirPath = root.getPath();
-        final String path = baseDirPath + "/" + pathPart;
-        VirtualFile file = findFile(path);
-        if (file == null) {
-          // check example dir too
-          // TODO(pq): remove when `example` is a content root: https://github.com/flutter/flutter-intellij/issues/2519
-          final String exampleDirRelativePath = baseDirPath + "/example/" + pathPart;
-          file = findFile(exampleDirRelativePath);
-        }
-        if (file != null) {
-          return file;
-        }
-      }
-    }
-
-    return null;
-  }
-
-  private static VirtualFile findFile(final String path) {
-    final VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
-    return file != null && file.exists() ? file : null;
+    return ConsolePathCache.getInstance(module).findFile(pathPart);
   }
 
   @Override
@@ -128,8 +112,27 @@ public class FlutterConsoleFilter implements Filter {
       TextAttributes attr = new TextAttributes(UIUtil.getErrorForeground(), null, null, EffectType.BOXED, Font.PLAIN);
       return new Result(entireLength - line.length(), entireLength, null, attr);
     }
+
+    // The bounds of the trimmed line.
+    int start = 0;
+    int end = line.length();
+    while (start < end && line.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && line.charAt(end - 1) <= ' ') {
+      end--;
+    }
+
+    // Most lines of a build log contain no links; only the "open" and "Launching" messages link a
+    // file that is neither a Dart file nor followed by a line number.
+    final boolean isCommand = line.startsWith("open ", start) || line.startsWith("Launching ", start);
+    if (!isCommand && line.indexOf(':', start) < 0 && !line.contains(".dart")) {
+      return null;
+    }
+
+    final int lineOffset = entireLength - line.length();
     int lineNumber = 0;
-    String pathPart = line.trim();
+    String pathPart = line.substring(start, end);
     VirtualFile file = null;
     int lineStart = -1;
     int highlightLength = 0;
@@ -137,87 +140,79 @@ public class FlutterConsoleFilter implements Filter {
     // Check for, e.g.,
     //   * "Launching lib/main.dart"
     //   * "open ios/Runner.xcworkspace"
-    if (pathPart.startsWith("Launching ") || pathPart.startsWith("open ")) {
-      final String[] parts = pathPart.split(" ");
-      if (parts.length > 1) {
-        pathPart = parts[1];
-        file = fileAtPath(pathPart);
-        if (file != null) {
-          lineStart = entireLength - line.length() + line.indexOf(pathPart);
-          highlightLength = pathPart.length();
-        }
+    if (isCommand) {
+      final int pathStart = line.indexOf(' ', start) + 1;
+      int pathEnd = line.indexOf(' ', pathStart);
+      if (pathEnd < 0 || pathEnd > end) {
+        pathEnd = end;
+      }
+      pathPart = line.substring(pathStart, pathEnd);
+      file = fileAtPath(pathPart);
+      if (file != null) {
+        lineStart = lineOffset + pathStart;
+        highlightLength = pathPart.length();
       }
     }
 
     // Check for embedded paths, e.g.,
     //    * "  • MyApp.xzzzz (lib/main.dart:6)"
     //    * "  • _MyHomePageState._incrementCounter (lib/main.dart:49)"
-    final String[] parts = pathPart.split(" ");
-    for (String part : parts) {
-      // "(lib/main.dart:49)"
-      if (part.startsWith("(") && part.endsWith(")")) {
-        part = part.substring(1, part.length() - 1);
-        final String[] split = part.split(":");
-        if (split.length == 2) {
-          try {
-            // Reconcile line number indexing.
-            lineNumber = Math.max(0, Integer.parseInt(split[1]) - 1);
-          }
-          catch (NumberFormatException e) {
-            // Ignored.
-          }
-          pathPart = part;
-          lineStart = entireLength - line.length() + line.indexOf(pathPart);
-          highlightLength = pathPart.length();
-          break;
+    // by scanning the space separated tokens of the line.
+    if (!isCommand) {
+      for (int tokenStart = start; tokenStart < end; ) {
+        int tokenEnd = line.indexOf(' ', tokenStart);
+        if (tokenEnd < 0 || tokenEnd > end) {
+          tokenEnd = end;
         }
-        else if (split.length == 4 && split[0].equals("file")) {
-          // part = file:///Users/user/AndroidStudioProjects/flutter_app/test/widget_test.dart:23:18
-          try {
-            // Reconcile line number indexing.
-            lineNumber = Math.max(0, Integer.parseInt(split[2]) - 1);
+        // "(lib/main.dart:49)"
+        if (tokenEnd - tokenStart >= 2 && line.charAt(tokenStart) == '(' && line.charAt(tokenEnd - 1) == ')') {
+          final int partStart = tokenStart + 1;
+          final int partEnd = tokenEnd - 1;
+          final int colon1 = indexOf(line, ':', partStart, partEnd);
+          final int colon2 = colon1 < 0 ? -1 : indexOf(line, ':', colon1 + 1, partEnd);
+          final int colon3 = colon2 < 0 ? -1 : indexOf(line, ':', colon2 + 1, partEnd);
+          final int colon4 = colon3 < 0 ? -1 : indexOf(line, ':', colon3 + 1, partEnd);
+          if (colon1 > partStart && colon2 < 0 && colon1 + 1 < partEnd) {
+            lineNumber = parseLineNumber(line, colon1 + 1, partEnd, lineNumber);
+            pathPart = line.substring(partStart, partEnd);
+            lineStart = lineOffset + partStart;
+            highlightLength = pathPart.length();
+            break;
           }
-          catch (NumberFormatException e) {
-            // Ignored.
-          }
-          pathPart = findRelativePath(split[1]);
-          if (pathPart == null) {
-            return null;
+          else if (colon3 > 0 && colon4 < 0 && colon1 == partStart + 4 && line.startsWith("file", partStart) &&
+                   colon1 + 1 < colon2 && colon2 + 1 < colon3 && colon3 + 1 < partEnd) {
+            // part = file:///Users/user/AndroidStudioProjects/flutter_app/test/widget_test.dart:23:18
+            lineNumber = parseLineNumber(line, colon2 + 1, colon3, lineNumber);
+            pathPart = findRelativePath(line.substring(colon1 + 1, colon2));
+            if (pathPart == null) {
+              return null;
+            }
+            lineStart = lineOffset + partStart;
+            highlightLength = partEnd - partStart;
+            break;
           }
-          lineStart = entireLength - line.length() + line.indexOf(part);
-          highlightLength = part.length();
-          break;
         }
+        tokenStart = tokenEnd + 1;
       }
     }
 
     if (lineStart < 0) {
       // lib/registerC.dart:104:73: Error: Expected ';' after this.
-      final String filePathAndLineNumberExpr = "(^.*?):(\\d+?):\\d+?:\\s*?Error";
-      final Pattern pattern = Pattern.compile(filePathAndLineNumberExpr);
-      final Matcher matcher = pattern.matcher(line);
-      final boolean found = matcher.find();
-      if (found) {
-        final String filePathExpr = "((?:[^/]*/)*)(.*)";
-        final Pattern pathPattern = Pattern.compile(filePathExpr);
-        final Matcher pathMatcher = pathPattern.matcher(matcher.group(1));
-        if (pathMatcher.find()) {
-          final String path = pathMatcher.group(1) + pathMatcher.group(2);
-          file = fileAtPath(path);
-          if (file == null) {
-            return null;
-          }
-          lineNumber = Integer.parseInt(matcher.group(2));
-          lineStart = entireLength - line.length();
-          highlightLength = path.length();
-        }
-        else {
-          return null;
-        }
+      if (!line.contains("Error")) {
+        return null;
+      }
+      final Matcher matcher = ERROR_PATTERN.matcher(line);
+      if (!matcher.find()) {
+        return null;
       }
-      else {
+      final String path = matcher.group(1);
+      file = fileAtPath(path);
+      if (file == null) {
         return null;
       }
+      lineNumber = Integer.parseInt(matcher.group(2));
+      lineStart = lineOffset;
+      highlightLength = path.length();
     }
 
     if (file == null) {
@@ -236,6 +231,24 @@ public class FlutterConsoleFilter implements Filter {
     return null;
   }
 
+  private static int indexOf(@NotNull String line, char c, int from, int to) {
+    final int index = line.indexOf(c, from);
+    return index < to ? index : -1;
+  }
+
+  /**
+   * Parses a one based line number, returning it zero based, or the default if it is not a number.
+   */
+  private static int parseLineNumber(@NotNull String line, int from, int to, int defaultLineNumber) {
+    try {
+      // Reconcile line number indexing.
+      return Math.max(0, Integer.parseInt(line, from, to, 10) - 1);
+    }
+    catch (NumberFormatException e) {
+      return defaultLineNumber;
+    }
+  }
+
   private String findRelativePath(String threeSlashFileName) {
     final VirtualFile[] roots = ModuleRootManager.getInstance(module).getContentRoots();
     for (VirtualFile root : roots) {
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.dart;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Hands the outline notifications of each file to a handler one at a time, in the order they
+ * arrived, skipping those that are superseded before the handler gets to them.
+ * <p>
+ * Notifications are kept unparsed until they are handled, so an outline that is replaced by a newer
+ * one for the same file while the handler is busy is never parsed. Different files are handled
+ * concurrently, as far as the executor allows.
+ */
+class FileOutlineQueue {
+  private static final Logger LOG = Logger.getInstance(FileOutlineQueue.class);
+
+  private static class FileState {
+    /**
+     * The newest notification that has not been handled, or null.
+     */
+    String pending;
+
+    /**
+     * Whether a task is handling the notifications of the file.
+     */
+    boolean running;
+
+    /**
+     * Whether the state has been removed from the queue, and must not be used for new notifications.
+     */
+    boolean removed;
+  }
+
+  @NotNull private final Executor executor;
+  @NotNull private final BiConsumer<String, String> handler;
+
+  private final Map<String, FileState> files = new ConcurrentHashMap<>();
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  /**
+   * Creates a queue that calls the handler with each file and its notification on the executor.
+   */
+  FileOutlineQueue(@NotNull Executor executor, @NotNull BiConsumer<String, String> handler) {
+    this.executor = executor;
+    this.handler = handler;
+  }
+
+  void add(@NotNull String file, @NotNull String notification) {
+    while (true) {
+      final FileState state = files.computeIfAbsent(file, k -> new FileState());
+      synchronized (state) {
+        if (state.removed) {
+          continue;
+        }
+        if (state.pending != null) {
+          droppedCount.incrementAndGet();
+        }
+        state.pending = notification;
+        if (state.running) {
+          return;
+        }
+        state.running = true;
+      }
+      executor.execute(() -> drain(file, state));
+      return;
+    }
+  }
+
+  private void drain(@NotNull String file, @NotNull FileState state) {
+    while (true) {
+      final String notification;
+      synchronized (state) {
+        notification = state.pending;
+        state.pending = null;
+        if (notification == null) {
+          state.running = false;
+          return;
+        }
+      }
+      try {
+        handler.accept(file, notification);
+      }
+      catch (RuntimeException e) {
+        LOG.warn(e);
+      }
+    }
+  }
+
+  /**
+   * Forgets the file, dropping its notification that has not been handled.
+   */
+  void remove(@NotNull String file) {
+    final FileState state = files.get(file);
+    if (state == null) {
+      return;
+    }
+    synchronized (state) {
+      if (state.pending != null) {
+        state.pending = null;
+        droppedCount.incrementAndGet();
+      }
+      // A running task keeps the state, so that the file is never handled by two tasks at once.
+      if (!state.running) {
+        state.removed = true;
+        files.remove(file, state);
+      }
+    }
+  }
+
+  /**
+   * The number of notifications that were superseded before they were handled.
+   */
+  long getDroppedCount() {
+    return droppedCount.get();
+  }
+}
@@ -7,21 +7,22 @@ package io.flutter.dart;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
-import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.dart.server.AnalysisServerListenerAdapter;
 import com.google.dart.server.ResponseListener;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.intellij.openapi.Disposable;
-import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.Consumer;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import io.flutter.FlutterInitializer;
 import io.flutter.analytics.TimeTracker;
@@ -30,19 +31,26 @@ import org.dartlang.analysis.server.protocol.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FlutterDartAnalysisServer implements Disposable {
   private static final String FLUTTER_NOTIFICATION_OUTLINE = "flutter.outline";
   private static final String FLUTTER_NOTIFICATION_OUTLINE_KEY = "\"flutter.outline\"";
 
+  /**
+   * The number of files whose outlines are parsed at the same time.
+   */
+  private static final int OUTLINE_PARSE_THREADS = 2;
+
   @NotNull final DartAnalysisServerService analysisService;
 
   /**
@@ -56,10 +64,22 @@ public class FlutterDartAnalysisServer implements Disposable {
 
   /**
    * Each key is a request identifier.
-   * Each value is the {@link Consumer} for the response.
+   * Each value is the {@link Consumer} for the response, which is given null if the request failed.
    */
   private final Map<String, Consumer<JsonObject>> responseConsumers = new HashMap<>();
-  private boolean isDisposed = false;
+  private volatile boolean isDisposed = false;
+
+  /**
+   * Handles responses to our requests one at a time, in the order they arrived.
+   */
+  private final Executor responseExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("FlutterDartAnalysisServer", 1);
+
+  private final FileOutlineQueue outlineQueue = new FileOutlineQueue(
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("FlutterDartAnalysisServer outlines", OUTLINE_PARSE_THREADS),
+    this::processOutlineString);
+
+  private final AtomicLong parsedOutlineCount = new AtomicLong();
+  private final AtomicLong outlineParseNanos = new AtomicLong();
 
   @NotNull
   public static FlutterDartAnalysisServer getInstance(@NotNull final Project project) {
@@ -115,9 +135,41 @@ public class FlutterDartAnalysisServer implements Disposable {
     }
     if (removeSubscription) {
       removeSubscription(FlutterService.OUTLINE, filePath);
+      if (!hasOutlineListeners(filePath)) {
+        outlineQueue.remove(filePath);
+      }
+    }
+  }
+
+  private boolean hasOutlineListeners(@NotNull String filePath) {
+    synchronized (fileOutlineListeners) {
+      final List<FlutterOutlineListener> listeners = fileOutlineListeners.get(filePath);
+      return listeners != null && !listeners.isEmpty();
     }
   }
 
+  /**
+   * The number of outline notifications that were not parsed, because a newer outline of the same
+   * file arrived first.
+   */
+  public long getDroppedOutlineCount() {
+    return outlineQueue.getDroppedCount();
+  }
+
+  /**
+   * The number of outline notifications that were parsed.
+   */
+  public long getParsedOutlineCount() {
+    return parsedOutlineCount.get();
+  }
+
+  /**
+   * The total time spent parsing outline notifications, in milliseconds.
+   */
+  public long getOutlineParseMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(outlineParseNanos.get());
+  }
+
   /**
    * Adds a flutter event subscription to the analysis server.
    * <p>
@@ -153,7 +205,7 @@ public class FlutterDartAnalysisServer implements Disposable {
     return analysisService.edit_getAssists(file, offset, length);
   }
 
-  @Nullable
+  @NotNull
   public CompletableFuture<List<FlutterWidgetProperty>> getWidgetDescription(@NotNull VirtualFile file, int _offset) {
     final CompletableFuture<List<FlutterWidgetProperty>> result = new CompletableFuture<>();
     final String filePath = FileUtil.toSystemDependentName(file.getPath());
@@ -162,6 +214,10 @@ public class FlutterDartAnalysisServer implements Disposable {
     final String id = analysisService.generateUniqueId();
     synchronized (responseConsumers) {
       responseConsumers.put(id, (resultObject) -> {
+        if (resultObject == null) {
+          result.completeExceptionally(new IllegalStateException("Unable to get the widget description"));
+          return;
+        }
         try {
           final JsonArray propertiesObject = resultObject.getAsJsonArray("properties");
           final ArrayList<FlutterWidgetProperty> properties = new ArrayList<>();
@@ -170,7 +226,8 @@ public class FlutterDartAnalysisServer implements Disposable {
           }
           result.complete(properties);
         }
-        catch (Throwable ignored) {
+        catch (Throwable t) {
+          result.completeExceptionally(t);
         }
       });
     }
@@ -181,34 +238,55 @@ public class FlutterDartAnalysisServer implements Disposable {
     return result;
   }
 
-
-  @Nullable
-  public SourceChange setWidgetPropertyValue(int propertyId, FlutterWidgetPropertyValue value) {
-    final CountDownLatch latch = new CountDownLatch(1);
-    final AtomicReference<SourceChange> result = new AtomicReference<>();
+  /**
+   * Asks the analysis server for the change that sets the value of a widget property.
+   * <p>
+   * The future completes with the change once the server responds, or exceptionally if the value
+   * could not be set. The change is not applied.
+   */
+  @NotNull
+  public CompletableFuture<SourceChange> setWidgetPropertyValue(int propertyId, FlutterWidgetPropertyValue value) {
+    final CompletableFuture<SourceChange> result = new CompletableFuture<>();
     final String id = analysisService.generateUniqueId();
     synchronized (responseConsumers) {
       responseConsumers.put(id, (resultObject) -> {
+        if (resultObject == null) {
+          result.completeExceptionally(new IllegalStateException("Unable to set the property value"));
+          return;
+        }
         try {
           final JsonObject propertiesObject = resultObject.getAsJsonObject("change");
-          result.set(SourceChange.fromJson(propertiesObject));
+          result.complete(SourceChange.fromJson(propertiesObject));
         }
-        catch (Throwable ignored) {
+        catch (Throwable t) {
+          result.completeExceptionally(t);
         }
-        latch.countDown();
       });
     }
 
     final JsonObject request = FlutterRequestUtilities.generateFlutterSetWidgetPropertyValue(id, propertyId, value);
     analysisService.sendRequest(id, request);
 
-    Uninterruptibles.awaitUninterruptibly(latch, 100, TimeUnit.MILLISECONDS);
-    return result.get();
+    return result;
   }
 
   private void processString(String jsonString) {
     if (isDisposed) return;
-    ApplicationManager.getApplication().executeOnPooledThread(() -> {
+
+    // Outlines are the only notifications we handle. Only the newest outline of each file is parsed.
+    if (jsonString.contains(FLUTTER_NOTIFICATION_OUTLINE_KEY)) {
+      final String file = readOutlineFile(jsonString);
+      if (file != null) {
+        outlineQueue.add(file, jsonString);
+        return;
+      }
+    }
+
+    // Other messages can only be responses to our requests.
+    synchronized (responseConsumers) {
+      if (responseConsumers.isEmpty()) return;
+    }
+    responseExecutor.execute(() -> {
       // Short circuit just in case we have been disposed in the time it took
       // for us to get around to listening for the response.
       if (isDisposed) return;
@@ -216,6 +294,86 @@ public class FlutterDartAnalysisServer implements Disposable {
     });
   }
 
+  /**
+   * Returns the file of an outline notification, or null if the message is not one.
+   * <p>
+   * The outline itself is not read.
+   */
+  @Nullable
+  private static String readOutlineFile(@NotNull String jsonString) {
+    try (JsonReader reader = new JsonReader(new StringReader(jsonString))) {
+      reader.setLenient(true);
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) return null;
+
+      boolean isOutline = false;
+      String file = null;
+      reader.beginObject();
+      while (reader.hasNext()) {
+        final String name = reader.nextName();
+        if (name.equals("event") && reader.peek() == JsonToken.STRING) {
+          if (!reader.nextString().equals(FLUTTER_NOTIFICATION_OUTLINE)) return null;
+          isOutline = true;
+        }
+        else if (name.equals("params") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+          reader.beginObject();
+          while (reader.hasNext()) {
+            if (reader.nextName().equals("file") && reader.peek() == JsonToken.STRING) {
+              file = reader.nextString();
+              // The event usually comes first, and then the rest of the params is not needed.
+              if (isOutline) return file;
+            }
+            else {
+              reader.skipValue();
+            }
+          }
+          reader.endObject();
+        }
+        else {
+          reader.skipValue();
+        }
+        if (isOutline && file != null) return file;
+      }
+      return null;
+    }
+    catch (IOException | IllegalStateException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parses an outline notification and notifies the listeners of its file.
+   */
+  private void processOutlineString(@NotNull String file, @NotNull String jsonString) {
+    if (isDisposed || !hasOutlineListeners(file)) return;
+
+    final long start = System.nanoTime();
+    final JsonObject response = JsonUtils.parseString(jsonString).getAsJsonObject();
+    final JsonObject paramsObject = response.get("params").getAsJsonObject();
+
+    final JsonElement instrumentedCodeElement = paramsObject.get("instrumentedCode");
+    final String instrumentedCode = instrumentedCodeElement != null ? instrumentedCodeElement.getAsString() : null;
+
+    final JsonObject outlineObject = paramsObject.get("outline").getAsJsonObject();
+    final FlutterOutline outline = FlutterOutline.fromJson(outlineObject);
+    outlineParseNanos.addAndGet(System.nanoTime() - start);
+    parsedOutlineCount.incrementAndGet();
+
+    notifyOutlineListeners(file, outline, instrumentedCode);
+  }
+
+  private void notifyOutlineListeners(@NotNull String file, @NotNull FlutterOutline outline, @Nullable String instrumentedCode) {
+    final List<FlutterOutlineListener> listenersUpdated;
+    synchronized (fileOutlineListeners) {
+      final List<FlutterOutlineListener> listeners = fileOutlineListeners.get(file);
+      listenersUpdated = listeners != null ? Lists.newArrayList(listeners) : null;
+    }
+    if (listenersUpdated != null) {
+      for (FlutterOutlineListener listener : listenersUpdated) {
+        listener.outlineUpdated(file, outline, instrumentedCode);
+      }
+    }
+  }
+
   /**
    * Handle the given {@link JsonObject} response.
    */
@@ -226,15 +384,6 @@ public class FlutterDartAnalysisServer implements Disposable {
       return;
     }
 
-    if (response.has("error")) {
-      return;
-    }
-
-    final JsonObject resultObject = response.getAsJsonObject("result");
-    if (resultObject == null) {
-      return;
-    }
-
     final JsonPrimitive idJsonPrimitive = (JsonPrimitive)response.get("id");
     if (idJsonPrimitive == null) {
       return;
@@ -249,7 +398,8 @@ public class FlutterDartAnalysisServer implements Disposable {
       return;
     }
 
-    consumer.consume(resultObject);
+    // Failed requests are passed on as well, so their futures do not wait forever.
+    consumer.consume(response.has("error") ? null : response.getAsJsonObject("result"));
   }
 
   /**
@@ -268,16 +418,7 @@ public class FlutterDartAnalysisServer implements Disposable {
       final JsonObject outlineObject = paramsObject.get("outline").getAsJsonObject();
       final FlutterOutline outline = FlutterOutline.fromJson(outlineObject);
 
-      final List<FlutterOutlineListener> listenersUpdated;
-      synchronized (fileOutlineListeners) {
-        final List<FlutterOutlineListener> listeners = fileOutlineListeners.get(file);
-        listenersUpdated = listeners != null ? Lists.newArrayList(listeners) : null;
-      }
-      if (listenersUpdated != null) {
-        for (FlutterOutlineListener listener : listenersUpdated) {
-          listener.outlineUpdated(file, outline, instrumentedCode);
-        }
-      }
+      notifyOutlineListeners(file, outline, instrumentedCode);
     }
   }
 
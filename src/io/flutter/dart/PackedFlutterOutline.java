@@ -0,0 +1,400 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.dart;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import org.dartlang.analysis.server.protocol.Element;
+import org.dartlang.analysis.server.protocol.FlutterOutline;
+import org.dartlang.analysis.server.protocol.FlutterOutlineAttribute;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, immutable copy of a {@link FlutterOutline}.
+ * <p>
+ * The nodes are numbered in pre-order, starting with the root at 0, and their fields are kept in
+ * parallel arrays instead of one object per node. Kinds, class names and labels are interned, so
+ * they are shared across outlines, and attributes are rebuilt with interned names.
+ * <p>
+ * Nodes are read through their number, or a {@link Cursor}, without creating objects. Code that
+ * needs node objects can build them with {@link #toFlutterOutline(int)}, which makes new objects on
+ * every call, so identity checks should compare packed outlines and node numbers instead.
+ */
+public class PackedFlutterOutline {
+  /**
+   * The node number used for nodes that do not exist, such as the parent of the root.
+   */
+  public static final int NONE = -1;
+
+  private static final Interner<String> NAMES = Interners.newWeakInterner();
+
+  private static final byte HAS_CHILDREN = 1;
+  private static final byte HAS_ATTRIBUTES = 2;
+
+  private final int[] offsets;
+  private final int[] lengths;
+  private final int[] codeOffsets;
+  private final int[] codeLengths;
+
+  /**
+   * Index of the kind of each node in {@link #kindNames}.
+   */
+  private final int[] kinds;
+  private final String[] kindNames;
+
+  private final String[] labels;
+  private final String[] classNames;
+  private final String[] variableNames;
+  private final String[] parentAssociationLabels;
+
+  /**
+   * The Dart element of each node, or null if no node has one.
+   */
+  @Nullable private final Element[] dartElements;
+
+  private final int[] parents;
+
+  /**
+   * The number after the last node in the subtree of each node.
+   */
+  private final int[] subtreeEnds;
+
+  /**
+   * The attributes of node i are at attributeStarts[i] to attributeStarts[i + 1] in attributes.
+   */
+  private final int[] attributeStarts;
+  private final FlutterOutlineAttribute[] attributes;
+
+  /**
+   * Whether the children and attributes lists of each node were present, even if empty.
+   */
+  private final byte[] flags;
+
+  private PackedFlutterOutline(@NotNull FlutterOutline root, int size) {
+    offsets = new int[size];
+    lengths = new int[size];
+    codeOffsets = new int[size];
+    codeLengths = new int[size];
+    kinds = new int[size];
+    labels = new String[size];
+    classNames = new String[size];
+    variableNames = new String[size];
+    parentAssociationLabels = new String[size];
+    parents = new int[size];
+    subtreeEnds = new int[size];
+    attributeStarts = new int[size + 1];
+    flags = new byte[size];
+
+    final List<String> kindNames = new ArrayList<>();
+    final List<FlutterOutlineAttribute> attributes = new ArrayList<>();
+    Element[] dartElements = null;
+
+    // Walk the outline in pre-order with an explicit stack, recording the
+    // node number of each parent so subtree ends can be filled in on the way.
+    final ArrayList<FlutterOutline> stack = new ArrayList<>();
+    final ArrayList<Integer> stackParents = new ArrayList<>();
+    stack.add(root);
+    stackParents.add(NONE);
+    int node = 0;
+    while (!stack.isEmpty()) {
+      final FlutterOutline current = stack.remove(stack.size() - 1);
+      final int parent = stackParents.remove(stackParents.size() - 1);
+
+      offsets[node] = current.getOffset();
+      lengths[node] = current.getLength();
+      codeOffsets[node] = current.getCodeOffset();
+      codeLengths[node] = current.getCodeLength();
+      final String kind = intern(current.getKind());
+      int kindIndex = kindNames.indexOf(kind);
+      if (kindIndex == -1) {
+        kindIndex = kindNames.size();
+        kindNames.add(kind);
+      }
+      kinds[node] = kindIndex;
+      labels[node] = intern(current.getLabel());
+      classNames[node] = intern(current.getClassName());
+      variableNames[node] = intern(current.getVariableName());
+      parentAssociationLabels[node] = intern(current.getParentAssociationLabel());
+      if (current.getDartElement() != null) {
+        if (dartElements == null) {
+          dartElements = new Element[size];
+        }
+        dartElements[node] = current.getDartElement();
+      }
+      parents[node] = parent;
+
+      attributeStarts[node] = attributes.size();
+      final List<FlutterOutlineAttribute> nodeAttributes = current.getAttributes();
+      if (nodeAttributes != null) {
+        flags[node] |= HAS_ATTRIBUTES;
+        for (FlutterOutlineAttribute attribute : nodeAttributes) {
+          attributes.add(intern(attribute));
+        }
+      }
+
+      final List<FlutterOutline> children = current.getChildren();
+      if (children != null) {
+        flags[node] |= HAS_CHILDREN;
+        for (int i = children.size() - 1; i >= 0; i--) {
+          stack.add(children.get(i));
+          stackParents.add(node);
+        }
+      }
+      node++;
+
+      // Close the subtrees that end before the next node on the stack.
+      final int next = stackParents.isEmpty() ? NONE : stackParents.get(stackParents.size() - 1);
+      for (int closed = node - 1; closed != next; closed = parents[closed]) {
+        subtreeEnds[closed] = node;
+      }
+    }
+    attributeStarts[size] = attributes.size();
+
+    this.kindNames = kindNames.toArray(new String[0]);
+    this.attributes = attributes.toArray(FlutterOutlineAttribute.EMPTY_ARRAY);
+    this.dartElements = dartElements;
+  }
+
+  /**
+   * Packs the outline.
+   * <p>
+   * The packed outline does not refer to the outline, so the outline can be collected once the
+   * caller is done with it.
+   */
+  @NotNull
+  public static PackedFlutterOutline pack(@NotNull FlutterOutline outline) {
+    return new PackedFlutterOutline(outline, countNodes(outline));
+  }
+
+  private static int countNodes(@NotNull FlutterOutline outline) {
+    int count = 1;
+    final List<FlutterOutline> children = outline.getChildren();
+    if (children != null) {
+      for (FlutterOutline child : children) {
+        count += countNodes(child);
+      }
+    }
+    return count;
+  }
+
+  @Nullable
+  private static String intern(@Nullable String name) {
+    return name == null ? null : NAMES.intern(name);
+  }
+
+  @NotNull
+  private static FlutterOutlineAttribute intern(@NotNull FlutterOutlineAttribute attribute) {
+    return new FlutterOutlineAttribute(
+      intern(attribute.getName()),
+      intern(attribute.getLabel()),
+      attribute.getLiteralValueBoolean(),
+      attribute.getLiteralValueInteger(),
+      attribute.getLiteralValueString(),
+      attribute.getNameLocation(),
+      attribute.getValueLocation()
+    );
+  }
+
+  public int getNodeCount() {
+    return offsets.length;
+  }
+
+  public int getParent(int node) {
+    return parents[node];
+  }
+
+  /**
+   * Returns the first child of the node, or {@link #NONE}.
+   */
+  public int getFirstChild(int node) {
+    return node + 1 < subtreeEnds[node] ? node + 1 : NONE;
+  }
+
+  /**
+   * Returns the next sibling of the node, or {@link #NONE}.
+   */
+  public int getNextSibling(int node) {
+    final int parent = parents[node];
+    final int next = subtreeEnds[node];
+    return parent != NONE && next < subtreeEnds[parent] ? next : NONE;
+  }
+
+  public int getChildCount(int node) {
+    int count = 0;
+    for (int child = getFirstChild(node); child != NONE; child = getNextSibling(child)) {
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number after the last node in the subtree of the node, so the subtree is the nodes
+   * from the node up to that number.
+   */
+  public int getSubtreeEnd(int node) {
+    return subtreeEnds[node];
+  }
+
+  public String getKind(int node) {
+    return kindNames[kinds[node]];
+  }
+
+  public int getOffset(int node) {
+    return offsets[node];
+  }
+
+  public int getLength(int node) {
+    return lengths[node];
+  }
+
+  public int getCodeOffset(int node) {
+    return codeOffsets[node];
+  }
+
+  public int getCodeLength(int node) {
+    return codeLengths[node];
+  }
+
+  public String getLabel(int node) {
+    return labels[node];
+  }
+
+  public String getClassName(int node) {
+    return classNames[node];
+  }
+
+  public String getVariableName(int node) {
+    return variableNames[node];
+  }
+
+  public String getParentAssociationLabel(int node) {
+    return parentAssociationLabels[node];
+  }
+
+  @Nullable
+  public Element getDartElement(int node) {
+    return dartElements == null ? null : dartElements[node];
+  }
+
+  public int getAttributeCount(int node) {
+    return attributeStarts[node + 1] - attributeStarts[node];
+  }
+
+  @NotNull
+  public FlutterOutlineAttribute getAttribute(int node, int index) {
+    assert (index >= 0 && index < getAttributeCount(node));
+    return attributes[attributeStarts[node] + index];
+  }
+
+  @NotNull
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Builds the node objects of the subtree of the node.
+   */
+  @NotNull
+  public FlutterOutline toFlutterOutline(int node) {
+    List<FlutterOutline> children = null;
+    if ((flags[node] & HAS_CHILDREN) != 0) {
+      children = new ArrayList<>(getChildCount(node));
+      for (int child = getFirstChild(node); child != NONE; child = getNextSibling(child)) {
+        children.add(toFlutterOutline(child));
+      }
+    }
+    return new FlutterOutline(getKind(node), offsets[node], lengths[node], codeOffsets[node], codeLengths[node], labels[node],
+                              getDartElement(node), getAttributeList(node), classNames[node], parentAssociationLabels[node],
+                              variableNames[node], children);
+  }
+
+  /**
+   * Builds the node object of the node alone, without its children.
+   * <p>
+   * This is for code that keeps a node after the outline is gone, such as to find it in the document
+   * or show its name, without keeping a copy of its whole subtree.
+   */
+  @NotNull
+  public FlutterOutline toFlutterOutlineNode(int node) {
+    return new FlutterOutline(getKind(node), offsets[node], lengths[node], codeOffsets[node], codeLengths[node], labels[node],
+                              getDartElement(node), getAttributeList(node), classNames[node], parentAssociationLabels[node],
+                              variableNames[node], null);
+  }
+
+  @Nullable
+  private List<FlutterOutlineAttribute> getAttributeList(int node) {
+    if ((flags[node] & HAS_ATTRIBUTES) == 0) {
+      return null;
+    }
+    return new ArrayList<>(Arrays.asList(attributes).subList(attributeStarts[node], attributeStarts[node + 1]));
+  }
+
+  /**
+   * A movable view of one node of the outline, starting at the root.
+   */
+  public class Cursor {
+    private int node;
+
+    public int getNode() {
+      return node;
+    }
+
+    public void moveTo(int node) {
+      assert (node >= 0 && node < getNodeCount());
+      this.node = node;
+    }
+
+    public boolean moveToParent() {
+      return move(getParent(node));
+    }
+
+    public boolean moveToFirstChild() {
+      return move(getFirstChild(node));
+    }
+
+    public boolean moveToNextSibling() {
+      return move(getNextSibling(node));
+    }
+
+    private boolean move(int target) {
+      if (target == NONE) {
+        return false;
+      }
+      node = target;
+      return true;
+    }
+
+    public String getKind() {
+      return PackedFlutterOutline.this.getKind(node);
+    }
+
+    public int getOffset() {
+      return offsets[node];
+    }
+
+    public int getLength() {
+      return lengths[node];
+    }
+
+    public String getClassName() {
+      return classNames[node];
+    }
+
+    public int getAttributeCount() {
+      return PackedFlutterOutline.this.getAttributeCount(node);
+    }
+
+    @NotNull
+    public FlutterOutlineAttribute getAttribute(int index) {
+      return PackedFlutterOutline.this.getAttribute(node, index);
+    }
+  }
+}
@@ -20,6 +20,7 @@ import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import io.flutter.FlutterUtils;
 import io.flutter.dart.FlutterDartAnalysisServer;
 import io.flutter.dart.FlutterOutlineListener;
+import io.flutter.dart.PackedFlutterOutline;
 import org.dartlang.analysis.server.protocol.FlutterOutline;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -47,8 +48,11 @@ public class ActiveEditorsOutlineService implements Disposable {
 
   /**
    * Outlines for the currently visible files.
+   * <p>
+   * Outlines are kept packed, and are handed out as they are, so the node
+   * objects sent by the analysis server are not kept.
    */
-  private final Map<String, FlutterOutline> pathToOutline = new HashMap<>();
+  private final Map<String, PackedFlutterOutline> pathToOutline = new HashMap<>();
   /**
    * Outline listeners for the currently visible files.
    */
@@ -169,7 +173,7 @@ public class ActiveEditorsOutlineService implements Disposable {
       listenerList = Lists.newArrayList(listeners);
     }
     for (Listener listener : listenerList) {
-      listener.onOutlineChanged(path, getOutline(path));
+      listener.onOutlineChanged(path, getPackedOutline(path));
     }
   }
 
@@ -186,25 +190,29 @@ public class ActiveEditorsOutlineService implements Disposable {
   }
 
   /**
-   * Gets the most up-to-date {@link FlutterOutline} for the file at {@param path}.
+   * Gets the most up-to-date outline for the file at {@param path}.
    * <p>
-   * To get an outline that is guaranteed in-sync with the file it outlines, see {@link #getIfUpdated}.
+   * The same instance is returned until a new outline arrives, so callers can compare outlines by
+   * identity. To get an outline that is guaranteed in-sync with the file it outlines, see
+   * {@link #getIfUpdated}.
    */
   @Nullable
-  public FlutterOutline getOutline(@Nullable String path) {
-    return pathToOutline.get(path);
+  public PackedFlutterOutline getPackedOutline(@Nullable String path) {
+    synchronized (pathToOutline) {
+      return pathToOutline.get(path);
+    }
   }
 
   /**
-   * Gets the {@link FlutterOutline} for {@param file} if and only if the outline is up to date with the file.
+   * Gets the outline for {@param file} if and only if the outline is up to date with the file.
    *
    * <p>
    * Returns null if the file is out of date.
    */
   @Nullable
-  public FlutterOutline getIfUpdated(@NotNull PsiFile file) {
-    final FlutterOutline outline = getOutline(file.getVirtualFile().getPath());
-    if (outline == null || isOutdated(outline, file)) {
+  public PackedFlutterOutline getIfUpdated(@NotNull PsiFile file) {
+    final PackedFlutterOutline outline = getPackedOutline(file.getVirtualFile().getPath());
+    if (outline == null || isOutdated(outline.getLength(0), file)) {
       return null;
     }
     else {
@@ -213,15 +221,15 @@ public class ActiveEditorsOutlineService implements Disposable {
   }
 
   /**
-   * Checks that the {@param outline} matches the current version of {@param file}.
+   * Checks that an outline of length {@param outlineLength} matches the current version of {@param file}.
    *
    * <p>
    * An outline and file match if they have the same length.
    */
-  private boolean isOutdated(@NotNull FlutterOutline outline, @NotNull PsiFile file) {
+  private boolean isOutdated(int outlineLength, @NotNull PsiFile file) {
     final DartAnalysisServerService das = DartAnalysisServerService.getInstance(file.getProject());
-    return file.getTextLength() != outline.getLength()
-           && file.getTextLength() != das.getConvertedOffset(file.getVirtualFile(), outline.getLength());
+    return file.getTextLength() != outlineLength
+           && file.getTextLength() != das.getConvertedOffset(file.getVirtualFile(), outlineLength);
   }
 
   @Override
@@ -259,9 +267,9 @@ public class ActiveEditorsOutlineService implements Disposable {
    */
   public interface Listener {
     /**
-     * Called on a change in the {@link FlutterOutline} of file at {@param filePath}.
+     * Called on a change in the outline of file at {@param filePath}.
      */
-    void onOutlineChanged(@NotNull String filePath, @Nullable FlutterOutline outline);
+    void onOutlineChanged(@NotNull String filePath, @Nullable PackedFlutterOutline outline);
   }
 
   /**
@@ -289,8 +297,11 @@ public class ActiveEditorsOutlineService implements Disposable {
           return;
         }
       }
+      // Only the packed copy is kept, so the outline sent by the analysis
+      // server can be collected once its listeners are done with it.
+      final PackedFlutterOutline packed = PackedFlutterOutline.pack(outline);
       synchronized (pathToOutline) {
-        pathToOutline.put(path, outline);
+        pathToOutline.put(path, packed);
         notifyOutlineUpdated(path);
       }
     }
@@ -9,7 +9,6 @@ import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.RangeMarker;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
-import org.dartlang.analysis.server.protocol.FlutterOutline;
 import org.jetbrains.annotations.Nullable;
 
 class TextRangeTracker {
@@ -101,7 +100,7 @@ class TextRangeTracker {
 }
 
 /**
- * Class that tracks the location of a FlutterOutline node in a document.
+ * Class that tracks the location of an outline node in a document.
  * <p>
  * Once the track method has been called, edits to the document are reflected
  * by by all locations returned by the outline location.
@@ -126,7 +125,8 @@ public class OutlineLocation implements Comparable<OutlineLocation> {
   private Document document;
 
   public OutlineLocation(
-    FlutterOutline node,
+    int nodeOffset,
+    int nodeLength,
     int line,
     int column,
     int indent,
@@ -146,12 +146,12 @@ public class OutlineLocation implements Comparable<OutlineLocation> {
     assert (column >= indent);
     assert (line >= 0);
     this.indent = indent;
-    final int nodeOffset = pass.getConvertedOffset(node);
-    final int endOffset = pass.getConvertedOffset(node.getOffset() + node.getLength());
-    fullTracker = new TextRangeTracker(nodeOffset, endOffset);
+    final int startOffset = pass.getConvertedOffset(nodeOffset);
+    final int endOffset = pass.getConvertedOffset(nodeOffset + nodeLength);
+    fullTracker = new TextRangeTracker(startOffset, endOffset);
     final int delta = Math.max(column - indent, 0);
-    this.offset = Math.max(nodeOffset - delta, 0);
-    guideTracker = new TextRangeTracker(offset, nodeOffset + 1);
+    this.offset = Math.max(startOffset - delta, 0);
+    guideTracker = new TextRangeTracker(offset, startOffset + 1);
   }
 
   public void dispose() {
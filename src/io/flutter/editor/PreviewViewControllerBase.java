@@ -48,6 +48,11 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
   public static final double SCREENSHOT_FRAMES_PER_SECOND = 3.0;
   public static final int PREVIEW_MAX_WIDTH = 280;
   public static final int PREVIEW_MAX_HEIGHT = 520;
+  /**
+   * A screenshot request that is in flight when a new frame arrives is dropped, so that its
+   * response is not decoded, unless the displayed screenshot is older than this.
+   */
+  static final long MAX_SCREENSHOT_AGE_MILLIS = 1000;
   private static final Stroke SOLID_STROKE = new BasicStroke(1);
   private static final Color SHADOW_COLOR = new JBColor(new Color(0, 0, 0, 64), new Color(0, 0, 0, 64));
   protected static final int defaultLineHeight = 20;
@@ -66,6 +71,8 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
   protected boolean popopOpenInProgress;
   protected boolean altDown;
   protected Screenshot screenshot;
+  private volatile CompletableFuture<InspectorService.InteractiveScreenshot> screenshotInFlight;
+  private long screenshotShownTime;
   protected ArrayList<DiagnosticsNode> boxes;
   Rectangle relativeRect;
   Rectangle lastLockedRectangle;
@@ -90,7 +97,7 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
       hover.clear(false);
       hover = null;
     }
-    screenshot = null;
+    setScreenshot(null);
     super.dispose();
   }
 
@@ -415,7 +422,7 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
     if (hover != null) {
       hover.clear(true);
     }
-    screenshot = null;
+    setScreenshot(null);
   }
 
   @Override
@@ -471,6 +478,19 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
     return screenshot;
   }
 
+  /**
+   * Replace the displayed screenshot, allowing the image of the previous one to be reused.
+   */
+  private void setScreenshot(@Nullable Screenshot newScreenshot) {
+    if (screenshot != null && screenshot != newScreenshot) {
+      screenshot.release();
+    }
+    screenshot = newScreenshot;
+    if (newScreenshot != null) {
+      screenshotShownTime = System.currentTimeMillis();
+    }
+  }
+
   /**
    * Builds a transform that maps global window coordinates to coordinates
    * within the screenshot.
@@ -494,7 +514,7 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
 
   protected void clearScreenshot() {
     if (getScreenshotNow() != null) {
-      screenshot = null;
+      setScreenshot(null);
       computeScreenshotBounds();
       forceRender();
     }
@@ -525,6 +545,20 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
     if (!visible) return;
 
     getScreenshotRateLimiter().scheduleRequest();
+    dropStaleScreenshotRequest();
+  }
+
+  /**
+   * Drop the screenshot request in flight, as its screenshot predates the frame that made this one
+   * dirty. Cancelling the request skips decoding its response and lets the rate limiter start the
+   * request just scheduled.
+   */
+  private void dropStaleScreenshotRequest() {
+    final CompletableFuture<InspectorService.InteractiveScreenshot> inFlight = screenshotInFlight;
+    if (inFlight != null && !inFlight.isDone() && screenshot != null &&
+        System.currentTimeMillis() - screenshotShownTime < MAX_SCREENSHOT_AGE_MILLIS) {
+      inFlight.cancel(false);
+    }
   }
 
   protected CompletableFuture<InspectorService.InteractiveScreenshot> updateScreenshot() {
@@ -538,18 +572,19 @@ public abstract class PreviewViewControllerBase extends WidgetViewController {
     // 0.7 is a tweak to ensure we do not try to download enormous screenshots.
     final CompletableFuture<InspectorService.InteractiveScreenshot> screenshotFuture =
       group.getScreenshotAtLocation(getLocation(), 10, toPixels(previewSize.width), toPixels(previewSize.height), getDPI() * 0.7);
+    screenshotInFlight = screenshotFuture;
     group.safeWhenComplete(
       screenshotFuture,
       (pair, e2) -> {
         if (e2 != null || group.isDisposed() || getInspectorService() == null) return;
         if (pair == null) {
           setElements(null);
-          screenshot = null;
+          setScreenshot(null);
           boxes = null;
         }
         else {
           setElements(pair.elements);
-          screenshot = pair.screenshot;
+          setScreenshot(pair.screenshot);
           boxes = pair.boxes;
         }
         screenshotDirty = false;
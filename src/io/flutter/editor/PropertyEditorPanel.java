@@ -174,6 +174,7 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
   private final boolean fixedWidth;
   private final InspectorGroupManagerService.Client inspectorStateServiceClient;
   private final FlutterDartAnalysisServer flutterDartAnalysisService;
+  @Nullable private final WidgetDescriptionService widgetDescriptionService;
   @Nullable private final Project project;
   private final boolean showWidgetEditToolbar;
   private final Map<String, JComponent> fields = new HashMap<>();
@@ -248,6 +249,7 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
     inspectorGroupManagerService.addListener(inspectorStateServiceClient, parentDisposable);
     this.project = project;
     this.flutterDartAnalysisService = flutterDartAnalysisService;
+    this.widgetDescriptionService = project != null ? WidgetDescriptionService.getInstance(project) : null;
     this.showWidgetEditToolbar = showWidgetEditToolbar;
   }
 
@@ -356,6 +358,7 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
         outline == null ||
         outline.getClassName() == null ||
         (!FlutterOutlineKind.NEW_INSTANCE.equals(outline.getKind()))) {
+      cancelPropertyFuture();
       if (!properties.isEmpty()) {
         properties.clear();
         rebuildUi();
@@ -363,12 +366,16 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
       return;
     }
 
+    final Document document = FileDocumentManager.getInstance().getDocument(file);
+    if (document == null || widgetDescriptionService == null) return;
+
+    // The properties of the previous widget are no longer needed, so that
+    // request is not sent if it is still waiting to be.
+    cancelPropertyFuture();
     final CompletableFuture<List<FlutterWidgetProperty>> future =
-      flutterDartAnalysisService.getWidgetDescription(file, offset);
+      widgetDescriptionService.getWidgetDescription(file, document.getModificationStamp(), offset);
     propertyFuture = future;
 
-    if (propertyFuture == null) return;
-
     AsyncUtils.whenCompleteUiThread(propertyFuture, (updatedProperties, throwable) -> {
       if (propertyFuture != future || updatedProperties == null || throwable != null) {
         // This response is obsolete as there was a newer request.
@@ -377,6 +384,7 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
       if (offset != getOffset() || !file.equals(activeFile.getValue())) {
         return;
       }
+      final boolean changed = !WidgetDescriptionService.haveSameValues(properties, updatedProperties);
       properties.clear();
       properties.addAll(updatedProperties);
       propertyMap.clear();
@@ -397,10 +405,19 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
         return;
       }
       numFailures = 0;
-      rebuildUi();
+      if (changed) {
+        rebuildUi();
+      }
     });
   }
 
+  private void cancelPropertyFuture() {
+    if (propertyFuture != null) {
+      propertyFuture.cancel(false);
+      propertyFuture = null;
+    }
+  }
+
   public void outlinesChanged(List<FlutterOutline> outlines) {
     final FlutterOutline nextOutline = outlines.isEmpty() ? null : outlines.get(0);
     if (nextOutline == outline) return;
@@ -647,14 +664,23 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
   }
 
   private void setParsedPropertyValue(String propertyName, FlutterWidgetPropertyValue value, boolean force) {
-    final boolean updated = setParsedPropertyValueHelper(propertyName, value);
-    if (!updated && force) {
-      hotReload();
+    final CompletableFuture<Boolean> updated = setParsedPropertyValueHelper(propertyName, value);
+    if (force) {
+      AsyncUtils.whenCompleteUiThread(updated, (applied, throwable) -> {
+        if (!Boolean.TRUE.equals(applied)) {
+          hotReload();
+        }
+      });
     }
   }
 
-
-  private boolean setParsedPropertyValueHelper(String propertyName, FlutterWidgetPropertyValue value) {
+  /**
+   * Asks the analysis server to change the property and applies the change once it responds.
+   * <p>
+   * The future completes on the UI thread with whether a change was applied.
+   */
+  @NotNull
+  private CompletableFuture<Boolean> setParsedPropertyValueHelper(String propertyName, FlutterWidgetPropertyValue value) {
     // TODO(jacobr): also do simple tracking of how the previous expression maps to the current expression to avoid spurious edits.
 
     // Treat an empty expression and empty value objects as omitted values
@@ -664,11 +690,11 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
     final FlutterWidgetProperty property = propertyMap.get(propertyName);
     if (property == null) {
       // UI is in the process of updating. Skip this action.
-      return false;
+      return CompletableFuture.completedFuture(false);
     }
 
     if (property.getExpression() != null && property.getExpression().equals(value.getExpression())) {
-      return false;
+      return CompletableFuture.completedFuture(false);
     }
 
     if (value != null && Objects.equals(value.getExpression(), "") || emptyValue.equals(value)) {
@@ -678,7 +704,7 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
 
     final String lastExpression = currentExpressionMap.get(propertyName);
     if (lastExpression != null && value != null && lastExpression.equals(value.getExpression())) {
-      return false;
+      return CompletableFuture.completedFuture(false);
     }
     currentExpressionMap.put(propertyName, value != null ? value.getExpression() : null);
 
@@ -736,23 +762,29 @@ public class PropertyEditorPanel extends SimpleToolWindowPanel {
     }
     if (Objects.equals(property.getValue(), value)) {
       // Short circuit as nothing changed.
-      return false;
+      return CompletableFuture.completedFuture(false);
     }
 
-    final SourceChange change;
-    try {
-      change = flutterDartAnalysisService.setWidgetPropertyValue(property.getId(), value);
-    }
-    catch (Exception e) {
-      if (value != null && value.getExpression() != null) {
-        FlutterMessages.showInfo("Invalid property value", value.getExpression(), project);
-      }
-      else {
-        FlutterMessages.showError("Unable to set propery value", e.getMessage(), project);
+    final FlutterWidgetPropertyValue newValue = value;
+    final CompletableFuture<Boolean> applied = new CompletableFuture<>();
+    final CompletableFuture<SourceChange> change = flutterDartAnalysisService.setWidgetPropertyValue(property.getId(), newValue);
+    AsyncUtils.whenCompleteUiThread(change, (sourceChange, throwable) -> {
+      if (throwable != null) {
+        if (newValue != null && newValue.getExpression() != null) {
+          FlutterMessages.showInfo("Invalid property value", newValue.getExpression(), project);
+        }
+        else {
+          FlutterMessages.showError("Unable to set propery value", throwable.getMessage(), project);
+        }
+        applied.complete(false);
+        return;
       }
-      return false;
-    }
+      applied.complete(applySourceChange(sourceChange));
+    });
+    return applied;
+  }
 
+  private boolean applySourceChange(@Nullable SourceChange change) {
     if (change != null && change.getEdits() != null && !change.getEdits().isEmpty()) {
       // TODO(jacobr): does running a write action make sense here? We are
       // already on the UI thread.
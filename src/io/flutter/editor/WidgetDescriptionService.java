@@ -0,0 +1,211 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.editor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import io.flutter.dart.FlutterDartAnalysisServer;
+import org.dartlang.analysis.server.protocol.FlutterWidgetProperty;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the editable properties of widgets from the analysis server for the property editors.
+ * <p>
+ * Requests are sent after a short delay, so a caller that moves on to another widget before then,
+ * as happens while the caret is moved around, can cancel its previous request before it reaches the
+ * server.
+ * <p>
+ * The analysis server only accepts the property ids of its latest description, so only the latest
+ * request is kept, by file, document version and widget offset. Asking again for the same widget
+ * shares that request, while asking for any other widget replaces it, and going back to an earlier
+ * widget asks the server again so that its ids are valid.
+ */
+public class WidgetDescriptionService {
+  /**
+   * How long requests wait before being sent, in milliseconds.
+   */
+  private static final long DEBOUNCE_MILLIS = 50;
+
+  /**
+   * How long requests may take before they are treated as failed, in seconds.
+   */
+  private static final long REQUEST_TIMEOUT_SECONDS = 10;
+
+  /**
+   * Asks the analysis server for the properties of the widget at an offset of a file.
+   */
+  interface Fetcher {
+    @Nullable
+    CompletableFuture<List<FlutterWidgetProperty>> fetch(@NotNull VirtualFile file, int offset);
+  }
+
+  @NotNull private final Fetcher fetcher;
+  @NotNull private final ScheduledExecutorService scheduler;
+  private final long debounceMillis;
+
+  private final Object lock = new Object();
+
+  /**
+   * The widget of the latest request that was sent, and that request.
+   * <p>
+   * They are cleared once the request fails or finds no properties, so it can be tried again.
+   */
+  @Nullable private Key latestKey;
+  @Nullable private CompletableFuture<List<FlutterWidgetProperty>> latestRequest;
+
+  @NotNull
+  public static WidgetDescriptionService getInstance(@NotNull final Project project) {
+    return ServiceManager.getService(project, WidgetDescriptionService.class);
+  }
+
+  public WidgetDescriptionService(@NotNull Project project) {
+    this(FlutterDartAnalysisServer.getInstance(project)::getWidgetDescription, AppExecutorUtil.getAppScheduledExecutorService(),
+         DEBOUNCE_MILLIS);
+  }
+
+  @VisibleForTesting
+  WidgetDescriptionService(@NotNull Fetcher fetcher, @NotNull ScheduledExecutorService scheduler, long debounceMillis) {
+    this.fetcher = fetcher;
+    this.scheduler = scheduler;
+    this.debounceMillis = debounceMillis;
+  }
+
+  /**
+   * Returns the properties of the widget at the offset of the file.
+   * <p>
+   * The version identifies the contents of the file the offset is for, such as the modification
+   * stamp of its document. Cancelling the future before the request is sent keeps it from being
+   * sent, which callers should do once they no longer need the result.
+   */
+  @NotNull
+  public CompletableFuture<List<FlutterWidgetProperty>> getWidgetDescription(@NotNull VirtualFile file, long version, int offset) {
+    final Key key = new Key(file, version, offset);
+    final CompletableFuture<List<FlutterWidgetProperty>> result = new CompletableFuture<>();
+
+    final CompletableFuture<List<FlutterWidgetProperty>> cached;
+    synchronized (lock) {
+      cached = key.equals(latestKey) ? latestRequest : null;
+    }
+    if (cached != null) {
+      forward(cached, result);
+      return result;
+    }
+
+    final ScheduledFuture<?> pending = scheduler.schedule(() -> {
+      if (!result.isDone()) {
+        forward(request(key), result);
+      }
+    }, debounceMillis, TimeUnit.MILLISECONDS);
+    result.whenComplete((properties, error) -> {
+      if (result.isCancelled()) {
+        pending.cancel(false);
+      }
+    });
+    return result;
+  }
+
+  @NotNull
+  private CompletableFuture<List<FlutterWidgetProperty>> request(@NotNull Key key) {
+    synchronized (lock) {
+      if (key.equals(latestKey) && latestRequest != null) {
+        return latestRequest;
+      }
+
+      final CompletableFuture<List<FlutterWidgetProperty>> fetched = fetcher.fetch(key.file, key.offset);
+      if (fetched == null) {
+        final CompletableFuture<List<FlutterWidgetProperty>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("Widget descriptions are not available"));
+        return failed;
+      }
+      final CompletableFuture<List<FlutterWidgetProperty>> request = fetched.orTimeout(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      latestKey = key;
+      latestRequest = request;
+      request.whenComplete((properties, error) -> {
+        if (error != null || properties == null || properties.isEmpty()) {
+          synchronized (lock) {
+            if (latestRequest == request) {
+              latestKey = null;
+              latestRequest = null;
+            }
+          }
+        }
+      });
+      return request;
+    }
+  }
+
+  /**
+   * Whether two descriptions of a widget show the same properties.
+   * <p>
+   * Property ids differ between responses, so they are not compared.
+   */
+  public static boolean haveSameValues(@Nullable List<FlutterWidgetProperty> a, @Nullable List<FlutterWidgetProperty> b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    if (a.size() != b.size()) {
+      return false;
+    }
+    for (int i = 0; i < a.size(); i++) {
+      final FlutterWidgetProperty x = a.get(i);
+      final FlutterWidgetProperty y = b.get(i);
+      if (!Objects.equals(x.getName(), y.getName()) ||
+          !Objects.equals(x.getExpression(), y.getExpression()) ||
+          !Objects.equals(x.getValue(), y.getValue()) ||
+          !haveSameValues(x.getChildren(), y.getChildren())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static <T> void forward(@NotNull CompletableFuture<T> from, @NotNull CompletableFuture<T> to) {
+    from.whenComplete((value, error) -> {
+      if (error != null) {
+        to.completeExceptionally(error);
+      }
+      else {
+        to.complete(value);
+      }
+    });
+  }
+
+  private static class Key {
+    @NotNull final VirtualFile file;
+    final long version;
+    final int offset;
+
+    Key(@NotNull VirtualFile file, long version, int offset) {
+      this.file = file;
+      this.version = version;
+      this.offset = offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      final Key other = (Key)o;
+      return file.equals(other.file) && version == other.version && offset == other.offset;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, version, offset);
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.editor;
+
+import io.flutter.dart.PackedFlutterOutline;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The widget indent guides computed from one outline of a document.
+ * <p>
+ * Instances are computed off the UI thread and never change once built. The descriptors of outline
+ * subtrees that did not change since the previous instance are shared with it, so the highlighters
+ * of those guides can be kept as they are.
+ */
+class WidgetIndentDescriptors {
+  /**
+   * The descriptors of the widgets within one outline node, which are a contiguous run of
+   * {@link #descriptors} as the descriptors are in pre-order.
+   */
+  static class Subtree {
+    final int node;
+    final int first;
+    final int end;
+
+    Subtree(int node, int first, int end) {
+      this.node = node;
+      this.first = first;
+      this.end = end;
+    }
+  }
+
+  /**
+   * The modification stamp of the document the descriptors were computed for.
+   */
+  final long version;
+
+  @NotNull final PackedFlutterOutline outline;
+
+  /**
+   * Descriptors describing the data model to render the widget indents, in pre-order.
+   */
+  @NotNull final List<WidgetIndentGuideDescriptor> descriptors;
+
+  /**
+   * Descriptors combined with their locations in the document, sorted by range.
+   */
+  @NotNull final List<TextRangeDescriptorPair> ranges;
+
+  @NotNull final WidgetIndentHitTester hitTester;
+
+  /**
+   * The subtrees of nodes of {@link #outline}, by {@link #getKey}.
+   */
+  @NotNull private final Map<Long, Subtree> subtrees;
+
+  private WidgetIndentDescriptors(long version,
+                                  @NotNull PackedFlutterOutline outline,
+                                  @NotNull List<WidgetIndentGuideDescriptor> descriptors,
+                                  @NotNull List<TextRangeDescriptorPair> ranges,
+                                  @NotNull WidgetIndentHitTester hitTester,
+                                  @NotNull Map<Long, Subtree> subtrees) {
+    this.version = version;
+    this.outline = outline;
+    this.descriptors = Collections.unmodifiableList(descriptors);
+    this.ranges = Collections.unmodifiableList(ranges);
+    this.hitTester = hitTester;
+    this.subtrees = subtrees;
+  }
+
+  /**
+   * Returns the subtree of a node at the same offset and of the same kind as the given node of
+   * another outline, if it is identical to it.
+   */
+  @Nullable
+  Subtree findSameSubtree(@NotNull PackedFlutterOutline other, int node) {
+    final Subtree subtree = subtrees.get(getKey(other, node));
+    return subtree != null && isSameSubtree(outline, subtree.node, other, node) ? subtree : null;
+  }
+
+  @NotNull
+  List<WidgetIndentGuideDescriptor> getDescriptors(@NotNull Subtree subtree) {
+    return descriptors.subList(subtree.first, subtree.end);
+  }
+
+  /**
+   * Identifies an outline node by its offset and kind.
+   * <p>
+   * Nested nodes may share a key, in which case the outermost node is the one that is remembered,
+   * as nodes are ended after their children.
+   */
+  static long getKey(@NotNull PackedFlutterOutline outline, int node) {
+    return ((long)outline.getOffset(node) << 32) | (Objects.hashCode(outline.getKind(node)) & 0xffffffffL);
+  }
+
+  /**
+   * Whether the two nodes would produce the same widget indent guides, provided that the text they
+   * cover has not moved.
+   * <p>
+   * Subtrees that are the same have the same shape, so their nodes are numbered the same way
+   * relative to the node at their top.
+   */
+  static boolean isSameSubtree(@NotNull PackedFlutterOutline a, int aNode, @NotNull PackedFlutterOutline b, int bNode) {
+    if (a == b && aNode == bNode) return true;
+    final int size = a.getSubtreeEnd(aNode) - aNode;
+    if (size != b.getSubtreeEnd(bNode) - bNode) return false;
+    for (int i = 0; i < size; i++) {
+      if (!isSameNode(a, aNode + i, b, bNode + i)) return false;
+    }
+    return true;
+  }
+
+  private static boolean isSameNode(@NotNull PackedFlutterOutline a, int aNode, @NotNull PackedFlutterOutline b, int bNode) {
+    if (a.getOffset(aNode) != b.getOffset(bNode) || a.getLength(aNode) != b.getLength(bNode)) return false;
+    if (a.getSubtreeEnd(aNode) - aNode != b.getSubtreeEnd(bNode) - bNode) return false;
+    if (!Objects.equals(a.getKind(aNode), b.getKind(bNode))) return false;
+    if (!Objects.equals(a.getClassName(aNode), b.getClassName(bNode))) return false;
+    if (!Objects.equals(a.getVariableName(aNode), b.getVariableName(bNode))) return false;
+
+    final int attributeCount = a.getAttributeCount(aNode);
+    if (attributeCount != b.getAttributeCount(bNode)) return false;
+    for (int i = 0; i < attributeCount; i++) {
+      if (!Objects.equals(a.getAttribute(aNode, i), b.getAttribute(bNode, i))) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Collects the descriptors of an outline as it is walked in pre-order.
+   */
+  static class Builder {
+    private final ArrayList<WidgetIndentGuideDescriptor> descriptors = new ArrayList<>();
+    private final Map<Long, Subtree> subtrees = new HashMap<>();
+    @NotNull private final PackedFlutterOutline outline;
+
+    Builder(@NotNull PackedFlutterOutline outline) {
+      this.outline = outline;
+    }
+
+    /**
+     * Returns the position to pass to {@link #endNode} once the descriptors of the node are added.
+     */
+    int startNode() {
+      return descriptors.size();
+    }
+
+    void endNode(int node, int first) {
+      subtrees.put(getKey(outline, node), new Subtree(node, first, descriptors.size()));
+    }
+
+    void add(@NotNull WidgetIndentGuideDescriptor descriptor) {
+      descriptors.add(descriptor);
+    }
+
+    /**
+     * Adds the descriptors of a subtree of the previous outline in place of those of the same
+     * subtree of the node.
+     * <p>
+     * The nested subtrees are remembered as well, as subtrees of the node, so they can be reused
+     * again when only part of the node changes. Nothing refers to the previous outline afterwards.
+     */
+    void reuse(@NotNull WidgetIndentDescriptors previous, @NotNull Subtree subtree, int node) {
+      final int first = descriptors.size();
+      descriptors.addAll(previous.getDescriptors(subtree));
+      final int shift = first - subtree.first;
+      final int end = outline.getSubtreeEnd(node);
+      for (int nested = node + 1; nested < end; nested++) {
+        final int previousNode = subtree.node + (nested - node);
+        final Subtree nestedSubtree = previous.subtrees.get(getKey(previous.outline, previousNode));
+        if (nestedSubtree != null && nestedSubtree.node == previousNode) {
+          subtrees.put(getKey(outline, nested), new Subtree(nested, nestedSubtree.first + shift, nestedSubtree.end + shift));
+        }
+      }
+      endNode(node, first);
+    }
+
+    @NotNull
+    List<WidgetIndentGuideDescriptor> getDescriptors() {
+      return descriptors;
+    }
+
+    @NotNull
+    WidgetIndentDescriptors build(long version,
+                                  @NotNull List<TextRangeDescriptorPair> ranges,
+                                  @NotNull WidgetIndentHitTester hitTester) {
+      return new WidgetIndentDescriptors(version, outline, descriptors, ranges, hitTester, subtrees);
+    }
+  }
+}
@@ -84,6 +84,10 @@ public class WidgetIndentGuideDescriptor {
   public final int startLine;
   public final int endLine;
 
+  /**
+   * The outline node of the widget, without its children, so descriptors do not keep the outline
+   * they were built from.
+   */
   public final FlutterOutline outlineNode;
 
   public WidgetIndentGuideDescriptor(
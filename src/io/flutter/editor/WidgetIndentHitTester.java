@@ -6,8 +6,8 @@
 package io.flutter.editor;
 
 import com.intellij.openapi.editor.Document;
+import io.flutter.utils.IntervalIndex;
 
-import java.util.Arrays;
 import java.util.List;
 
 import static java.lang.Math.max;
@@ -29,28 +29,27 @@ import static java.lang.Math.min;
  */
 public class WidgetIndentHitTester {
   /**
-   * Whether each line overlaps a Widget Indent Guide.
+   * The lines overlapping each Widget Indent Guide.
    */
-  private final boolean[] lines;
+  private final IntervalIndex lines;
+  private final int lineCount;
 
   WidgetIndentHitTester(List<WidgetIndentGuideDescriptor> descriptors, Document document) {
-    final int lineCount = document.getLineCount();
-    lines = new boolean[lineCount];
-    // TODO(jacobr): optimize using a more clever data structure.
+    lineCount = document.getLineCount();
+    final IntervalIndex.Builder builder = new IntervalIndex.Builder();
     for (WidgetIndentGuideDescriptor descriptor : descriptors) {
-      // if (descriptor.parent)
-      {
-        final int last = min(lines.length, descriptor.endLine + 1);
-        for (int i = max(descriptor.startLine - 1, 0); i < last; i++) {
-          lines[i] = true;
-        }
+      final int first = max(descriptor.startLine - 1, 0);
+      final int last = min(lineCount - 1, descriptor.endLine);
+      if (first <= last) {
+        builder.add(first, last);
       }
     }
+    lines = builder.build();
   }
 
   @Override
   public int hashCode() {
-    return Arrays.hashCode(lines);
+    return 31 * lineCount + lines.hashCode();
   }
 
   @Override
@@ -58,7 +57,7 @@ public class WidgetIndentHitTester {
     if (this == o) return true;
     if (!(o instanceof WidgetIndentHitTester)) return false;
     final WidgetIndentHitTester other = (WidgetIndentHitTester)o;
-    return Arrays.equals(lines, other.lines);
+    return lineCount == other.lineCount && lines.equals(other.lines);
   }
 
   // TODO(jacobr): we could be smarter about intersection detection by
@@ -70,13 +69,9 @@ public class WidgetIndentHitTester {
   // complaining about the missing regular indent guides for cases where the
   // guides overlap horizontally.
   public boolean intersects(LineRange lineRange) {
-    final int last = min(lines.length, lineRange.endLine + 1);
     // TODO(jacobr): why the -1 on startLine?
-    for (int i = max(lineRange.startLine - 1, 0); i < last; i++) {
-      if (lines[i]) {
-        return true;
-      }
-    }
-    return false;
+    final int first = max(lineRange.startLine - 1, 0);
+    final int last = min(lineCount - 1, lineRange.endLine);
+    return first <= last && lines.intersects(first, last);
   }
 }
@@ -7,6 +7,7 @@
 package io.flutter.editor;
 
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.*;
 import com.intellij.openapi.editor.colors.EditorColors;
@@ -14,31 +15,33 @@ import com.intellij.openapi.editor.colors.EditorColorsScheme;
 import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.openapi.editor.impl.EditorImpl;
 import com.intellij.openapi.editor.markup.*;
-import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Segment;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiElement;
-import com.intellij.psi.PsiFile;
 import com.intellij.ui.Gray;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.paint.LinePainter2D;
 import com.intellij.util.DocumentUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.text.CharArrayUtil;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import com.jetbrains.lang.dart.psi.DartCallExpression;
 import io.flutter.dart.FlutterDartAnalysisServer;
+import io.flutter.dart.PackedFlutterOutline;
 import io.flutter.inspector.InspectorGroupManagerService;
 import io.flutter.settings.FlutterSettings;
 import org.dartlang.analysis.server.protocol.FlutterOutline;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 import static java.lang.Math.*;
 
@@ -107,6 +110,11 @@ public class WidgetIndentsHighlightingPass {
 
   private static final Key<WidgetIndentsPassData> INDENTS_PASS_DATA_KEY = Key.create("INDENTS_PASS_DATA_KEY");
 
+  /**
+   * Executor computing the descriptors of new outlines off the UI thread.
+   */
+  private static final Executor COMPUTE_EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor("Flutter widget indents", 1);
+
   /**
    * When this debugging flag is true, problematic text ranges are reported.
    */
@@ -477,7 +485,6 @@ public class WidgetIndentsHighlightingPass {
   private final Project myProject;
   private final VirtualFile myFile;
   private final boolean convertOffsets;
-  private final PsiFile psiFile;
   private final EditorMouseEventService editorEventService;
   private final WidgetEditingContext context;
 
@@ -498,7 +505,6 @@ public class WidgetIndentsHighlightingPass {
     this.editorEventService = editorEventService;
     context = new WidgetEditingContext(
       project, flutterDartAnalysisService, inspectorGroupManagerService, editorPositionService);
-    psiFile = PsiDocumentManager.getInstance(myProject).getPsiFile(myDocument);
     final WidgetIndentsPassData data = getIndentsPassData();
     setIndentsPassData(editor, data);
   }
@@ -572,6 +578,16 @@ public class WidgetIndentsHighlightingPass {
     highlighter.dispose();
   }
 
+  private static void disposeHighlighter(RangeHighlighter highlighter, Set<WidgetIndentGuideDescriptor> liveDescriptors) {
+    final CustomHighlighterRenderer renderer = highlighter.getCustomRenderer();
+    if (renderer instanceof WidgetCustomHighlighterRenderer &&
+        liveDescriptors.contains(((WidgetCustomHighlighterRenderer)renderer).descriptor)) {
+      highlighter.dispose();
+      return;
+    }
+    disposeHighlighter(highlighter);
+  }
+
   public static void cleanupHighlighters(Editor editor) {
     final WidgetIndentsPassData data = getIndentsPassData(editor);
     if (data == null) return;
@@ -587,7 +603,7 @@ public class WidgetIndentsHighlightingPass {
 
   public static void run(@NotNull Project project,
                          @NotNull EditorEx editor,
-                         @NotNull FlutterOutline outline,
+                         @NotNull PackedFlutterOutline outline,
                          FlutterDartAnalysisServer flutterDartAnalysisService,
                          InspectorGroupManagerService inspectorGroupManagerService,
                          EditorMouseEventService editorEventService,
@@ -607,33 +623,78 @@ public class WidgetIndentsHighlightingPass {
   }
 
   /**
-   * This method must be called on the main UI thread.
-   * <p>
-   * Some of this logic would appear to be safe to call on a background thread but
-   * there are race conditions where the data will be out of order if the document
-   * is being edited while the code is executing.
+   * Updates the widget indents of the editor to match the outline.
    * <p>
-   * If there are performance concerns we can work to perform more of this
-   * computation on a separate thread.
+   * This method must be called on the main UI thread. The descriptors are
+   * computed on a background thread, reusing those of the subtrees that did
+   * not change since the previous outline, and are then applied to the editor
+   * back on the UI thread. Descriptors computed for a version of the document
+   * that has since been edited are dropped, as the analysis server will send a
+   * new outline for the edit.
    */
-  public void setOutline(FlutterOutline outline) {
+  public void setOutline(PackedFlutterOutline outline) {
     assert (outline != null);
 
     final WidgetIndentsPassData data = getIndentsPassData();
-    if (data.outline == outline) {
+    if (data.outline == outline || data.pendingOutline == outline) {
       // The outline has not changed. There is nothing we need to do.
       return;
     }
+    data.pendingOutline = outline;
+
+    final WidgetIndentDescriptors previous = data.descriptors;
+    final long version = myDocument.getModificationStamp();
+    COMPUTE_EXECUTOR.execute(() -> {
+      if (data.pendingOutline != outline) {
+        // A newer outline has arrived before we got to this one.
+        return;
+      }
+      final WidgetIndentDescriptors descriptors = ApplicationManager.getApplication().runReadAction(
+        (Computable<WidgetIndentDescriptors>)() -> computeDescriptors(outline, previous, version));
+      ApplicationManager.getApplication().invokeLater(() -> applyDescriptors(data, outline, previous, descriptors));
+    });
+  }
 
-    final ArrayList<WidgetIndentGuideDescriptor> descriptors = new ArrayList<>();
+  /**
+   * Builds the descriptors for the outline, or returns null if the document
+   * has been edited since the outline was received.
+   * <p>
+   * Must be called in a read action.
+   */
+  @Nullable
+  private WidgetIndentDescriptors computeDescriptors(@NotNull PackedFlutterOutline outline,
+                                                     @Nullable WidgetIndentDescriptors previous,
+                                                     long version) {
+    if (myEditor.isDisposed() || myDocument.getModificationStamp() != version) {
+      return null;
+    }
+    final WidgetIndentDescriptors.Builder builder = new WidgetIndentDescriptors.Builder(outline);
+    buildWidgetDescriptors(builder, previous, outline, 0, null);
+    final List<WidgetIndentGuideDescriptor> descriptors = builder.getDescriptors();
+    final List<TextRangeDescriptorPair> ranges = doCollectInformationUpdateOutline(descriptors);
+    return builder.build(version, ranges, new WidgetIndentHitTester(descriptors, myDocument));
+  }
 
-    buildWidgetDescriptors(descriptors, outline, null);
-    updateHitTester(new WidgetIndentHitTester(descriptors, myDocument), data);
+  private void applyDescriptors(@NotNull WidgetIndentsPassData data,
+                                @NotNull PackedFlutterOutline outline,
+                                @Nullable WidgetIndentDescriptors previous,
+                                @Nullable WidgetIndentDescriptors descriptors) {
+    if (myEditor.isDisposed() || getIndentsPassData(myEditor) != data || data.pendingOutline != outline) {
+      // The editor has been closed, the guides have been cleaned up or a
+      // newer outline is being computed.
+      return;
+    }
+    data.pendingOutline = null;
+    if (descriptors == null || data.descriptors != previous || myDocument.getModificationStamp() != descriptors.version) {
+      // The descriptors no longer match the document or the highlighters.
+      return;
+    }
+
+    updateHitTester(descriptors.hitTester, data);
     // TODO(jacobr): we need to trigger a rerender of highlighters that will render differently due to the changes in highlighters?
-    data.myDescriptors = descriptors;
-    doCollectInformationUpdateOutline(data);
+    data.descriptors = descriptors;
+    data.outline = descriptors.outline;
     doApplyIndentInformationToEditor(data);
-    setIndentsPassData(data);
     updatePreviewHighlighter(myEditor.getMarkupModel(), data);
   }
 
@@ -661,31 +722,27 @@ public class WidgetIndentsHighlightingPass {
     setIndentsPassData(myEditor, data);
   }
 
-  public void doCollectInformationUpdateOutline(WidgetIndentsPassData data) {
+  @NotNull
+  private List<TextRangeDescriptorPair> doCollectInformationUpdateOutline(@NotNull List<WidgetIndentGuideDescriptor> descriptors) {
     assert myDocument != null;
 
-    if (data.myDescriptors != null) {
-      final ArrayList<TextRangeDescriptorPair> ranges = new ArrayList<>();
-      for (WidgetIndentGuideDescriptor descriptor : data.myDescriptors) {
-        ProgressManager.checkCanceled();
-        final TextRange range;
-        if (descriptor.widget != null) {
-          range = descriptor.widget.getFullRange();
-        }
-        else {
-          final int endOffset =
-            descriptor.endLine < myDocument.getLineCount() ? myDocument.getLineStartOffset(descriptor.endLine) : myDocument.getTextLength();
-          range = new TextRange(myDocument.getLineStartOffset(descriptor.startLine), endOffset);
-        }
-        // TODO(jacobr): calling trackLocations multiple times is harmless
-        // but we should still audit where we are calling it so that we
-        // only call it once on each descriptor for typical use cases.
-        descriptor.trackLocations(myDocument);
-        ranges.add(new TextRangeDescriptorPair(range, descriptor));
+    final ArrayList<TextRangeDescriptorPair> ranges = new ArrayList<>(descriptors.size());
+    for (WidgetIndentGuideDescriptor descriptor : descriptors) {
+      final TextRange range;
+      if (descriptor.widget != null) {
+        // The range is tracked for descriptors reused from the previous outline.
+        range = descriptor.widget.getFullRange();
+      }
+      else {
+        final int endOffset =
+          descriptor.endLine < myDocument.getLineCount() ? myDocument.getLineStartOffset(descriptor.endLine) : myDocument.getTextLength();
+        range = new TextRange(myDocument.getLineStartOffset(descriptor.startLine), endOffset);
       }
-      ranges.sort((a, b) -> Segment.BY_START_OFFSET_THEN_END_OFFSET.compare(a.range, b.range));
-      data.myRangesWidgets = ranges;
+      // Locations are tracked by the highlighter renderers on the UI thread.
+      ranges.add(new TextRangeDescriptorPair(range, descriptor));
     }
+    ranges.sort((a, b) -> Segment.BY_START_OFFSET_THEN_END_OFFSET.compare(a.range, b.range));
+    return ranges;
   }
 
   public void doApplyIndentInformationToEditor(WidgetIndentsPassData data) {
@@ -696,7 +753,11 @@ public class WidgetIndentsHighlightingPass {
 
     int curRange = 0;
 
-    final List<TextRangeDescriptorPair> ranges = data.myRangesWidgets;
+    final List<TextRangeDescriptorPair> ranges = data.descriptors.ranges;
+    // Descriptors of unchanged subtrees are shared with the previous outline,
+    // so they must stay alive when their old highlighter is replaced.
+    final Set<WidgetIndentGuideDescriptor> liveDescriptors = Collections.newSetFromMap(new IdentityHashMap<>());
+    liveDescriptors.addAll(data.descriptors.descriptors);
     if (oldHighlighters != null) {
       // after document change some range highlighters could have become
       // invalid, or the order could have been broken.
@@ -720,7 +781,7 @@ public class WidgetIndentsHighlightingPass {
           curRange++;
         }
         else if (cmp > 0) {
-          disposeHighlighter(highlighter);
+          disposeHighlighter(highlighter, liveDescriptors);
           curHighlight++;
         }
         else {
@@ -733,7 +794,7 @@ public class WidgetIndentsHighlightingPass {
       for (; curHighlight < oldHighlighters.size(); curHighlight++) {
         final RangeHighlighter highlighter = oldHighlighters.get(curHighlight);
         if (!highlighter.isValid()) break;
-        disposeHighlighter(highlighter);
+        disposeHighlighter(highlighter, liveDescriptors);
       }
     }
 
@@ -770,10 +831,10 @@ public class WidgetIndentsHighlightingPass {
     return convertOffsets ? getAnalysisService().getConvertedOffset(myFile, offset) : offset;
   }
 
-  private OutlineLocation computeLocation(FlutterOutline node) {
+  private OutlineLocation computeLocation(PackedFlutterOutline outline, int node) {
     assert (myDocument != null);
     final int documentLength = myDocument.getTextLength();
-    final int rawOffset = getConvertedOffset(node);
+    final int rawOffset = getConvertedOffset(outline.getOffset(node));
     final int nodeOffset = min(rawOffset, documentLength);
     final int line = myDocument.getLineNumber(nodeOffset);
     final int lineStartOffset = myDocument.getLineStartOffset(line);
@@ -791,7 +852,7 @@ public class WidgetIndentsHighlightingPass {
       }
     }
 
-    return new OutlineLocation(node, line, column, indent, myFile, this);
+    return new OutlineLocation(outline.getOffset(node), outline.getLength(node), line, column, indent, myFile, this);
   }
 
   DartCallExpression getCallExpression(PsiElement element) {
@@ -806,26 +867,35 @@ public class WidgetIndentsHighlightingPass {
   }
 
   private void buildWidgetDescriptors(
-    final List<WidgetIndentGuideDescriptor> widgetDescriptors,
-    FlutterOutline outlineNode,
+    final WidgetIndentDescriptors.Builder builder,
+    @Nullable WidgetIndentDescriptors previous,
+    @NotNull PackedFlutterOutline outline,
+    int node,
     WidgetIndentGuideDescriptor parent
   ) {
-    if (outlineNode == null) return;
+    final int firstChild = outline.getFirstChild(node);
+    if (firstChild == PackedFlutterOutline.NONE) return;
 
-    final String kind = outlineNode.getKind();
-    final boolean widgetConstructor = "NEW_INSTANCE".equals(kind) || (parent != null && ("VARIABLE".equals(kind)));
+    if (previous != null) {
+      final WidgetIndentDescriptors.Subtree subtree = previous.findSameSubtree(outline, node);
+      if (subtree != null && canReuse(previous.getDescriptors(subtree), parent)) {
+        builder.reuse(previous, subtree, node);
+        return;
+      }
+    }
 
-    final List<FlutterOutline> children = outlineNode.getChildren();
-    if (children == null || children.isEmpty()) return;
+    final int first = builder.startNode();
+    final String kind = outline.getKind(node);
+    final boolean widgetConstructor = "NEW_INSTANCE".equals(kind) || (parent != null && ("VARIABLE".equals(kind)));
 
     if (widgetConstructor) {
-      final OutlineLocation location = computeLocation(outlineNode);
+      final OutlineLocation location = computeLocation(outline, node);
       int minChildIndent = Integer.MAX_VALUE;
       final ArrayList<OutlineLocation> childrenLocations = new ArrayList<>();
       int endLine = location.getLine();
 
-      for (FlutterOutline child : children) {
-        final OutlineLocation childLocation = computeLocation(child);
+      for (int child = firstChild; child != PackedFlutterOutline.NONE; child = outline.getNextSibling(child)) {
+        final OutlineLocation childLocation = computeLocation(outline, child);
         if (childLocation.getLine() <= location.getLine()) {
           // Skip children that don't actually occur on a later line. There is no
           // way for us to draw good looking line art for them.
@@ -838,12 +908,7 @@ public class WidgetIndentsHighlightingPass {
         endLine = max(endLine, childLocation.getLine());
         childrenLocations.add(childLocation);
       }
-      final Set<Integer> childrenOffsets = new HashSet<>();
-      for (OutlineLocation childLocation : childrenLocations) {
-        childrenOffsets.add(childLocation.getGuideOffset());
-      }
 
-      final PsiElement element = psiFile.findElementAt(location.getGuideOffset());
       if (!childrenLocations.isEmpty()) {
         // The indent is only used for sorting and disambiguating descriptors
         // as at render time we will pick the real indent for the outline based
@@ -856,17 +921,49 @@ public class WidgetIndentsHighlightingPass {
           endLine + 1,
           childrenLocations,
           location,
-          outlineNode
+          outline.toFlutterOutlineNode(node)
         );
         if (!descriptor.childLines.isEmpty()) {
-          widgetDescriptors.add(descriptor);
+          builder.add(descriptor);
           parent = descriptor;
         }
       }
     }
-    for (FlutterOutline child : children) {
-      buildWidgetDescriptors(widgetDescriptors, child, parent);
+    for (int child = firstChild; child != PackedFlutterOutline.NONE; child = outline.getNextSibling(child)) {
+      buildWidgetDescriptors(builder, previous, outline, child, parent);
+    }
+    builder.endNode(node, first);
+  }
+
+  /**
+   * Whether the descriptors of an unchanged outline subtree can be used in
+   * place of new ones.
+   * <p>
+   * That is the case if the text they describe has not moved since they were
+   * built, and they hang off a parent guide exactly when the new ones would.
+   * Subtrees without descriptors are rebuilt, as there is no way to tell
+   * whether their text has moved.
+   */
+  private boolean canReuse(@NotNull List<WidgetIndentGuideDescriptor> descriptors, @Nullable WidgetIndentGuideDescriptor parent) {
+    if (descriptors.isEmpty()) {
+      return false;
+    }
+    if ((descriptors.get(0).parent == null) != (parent == null)) {
+      return false;
+    }
+    for (WidgetIndentGuideDescriptor descriptor : descriptors) {
+      if (!descriptor.tracked || descriptor.widget == null || !descriptor.widget.isValid()) {
+        return false;
+      }
+      final TextRange range = descriptor.widget.getFullRange();
+      final FlutterOutline node = descriptor.outlineNode;
+      if (range == null ||
+          range.getStartOffset() != getConvertedOffset(node) ||
+          range.getEndOffset() != getConvertedOffset(node.getOffset() + node.getLength())) {
+        return false;
+      }
     }
+    return true;
   }
 
   @NotNull
@@ -910,7 +1007,7 @@ public class WidgetIndentsHighlightingPass {
       highlighter.setCustomRenderer(data.previewsForEditor);
     }
     if (data.previewsForEditor != null) {
-      data.previewsForEditor.outlinesChanged(data.myDescriptors);
+      data.previewsForEditor.outlinesChanged(data.descriptors.descriptors);
     }
   }
 }
@@ -28,10 +28,10 @@ import com.intellij.psi.PsiFile;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
 import io.flutter.FlutterUtils;
 import io.flutter.dart.FlutterDartAnalysisServer;
+import io.flutter.dart.PackedFlutterOutline;
 import io.flutter.inspector.InspectorGroupManagerService;
 import io.flutter.inspector.InspectorService;
 import io.flutter.settings.FlutterSettings;
-import org.dartlang.analysis.server.protocol.FlutterOutline;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -126,7 +126,7 @@ public class WidgetIndentsHighlightingPassFactory implements TextEditorHighlight
   /**
    * Updates the indent guides in the editor for the file at {@param path}.
    */
-  private void updateEditor(@NotNull final String path, @Nullable FlutterOutline outline) {
+  private void updateEditor(@NotNull final String path, @Nullable PackedFlutterOutline outline) {
     ApplicationManager.getApplication().invokeLater(() -> {
       if (project.isDisposed()) {
         return;
@@ -151,7 +151,7 @@ public class WidgetIndentsHighlightingPassFactory implements TextEditorHighlight
       }
       for (EditorEx editor : editorOutlineService.getActiveDartEditors()) {
         if (!editor.isDisposed()) {
-          runWidgetIndentsPass(editor, editorOutlineService.getOutline(editor.getVirtualFile().getCanonicalPath()));
+          runWidgetIndentsPass(editor, editorOutlineService.getPackedOutline(editor.getVirtualFile().getCanonicalPath()));
         }
       }
     });
@@ -213,7 +213,7 @@ public class WidgetIndentsHighlightingPassFactory implements TextEditorHighlight
     if (!FlutterUtils.couldContainWidgets(virtualFile)) {
       return highlightingPass;
     }
-    final FlutterOutline outline = editorOutlineService.getOutline(virtualFile.getCanonicalPath());
+    final PackedFlutterOutline outline = editorOutlineService.getPackedOutline(virtualFile.getCanonicalPath());
 
     if (outline != null) {
       ApplicationManager.getApplication().invokeLater(() -> runWidgetIndentsPass(editor, outline));
@@ -222,7 +222,7 @@ public class WidgetIndentsHighlightingPassFactory implements TextEditorHighlight
     return highlightingPass;
   }
 
-  void runWidgetIndentsPass(EditorEx editor, FlutterOutline outline) {
+  void runWidgetIndentsPass(EditorEx editor, PackedFlutterOutline outline) {
     if (editor.isDisposed() || project.isDisposed()) {
       // The editor might have been disposed before we got a new FlutterOutline.
       // It is safe to ignore it as it isn't relevant.
@@ -243,7 +243,7 @@ public class WidgetIndentsHighlightingPassFactory implements TextEditorHighlight
     // the outline is out of date and cannot safely be displayed.
     final DocumentEx document = editor.getDocument();
     final int documentLength = document.getTextLength();
-    final int outlineLength = outline.getLength();
+    final int outlineLength = outline.getLength(0);
     // TODO(jacobr): determine why we sometimes have to check against both the
     // raw outlineLength and the converted outline length for things to work
     // correctly on windows.
@@ -6,9 +6,8 @@
 package io.flutter.editor;
 
 import com.intellij.openapi.editor.markup.RangeHighlighter;
-import org.dartlang.analysis.server.protocol.FlutterOutline;
+import io.flutter.dart.PackedFlutterOutline;
 
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -20,16 +19,18 @@ public class WidgetIndentsPassData {
   /**
    * Descriptors describing the data model to render the widget indents.
    * <p>
-   * This data is computed from the FlutterOutline and contains additional
+   * This data is computed from the outline and contains additional
    * information to manage how the locations need to be updated to reflect
    * edits to the documents.
    */
-  java.util.List<WidgetIndentGuideDescriptor> myDescriptors = Collections.emptyList();
+  WidgetIndentDescriptors descriptors;
 
   /**
-   * Descriptors combined with their current locations in the possibly modified document.
+   * Outline whose descriptors are being computed, if any.
+   * <p>
+   * Descriptors computed for any other outline are out of date and are dropped.
    */
-  java.util.List<TextRangeDescriptorPair> myRangesWidgets = Collections.emptyList();
+  volatile PackedFlutterOutline pendingOutline;
 
   /**
    * Highlighters that perform the actual rendering of the widget indent
@@ -45,5 +46,5 @@ public class WidgetIndentsPassData {
   /**
    * Outline the widget indents are based on.
    */
-  FlutterOutline outline;
+  PackedFlutterOutline outline;
 }
@@ -833,15 +833,29 @@ public class DiagnosticsNode {
    * value is created dynamically each time 'getProperties' is called.
    */
   public boolean identicalDisplay(DiagnosticsNode node) {
+    return identicalDisplay(node, false);
+  }
+
+  /**
+   * Returns true if the two diagnostic nodes display identically on their own,
+   * regardless of whether their children are identical or available.
+   */
+  public boolean identicalNodeDisplay(DiagnosticsNode node) {
+    return identicalDisplay(node, true);
+  }
+
+  private boolean identicalDisplay(DiagnosticsNode node, boolean ignoreChildren) {
     if (node == null) {
       return false;
     }
     final Set<Map.Entry<String, JsonElement>> entries = json.entrySet();
-    if (entries.size() != node.json.entrySet().size()) {
-      return false;
-    }
+    int compared = 0;
     for (Map.Entry<String, JsonElement> entry : entries) {
       final String key = entry.getKey();
+      if (ignoreChildren && key.equals("children")) {
+        continue;
+      }
+      compared++;
       if (key.equals("objectId") || key.equals("valueId")) {
         continue;
       }
@@ -849,7 +863,8 @@ public class DiagnosticsNode {
         return false;
       }
     }
-    return true;
+    final int otherSize = node.json.entrySet().size();
+    return compared == (ignoreChildren && node.json.has("children") ? otherSize - 1 : otherSize);
   }
 
   /**
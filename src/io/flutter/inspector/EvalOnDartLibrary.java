@@ -42,6 +42,13 @@ public class EvalOnDartLibrary implements Disposable {
   private final Alarm myRequestsScheduler;
 
   static final int DEFAULT_REQUEST_TIMEOUT_SECONDS = 10;
+
+  /**
+   * The VM service fails requests that take longer than this, so that their consumers are
+   * released rather than kept until the connection closes.
+   */
+  private static final long DEFAULT_REQUEST_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(DEFAULT_REQUEST_TIMEOUT_SECONDS);
+
   /**
    * For robustness we ensure at most one pending request is issued at a time.
    */
@@ -159,7 +166,7 @@ public class EvalOnDartLibrary implements Disposable {
   public CompletableFuture<JsonObject> invokeServiceMethod(String method, JsonObject params) {
     final CompletableFuture<JsonObject> ret = new CompletableFuture<>();
     timeoutAfter(ret, DEFAULT_REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS, "service method " + method);
-    vmService.callServiceExtension(isolateId, method, params, new ServiceExtensionConsumer() {
+    vmService.callServiceExtension(isolateId, method, params, DEFAULT_REQUEST_TIMEOUT_MILLIS, new ServiceExtensionConsumer() {
       @Override
       public void onError(RPCError error) {
         ret.completeExceptionally(new RuntimeException(error.getMessage()));
@@ -186,7 +193,7 @@ public class EvalOnDartLibrary implements Disposable {
       final CompletableFuture<InstanceRef> future = new CompletableFuture<>();
       libraryRef.thenAcceptAsync((LibraryRef ref) -> vmService.evaluate(
         getIsolateId(), ref.getId(), expression,
-        scope, true,
+        scope, true, DEFAULT_REQUEST_TIMEOUT_MILLIS,
         new EvaluateConsumer() {
           @Override
           public void onError(RPCError error) {
@@ -221,7 +228,7 @@ public class EvalOnDartLibrary implements Disposable {
     return addRequest(isAlive, "getObject", () -> {
       final CompletableFuture<T> future = new CompletableFuture<>();
       vmService.getObject(
-        getIsolateId(), instance.getId(), new GetObjectConsumer() {
+        getIsolateId(), instance.getId(), DEFAULT_REQUEST_TIMEOUT_MILLIS, new GetObjectConsumer() {
           @Override
           public void onError(RPCError error) {
             future.completeExceptionally(new RuntimeException("RPCError calling getObject: " + error.toString()));
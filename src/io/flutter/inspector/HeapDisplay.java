@@ -43,8 +43,8 @@ public class HeapDisplay extends JPanel {
 
     panel.add(graph, BorderLayout.CENTER);
 
-    final HeapListener listener = memoryUsages -> SwingUtilities.invokeLater(() -> {
-      heapState.handleMemoryUsage(memoryUsages);
+    final HeapListener listener = sample -> SwingUtilities.invokeLater(() -> {
+      heapState.handleHeapSample(sample);
       graph.updateFrom(heapState);
       panel.repaint();
     });
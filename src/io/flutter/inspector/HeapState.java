@@ -6,7 +6,6 @@
 package io.flutter.inspector;
 
 import io.flutter.vmService.HeapMonitor;
-import org.dartlang.vm.service.element.MemoryUsage;
 
 import java.text.DecimalFormat;
 import java.util.List;
@@ -19,7 +18,7 @@ public class HeapState {
   }
 
   // Running count of the max heap (in bytes).
-  private int heapMaxInBytes;
+  private long heapMaxInBytes;
 
   private final HeapSamples samples;
 
@@ -36,8 +35,8 @@ public class HeapState {
   }
 
   // Allocated heap size.
-  public int getCapacity() {
-    int max = heapMaxInBytes;
+  public long getCapacity() {
+    long max = heapMaxInBytes;
 
     for (HeapMonitor.HeapSample sample : samples.samples) {
       max = Math.max(max, sample.getBytes());
@@ -46,7 +45,7 @@ public class HeapState {
     return max;
   }
 
-  private static String printMb(int bytes) {
+  private static String printMb(long bytes) {
     return df.format(bytes / (1024 * 1024.0)) + "MB";
   }
 
@@ -58,19 +57,9 @@ public class HeapState {
     samples.addSample(sample);
   }
 
-  public void handleMemoryUsage(List<MemoryUsage> memoryUsages) {
-    int current = 0;
-    int total = 0;
-    int external = 0;
+  public void handleHeapSample(HeapMonitor.HeapSample sample) {
+    heapMaxInBytes = sample.getCapacity();
 
-    for (MemoryUsage usage : memoryUsages) {
-      current += usage.getHeapUsage();
-      total += usage.getHeapCapacity();
-      external += usage.getExternalUsage();
-    }
-
-    heapMaxInBytes = total;
-
-    addSample(new HeapMonitor.HeapSample(current, external));
+    addSample(sample);
   }
 }
@@ -51,10 +51,8 @@ import org.dartlang.vm.service.element.*;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.*;
@@ -198,6 +196,11 @@ public class InspectorService implements Disposable {
 
   private final StreamSubscription<Boolean> setPubRootDirectoriesSubscription;
 
+  /**
+   * Hover requests from all object groups. Only the latest hover position is worth a round trip.
+   */
+  private final SupersedingRequest hoverRequests = new SupersedingRequest();
+
   /**
    * Convenience ObjectGroup constructor for users who need to use DiagnosticsNode objects before the InspectorService is available.
    */
@@ -533,6 +536,7 @@ public class InspectorService implements Disposable {
 
     volatile boolean disposed;
     final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    final ObjectGroupRequests requests = new ObjectGroupRequests(this::isDisposed);
 
     private ObjectGroup(InspectorService service, String debugName) {
       this.service = service;
@@ -562,6 +566,7 @@ public class InspectorService implements Disposable {
       invokeVoidServiceMethod("disposeGroup", groupName);
       disposed = true;
       lock.writeLock().unlock();
+      requests.dispose();
     }
 
     private <T> CompletableFuture<T> nullIfDisposed(Supplier<CompletableFuture<T>> supplier) {
@@ -677,13 +682,37 @@ public class InspectorService implements Disposable {
 
     // All calls to invokeVmServiceExtension bottom out to this call.
     CompletableFuture<JsonElement> invokeVmServiceExtension(String methodName, JsonObject paramsMap) {
-      return getInspectorLibrary().addRequest(
+      return requests.send(ObjectGroupRequests.getKey(methodName, paramsMap), () -> getInspectorLibrary().addRequest(
         this,
         methodName,
         () -> invokeServiceExtensionHelper(methodName, paramsMap)
+      ));
+    }
+
+    /**
+     * Invokes a read only service extension that does not need to be ordered
+     * with other requests of this group, sending it along with the other such
+     * requests that are waiting for their turn.
+     */
+    CompletableFuture<JsonElement> invokeVmServiceExtensionBatched(String methodName, InspectorInstanceRef arg) {
+      final JsonObject params = new JsonObject();
+      params.addProperty("arg", arg == null ? null : arg.getId());
+      params.addProperty("objectGroup", groupName);
+      return requests.batch(
+        ObjectGroupRequests.getKey(methodName, params),
+        () -> invokeServiceExtensionHelper(methodName, params),
+        (batch) -> getInspectorLibrary().addRequest(this, "batch of " + methodName, batch)
       );
     }
 
+    /**
+     * Calls a service method directly, limiting the number of such calls in
+     * flight for this group.
+     */
+    private CompletableFuture<JsonObject> invokeServiceMethodLimited(String method, JsonObject params) {
+      return requests.submit(ObjectGroupRequests.getKey(method, params), () -> inspectorLibrary.invokeServiceMethod(method, params));
+    }
+
     CompletableFuture<JsonElement> invokeVmServiceExtension(String methodName, InspectorInstanceRef arg) {
       if (arg == null || arg.getId() == null) {
         return invokeVmServiceExtension(methodName, null, groupName);
@@ -705,7 +734,7 @@ public class InspectorService implements Disposable {
       params.addProperty("groupName", groupName);
 
       return parseDiagnosticsNodesDaemon(
-        inspectorLibrary.invokeServiceMethod("ext.flutter.inspector.getElementsAtLocation", params).thenApplyAsync((o) -> {
+        invokeServiceMethodLimited("ext.flutter.inspector.getElementsAtLocation", params).thenApplyAsync((o) -> {
           if (o == null) return null;
           return o.get("result");
         }), null);
@@ -721,7 +750,7 @@ public class InspectorService implements Disposable {
       params.addProperty("groupName", groupName);
 
       return parseDiagnosticsNodesDaemon(
-        inspectorLibrary.invokeServiceMethod("ext.flutter.inspector.getBoundingBoxes", params).thenApplyAsync((o) -> {
+        invokeServiceMethodLimited("ext.flutter.inspector.getBoundingBoxes", params).thenApplyAsync((o) -> {
           if (o == null) return null;
           return o.get("result");
         }), null);
@@ -752,7 +781,7 @@ public class InspectorService implements Disposable {
       params.addProperty("groupName", groupName);
 
       return parseDiagnosticsNodesDaemon(
-        inspectorLibrary.invokeServiceMethod("ext.flutter.inspector.hitTest", params).thenApplyAsync((o) -> {
+        hoverRequests.submit(() -> invokeServiceMethodLimited("ext.flutter.inspector.hitTest", params)).thenApplyAsync((o) -> {
           if (o == null) return null;
           return o.get("result");
         }), null);
@@ -886,7 +915,7 @@ public class InspectorService implements Disposable {
       params.addProperty("maxPixelRatio", maxPixelRatio);
       params.addProperty("groupName", groupName);
       return nullIfDisposed(() -> {
-        return inspectorLibrary.invokeServiceMethod("ext.flutter.inspector.screenshotAtLocation", params).thenApplyAsync(
+        return invokeServiceMethodLimited("ext.flutter.inspector.screenshotAtLocation", params).thenApplyAsync(
           (JsonObject response) -> {
             if (response == null || response.get("result").isJsonNull()) {
               // No screenshot available.
@@ -903,7 +932,7 @@ public class InspectorService implements Disposable {
               parseDiagnosticsNodesHelper(result.get("boxes"), null),
               parseDiagnosticsNodesHelper(result.get("elements"), null)
             );
-          });
+          }, ScreenshotDecoder.EXECUTOR);
       });
     }
 
@@ -915,7 +944,7 @@ public class InspectorService implements Disposable {
       params.addProperty("id", ref.getId());
 
       return nullIfDisposed(
-        () -> inspectorLibrary.invokeServiceMethod("ext.flutter.inspector.screenshot", params).thenApplyAsync((JsonObject response) -> {
+        () -> invokeServiceMethodLimited("ext.flutter.inspector.screenshot", params).thenApplyAsync((JsonObject response) -> {
           if (response == null || response.get("result").isJsonNull()) {
             // No screenshot avaiable.
             return null;
@@ -923,20 +952,15 @@ public class InspectorService implements Disposable {
           final JsonObject result = response.getAsJsonObject("result");
 
           return getScreenshotFromJson(result);
-        }));
+        }, ScreenshotDecoder.EXECUTOR));
     }
 
     @NotNull
     private Screenshot getScreenshotFromJson(JsonObject result) {
       final String imageString = result.getAsJsonPrimitive("image").getAsString();
-      // create a buffered image
-      final Base64.Decoder decoder = Base64.getDecoder();
-      final byte[] imageBytes = decoder.decode(imageString);
-      final ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(imageBytes);
       final BufferedImage image;
       try {
-        image = ImageIO.read(byteArrayInputStream);
-        byteArrayInputStream.close();
+        image = ScreenshotDecoder.decode(imageString);
       }
       catch (IOException e) {
         throw new RuntimeException("Error decoding image: " + e.getMessage());
@@ -1169,7 +1193,7 @@ public class InspectorService implements Disposable {
       InspectorInstanceRef instanceRef, String methodName, DiagnosticsNode parent) {
       return nullIfDisposed(() -> {
         if (useServiceExtensionApi()) {
-          return parseDiagnosticsNodesDaemon(invokeVmServiceExtension(methodName, instanceRef), parent);
+          return parseDiagnosticsNodesDaemon(invokeVmServiceExtensionBatched(methodName, instanceRef), parent);
         }
         else {
           return parseDiagnosticsNodesVmService(invokeEval(methodName, instanceRef), parent);
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Schedules the requests of an {@link InspectorService.ObjectGroup}.
+ * <p>
+ * Requests to the read only getters in {@link #SHARED_METHODS} are identified by a key made of
+ * the method and its parameters, and identical ones that are still pending share a single round
+ * trip. Other requests have no key and are always sent. Requests sent directly to the VM Service
+ * are limited to a few in flight at a time per group, and independent read only requests that
+ * are waiting behind other inspector requests are sent together once their turn comes.
+ * <p>
+ * Requests that have not been sent yet when the group is disposed complete with null, like
+ * all other requests of a disposed group.
+ */
+class ObjectGroupRequests {
+  static final int MAX_IN_FLIGHT = 4;
+  static final int MAX_BATCH_SIZE = 16;
+
+  /**
+   * The methods whose results only depend on their parameters.
+   * <p>
+   * Requests that change the state of the app, such as setting the selection, and requests for
+   * state that changes, such as the root of the tree, are not shared: they must be sent every
+   * time so that they take effect in order and see the latest state.
+   */
+  static final Set<String> SHARED_METHODS = ImmutableSet.of(
+    "getProperties",
+    "getChildren",
+    "getChildrenSummaryTree",
+    "getChildrenDetailsSubtree",
+    "getDetailsSubtree",
+    "getParentChain"
+  );
+
+  @NotNull private final BooleanSupplier isDisposed;
+  private final int maxInFlight;
+
+  private final Object lock = new Object();
+
+  /**
+   * Responses of the requests that have not completed yet, by request key.
+   */
+  private final Map<String, CompletableFuture<?>> pending = new HashMap<>();
+
+  /**
+   * Limited requests waiting for one of the in flight requests to complete.
+   */
+  private final ArrayDeque<Request<?>> queued = new ArrayDeque<>();
+  private int inFlight;
+
+  /**
+   * The batch that new batched requests join until it is sent.
+   */
+  private ArrayList<Request<?>> openBatch;
+
+  ObjectGroupRequests(@NotNull BooleanSupplier isDisposed) {
+    this(isDisposed, MAX_IN_FLIGHT);
+  }
+
+  ObjectGroupRequests(@NotNull BooleanSupplier isDisposed, int maxInFlight) {
+    this.isDisposed = isDisposed;
+    this.maxInFlight = maxInFlight;
+  }
+
+  /**
+   * Returns the key identifying a request, or null if requests to the method must not be shared.
+   */
+  @Nullable
+  static String getKey(@NotNull String method, @Nullable Object params) {
+    return SHARED_METHODS.contains(getMethodName(method)) ? method + params : null;
+  }
+
+  /**
+   * Returns the name of an inspector method without the prefix of the service extension.
+   */
+  @NotNull
+  private static String getMethodName(@NotNull String method) {
+    return method.substring(method.lastIndexOf('.') + 1);
+  }
+
+  /**
+   * Sends a request now unless an identical request is pending.
+   * <p>
+   * This is for requests that are already ordered with the other inspector requests.
+   */
+  @NotNull
+  <T> CompletableFuture<T> send(@Nullable String key, @NotNull Supplier<CompletableFuture<T>> request) {
+    final Request<T> newRequest;
+    synchronized (lock) {
+      final CompletableFuture<T> existing = findPending(key);
+      if (existing != null) {
+        return existing;
+      }
+      newRequest = new Request<>(key, request);
+      addPending(newRequest);
+    }
+    newRequest.start(false);
+    return newRequest.response;
+  }
+
+  /**
+   * Sends a request once fewer than the maximum number of requests sent through this method are
+   * in flight, unless an identical request is pending.
+   */
+  @NotNull
+  <T> CompletableFuture<T> submit(@Nullable String key, @NotNull Supplier<CompletableFuture<T>> request) {
+    final Request<T> newRequest;
+    synchronized (lock) {
+      final CompletableFuture<T> existing = findPending(key);
+      if (existing != null) {
+        return existing;
+      }
+      newRequest = new Request<>(key, request);
+      addPending(newRequest);
+      if (inFlight >= maxInFlight) {
+        queued.add(newRequest);
+        return newRequest.response;
+      }
+      inFlight++;
+    }
+    newRequest.start(true);
+    return newRequest.response;
+  }
+
+  /**
+   * Adds an independent read only request to the batch waiting to be sent, unless an identical
+   * request is pending.
+   * <p>
+   * When there is no such batch, a new one is scheduled by passing scheduleBatch a supplier that
+   * sends all requests of the batch at once and completes once they have all completed. The
+   * batch takes requests until that supplier is called.
+   */
+  @NotNull
+  <T> CompletableFuture<T> batch(@Nullable String key,
+                                 @NotNull Supplier<CompletableFuture<T>> request,
+                                 @NotNull Function<Supplier<CompletableFuture<Void>>, CompletableFuture<?>> scheduleBatch) {
+    final Request<T> newRequest;
+    final ArrayList<Request<?>> batch;
+    synchronized (lock) {
+      final CompletableFuture<T> existing = findPending(key);
+      if (existing != null) {
+        return existing;
+      }
+      newRequest = new Request<>(key, request);
+      addPending(newRequest);
+      if (openBatch != null) {
+        openBatch.add(newRequest);
+        if (openBatch.size() >= MAX_BATCH_SIZE) {
+          openBatch = null;
+        }
+        return newRequest.response;
+      }
+      batch = new ArrayList<>();
+      batch.add(newRequest);
+      openBatch = batch;
+    }
+
+    final CompletableFuture<?> scheduled = scheduleBatch.apply(() -> sendBatch(batch));
+    scheduled.whenComplete((ignored, error) -> {
+      // The batch is never sent if the scheduled request was skipped.
+      for (Request<?> skipped : closeBatch(batch)) {
+        skipped.complete(null, error);
+      }
+    });
+    return newRequest.response;
+  }
+
+  /**
+   * Completes all requests that have not been sent yet with null.
+   */
+  void dispose() {
+    final ArrayList<Request<?>> skipped = new ArrayList<>();
+    synchronized (lock) {
+      skipped.addAll(queued);
+      queued.clear();
+      if (openBatch != null) {
+        skipped.addAll(openBatch);
+        openBatch.clear();
+        openBatch = null;
+      }
+    }
+    for (Request<?> request : skipped) {
+      request.complete(null, null);
+    }
+  }
+
+  int getPendingCount() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  private CompletableFuture<Void> sendBatch(ArrayList<Request<?>> batch) {
+    final ArrayList<Request<?>> requests = closeBatch(batch);
+    final CompletableFuture<?>[] responses = new CompletableFuture<?>[requests.size()];
+    for (int i = 0; i < requests.size(); i++) {
+      final Request<?> request = requests.get(i);
+      request.start(false);
+      responses[i] = request.response;
+    }
+    // Failures are reported to the individual requests.
+    return CompletableFuture.allOf(responses).handle((ignored, error) -> null);
+  }
+
+  /**
+   * Stops a batch from taking more requests and returns its requests the first time it is called.
+   */
+  private ArrayList<Request<?>> closeBatch(ArrayList<Request<?>> batch) {
+    synchronized (lock) {
+      if (openBatch == batch) {
+        openBatch = null;
+      }
+      final ArrayList<Request<?>> requests = new ArrayList<>(batch);
+      batch.clear();
+      return requests;
+    }
+  }
+
+  private void addPending(@NotNull Request<?> request) {
+    if (request.key != null) {
+      pending.put(request.key, request.response);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> CompletableFuture<T> findPending(@Nullable String key) {
+    if (key == null) {
+      return null;
+    }
+    final CompletableFuture<T> response = (CompletableFuture<T>)pending.get(key);
+    // Each caller gets its own future so that cancelling one does not cancel the others.
+    return response == null ? null : response.thenApply((value) -> value);
+  }
+
+  private void onDone(Request<?> request) {
+    Request<?> next = null;
+    synchronized (lock) {
+      if (request.key != null) {
+        pending.remove(request.key, request.response);
+      }
+      if (request.holdsSlot) {
+        request.holdsSlot = false;
+        next = queued.poll();
+        if (next == null) {
+          inFlight--;
+        }
+      }
+    }
+    if (next != null) {
+      next.start(true);
+    }
+  }
+
+  private class Request<T> {
+    @Nullable final String key;
+    @NotNull final Supplier<CompletableFuture<T>> supplier;
+    final CompletableFuture<T> response = new CompletableFuture<>();
+
+    /**
+     * Whether the request counts towards the limit of requests in flight. Guarded by the lock.
+     */
+    boolean holdsSlot;
+
+    Request(@Nullable String key, @NotNull Supplier<CompletableFuture<T>> supplier) {
+      this.key = key;
+      this.supplier = supplier;
+    }
+
+    /**
+     * Sends the request. Limited requests hold one of the slots for requests in flight and are
+     * skipped if the group has been disposed since they were queued.
+     */
+    void start(boolean limited) {
+      if (limited) {
+        synchronized (lock) {
+          holdsSlot = true;
+        }
+      }
+      if (limited && isDisposed.getAsBoolean()) {
+        complete(null, null);
+        return;
+      }
+      CompletableFuture<T> future;
+      try {
+        future = supplier.get();
+      }
+      catch (RuntimeException e) {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+      }
+      if (future == null) {
+        future = CompletableFuture.completedFuture(null);
+      }
+      future.whenComplete(this::complete);
+    }
+
+    void complete(T value, Throwable error) {
+      onDone(this);
+      if (error != null) {
+        response.completeExceptionally(error);
+      }
+      else {
+        response.complete(value);
+      }
+    }
+  }
+}
@@ -15,4 +15,15 @@ public class Screenshot {
     this.image = image;
     this.transformedRect = transformedRect;
   }
+
+  /**
+   * Allow the image of this screenshot to be reused for a later screenshot.
+   * <p>
+   * Only call this once the screenshot is no longer displayed or referenced.
+   */
+  public void release() {
+    if (image != null) {
+      ScreenshotDecoder.release(image);
+    }
+  }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+/**
+ * Decodes the base64 encoded PNG screenshots returned by the inspector.
+ * <p>
+ * The base64 text is decoded as the image reader consumes it rather than into an intermediate
+ * byte array, and images are decoded into released images of the same size and type when there
+ * are any, so that previews refreshing several times a second do not allocate a new raster for
+ * every screenshot.
+ */
+class ScreenshotDecoder {
+  /**
+   * Screenshots are decoded on a small pool rather than the common fork join pool.
+   */
+  static final Executor EXECUTOR = AppExecutorUtil.createBoundedApplicationPoolExecutor("Flutter screenshot decoder", 2);
+
+  private static final int MAX_POOLED_IMAGES = 4;
+
+  /**
+   * Released images, most recently released last.
+   */
+  private static final ArrayDeque<BufferedImage> pool = new ArrayDeque<>();
+
+  @NotNull
+  static BufferedImage decode(@NotNull String base64Image) throws IOException {
+    final InputStream input = Base64.getDecoder().wrap(new AsciiInputStream(base64Image));
+    try (ImageInputStream imageInput = new MemoryCacheImageInputStream(input)) {
+      final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+      if (!readers.hasNext()) {
+        throw new IOException("Unsupported image format");
+      }
+      final ImageReader reader = readers.next();
+      try {
+        reader.setInput(imageInput, true, true);
+        final ImageReadParam param = reader.getDefaultReadParam();
+        // The reader decodes into the first of its image types unless given a destination.
+        final Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        final BufferedImage destination =
+          types.hasNext() ? acquire(reader.getWidth(0), reader.getHeight(0), types.next().getBufferedImageType()) : null;
+        if (destination != null) {
+          param.setDestination(destination);
+        }
+        return reader.read(0, param);
+      }
+      catch (IllegalArgumentException e) {
+        throw new IOException(e);
+      }
+      finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Return an image to be reused for a later screenshot of the same size. The image must no longer
+   * be displayed.
+   */
+  static void release(@NotNull BufferedImage image) {
+    if (!isPoolable(image.getType())) {
+      return;
+    }
+    synchronized (pool) {
+      if (pool.contains(image)) {
+        return;
+      }
+      pool.addLast(image);
+      while (pool.size() > MAX_POOLED_IMAGES) {
+        pool.removeFirst();
+      }
+    }
+  }
+
+  @Nullable
+  private static BufferedImage acquire(int width, int height, int imageType) {
+    if (!isPoolable(imageType)) {
+      return null;
+    }
+    synchronized (pool) {
+      final Iterator<BufferedImage> it = pool.descendingIterator();
+      while (it.hasNext()) {
+        final BufferedImage image = it.next();
+        if (image.getWidth() == width && image.getHeight() == height && image.getType() == imageType) {
+          it.remove();
+          return image;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Images with a custom or indexed color model are not reused, as two images of the same type may
+   * still have different color models.
+   */
+  private static boolean isPoolable(int imageType) {
+    return imageType != BufferedImage.TYPE_CUSTOM &&
+           imageType != BufferedImage.TYPE_BYTE_INDEXED &&
+           imageType != BufferedImage.TYPE_BYTE_BINARY;
+  }
+
+  /**
+   * The bytes of a string of ASCII characters, such as base64 text, without copying it.
+   */
+  private static class AsciiInputStream extends InputStream {
+    private final String text;
+    private int position;
+
+    AsciiInputStream(@NotNull String text) {
+      this.text = text;
+    }
+
+    @Override
+    public int read() {
+      return position < text.length() ? text.charAt(position++) & 0xff : -1;
+    }
+
+    @Override
+    public int read(@NotNull byte[] buffer, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      final int count = Math.min(length, text.length() - position);
+      if (count <= 0) {
+        return -1;
+      }
+      for (int i = 0; i < count; i++) {
+        buffer[offset + i] = (byte)text.charAt(position++);
+      }
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return text.length() - position;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Sends one request at a time where only the response to the latest request matters.
+ * <p>
+ * A request made while another is in flight waits for it to complete, and is dropped, completing
+ * with null, if a newer request is made in the meantime. This is used for hover requests where the
+ * mouse can move many times during a single round trip.
+ */
+class SupersedingRequest {
+  private final Object lock = new Object();
+  private boolean inFlight;
+  private Runnable waiting;
+  private CompletableFuture<?> waitingResponse;
+
+  @NotNull
+  <T> CompletableFuture<T> submit(@NotNull Supplier<CompletableFuture<T>> request) {
+    final CompletableFuture<T> response = new CompletableFuture<>();
+    final Runnable start = () -> {
+      CompletableFuture<T> future;
+      try {
+        future = request.get();
+      }
+      catch (RuntimeException e) {
+        future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+      }
+      if (future == null) {
+        future = CompletableFuture.completedFuture(null);
+      }
+      future.whenComplete((value, error) -> {
+        startWaiting();
+        if (error != null) {
+          response.completeExceptionally(error);
+        }
+        else {
+          response.complete(value);
+        }
+      });
+    };
+
+    final boolean startNow;
+    CompletableFuture<?> superseded = null;
+    synchronized (lock) {
+      startNow = !inFlight;
+      if (startNow) {
+        inFlight = true;
+      }
+      else {
+        superseded = waitingResponse;
+        waiting = start;
+        waitingResponse = response;
+      }
+    }
+    if (superseded != null) {
+      superseded.complete(null);
+    }
+    if (startNow) {
+      start.run();
+    }
+    return response;
+  }
+
+  private void startWaiting() {
+    final Runnable next;
+    synchronized (lock) {
+      next = waiting;
+      waiting = null;
+      waitingResponse = null;
+      if (next == null) {
+        inFlight = false;
+      }
+    }
+    if (next != null) {
+      next.run();
+    }
+  }
+}
@@ -31,6 +31,7 @@ import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
 import com.intellij.openapi.wm.ex.ToolWindowManagerEx;
 import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.concurrency.QueueProcessor;
 import io.flutter.FlutterInitializer;
 import io.flutter.devtools.DevToolsUtils;
@@ -38,6 +39,7 @@ import io.flutter.inspector.DiagnosticLevel;
 import io.flutter.inspector.DiagnosticsNode;
 import io.flutter.inspector.DiagnosticsTreeStyle;
 import io.flutter.inspector.InspectorService;
+import io.flutter.inspector.InspectorSourceLocation;
 import io.flutter.jxbrowser.EmbeddedBrowser;
 import io.flutter.run.daemon.FlutterApp;
 import io.flutter.sdk.FlutterSdk;
@@ -53,10 +55,12 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -76,8 +80,20 @@ public class FlutterConsoleLogManager {
     new ConsoleViewContentType("subtle", SimpleTextAttributes.GRAY_ATTRIBUTES.toTextAttributes());
   private static final ConsoleViewContentType ERROR_CONTENT_TYPE = ConsoleViewContentType.ERROR_OUTPUT;
 
-  private static QueueProcessor<Runnable> queue;
-  private static final AtomicInteger queueLength = new AtomicInteger();
+  /**
+   * The number of distinct errors waiting to be printed before further errors are dropped.
+   */
+  private static final int MAX_PENDING_ERRORS = 100;
+
+  /**
+   * How long errors wait to be printed when no frame is rendered.
+   */
+  private static final int ERROR_FLUSH_DELAY_MS = 100;
+
+  /**
+   * The name of the diagnostics block that holds the location of the widget that caused an error.
+   */
+  private static final String ERROR_CAUSING_WIDGET_BLOCK = "The relevant error-causing widget was";
 
   /**
    * Set our preferred settings for the run console.
@@ -96,6 +112,12 @@ public class FlutterConsoleLogManager {
   @NotNull final ConsoleView console;
   @NotNull final FlutterApp app;
 
+  private final QueueProcessor<Runnable> queue = QueueProcessor.createRunnableQueueProcessor();
+  private final AtomicInteger queueLength = new AtomicInteger();
+
+  private final FlutterErrorQueue<DiagnosticsNode> errorQueue = new FlutterErrorQueue<>(MAX_PENDING_ERRORS);
+  private final AtomicBoolean errorFlushScheduled = new AtomicBoolean();
+
   private int frameErrorCount = 0;
 
   private CompletableFuture<InspectorService.ObjectGroup> objectGroup;
@@ -108,6 +130,7 @@ public class FlutterConsoleLogManager {
       @Override
       public void notifyFrameRendered() {
         frameErrorCount = 0;
+        flushErrors();
       }
 
       @Override
@@ -118,17 +141,15 @@ public class FlutterConsoleLogManager {
       @Override
       public void notifyAppReloaded() {
         frameErrorCount = 0;
+        errorQueue.forgetRecent();
       }
 
       @Override
       public void notifyAppRestarted() {
         frameErrorCount = 0;
+        errorQueue.forgetRecent();
       }
     });
-
-    if (queue == null) {
-      queue = QueueProcessor.createRunnableQueueProcessor();
-    }
   }
 
   /**
@@ -178,23 +199,9 @@ public class FlutterConsoleLogManager {
       }
 
       if (FlutterSettings.getInstance().isShowStructuredErrors()) {
-        queueLength.incrementAndGet();
-
-        queue.add(() -> {
-          try {
-            processFlutterErrorEvent(diagnosticsNode);
-          }
-          catch (Throwable t) {
-            LOG.warn(t);
-          }
-          finally {
-            queueLength.decrementAndGet();
-
-            synchronized (queueLength) {
-              queueLength.notifyAll();
-            }
-          }
-        });
+        final String summary = getErrorSummary(diagnosticsNode);
+        errorQueue.add(getErrorKey(diagnosticsNode, summary), summary, diagnosticsNode);
+        scheduleErrorFlush();
       }
     }
     catch (Throwable t) {
@@ -202,10 +209,81 @@ public class FlutterConsoleLogManager {
     }
   }
 
+  /**
+   * Prints the pending errors once the current frame is rendered, or after a short delay if no
+   * frame is.
+   */
+  private void scheduleErrorFlush() {
+    if (errorFlushScheduled.compareAndSet(false, true)) {
+      AppExecutorUtil.getAppScheduledExecutorService().schedule(this::flushErrors, ERROR_FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Queues the pending errors to be printed together, if a flush is scheduled.
+   * <p>
+   * This is called both when a frame is rendered and after the flush delay, possibly at the same
+   * time, so the errors are taken on the console's queue rather than here. That keeps batches in
+   * the order they were taken and printed against the errors printed before them.
+   */
+  private void flushErrors() {
+    if (errorFlushScheduled.getAndSet(false)) {
+      queueErrorFlush();
+    }
+  }
+
+  private void queueErrorFlush() {
+    // Count the batch before queueing it, so that flushFlutterErrorQueue() waits for it.
+    queueLength.incrementAndGet();
+
+    queue.add(() -> {
+      try {
+        final FlutterErrorQueue.Batch<DiagnosticsNode> batch = errorQueue.drain();
+        if (!batch.isEmpty()) {
+          processFlutterErrorBatch(batch);
+        }
+      }
+      catch (Throwable t) {
+        LOG.warn(t);
+      }
+      finally {
+        queueLength.decrementAndGet();
+
+        synchronized (queueLength) {
+          queueLength.notifyAll();
+        }
+      }
+    });
+  }
+
+  /**
+   * The number of Flutter errors queued to be printed.
+   */
+  public long getQueuedErrorCount() {
+    return errorQueue.getQueuedCount();
+  }
+
+  /**
+   * The number of Flutter errors counted as repeats of an error already printed.
+   */
+  public long getCollapsedErrorCount() {
+    return errorQueue.getCollapsedCount();
+  }
+
+  /**
+   * The number of Flutter errors dropped because too many were waiting to be printed.
+   */
+  public long getDroppedErrorCount() {
+    return errorQueue.getDroppedCount();
+  }
+
   /**
    * Wait until all pending work has completed.
    */
   public void flushFlutterErrorQueue() {
+    errorFlushScheduled.set(false);
+    queueErrorFlush();
+
     // If the queue isn't empty, then wait until the all the items have been processed.
     if (queueLength.get() > 0) {
       try {
@@ -226,6 +304,62 @@ public class FlutterConsoleLogManager {
 
   private static final ArrayList<DiagnosticsNode> emptyList = new ArrayList<>();
 
+  /**
+   * Returns the description of the summary of the error, or the description of the error itself if
+   * it has no summary.
+   */
+  @NotNull
+  private static String getErrorSummary(@NotNull DiagnosticsNode diagnosticsNode) {
+    for (DiagnosticsNode property : diagnosticsNode.getInlineProperties()) {
+      if (property.getLevel() == DiagnosticLevel.summary && property.getDescription() != null) {
+        return property.getDescription();
+      }
+    }
+    return StringUtil.notNullize(diagnosticsNode.getDescription());
+  }
+
+  /**
+   * Returns a key that is the same for repeats of an error: its summary and the location of the
+   * widget that caused it.
+   */
+  @NotNull
+  private static String getErrorKey(@NotNull DiagnosticsNode diagnosticsNode, @NotNull String summary) {
+    for (DiagnosticsNode property : diagnosticsNode.getInlineProperties()) {
+      if (property.hasCreationLocation()) {
+        final InspectorSourceLocation location = property.getCreationLocation();
+        return summary + "\n" + location.getPath() + ":" + location.getLine() + ":" + location.getColumn();
+      }
+      if (ERROR_CAUSING_WIDGET_BLOCK.equals(property.getName()) && property.hasChildren()) {
+        final ArrayList<DiagnosticsNode> children = property.getChildren().getNow(emptyList);
+        if (!children.isEmpty()) {
+          return summary + "\n" + StringUtil.notNullize(children.get(0).getDescription());
+        }
+      }
+    }
+    return summary;
+  }
+
+  /**
+   * Prints the errors of a batch, then how often the errors printed before were repeated.
+   */
+  private void processFlutterErrorBatch(@NotNull FlutterErrorQueue.Batch<DiagnosticsNode> batch) {
+    for (DiagnosticsNode diagnosticsNode : batch.errors) {
+      processFlutterErrorEvent(diagnosticsNode);
+    }
+
+    for (Map.Entry<String, Integer> repeat : batch.repeats.entrySet()) {
+      final int count = repeat.getValue();
+      final String summary = StringUtil.substringBefore(repeat.getKey() + "\n", "\n");
+      console.print(StringUtil.first(summary, errorSeparatorLength, true) +
+                    " (repeated " + count + (count == 1 ? " time)\n" : " times)\n"), SUBTLE_CONTENT_TYPE);
+    }
+
+    if (batch.dropped > 0) {
+      console.print(batch.dropped + (batch.dropped == 1 ? " more error was" : " more errors were") +
+                    " not shown\n", SUBTLE_CONTENT_TYPE);
+    }
+  }
+
   /**
    * Pretty print the error using the available console syling attributes.
    */
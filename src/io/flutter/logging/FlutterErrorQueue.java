@@ -0,0 +1,176 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Flutter errors of one app waiting to be printed to its console, collapsed by a key that
+ * identifies repeats of the same error.
+ * <p>
+ * An error is queued unless an error with the same key is already queued or was recently printed,
+ * in which case it is counted as a repeat of that error. At most {@code capacity} errors are queued;
+ * further errors are dropped and counted until the queue is drained. The errors, repeats and drops
+ * since the last drain are taken together as a {@link Batch}.
+ */
+class FlutterErrorQueue<T> {
+  /**
+   * The number of printed errors whose repeats are collapsed.
+   */
+  static final int RECENT_ERRORS = 64;
+
+  static class Batch<T> {
+    /**
+     * The errors to print, oldest first.
+     */
+    @NotNull final List<T> errors;
+
+    /**
+     * The summaries of the errors printed before that were repeated, and the number of repeats.
+     */
+    @NotNull final Map<String, Integer> repeats;
+
+    /**
+     * The number of errors dropped because the queue was full.
+     */
+    final int dropped;
+
+    Batch(@NotNull List<T> errors, @NotNull Map<String, Integer> repeats, int dropped) {
+      this.errors = errors;
+      this.repeats = repeats;
+      this.dropped = dropped;
+    }
+
+    boolean isEmpty() {
+      return errors.isEmpty() && repeats.isEmpty() && dropped == 0;
+    }
+  }
+
+  private static class Entry<T> {
+    @NotNull final String summary;
+    T error;
+    int repeats;
+
+    Entry(@NotNull String summary, T error) {
+      this.summary = summary;
+      this.error = error;
+    }
+  }
+
+  private final int capacity;
+
+  /**
+   * The queued errors, by key.
+   */
+  private final LinkedHashMap<String, Entry<T>> queued = new LinkedHashMap<>();
+
+  /**
+   * The recently printed errors, by key, least recently repeated first.
+   */
+  private final LinkedHashMap<String, Entry<T>> recent = new LinkedHashMap<String, Entry<T>>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry<T>> eldest) {
+      return size() > RECENT_ERRORS;
+    }
+  };
+
+  private int dropped;
+
+  private long queuedCount;
+  private long collapsedCount;
+  private long droppedCount;
+
+  FlutterErrorQueue(int capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * Adds an error, returning whether it was queued rather than collapsed or dropped.
+   */
+  synchronized boolean add(@NotNull String key, @NotNull String summary, @NotNull T error) {
+    Entry<T> entry = queued.get(key);
+    if (entry == null) {
+      entry = recent.get(key);
+    }
+    if (entry != null) {
+      entry.repeats++;
+      collapsedCount++;
+      return false;
+    }
+    if (queued.size() >= capacity) {
+      dropped++;
+      droppedCount++;
+      return false;
+    }
+    queued.put(key, new Entry<>(summary, error));
+    queuedCount++;
+    return true;
+  }
+
+  /**
+   * Takes the queued errors, and the repeats and drops since the last drain.
+   * <p>
+   * Repeats of errors that were queued in this batch are reported along with them, as the errors
+   * are printed first.
+   */
+  @NotNull
+  synchronized Batch<T> drain() {
+    final List<T> errors = new ArrayList<>(queued.size());
+    final Map<String, Integer> repeats = new LinkedHashMap<>();
+    for (Map.Entry<String, Entry<T>> queuedEntry : queued.entrySet()) {
+      final Entry<T> entry = queuedEntry.getValue();
+      errors.add(entry.error);
+      // The printed error is no longer needed to collapse its repeats.
+      entry.error = null;
+      recent.put(queuedEntry.getKey(), entry);
+    }
+    queued.clear();
+
+    for (Entry<T> entry : recent.values()) {
+      if (entry.repeats > 0) {
+        repeats.merge(entry.summary, entry.repeats, Integer::sum);
+        entry.repeats = 0;
+      }
+    }
+
+    final Batch<T> batch = new Batch<>(errors, repeats, dropped);
+    dropped = 0;
+    return batch;
+  }
+
+  /**
+   * Forgets the recently printed errors, so that the next occurrence of each is printed again.
+   */
+  synchronized void forgetRecent() {
+    recent.clear();
+  }
+
+  /**
+   * The number of errors queued to be printed.
+   */
+  synchronized long getQueuedCount() {
+    return queuedCount;
+  }
+
+  /**
+   * The number of errors counted as repeats rather than printed.
+   */
+  synchronized long getCollapsedCount() {
+    return collapsedCount;
+  }
+
+  /**
+   * The number of errors dropped because the queue was full.
+   */
+  synchronized long getDroppedCount() {
+    return droppedCount;
+  }
+}
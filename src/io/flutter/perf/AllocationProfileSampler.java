@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import io.flutter.vmService.VMServiceManager;
+import org.dartlang.vm.service.VmService;
+import org.dartlang.vm.service.consumer.GetAllocationProfileConsumer;
+import org.dartlang.vm.service.element.AllocationProfile;
+import org.dartlang.vm.service.element.IsolateRef;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Periodically requests the allocation profile of the Flutter isolate, until disposed.
+ * <p>
+ * Each profile is read into a {@link ClassHeapHistogram.Sample} on a pooled thread and handed
+ * to the listener there. A profile is only requested once the previous one has arrived.
+ */
+public class AllocationProfileSampler implements Disposable {
+  private static final Logger LOG = Logger.getInstance(AllocationProfileSampler.class);
+
+  private static final int SAMPLE_PERIOD_MS = 2000;
+  private static final int REQUEST_TIMEOUT_MS = 10000;
+
+  @NotNull private final VmService vmService;
+  @NotNull private final VMServiceManager vmServiceManager;
+  @NotNull private final Consumer<ClassHeapHistogram.Sample> listener;
+  @NotNull private final ScheduledFuture<?> scheduler;
+
+  private boolean requestInFlight;
+  private boolean disposed;
+
+  public AllocationProfileSampler(@NotNull VmService vmService,
+                                  @NotNull VMServiceManager vmServiceManager,
+                                  @NotNull Consumer<ClassHeapHistogram.Sample> listener) {
+    this.vmService = vmService;
+    this.vmServiceManager = vmServiceManager;
+    this.listener = listener;
+    scheduler = AppExecutorUtil.getAppScheduledExecutorService()
+      .scheduleWithFixedDelay(this::requestProfile, 0, SAMPLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+  }
+
+  private void requestProfile() {
+    final IsolateRef isolateRef = vmServiceManager.getCurrentFlutterIsolateRaw();
+    if (isolateRef == null) {
+      return;
+    }
+    synchronized (this) {
+      if (disposed || requestInFlight) {
+        return;
+      }
+      requestInFlight = true;
+    }
+
+    final String isolateId = isolateRef.getId();
+    vmService.getAllocationProfile(isolateId, REQUEST_TIMEOUT_MS, new GetAllocationProfileConsumer() {
+      @Override
+      public void received(AllocationProfile response) {
+        final long timeMillis = System.currentTimeMillis();
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+          try {
+            final ClassHeapHistogram.Sample sample = readSample(isolateId, timeMillis, response.getJson());
+            if (sample != null && !isDisposed()) {
+              listener.accept(sample);
+            }
+          }
+          catch (RuntimeException e) {
+            LOG.warn("Unable to read the allocation profile", e);
+          }
+          finally {
+            requestDone();
+          }
+        });
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        // The isolate has exited.
+        requestDone();
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        requestDone();
+      }
+    });
+  }
+
+  private synchronized void requestDone() {
+    requestInFlight = false;
+  }
+
+  private synchronized boolean isDisposed() {
+    return disposed;
+  }
+
+  /**
+   * Reads the current bytes and instances of each class from the JSON of an allocation profile.
+   */
+  @Nullable
+  static ClassHeapHistogram.Sample readSample(@NotNull String isolateId, long timeMillis, @NotNull JsonObject profile) {
+    final JsonArray members = profile.getAsJsonArray("members");
+    if (members == null) {
+      return null;
+    }
+    final ClassHeapHistogram.Sample sample = new ClassHeapHistogram.Sample(isolateId, timeMillis);
+    for (JsonElement element : members) {
+      final JsonObject stats = element.getAsJsonObject();
+      final JsonObject classRef = stats.getAsJsonObject("class");
+      if (classRef == null || !classRef.has("id")) {
+        continue;
+      }
+      final JsonElement name = classRef.get("name");
+      sample.add(classRef.get("id").getAsString(),
+                 name == null ? "" : name.getAsString(),
+                 getLong(stats, "bytesCurrent"),
+                 getLong(stats, "instancesCurrent"));
+    }
+    return sample;
+  }
+
+  private static long getLong(@NotNull JsonObject json, @NotNull String name) {
+    final JsonElement element = json.get(name);
+    return element == null || element.isJsonNull() ? 0 : element.getAsLong();
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (this) {
+      disposed = true;
+    }
+    scheduler.cancel(false);
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import gnu.trove.TLongIntHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A tree of call stacks with the number of samples seen at and below each node.
+ * <p>
+ * Nodes are rows of int arrays; node 0 is the root. The children of a node are found through a
+ * single map keyed by the parent and the function, so adding a stack allocates nothing once its
+ * nodes exist. The same class holds top-down trees, where the children of a node are the functions
+ * it calls, and bottom-up trees, where they are its callers.
+ */
+public class CallTree {
+  public static final int ROOT = 0;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * The child of each parent and function, plus one.
+   */
+  private final TLongIntHashMap childOfFunction = new TLongIntHashMap();
+
+  private int nodeCount = 1;
+  private int[] functions = new int[INITIAL_CAPACITY];
+  private int[] parents = new int[INITIAL_CAPACITY];
+  private int[] firstChildren = new int[INITIAL_CAPACITY];
+  private int[] nextSiblings = new int[INITIAL_CAPACITY];
+  private int[] childCounts = new int[INITIAL_CAPACITY];
+  private int[] totalSamples = new int[INITIAL_CAPACITY];
+  private int[] selfSamples = new int[INITIAL_CAPACITY];
+
+  public CallTree() {
+    functions[ROOT] = -1;
+    parents[ROOT] = -1;
+    firstChildren[ROOT] = -1;
+  }
+
+  /**
+   * Adds one sample of a stack, following {@code stack[from]} to {@code stack[to]} inclusive, in
+   * either direction, from the root outwards.
+   */
+  void addStack(@NotNull int[] stack, int from, int to) {
+    int node = ROOT;
+    totalSamples[ROOT]++;
+    final int step = from <= to ? 1 : -1;
+    for (int i = from; i != to + step; i += step) {
+      node = getOrAddChild(node, stack[i]);
+      totalSamples[node]++;
+    }
+    selfSamples[node]++;
+  }
+
+  private int getOrAddChild(int parent, int function) {
+    final long key = (long)parent << 32 | function;
+    final int child = childOfFunction.get(key) - 1;
+    if (child >= 0) {
+      return child;
+    }
+    if (nodeCount == functions.length) {
+      final int capacity = nodeCount * 2;
+      functions = Arrays.copyOf(functions, capacity);
+      parents = Arrays.copyOf(parents, capacity);
+      firstChildren = Arrays.copyOf(firstChildren, capacity);
+      nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+      childCounts = Arrays.copyOf(childCounts, capacity);
+      totalSamples = Arrays.copyOf(totalSamples, capacity);
+      selfSamples = Arrays.copyOf(selfSamples, capacity);
+    }
+    final int node = nodeCount++;
+    childOfFunction.put(key, node + 1);
+    functions[node] = function;
+    parents[node] = parent;
+    firstChildren[node] = -1;
+    nextSiblings[node] = firstChildren[parent];
+    firstChildren[parent] = node;
+    childCounts[parent]++;
+    totalSamples[node] = 0;
+    selfSamples[node] = 0;
+    return node;
+  }
+
+  public void clear() {
+    childOfFunction.clear();
+    nodeCount = 1;
+    firstChildren[ROOT] = -1;
+    childCounts[ROOT] = 0;
+    totalSamples[ROOT] = 0;
+    selfSamples[ROOT] = 0;
+  }
+
+  public int getNodeCount() {
+    return nodeCount;
+  }
+
+  /**
+   * The function of the node, as numbered by the {@link CpuProfile}, or -1 for the root.
+   */
+  public int getFunction(int node) {
+    return functions[node];
+  }
+
+  public int getParent(int node) {
+    return parents[node];
+  }
+
+  public int getChildCount(int node) {
+    return childCounts[node];
+  }
+
+  /**
+   * The children of the node, most samples first.
+   */
+  @NotNull
+  public int[] getChildren(int node) {
+    // Sort the children by their samples, descending, packed with the node into a long.
+    final long[] keys = new long[childCounts[node]];
+    int count = 0;
+    for (int child = firstChildren[node]; child >= 0; child = nextSiblings[child]) {
+      keys[count++] = (long)(Integer.MAX_VALUE - totalSamples[child]) << 32 | child;
+    }
+    Arrays.sort(keys);
+    final int[] children = new int[count];
+    for (int i = 0; i < count; i++) {
+      children[i] = (int)keys[i];
+    }
+    return children;
+  }
+
+  /**
+   * The samples that passed through the node.
+   */
+  public int getTotalSamples(int node) {
+    return totalSamples[node];
+  }
+
+  /**
+   * The samples that ended at the node.
+   */
+  public int getSelfSamples(int node) {
+    return selfSamples[node];
+  }
+}
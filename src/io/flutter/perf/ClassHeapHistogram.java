@@ -0,0 +1,242 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The per class heap usage of an isolate, from successive allocation profiles.
+ * <p>
+ * A class is given a row the first time it is seen and keeps it, and the statistics of every row
+ * are kept in primitive arrays indexed by row, so that diffing a profile against the previous one
+ * does not allocate per class. Classes missing from a profile have no instances left.
+ * <p>
+ * The growth of a class is measured from the last reset, and its rate from the previous profile.
+ */
+public class ClassHeapHistogram {
+  private static final int INITIAL_CAPACITY = 256;
+
+  /**
+   * The row of each class id, plus one.
+   */
+  private final TObjectIntHashMap<String> rowOfClass = new TObjectIntHashMap<>();
+
+  @Nullable private String isolateId;
+  private int rowCount;
+  private String[] names = new String[INITIAL_CAPACITY];
+  private long[] bytes = new long[INITIAL_CAPACITY];
+  private long[] instances = new long[INITIAL_CAPACITY];
+  private long[] previousBytes = new long[INITIAL_CAPACITY];
+  private long[] baselineBytes = new long[INITIAL_CAPACITY];
+  private double[] bytesPerSecond = new double[INITIAL_CAPACITY];
+
+  /**
+   * The number of the last sample each row was in.
+   */
+  private int[] lastSeen = new int[INITIAL_CAPACITY];
+  private int sampleCount;
+  private long lastSampleTime;
+
+  /**
+   * Updates the rows from a new profile, and returns the rows whose values changed, in order.
+   * <p>
+   * A profile of another isolate, such as after a hot restart, starts the histogram over.
+   */
+  @NotNull
+  public int[] addSample(@NotNull Sample sample) {
+    if (isolateId != null && !isolateId.equals(sample.isolateId)) {
+      clear();
+    }
+    isolateId = sample.isolateId;
+
+    final int previousRowCount = rowCount;
+    System.arraycopy(bytes, 0, previousBytes, 0, rowCount);
+    final boolean first = sampleCount == 0;
+    sampleCount++;
+
+    for (int i = 0; i < sample.size; i++) {
+      final int row = getOrAddRow(sample.classIds[i], sample.names[i]);
+      bytes[row] = sample.bytes[i];
+      instances[row] = sample.instances[i];
+      lastSeen[row] = sampleCount;
+      if (first) {
+        baselineBytes[row] = sample.bytes[i];
+      }
+    }
+
+    final double seconds = first ? 0 : (sample.timeMillis - lastSampleTime) / 1000.0;
+    lastSampleTime = sample.timeMillis;
+
+    int changed = 0;
+    final int[] changedRows = new int[rowCount];
+    for (int row = 0; row < rowCount; row++) {
+      if (lastSeen[row] != sampleCount) {
+        bytes[row] = 0;
+        instances[row] = 0;
+      }
+      final long previous = previousBytes[row];
+      final double rate = seconds > 0 ? (bytes[row] - previous) / seconds : 0;
+      if (row >= previousRowCount || bytes[row] != previous || rate != bytesPerSecond[row]) {
+        changedRows[changed++] = row;
+      }
+      bytesPerSecond[row] = rate;
+    }
+    return Arrays.copyOf(changedRows, changed);
+  }
+
+  /**
+   * Measures growth from the current profile on.
+   */
+  public void resetGrowth() {
+    System.arraycopy(bytes, 0, baselineBytes, 0, rowCount);
+  }
+
+  public void clear() {
+    rowOfClass.clear();
+    isolateId = null;
+    Arrays.fill(names, 0, rowCount, null);
+    rowCount = 0;
+    sampleCount = 0;
+  }
+
+  /**
+   * The isolate of the profiles in the histogram, or null if it is empty.
+   */
+  @Nullable
+  public String getIsolateId() {
+    return isolateId;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public String getClassName(int row) {
+    return names[row];
+  }
+
+  public long getBytes(int row) {
+    return bytes[row];
+  }
+
+  public long getInstances(int row) {
+    return instances[row];
+  }
+
+  /**
+   * The bytes allocated to instances of the class since the last reset, which is negative if it shrank.
+   */
+  public long getGrowth(int row) {
+    return bytes[row] - baselineBytes[row];
+  }
+
+  /**
+   * How fast the class grew between the last two profiles.
+   */
+  public double getBytesPerSecond(int row) {
+    return bytesPerSecond[row];
+  }
+
+  /**
+   * Returns up to count rows that have grown since the last reset, fastest growing first.
+   */
+  @NotNull
+  public int[] getTopGrowing(int count) {
+    final int[] top = new int[Math.min(count, rowCount)];
+    if (top.length == 0) {
+      return top;
+    }
+    int size = 0;
+    for (int row = 0; row < rowCount; row++) {
+      final long growth = getGrowth(row);
+      if (growth <= 0 || (size == top.length && growth <= getGrowth(top[size - 1]))) {
+        continue;
+      }
+      // Insert the row in order, dropping the smallest if the list is full.
+      int i = size < top.length ? size++ : size - 1;
+      while (i > 0 && getGrowth(top[i - 1]) < growth) {
+        top[i] = top[i - 1];
+        i--;
+      }
+      top[i] = row;
+    }
+    return Arrays.copyOf(top, size);
+  }
+
+  private int getOrAddRow(@NotNull String classId, @NotNull String name) {
+    final int row = rowOfClass.get(classId) - 1;
+    if (row >= 0) {
+      return row;
+    }
+    if (rowCount == names.length) {
+      final int capacity = rowCount * 2;
+      names = Arrays.copyOf(names, capacity);
+      bytes = Arrays.copyOf(bytes, capacity);
+      instances = Arrays.copyOf(instances, capacity);
+      previousBytes = Arrays.copyOf(previousBytes, capacity);
+      baselineBytes = Arrays.copyOf(baselineBytes, capacity);
+      bytesPerSecond = Arrays.copyOf(bytesPerSecond, capacity);
+      lastSeen = Arrays.copyOf(lastSeen, capacity);
+    }
+    final int newRow = rowCount++;
+    rowOfClass.put(classId, newRow + 1);
+    names[newRow] = name;
+    bytes[newRow] = 0;
+    instances[newRow] = 0;
+    previousBytes[newRow] = 0;
+    baselineBytes[newRow] = 0;
+    bytesPerSecond[newRow] = 0;
+    lastSeen[newRow] = 0;
+    return newRow;
+  }
+
+  /**
+   * The classes of one allocation profile, which can be collected off the UI thread.
+   */
+  public static class Sample {
+    @NotNull final String isolateId;
+    final long timeMillis;
+
+    private int size;
+    private String[] classIds = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private long[] bytes = new long[INITIAL_CAPACITY];
+    private long[] instances = new long[INITIAL_CAPACITY];
+
+    public Sample(@NotNull String isolateId, long timeMillis) {
+      this.isolateId = isolateId;
+      this.timeMillis = timeMillis;
+    }
+
+    public void add(@NotNull String classId, @NotNull String name, long bytes, long instances) {
+      if (size == classIds.length) {
+        final int capacity = size * 2;
+        classIds = Arrays.copyOf(classIds, capacity);
+        names = Arrays.copyOf(names, capacity);
+        this.bytes = Arrays.copyOf(this.bytes, capacity);
+        this.instances = Arrays.copyOf(this.instances, capacity);
+      }
+      classIds[size] = classId;
+      names[size] = name;
+      this.bytes[size] = bytes;
+      this.instances[size] = instances;
+      size++;
+    }
+
+    @NotNull
+    public String getIsolateId() {
+      return isolateId;
+    }
+
+    public int size() {
+      return size;
+    }
+  }
+}
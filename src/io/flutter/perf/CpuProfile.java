@@ -0,0 +1,455 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+/**
+ * The CPU samples of an isolate, aggregated into top-down and bottom-up call trees as batches of
+ * samples arrive.
+ * <p>
+ * The functions of each batch are interned into a table numbered from 0, so that stacks are held as
+ * int arrays and the trees and per function counts are updated without boxing. Samples a batch
+ * shares with earlier ones are skipped, so batches may overlap.
+ * <p>
+ * Not thread safe; callers synchronize on the profile.
+ */
+public class CpuProfile {
+  private static final int INITIAL_CAPACITY = 256;
+
+  @NotNull private final CallTree topDown = new CallTree();
+  @NotNull private final CallTree bottomUp = new CallTree();
+
+  /**
+   * The number of each function, plus one, by its key.
+   */
+  private final TObjectIntHashMap<String> functionOfKey = new TObjectIntHashMap<>();
+
+  private int functionCount;
+  private String[] names = new String[INITIAL_CAPACITY];
+  private String[] paths = new String[INITIAL_CAPACITY];
+  private int[] lines = new int[INITIAL_CAPACITY];
+  private int[] columns = new int[INITIAL_CAPACITY];
+  private int[] totalSamples = new int[INITIAL_CAPACITY];
+  private int[] selfSamples = new int[INITIAL_CAPACITY];
+
+  /**
+   * The samples of each function since the last line report.
+   */
+  private int[] recentSamples = new int[INITIAL_CAPACITY];
+
+  /**
+   * Whether the location of each function has been included in a line report.
+   */
+  private boolean[] reported = new boolean[INITIAL_CAPACITY];
+
+  /**
+   * The number of the last sample counted in the total of each function, so that recursive calls
+   * are counted once.
+   */
+  private int[] lastCounted = new int[INITIAL_CAPACITY];
+
+  @Nullable private String isolateId;
+  private int sampleCount;
+  private long lastTimestamp = -1;
+  private int[] stack = new int[64];
+
+  /**
+   * Adds the samples of a batch that are newer than those already added.
+   * <p>
+   * A batch of another isolate, such as after a hot restart, starts the profile over.
+   */
+  public void addBatch(@NotNull Batch batch) {
+    if (isolateId != null && !isolateId.equals(batch.isolateId)) {
+      clear();
+    }
+    isolateId = batch.isolateId;
+
+    final int[] functionOfBatch = new int[batch.functionCount];
+    for (int i = 0; i < batch.functionCount; i++) {
+      functionOfBatch[i] = intern(batch.keys[i], batch.names[i], batch.paths[i], batch.lines[i], batch.columns[i]);
+    }
+
+    final long previousTimestamp = lastTimestamp;
+    for (int sample = 0; sample < batch.sampleCount; sample++) {
+      final long timestamp = batch.timestamps[sample];
+      if (timestamp <= previousTimestamp) {
+        continue;
+      }
+      lastTimestamp = Math.max(lastTimestamp, timestamp);
+
+      final int start = batch.stackStarts[sample];
+      final int depth = batch.stackStarts[sample + 1] - start;
+      if (depth == 0) {
+        continue;
+      }
+      if (depth > stack.length) {
+        stack = new int[Math.max(depth, stack.length * 2)];
+      }
+      sampleCount++;
+      for (int i = 0; i < depth; i++) {
+        final int frame = batch.frames[start + i];
+        final int function = frame >= 0 && frame < functionOfBatch.length ? functionOfBatch[frame] : unknownFunction();
+        stack[i] = function;
+        if (lastCounted[function] != sampleCount) {
+          lastCounted[function] = sampleCount;
+          totalSamples[function]++;
+          recentSamples[function]++;
+        }
+      }
+      // The first frame is the one that was running.
+      selfSamples[stack[0]]++;
+      topDown.addStack(stack, depth - 1, 0);
+      bottomUp.addStack(stack, 0, depth - 1);
+    }
+  }
+
+  private int unknownFunction() {
+    return intern("", "<unknown>", null, 0, 0);
+  }
+
+  private int intern(@NotNull String key, @NotNull String name, @Nullable String path, int line, int column) {
+    final int existing = functionOfKey.get(key) - 1;
+    if (existing >= 0) {
+      return existing;
+    }
+    if (functionCount == names.length) {
+      final int capacity = functionCount * 2;
+      names = Arrays.copyOf(names, capacity);
+      paths = Arrays.copyOf(paths, capacity);
+      lines = Arrays.copyOf(lines, capacity);
+      columns = Arrays.copyOf(columns, capacity);
+      totalSamples = Arrays.copyOf(totalSamples, capacity);
+      selfSamples = Arrays.copyOf(selfSamples, capacity);
+      recentSamples = Arrays.copyOf(recentSamples, capacity);
+      reported = Arrays.copyOf(reported, capacity);
+      lastCounted = Arrays.copyOf(lastCounted, capacity);
+    }
+    final int function = functionCount++;
+    functionOfKey.put(key, function + 1);
+    names[function] = name;
+    paths[function] = path;
+    lines[function] = line;
+    columns[function] = column;
+    totalSamples[function] = 0;
+    selfSamples[function] = 0;
+    recentSamples[function] = 0;
+    reported[function] = false;
+    lastCounted[function] = 0;
+    return function;
+  }
+
+  public void clear() {
+    functionOfKey.clear();
+    Arrays.fill(names, 0, functionCount, null);
+    Arrays.fill(paths, 0, functionCount, null);
+    functionCount = 0;
+    topDown.clear();
+    bottomUp.clear();
+    isolateId = null;
+    sampleCount = 0;
+    lastTimestamp = -1;
+  }
+
+  /**
+   * The isolate of the samples in the profile, or null if it is empty.
+   */
+  @Nullable
+  public String getIsolateId() {
+    return isolateId;
+  }
+
+  public int getSampleCount() {
+    return sampleCount;
+  }
+
+  /**
+   * The timestamp of the newest sample, in microseconds of the VM's clock, or -1 if there are none.
+   */
+  public long getLastTimestamp() {
+    return lastTimestamp;
+  }
+
+  /**
+   * The tree of the functions each function called.
+   */
+  @NotNull
+  public CallTree getTopDown() {
+    return topDown;
+  }
+
+  /**
+   * The tree of the functions each function was called by, from the functions that were running.
+   */
+  @NotNull
+  public CallTree getBottomUp() {
+    return bottomUp;
+  }
+
+  public int getFunctionCount() {
+    return functionCount;
+  }
+
+  @NotNull
+  public String getFunctionName(int function) {
+    return names[function];
+  }
+
+  /**
+   * The path of the file the function is in, or null if it is not in a local file.
+   */
+  @Nullable
+  public String getPath(int function) {
+    return paths[function];
+  }
+
+  /**
+   * The one based line of the function, or 0 if it is not known.
+   */
+  public int getLine(int function) {
+    return lines[function];
+  }
+
+  public int getTotalSamples(int function) {
+    return totalSamples[function];
+  }
+
+  public int getSelfSamples(int function) {
+    return selfSamples[function];
+  }
+
+  /**
+   * Returns up to count functions with the most samples in them, most first.
+   */
+  @NotNull
+  public int[] getHottestFunctions(int count) {
+    return top(totalSamples, count, false);
+  }
+
+  /**
+   * Returns a widget perf event, in the format of the rebuild and repaint events of the Flutter
+   * framework, with the samples since the last report of up to count of the hottest functions with
+   * a known location.
+   * <p>
+   * Locations are numbered with negative ids so that they do not collide with those of widgets, and
+   * each is only included in the first report it is in.
+   */
+  @NotNull
+  public JsonObject takeLineReport(int count) {
+    final int[] hottest = top(recentSamples, count, true);
+    final JsonArray events = new JsonArray();
+    final JsonObject newLocations = new JsonObject();
+    for (int function : hottest) {
+      final int id = getLocationId(function);
+      events.add(id);
+      events.add(recentSamples[function]);
+      if (!reported[function]) {
+        reported[function] = true;
+        JsonArray locations = newLocations.getAsJsonArray(paths[function]);
+        if (locations == null) {
+          locations = new JsonArray();
+          newLocations.add(paths[function], locations);
+        }
+        locations.add(id);
+        locations.add(lines[function]);
+        locations.add(columns[function]);
+      }
+    }
+    Arrays.fill(recentSamples, 0, functionCount, 0);
+
+    final JsonObject report = new JsonObject();
+    report.addProperty("startTime", Math.max(0, lastTimestamp));
+    report.add("events", events);
+    if (newLocations.size() > 0) {
+      report.add("newLocations", newLocations);
+    }
+    return report;
+  }
+
+  /**
+   * The location id of the function in line reports.
+   */
+  public static int getLocationId(int function) {
+    return -1 - function;
+  }
+
+  @NotNull
+  private int[] top(@NotNull int[] samples, int count, boolean withLocation) {
+    final int[] top = new int[Math.min(count, functionCount)];
+    if (top.length == 0) {
+      return top;
+    }
+    int size = 0;
+    for (int function = 0; function < functionCount; function++) {
+      final int value = samples[function];
+      if (value == 0 || (withLocation && (paths[function] == null || lines[function] <= 0)) ||
+          (size == top.length && value <= samples[top[size - 1]])) {
+        continue;
+      }
+      // Insert the function in order, dropping the smallest if the list is full.
+      int i = size < top.length ? size++ : size - 1;
+      while (i > 0 && samples[top[i - 1]] < value) {
+        top[i] = top[i - 1];
+        i--;
+      }
+      top[i] = function;
+    }
+    return Arrays.copyOf(top, size);
+  }
+
+  /**
+   * Reads a {@code CpuSamples} response into a batch.
+   */
+  @NotNull
+  public static Batch readBatch(@NotNull String isolateId, @NotNull JsonObject json) {
+    final JsonArray functions = json.getAsJsonArray("functions");
+    final JsonArray samples = json.getAsJsonArray("samples");
+    final Batch batch = new Batch(isolateId, functions == null ? 0 : functions.size(), samples == null ? 0 : samples.size());
+    if (functions != null) {
+      for (JsonElement element : functions) {
+        batch.addFunction(element.getAsJsonObject());
+      }
+    }
+    if (samples != null) {
+      for (JsonElement element : samples) {
+        final JsonObject sample = element.getAsJsonObject();
+        final JsonArray stack = sample.getAsJsonArray("stack");
+        final JsonElement timestamp = sample.get("timestamp");
+        batch.startSample(timestamp == null ? 0 : timestamp.getAsLong());
+        if (stack != null) {
+          for (JsonElement frame : stack) {
+            batch.addFrame(frame.getAsInt());
+          }
+        }
+      }
+    }
+    batch.finish();
+    return batch;
+  }
+
+  /**
+   * Returns the path of a {@code file:} URL, or null for other URLs.
+   */
+  @Nullable
+  static String toPath(@Nullable String url) {
+    if (url == null || !url.startsWith("file:")) {
+      return null;
+    }
+    try {
+      return new URI(url).getPath();
+    }
+    catch (URISyntaxException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The samples of one {@code getCpuSamples} response, which can be read off the UI thread.
+   */
+  public static class Batch {
+    @NotNull final String isolateId;
+
+    int functionCount;
+    final String[] keys;
+    final String[] names;
+    final String[] paths;
+    final int[] lines;
+    final int[] columns;
+
+    int sampleCount;
+    long[] timestamps;
+    int[] stackStarts;
+    int[] frames = new int[1024];
+    private int frameCount;
+
+    Batch(@NotNull String isolateId, int functionCapacity, int sampleCapacity) {
+      this.isolateId = isolateId;
+      keys = new String[functionCapacity];
+      names = new String[functionCapacity];
+      paths = new String[functionCapacity];
+      lines = new int[functionCapacity];
+      columns = new int[functionCapacity];
+      timestamps = new long[sampleCapacity];
+      stackStarts = new int[sampleCapacity + 1];
+    }
+
+    private void addFunction(@NotNull JsonObject profileFunction) {
+      final JsonObject function = getObject(profileFunction, "function");
+      String name = function == null ? null : getString(function, "name");
+      if (name == null) {
+        name = "<unknown>";
+      }
+      final JsonObject owner = function == null ? null : getObject(function, "owner");
+      if (owner != null && "@Class".equals(getString(owner, "type"))) {
+        name = getString(owner, "name") + "." + name;
+      }
+
+      final JsonObject location = function == null ? null : getObject(function, "location");
+      String url = getString(profileFunction, "resolvedUrl");
+      if (url == null || url.isEmpty()) {
+        final JsonObject script = location == null ? null : getObject(location, "script");
+        url = script == null ? null : getString(script, "uri");
+      }
+      final int line = location == null ? 0 : getInt(location, "line");
+      final int column = location == null ? 0 : getInt(location, "column");
+      final int tokenPos = location == null ? 0 : getInt(location, "tokenPos");
+
+      final int index = functionCount++;
+      keys[index] = url + '#' + name + '#' + tokenPos;
+      names[index] = name;
+      paths[index] = toPath(url);
+      lines[index] = line;
+      columns[index] = column;
+    }
+
+    private void startSample(long timestamp) {
+      timestamps[sampleCount] = timestamp;
+      stackStarts[sampleCount] = frameCount;
+      sampleCount++;
+    }
+
+    private void addFrame(int frame) {
+      if (frameCount == frames.length) {
+        frames = Arrays.copyOf(frames, frameCount * 2);
+      }
+      frames[frameCount++] = frame;
+    }
+
+    private void finish() {
+      stackStarts[sampleCount] = frameCount;
+    }
+
+    public int size() {
+      return sampleCount;
+    }
+
+    @Nullable
+    private static JsonObject getObject(@NotNull JsonObject json, @NotNull String name) {
+      final JsonElement element = json.get(name);
+      return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+    }
+
+    @Nullable
+    private static String getString(@NotNull JsonObject json, @NotNull String name) {
+      final JsonElement element = json.get(name);
+      return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    private static int getInt(@NotNull JsonObject json, @NotNull String name) {
+      final JsonElement element = json.get(name);
+      return element != null && element.isJsonPrimitive() ? element.getAsInt() : 0;
+    }
+  }
+}
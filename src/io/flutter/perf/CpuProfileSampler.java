@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import io.flutter.vmService.VMServiceManager;
+import org.dartlang.vm.service.VmService;
+import org.dartlang.vm.service.consumer.GetCpuSamplesConsumer;
+import org.dartlang.vm.service.consumer.TimestampConsumer;
+import org.dartlang.vm.service.element.CpuSamples;
+import org.dartlang.vm.service.element.IsolateRef;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+import org.dartlang.vm.service.element.Timestamp;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically requests the CPU samples of the Flutter isolate taken since the previous request,
+ * and adds them to a {@link CpuProfile}, until disposed.
+ * <p>
+ * The first request for an isolate reaches back over the chosen window. Each response is read and added to the
+ * profile on a pooled thread, one at a time, and a request is only made once the previous
+ * response has been added.
+ */
+public class CpuProfileSampler implements Disposable {
+  private static final Logger LOG = Logger.getInstance(CpuProfileSampler.class);
+
+  private static final int SAMPLE_PERIOD_MS = 1000;
+  private static final int REQUEST_TIMEOUT_MS = 10000;
+
+  /**
+   * The number of functions reported to the editors after each batch of samples.
+   */
+  private static final int HOT_FUNCTION_COUNT = 50;
+
+  public interface Listener {
+    /**
+     * Called on a pooled thread after samples were added to the profile, with the samples of the
+     * hottest lines as a widget perf event.
+     */
+    void samplesAdded(@NotNull JsonObject lineReport);
+  }
+
+  @NotNull private final VmService vmService;
+  @NotNull private final VMServiceManager vmServiceManager;
+  @NotNull private final CpuProfile profile;
+  private final long windowMicros;
+  @NotNull private final Listener listener;
+  @NotNull private final ScheduledFuture<?> scheduler;
+  private final Executor batchExecutor =
+    AppExecutorUtil.createBoundedApplicationPoolExecutor("Flutter CPU samples", 1);
+
+  /**
+   * The isolate being sampled, and the time from which its next request starts.
+   */
+  @Nullable private String sampledIsolateId;
+  private long nextOrigin;
+
+  private boolean requestInFlight;
+  private boolean disposed;
+
+  /**
+   * @param windowMicros how far back before now the first request reaches
+   */
+  public CpuProfileSampler(@NotNull VmService vmService,
+                           @NotNull VMServiceManager vmServiceManager,
+                           @NotNull CpuProfile profile,
+                           long windowMicros,
+                           @NotNull Listener listener) {
+    this.vmService = vmService;
+    this.vmServiceManager = vmServiceManager;
+    this.profile = profile;
+    this.windowMicros = windowMicros;
+    this.listener = listener;
+    scheduler = AppExecutorUtil.getAppScheduledExecutorService()
+      .scheduleWithFixedDelay(this::requestSamples, 0, SAMPLE_PERIOD_MS, TimeUnit.MILLISECONDS);
+  }
+
+  private void requestSamples() {
+    final IsolateRef isolateRef = vmServiceManager.getCurrentFlutterIsolateRaw();
+    if (isolateRef == null) {
+      return;
+    }
+    synchronized (this) {
+      if (disposed || requestInFlight) {
+        return;
+      }
+      requestInFlight = true;
+    }
+
+    vmService.getVMTimelineMicros(REQUEST_TIMEOUT_MS, new TimestampConsumer() {
+      @Override
+      public void received(Timestamp response) {
+        final long now = response.getTimestamp();
+        final long origin;
+        synchronized (CpuProfileSampler.this) {
+          if (!isolateRef.getId().equals(sampledIsolateId)) {
+            sampledIsolateId = isolateRef.getId();
+            nextOrigin = Math.max(0, now - windowMicros);
+          }
+          origin = nextOrigin;
+        }
+        if (now <= origin) {
+          requestDone();
+          return;
+        }
+        requestSamples(isolateRef.getId(), origin, now);
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        requestDone();
+      }
+    });
+  }
+
+  private void requestSamples(@NotNull String isolateId, long origin, long end) {
+    vmService.getCpuSamples(isolateId, origin, end - origin, REQUEST_TIMEOUT_MS, new GetCpuSamplesConsumer() {
+      @Override
+      public void received(CpuSamples response) {
+        synchronized (CpuProfileSampler.this) {
+          if (isolateId.equals(sampledIsolateId)) {
+            nextOrigin = end + 1;
+          }
+        }
+        batchExecutor.execute(() -> {
+          try {
+            final CpuProfile.Batch batch = CpuProfile.readBatch(isolateId, response.getJson());
+            final JsonObject lineReport;
+            synchronized (profile) {
+              profile.addBatch(batch);
+              lineReport = profile.takeLineReport(HOT_FUNCTION_COUNT);
+            }
+            if (!isDisposed()) {
+              listener.samplesAdded(lineReport);
+            }
+          }
+          catch (RuntimeException e) {
+            LOG.warn("Unable to read the CPU samples", e);
+          }
+          finally {
+            requestDone();
+          }
+        });
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        // The isolate has exited.
+        requestDone();
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        requestDone();
+      }
+    });
+  }
+
+  private synchronized void requestDone() {
+    requestInFlight = false;
+  }
+
+  private synchronized boolean isDisposed() {
+    return disposed;
+  }
+
+  @Override
+  public void dispose() {
+    synchronized (this) {
+      disposed = true;
+    }
+    scheduler.cancel(false);
+  }
+}
@@ -21,6 +21,7 @@ import com.intellij.xdebugger.XSourcePosition;
 import com.jetbrains.lang.dart.psi.DartId;
 import com.jetbrains.lang.dart.psi.DartReferenceExpression;
 import io.flutter.inspector.InspectorService;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class DocumentFileLocationMapper implements FileLocationMapper {
@@ -81,8 +82,40 @@ public class DocumentFileLocationMapper implements FileLocationMapper {
     if (pos == null) {
       return null;
     }
-    final int offset = pos.getOffset();
-    PsiElement element = psiFile.getOriginalFile().findElementAt(offset);
+    return findIdentifierRange(psiFile.getOriginalFile(), pos.getOffset());
+  }
+
+  /**
+   * Resolve all the locations of the file with one lookup of the document and PSI file, computing
+   * offsets from the document's line table rather than creating a source position for each.
+   */
+  @Override
+  public void resolve(int[] lines, int[] columns, TextRange[] ranges, String[] names) {
+    if (psiFile == null || document == null) {
+      return;
+    }
+    final PsiFile originalFile = psiFile.getOriginalFile();
+    final CharSequence text = document.getImmutableCharSequence();
+    final int lineCount = document.getLineCount();
+    for (int i = 0; i < lines.length; i++) {
+      // Convert to zero based line and column indices.
+      final int line = lines[i] - 1;
+      final int column = columns[i] - 1;
+      if (line < 0 || line >= lineCount || document.isLineModified(line)) {
+        continue;
+      }
+      final int offset = Math.min(document.getLineStartOffset(line) + Math.max(column, 0), document.getLineEndOffset(line));
+      final TextRange range = findIdentifierRange(originalFile, offset);
+      if (range != null) {
+        ranges[i] = range;
+        names[i] = text.subSequence(range.getStartOffset(), range.getEndOffset()).toString();
+      }
+    }
+  }
+
+  @Nullable
+  private static TextRange findIdentifierRange(@NotNull PsiFile file, int offset) {
+    PsiElement element = file.findElementAt(offset);
     if (element == null) {
       return null;
     }
@@ -452,12 +452,15 @@ class PerfGutterIconRenderer extends GutterIconRenderer {
       first = false;
       sb.append("<p style='" + style + "'>");
       if (stats.getKind() == PerfReportKind.rebuild) {
-        sb.append("Rebuild");
+        sb.append("Rebuild counts");
       }
       else if (stats.getKind() == PerfReportKind.repaint) {
-        sb.append("Repaint");
+        sb.append("Repaint counts");
       }
-      sb.append(" counts for: <strong>" + stats.getDescription());
+      else if (stats.getKind() == PerfReportKind.cpu) {
+        sb.append("CPU samples");
+      }
+      sb.append(" for: <strong>" + stats.getDescription());
       sb.append("</strong></p>");
       sb.append("<p style='padding-left: 8px'>");
       sb.append("For last frame: " + stats.getValue(PerfMetric.lastFrame) + "<br>");
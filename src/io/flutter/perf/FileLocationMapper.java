@@ -23,4 +23,17 @@ public interface FileLocationMapper {
   String getText(@Nullable TextRange textRange);
 
   String getPath();
+
+  /**
+   * Resolve the identifiers at the given one based lines and columns, storing the range and text
+   * of each at the same index of {@code ranges} and {@code names}.
+   * <p>
+   * Implementations that can share work between the locations of a file should override this.
+   */
+  default void resolve(int[] lines, int[] columns, TextRange[] ranges, String[] names) {
+    for (int i = 0; i < lines.length; i++) {
+      ranges[i] = getIdentifierRange(lines[i], columns[i]);
+      names[i] = getText(ranges[i]);
+    }
+  }
 }
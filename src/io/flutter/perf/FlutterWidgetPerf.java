@@ -21,13 +21,16 @@ import com.intellij.openapi.fileEditor.TextEditor;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.TextRange;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.ui.EdtInvocationManager;
 import gnu.trove.TIntObjectHashMap;
 import io.flutter.utils.AsyncUtils;
+import org.jetbrains.annotations.NotNull;
 
 import javax.swing.Timer;
 import java.awt.event.ActionEvent;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -53,6 +56,33 @@ public class FlutterWidgetPerf implements Disposable, WidgetPerfListener {
     private int lastNonEmptyReportTime = -1;
   }
 
+  /**
+   * The new locations of one file reported by a widget perf event, not yet resolved.
+   */
+  private static class NewLocations {
+    final String path;
+    final int[] ids;
+    final int[] lines;
+    final int[] columns;
+
+    NewLocations(String path, int count) {
+      this.path = path;
+      ids = new int[count];
+      lines = new int[count];
+      columns = new int[count];
+    }
+
+    void resolve(FileLocationMapperFactory fileLocationMapperFactory, List<Location> into) {
+      final FileLocationMapper locationMapper = fileLocationMapperFactory.create(path);
+      final TextRange[] ranges = new TextRange[ids.length];
+      final String[] names = new String[ids.length];
+      locationMapper.resolve(lines, columns, ranges, names);
+      for (int i = 0; i < ids.length; i++) {
+        into.add(new Location(locationMapper.getPath(), lines[i], columns[i], ids[i], ranges[i], names[i] == null ? "" : names[i]));
+      }
+    }
+  }
+
   // Retry requests if we do not receive a response within this interval.
   private static final long REQUEST_TIMEOUT_INTERVAL = 2000;
 
@@ -77,11 +107,15 @@ public class FlutterWidgetPerf implements Disposable, WidgetPerfListener {
   private boolean profilingEnabled;
   final Timer uiAnimationTimer;
   private final WidgetPerfProvider perfProvider;
-  private boolean isDisposed = false;
+  /**
+   * Read by the location resolver thread, so that it stops once this is disposed.
+   */
+  private volatile boolean isDisposed = false;
   private final FilePerfModelFactory perfModelFactory;
   private final FileLocationMapperFactory fileLocationMapperFactory;
   private volatile long lastLocalPerfEventTime;
   private final WidgetPerfLinter perfLinter;
+  private Executor locationResolver;
 
   FlutterWidgetPerf(boolean profilingEnabled, WidgetPerfProvider perfProvider,
                     FilePerfModelFactory perfModelFactory,
@@ -155,85 +189,133 @@ public class FlutterWidgetPerf implements Disposable, WidgetPerfListener {
 
   @Override
   public void onWidgetPerfEvent(PerfReportKind kind, JsonObject json) {
-    // Read access to the Document objects on background thread is needed so
-    // a ReadAction is required. Document objects are used to determine the
-    // widget names at specific locations in documents.
-    final Runnable action = () -> {
-      synchronized (this) {
-        final long startTimeMicros = json.get("startTime").getAsLong();
-        final int startTimeMilis = (int)(startTimeMicros / 1000);
-        lastLocalPerfEventTime = System.currentTimeMillis();
-        final StatsForReportKind statsForReportKind = getStatsForKind(kind);
-        if (statsForReportKind.lastStartTime > startTimeMilis) {
-          // We went backwards in time. There must have been a hot restart so
-          // clear all old stats.
-          statsForReportKind.data.forEachValue((SlidingWindowStats entry) -> {
-            entry.clear();
-            return true;
-          });
-        }
-        statsForReportKind.lastStartTime = startTimeMilis;
-
-        if (json.has("newLocations")) {
-          final JsonObject newLocations = json.getAsJsonObject("newLocations");
-          for (Map.Entry<String, JsonElement> entry : newLocations.entrySet()) {
-            final String path = entry.getKey();
-            final FileLocationMapper locationMapper = fileLocationMapperFactory.create(path);
-            final JsonArray entries = entry.getValue().getAsJsonArray();
-            assert (entries.size() % 3 == 0);
-            for (int i = 0; i < entries.size(); i += 3) {
-              final int id = entries.get(i).getAsInt();
-              final int line = entries.get(i + 1).getAsInt();
-              final int column = entries.get(i + 2).getAsInt();
-              final TextRange textRange = locationMapper.getIdentifierRange(line, column);
-              String name = locationMapper.getText(textRange);
-              if (name == null) {
-                name = "";
-              }
-              final Location location = new Location(locationMapper.getPath(), line, column, id, textRange, name);
+    final List<NewLocations> newLocations = json.has("newLocations") ? parseNewLocations(json.getAsJsonObject("newLocations")) : null;
 
-              final Location existingLocation = knownLocationIds.get(id);
-              if (existingLocation == null) {
-                addNewLocation(id, location);
-              }
-              else {
-                if (!location.equals(existingLocation)) {
-                  // Cleanup all references to the old location as it is stale.
-                  // This occurs if there is a hot restart or reload that we weren't aware of.
-                  locationsPerFile.remove(existingLocation.path, existingLocation);
-                  for (StatsForReportKind statsForKind : stats.values()) {
-                    statsForKind.data.remove(id);
-                  }
-                  addNewLocation(id, location);
-                }
+    synchronized (this) {
+      final long startTimeMicros = json.get("startTime").getAsLong();
+      final int startTimeMilis = (int)(startTimeMicros / 1000);
+      lastLocalPerfEventTime = System.currentTimeMillis();
+      final StatsForReportKind statsForReportKind = getStatsForKind(kind);
+      if (statsForReportKind.lastStartTime > startTimeMilis) {
+        // We went backwards in time. There must have been a hot restart so
+        // clear all old stats.
+        statsForReportKind.data.forEachValue((SlidingWindowStats entry) -> {
+          entry.clear();
+          return true;
+        });
+      }
+      statsForReportKind.lastStartTime = startTimeMilis;
+
+      if (newLocations != null) {
+        // Stats of a location id that moved are stale. This occurs if there is a hot restart or
+        // reload that we weren't aware of. Drop them now so this report's counts are kept.
+        for (NewLocations file : newLocations) {
+          for (int i = 0; i < file.ids.length; i++) {
+            final Location existingLocation = knownLocationIds.get(file.ids[i]);
+            if (existingLocation != null && (existingLocation.line != file.lines[i] || existingLocation.column != file.columns[i])) {
+              for (StatsForReportKind statsForKind : stats.values()) {
+                statsForKind.data.remove(file.ids[i]);
               }
             }
           }
         }
-        final StatsForReportKind statsForKind = getStatsForKind(kind);
-        final PerfSourceReport report = new PerfSourceReport(json.getAsJsonArray("events"), kind, startTimeMicros);
-        if (report.getEntries().size() > 0) {
-          statsForReportKind.lastNonEmptyReportTime = startTimeMilis;
-        }
-        for (PerfSourceReport.Entry entry : report.getEntries()) {
-          final int locationId = entry.locationId;
-          SlidingWindowStats statsForLocation = statsForKind.data.get(locationId);
-          if (statsForLocation == null) {
-            statsForLocation = new SlidingWindowStats();
-            statsForKind.data.put(locationId, statsForLocation);
-          }
-          statsForLocation.add(entry.total, startTimeMilis);
+      }
+
+      final PerfSourceReport report = new PerfSourceReport(json.getAsJsonArray("events"), kind, startTimeMicros);
+      if (report.getEntries().size() > 0) {
+        statsForReportKind.lastNonEmptyReportTime = startTimeMilis;
+      }
+      for (PerfSourceReport.Entry entry : report.getEntries()) {
+        final int locationId = entry.locationId;
+        SlidingWindowStats statsForLocation = statsForReportKind.data.get(locationId);
+        if (statsForLocation == null) {
+          statsForLocation = new IncrementalSlidingWindowStats();
+          statsForReportKind.data.put(locationId, statsForLocation);
         }
+        statsForLocation.add(entry.total, startTimeMilis);
       }
-    };
+    }
 
-    final Application application = ApplicationManager.getApplication();
-    if (application != null) {
-      application.runReadAction(action);
+    if (newLocations != null) {
+      resolveLocations(newLocations);
+    }
+  }
+
+  @NotNull
+  private static List<NewLocations> parseNewLocations(@NotNull JsonObject json) {
+    final List<NewLocations> files = new ArrayList<>(json.size());
+    for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+      final JsonArray entries = entry.getValue().getAsJsonArray();
+      assert (entries.size() % 3 == 0);
+      final NewLocations file = new NewLocations(entry.getKey(), entries.size() / 3);
+      for (int i = 0; i < file.ids.length; i++) {
+        file.ids[i] = entries.get(i * 3).getAsInt();
+        file.lines[i] = entries.get(i * 3 + 1).getAsInt();
+        file.columns[i] = entries.get(i * 3 + 2).getAsInt();
+      }
+      files.add(file);
     }
-    else {
+    return files;
+  }
+
+  /**
+   * Resolve the names and ranges of new locations, one file at a time, and publish them together.
+   * <p>
+   * Reading the documents is done on a pooled thread with a read action per file, without holding
+   * the lock on this object; batches are resolved and published in the order they arrived.
+   */
+  private void resolveLocations(@NotNull List<NewLocations> files) {
+    if (isDisposed) {
+      return;
+    }
+    final Application application = ApplicationManager.getApplication();
+    if (application == null) {
       // Unittest case.
-      action.run();
+      final List<Location> locations = new ArrayList<>();
+      for (NewLocations file : files) {
+        file.resolve(fileLocationMapperFactory, locations);
+      }
+      publishLocations(locations);
+      return;
+    }
+
+    synchronized (this) {
+      if (locationResolver == null) {
+        locationResolver = AppExecutorUtil.createBoundedApplicationPoolExecutor("FlutterWidgetPerf locations", 1);
+      }
+    }
+    locationResolver.execute(() -> {
+      final List<Location> locations = new ArrayList<>();
+      for (NewLocations file : files) {
+        if (isDisposed) {
+          return;
+        }
+        application.runReadAction(() -> file.resolve(fileLocationMapperFactory, locations));
+      }
+      publishLocations(locations);
+    });
+  }
+
+  private synchronized void publishLocations(@NotNull List<Location> locations) {
+    if (isDisposed) {
+      return;
+    }
+    for (Location location : locations) {
+      final Location existingLocation = knownLocationIds.get(location.id);
+      if (existingLocation == null) {
+        addNewLocation(location.id, location);
+      }
+      else if (!location.equals(existingLocation)) {
+        // Cleanup all references to the old location as it is stale.
+        locationsPerFile.remove(existingLocation.path, existingLocation);
+        if (existingLocation.line == location.line && existingLocation.column == location.column) {
+          // Only the path changed, so the stats were not dropped when the locations arrived.
+          for (StatsForReportKind statsForKind : stats.values()) {
+            statsForKind.data.remove(location.id);
+          }
+        }
+        addNewLocation(location.id, location);
+      }
     }
   }
 
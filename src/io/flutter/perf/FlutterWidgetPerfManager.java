@@ -5,6 +5,7 @@
  */
 package io.flutter.perf;
 
+import com.google.gson.JsonObject;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.fileEditor.*;
@@ -58,6 +59,7 @@ public class FlutterWidgetPerfManager implements Disposable, FlutterApp.FlutterA
   private final Project project;
   private boolean trackRebuildWidgets = trackRebuildWidgetsDefault;
   private boolean trackRepaintWidgets = trackRepaintWidgetsDefault;
+  private boolean trackCpuSamples;
   private boolean debugIsActive;
 
   private final Set<PerfModel> listeners = new HashSet<>();
@@ -170,6 +172,37 @@ public class FlutterWidgetPerfManager implements Disposable, FlutterApp.FlutterA
     }
   }
 
+  public boolean isTrackCpuSamples() {
+    return trackCpuSamples;
+  }
+
+  /**
+   * Show the CPU samples of the hottest functions in the editors, as reported to
+   * {@link #onCpuSamples}.
+   */
+  public void setTrackCpuSamples(boolean value) {
+    if (value == trackCpuSamples) {
+      return;
+    }
+    trackCpuSamples = value;
+    onProfilingFlagsChanged();
+    if (debugIsActive && app != null && app.isSessionActive()) {
+      notifyPerf();
+    }
+  }
+
+  /**
+   * Record the samples of the hottest functions since the last report, from
+   * {@link CpuProfile#takeLineReport}.
+   */
+  public void onCpuSamples(@NotNull JsonObject lineReport) {
+    final FlutterWidgetPerf stats = currentStats;
+    if (trackCpuSamples && stats != null) {
+      stats.onWidgetPerfEvent(PerfReportKind.cpu, lineReport);
+      stats.requestRepaint(When.soon);
+    }
+  }
+
   private void onProfilingFlagsChanged() {
     if (currentStats != null) {
       currentStats.setProfilingEnabled(isProfilingEnabled());
@@ -177,7 +210,7 @@ public class FlutterWidgetPerfManager implements Disposable, FlutterApp.FlutterA
   }
 
   private boolean isProfilingEnabled() {
-    return trackRebuildWidgets || trackRepaintWidgets;
+    return trackRebuildWidgets || trackRepaintWidgets || trackCpuSamples;
   }
 
   private void debugActive(Project project, FlutterViewMessages.FlutterDebugEvent event) {
@@ -279,7 +312,7 @@ public class FlutterWidgetPerfManager implements Disposable, FlutterApp.FlutterA
   }
 
   private void notifyPerf() {
-    if (!trackRepaintWidgets && !trackRebuildWidgets && currentStats != null) {
+    if (!trackRepaintWidgets && !trackRebuildWidgets && !trackCpuSamples && currentStats != null) {
       // TODO(jacobr): consider just marking as idle.
       currentStats.clear();
     }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The timeline events on the Flutter UI and raster threads that overlap a frame.
+ */
+public class FrameTimelineBreakdown {
+  /**
+   * The suffixes of the names of the UI and raster threads; the raster thread was called the GPU
+   * thread in older engines.
+   */
+  private static final String UI_THREAD = ".ui";
+  private static final String[] RASTER_THREADS = {".raster", ".gpu"};
+
+  public static class Entry {
+    @NotNull public final String name;
+    public final long startMicros;
+    public final long durationMicros;
+
+    /**
+     * The number of events this event is nested in.
+     */
+    public final int depth;
+
+    Entry(@NotNull String name, long startMicros, long durationMicros, int depth) {
+      this.name = name;
+      this.startMicros = startMicros;
+      this.durationMicros = durationMicros;
+      this.depth = depth;
+    }
+  }
+
+  @NotNull private final List<Entry> uiEvents;
+  @NotNull private final List<Entry> rasterEvents;
+
+  private FrameTimelineBreakdown(@NotNull List<Entry> uiEvents, @NotNull List<Entry> rasterEvents) {
+    this.uiEvents = uiEvents;
+    this.rasterEvents = rasterEvents;
+  }
+
+  /**
+   * Finds the events of the UI and raster threads between start and end, nested at most maxDepth
+   * deep.
+   */
+  @NotNull
+  static FrameTimelineBreakdown compute(@NotNull TimelineEventStore store, long startMicros, long endMicros, int maxDepth) {
+    final List<Entry> uiEvents = new ArrayList<>();
+    for (int thread : store.findThreads(UI_THREAD)) {
+      addEvents(store, thread, startMicros, endMicros, maxDepth, uiEvents);
+    }
+    final List<Entry> rasterEvents = new ArrayList<>();
+    for (String suffix : RASTER_THREADS) {
+      for (int thread : store.findThreads(suffix)) {
+        addEvents(store, thread, startMicros, endMicros, maxDepth, rasterEvents);
+      }
+    }
+    return new FrameTimelineBreakdown(Collections.unmodifiableList(uiEvents), Collections.unmodifiableList(rasterEvents));
+  }
+
+  private static void addEvents(@NotNull TimelineEventStore store,
+                                int thread,
+                                long startMicros,
+                                long endMicros,
+                                int maxDepth,
+                                @NotNull List<Entry> into) {
+    // Events on a thread nest; track the ends of the events enclosing the current one.
+    long[] enclosingEnds = new long[16];
+    int depth = 0;
+    for (int event : store.findOverlapping(thread, startMicros, endMicros)) {
+      final long start = store.getStartMicros(event);
+      final long end = store.getEndMicros(event);
+      while (depth > 0 && enclosingEnds[depth - 1] <= start) {
+        depth--;
+      }
+      if (depth <= maxDepth) {
+        into.add(new Entry(store.getName(event), start, end - start, depth));
+      }
+      if (depth == enclosingEnds.length) {
+        enclosingEnds = Arrays.copyOf(enclosingEnds, depth * 2);
+      }
+      enclosingEnds[depth++] = end;
+    }
+  }
+
+  /**
+   * The events on the UI thread, ordered by start time.
+   */
+  @NotNull
+  public List<Entry> getUiEvents() {
+    return uiEvents;
+  }
+
+  /**
+   * The events on the raster thread, ordered by start time.
+   */
+  @NotNull
+  public List<Entry> getRasterEvents() {
+    return rasterEvents;
+  }
+
+  public boolean isEmpty() {
+    return uiEvents.isEmpty() && rasterEvents.isEmpty();
+  }
+
+  /**
+   * The time spent in the outermost events of the list.
+   */
+  public static long getTopLevelMicros(@NotNull List<Entry> events) {
+    long total = 0;
+    for (Entry entry : events) {
+      if (entry.depth == 0) {
+        total += entry.durationMicros;
+      }
+    }
+    return total;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The dominator tree of a heap snapshot, and the retained size of each object, computed with the
+ * Lengauer-Tarjan algorithm.
+ * <p>
+ * The algorithm works on the objects reachable from the root, numbered in depth first order, with
+ * iterative loops in place of recursion so that deep object graphs do not overflow the stack. All
+ * of its state is held in int arrays that are dropped once the result is known: about a dozen ints
+ * per object plus one per reference.
+ */
+class HeapDominators {
+  @NotNull private final int[] dominators;
+  @NotNull private final long[] retainedSizes;
+
+  // The working state, indexed by depth first number; 0 means none.
+  private int[] semi;
+  private int[] label;
+  private int[] ancestor;
+  private int[] path;
+
+  HeapDominators(@NotNull HeapSnapshotGraph graph) {
+    final int objectCount = graph.getObjectCount();
+    dominators = new int[objectCount];
+    retainedSizes = new long[objectCount];
+    if (objectCount <= HeapSnapshotGraph.ROOT) {
+      return;
+    }
+
+    // Number the reachable objects in depth first order.
+    final int[] number = new int[objectCount];
+    final int[] vertex = new int[objectCount];
+    final int[] parent = new int[objectCount];
+    final int[] references = graph.getReferences();
+    final int vertexCount;
+    {
+      // The stack of objects being visited, and the next reference of each to follow.
+      final int[] stack = new int[objectCount];
+      final int[] nextReference = new int[objectCount];
+      int top = 0;
+      int count = 1;
+      number[HeapSnapshotGraph.ROOT] = count;
+      vertex[count] = HeapSnapshotGraph.ROOT;
+      stack[top] = HeapSnapshotGraph.ROOT;
+      nextReference[top] = graph.getFirstReference(HeapSnapshotGraph.ROOT);
+      top++;
+      while (top > 0) {
+        final int object = stack[top - 1];
+        final int reference = nextReference[top - 1];
+        if (reference == graph.getFirstReference(object + 1)) {
+          top--;
+          continue;
+        }
+        nextReference[top - 1]++;
+        final int child = references[reference];
+        if (number[child] == 0) {
+          count++;
+          number[child] = count;
+          vertex[count] = child;
+          parent[count] = number[object];
+          stack[top] = child;
+          nextReference[top] = graph.getFirstReference(child);
+          top++;
+        }
+      }
+      vertexCount = count;
+    }
+
+    // The predecessors of each vertex, by number.
+    final int[] firstPredecessor = new int[vertexCount + 2];
+    for (int v = 1; v <= vertexCount; v++) {
+      final int object = vertex[v];
+      for (int i = graph.getFirstReference(object); i < graph.getFirstReference(object + 1); i++) {
+        firstPredecessor[number[references[i]] + 1]++;
+      }
+    }
+    for (int v = 1; v <= vertexCount + 1; v++) {
+      firstPredecessor[v] += firstPredecessor[v - 1];
+    }
+    final int[] predecessors = new int[firstPredecessor[vertexCount + 1]];
+    {
+      final int[] next = new int[vertexCount + 1];
+      System.arraycopy(firstPredecessor, 0, next, 0, vertexCount + 1);
+      for (int v = 1; v <= vertexCount; v++) {
+        final int object = vertex[v];
+        for (int i = graph.getFirstReference(object); i < graph.getFirstReference(object + 1); i++) {
+          predecessors[next[number[references[i]]]++] = v;
+        }
+      }
+    }
+
+    semi = new int[vertexCount + 1];
+    label = new int[vertexCount + 1];
+    ancestor = new int[vertexCount + 1];
+    path = new int[vertexCount + 1];
+    final int[] idom = new int[vertexCount + 1];
+    final int[] bucketHead = new int[vertexCount + 1];
+    final int[] bucketNext = new int[vertexCount + 1];
+    for (int v = 1; v <= vertexCount; v++) {
+      semi[v] = v;
+      label[v] = v;
+    }
+
+    for (int w = vertexCount; w >= 2; w--) {
+      for (int i = firstPredecessor[w]; i < firstPredecessor[w + 1]; i++) {
+        final int u = eval(predecessors[i]);
+        if (semi[u] < semi[w]) {
+          semi[w] = semi[u];
+        }
+      }
+      bucketNext[w] = bucketHead[semi[w]];
+      bucketHead[semi[w]] = w;
+
+      final int p = parent[w];
+      ancestor[w] = p;
+      for (int v = bucketHead[p]; v != 0; v = bucketNext[v]) {
+        final int u = eval(v);
+        idom[v] = semi[u] < semi[v] ? u : p;
+      }
+      bucketHead[p] = 0;
+    }
+    for (int w = 2; w <= vertexCount; w++) {
+      if (idom[w] != semi[w]) {
+        idom[w] = idom[idom[w]];
+      }
+    }
+    semi = null;
+    label = null;
+    ancestor = null;
+    path = null;
+
+    // Dominators are numbered before the objects they dominate.
+    final long[] retained = new long[vertexCount + 1];
+    for (int v = 1; v <= vertexCount; v++) {
+      retained[v] = graph.getShallowSize(vertex[v]);
+    }
+    for (int w = vertexCount; w >= 2; w--) {
+      retained[idom[w]] += retained[w];
+    }
+    for (int v = 1; v <= vertexCount; v++) {
+      dominators[vertex[v]] = vertex[idom[v]];
+      retainedSizes[vertex[v]] = retained[v];
+    }
+  }
+
+  /**
+   * The vertex with the least semidominator on the path from v up to the root of its tree in the
+   * forest, compressing the path as it goes.
+   */
+  private int eval(int v) {
+    if (ancestor[v] == 0) {
+      return v;
+    }
+    int top = 0;
+    int u = v;
+    while (ancestor[ancestor[u]] != 0) {
+      path[top++] = u;
+      u = ancestor[u];
+    }
+    while (top > 0) {
+      final int x = path[--top];
+      final int a = ancestor[x];
+      if (semi[label[a]] < semi[label[x]]) {
+        label[x] = label[a];
+      }
+      ancestor[x] = ancestor[a];
+    }
+    return label[v];
+  }
+
+  /**
+   * The immediate dominator of each object, which is 0 for the root and unreachable objects.
+   */
+  @NotNull
+  int[] getDominators() {
+    return dominators;
+  }
+
+  /**
+   * The retained size of each object, which is 0 for unreachable objects.
+   */
+  @NotNull
+  long[] getRetainedSizes() {
+    return retainedSizes;
+  }
+}
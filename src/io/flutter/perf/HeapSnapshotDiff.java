@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * The change in the instances of each class between two heap snapshots.
+ * <p>
+ * Class ids are not stable across snapshots, so classes are matched by library and name. Rows are
+ * sorted by how much the size of the class grew, most first.
+ */
+public class HeapSnapshotDiff {
+  @NotNull private final String[] classNames;
+  @NotNull private final String[] libraryUris;
+  @NotNull private final long[] beforeCounts;
+  @NotNull private final long[] afterCounts;
+  @NotNull private final long[] beforeBytes;
+  @NotNull private final long[] afterBytes;
+
+  public HeapSnapshotDiff(@NotNull HeapSnapshotGraph before, @NotNull HeapSnapshotGraph after) {
+    // The row of each class, plus one.
+    final TObjectIntHashMap<String> rowOfClass = new TObjectIntHashMap<>();
+    final int[] beforeRows = new int[before.getClassCount()];
+    final int[] afterRows = new int[after.getClassCount()];
+    int rowCount = 0;
+    rowCount = assignRows(before, rowOfClass, beforeRows, rowCount);
+    rowCount = assignRows(after, rowOfClass, afterRows, rowCount);
+
+    final String[] names = new String[rowCount];
+    final String[] uris = new String[rowCount];
+    final long[] counts0 = new long[rowCount];
+    final long[] counts1 = new long[rowCount];
+    final long[] bytes0 = new long[rowCount];
+    final long[] bytes1 = new long[rowCount];
+    addInstances(before, beforeRows, names, uris, counts0, bytes0);
+    addInstances(after, afterRows, names, uris, counts1, bytes1);
+
+    // Sort the rows by growth, dropping classes without instances in either snapshot.
+    final Integer[] order = new Integer[rowCount];
+    int size = 0;
+    for (int row = 0; row < rowCount; row++) {
+      if (counts0[row] != 0 || counts1[row] != 0) {
+        order[size++] = row;
+      }
+    }
+    Arrays.sort(order, 0, size, (a, b) -> Long.compare(bytes1[b] - bytes0[b], bytes1[a] - bytes0[a]));
+
+    classNames = new String[size];
+    libraryUris = new String[size];
+    beforeCounts = new long[size];
+    afterCounts = new long[size];
+    beforeBytes = new long[size];
+    afterBytes = new long[size];
+    for (int i = 0; i < size; i++) {
+      final int row = order[i];
+      classNames[i] = names[row];
+      libraryUris[i] = uris[row];
+      beforeCounts[i] = counts0[row];
+      afterCounts[i] = counts1[row];
+      beforeBytes[i] = bytes0[row];
+      afterBytes[i] = bytes1[row];
+    }
+  }
+
+  private static int assignRows(@NotNull HeapSnapshotGraph graph,
+                                @NotNull TObjectIntHashMap<String> rowOfClass,
+                                @NotNull int[] rows,
+                                int rowCount) {
+    for (int classId = 1; classId < graph.getClassCount(); classId++) {
+      final String key = graph.getLibraryUri(classId) + "#" + graph.getClassName(classId);
+      int row = rowOfClass.get(key) - 1;
+      if (row < 0) {
+        row = rowCount++;
+        rowOfClass.put(key, row + 1);
+      }
+      rows[classId] = row;
+    }
+    return rowCount;
+  }
+
+  private static void addInstances(@NotNull HeapSnapshotGraph graph,
+                                   @NotNull int[] rows,
+                                   @NotNull String[] names,
+                                   @NotNull String[] uris,
+                                   @NotNull long[] counts,
+                                   @NotNull long[] bytes) {
+    for (int classId = 1; classId < graph.getClassCount(); classId++) {
+      names[rows[classId]] = graph.getClassName(classId);
+      uris[rows[classId]] = graph.getLibraryUri(classId);
+    }
+    for (int object = HeapSnapshotGraph.ROOT + 1; object < graph.getObjectCount(); object++) {
+      final int classId = graph.getClassId(object);
+      if (classId == 0 || graph.getDominator(object) == 0) {
+        // The object is of an unknown class, or unreachable.
+        continue;
+      }
+      counts[rows[classId]]++;
+      bytes[rows[classId]] += graph.getShallowSize(object);
+    }
+  }
+
+  public int getRowCount() {
+    return classNames.length;
+  }
+
+  @NotNull
+  public String getClassName(int row) {
+    return classNames[row];
+  }
+
+  @NotNull
+  public String getLibraryUri(int row) {
+    return libraryUris[row];
+  }
+
+  public long getBeforeCount(int row) {
+    return beforeCounts[row];
+  }
+
+  public long getAfterCount(int row) {
+    return afterCounts[row];
+  }
+
+  public long getBeforeBytes(int row) {
+    return beforeBytes[row];
+  }
+
+  public long getAfterBytes(int row) {
+    return afterBytes[row];
+  }
+
+  public long getCountDelta(int row) {
+    return afterCounts[row] - beforeCounts[row];
+  }
+
+  public long getBytesDelta(int row) {
+    return afterBytes[row] - beforeBytes[row];
+  }
+}
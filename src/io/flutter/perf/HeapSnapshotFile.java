@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The chunks of a heap snapshot, appended to a file as they arrive and then mapped into memory to
+ * be read, so that the snapshot is never held on the Java heap.
+ * <p>
+ * Not thread safe; chunks arrive in order on the websocket thread and the file is read afterwards.
+ */
+class HeapSnapshotFile implements Closeable {
+  @NotNull private final File file;
+  private RandomAccessFile randomAccessFile;
+  private FileChannel channel;
+  private long size;
+
+  HeapSnapshotFile(@NotNull File file) throws IOException {
+    this.file = file;
+    randomAccessFile = new RandomAccessFile(file, "rw");
+    randomAccessFile.setLength(0);
+    channel = randomAccessFile.getChannel();
+  }
+
+  /**
+   * Append a chunk of the snapshot.
+   */
+  void append(@NotNull byte[] data, int offset, int length) throws IOException {
+    if (channel == null) {
+      throw new IllegalStateException("closed");
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+    while (buffer.hasRemaining()) {
+      size += channel.write(buffer, size);
+    }
+  }
+
+  long size() {
+    return size;
+  }
+
+  /**
+   * Map the chunks appended so far for reading.
+   */
+  @NotNull
+  MappedByteBuffer map() throws IOException {
+    if (channel == null) {
+      throw new IllegalStateException("closed");
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Heap snapshot too large to map: " + size + " bytes");
+    }
+    return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+  }
+
+  /**
+   * Close the file and delete it.
+   * <p>
+   * As for {@link MappedColumnFile}, a mapping is released when it is garbage collected, so the file
+   * may only be deleted when the IDE exits.
+   */
+  @Override
+  public void close() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      randomAccessFile.close();
+    }
+    catch (IOException ignored) {
+    }
+    channel = null;
+    randomAccessFile = null;
+    if (!file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+}
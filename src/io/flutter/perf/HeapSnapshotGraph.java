@@ -0,0 +1,362 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The object graph of a heap snapshot sent by the Dart VM, with the retained size of every object.
+ * <p>
+ * Objects are numbered as in the snapshot: object 0 is a sentinel and object 1 is the root. Each
+ * object is a row of primitive arrays, and the references of object {@code i} are
+ * {@code references[firstReference[i]]} up to {@code references[firstReference[i + 1]]}, so that
+ * snapshots of millions of objects stay compact. The values of strings and other instances are not
+ * kept.
+ */
+public class HeapSnapshotGraph {
+  static final int ROOT = 1;
+
+  private static final byte[] MAGIC = "dartheap".getBytes(StandardCharsets.US_ASCII);
+
+  // Tags of the data of an object that is not a reference.
+  private static final int NO_DATA = 0;
+  private static final int NULL_DATA = 1;
+  private static final int BOOL_DATA = 2;
+  private static final int INT_DATA = 3;
+  private static final int DOUBLE_DATA = 4;
+  private static final int LATIN1_DATA = 5;
+  private static final int UTF16_DATA = 6;
+  private static final int LENGTH_DATA = 7;
+  private static final int NAME_DATA = 8;
+
+  @NotNull private final String isolateName;
+  private final long capacity;
+
+  // Class 0 is a sentinel.
+  @NotNull private final String[] classNames;
+  @NotNull private final String[] libraryUris;
+
+  @NotNull private final int[] classIds;
+  @NotNull private final int[] shallowSizes;
+  @NotNull private final int[] externalSizes;
+  @NotNull private final int[] firstReference;
+  @NotNull private final int[] references;
+
+  @NotNull private final int[] dominators;
+  @NotNull private final long[] retainedSizes;
+
+  HeapSnapshotGraph(@NotNull String isolateName,
+                    long capacity,
+                    @NotNull String[] classNames,
+                    @NotNull String[] libraryUris,
+                    @NotNull int[] classIds,
+                    @NotNull int[] shallowSizes,
+                    @NotNull int[] externalSizes,
+                    @NotNull int[] firstReference,
+                    @NotNull int[] references) {
+    this.isolateName = isolateName;
+    this.capacity = capacity;
+    this.classNames = classNames;
+    this.libraryUris = libraryUris;
+    this.classIds = classIds;
+    this.shallowSizes = shallowSizes;
+    this.externalSizes = externalSizes;
+    this.firstReference = firstReference;
+    this.references = references;
+
+    final HeapDominators result = new HeapDominators(this);
+    dominators = result.getDominators();
+    retainedSizes = result.getRetainedSizes();
+  }
+
+  /**
+   * Reads the concatenated chunks of a heap snapshot.
+   */
+  @NotNull
+  public static HeapSnapshotGraph read(@NotNull ByteBuffer buffer) throws IOException {
+    try {
+      return new Reader(buffer).read();
+    }
+    catch (BufferUnderflowException e) {
+      throw new IOException("Truncated heap snapshot", e);
+    }
+  }
+
+  @NotNull
+  public String getIsolateName() {
+    return isolateName;
+  }
+
+  /**
+   * The capacity of the heap when the snapshot was taken.
+   */
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * The number of objects, including the sentinel object 0.
+   */
+  public int getObjectCount() {
+    return classIds.length;
+  }
+
+  public int getClassCount() {
+    return classNames.length;
+  }
+
+  @NotNull
+  public String getClassName(int classId) {
+    return classNames[classId];
+  }
+
+  @NotNull
+  public String getLibraryUri(int classId) {
+    return libraryUris[classId];
+  }
+
+  public int getClassId(int object) {
+    return classIds[object];
+  }
+
+  /**
+   * The size of the object itself, including memory it holds outside of the Dart heap.
+   */
+  public long getShallowSize(int object) {
+    return (long)shallowSizes[object] + externalSizes[object];
+  }
+
+  /**
+   * The memory that would be freed if the object was collected: its own size plus the sizes of
+   * the objects only reachable through it.
+   */
+  public long getRetainedSize(int object) {
+    return retainedSizes[object];
+  }
+
+  /**
+   * The immediate dominator of the object, which is 0 for the root and unreachable objects.
+   */
+  public int getDominator(int object) {
+    return dominators[object];
+  }
+
+  public int getReferenceCount(int object) {
+    return firstReference[object + 1] - firstReference[object];
+  }
+
+  public int getReference(int object, int index) {
+    return references[firstReference[object] + index];
+  }
+
+  /**
+   * The total size of the objects reachable from the root.
+   */
+  public long getReachableSize() {
+    return retainedSizes[ROOT];
+  }
+
+  /**
+   * Returns up to count objects other than the root with the largest retained sizes, largest first.
+   */
+  @NotNull
+  public int[] getLargestRetainers(int count) {
+    final int[] top = new int[Math.max(0, Math.min(count, getObjectCount() - ROOT - 1))];
+    if (top.length == 0) {
+      return top;
+    }
+    int size = 0;
+    for (int object = ROOT + 1; object < getObjectCount(); object++) {
+      final long retained = retainedSizes[object];
+      if (retained == 0 || (size == top.length && retained <= retainedSizes[top[size - 1]])) {
+        continue;
+      }
+      // Insert the object in order, dropping the smallest if the list is full.
+      int i = size < top.length ? size++ : size - 1;
+      while (i > 0 && retainedSizes[top[i - 1]] < retained) {
+        top[i] = top[i - 1];
+        i--;
+      }
+      top[i] = object;
+    }
+    return Arrays.copyOf(top, size);
+  }
+
+  int getFirstReference(int object) {
+    return firstReference[object];
+  }
+
+  @NotNull
+  int[] getReferences() {
+    return references;
+  }
+
+  private static class Reader {
+    @NotNull private final ByteBuffer buffer;
+
+    Reader(@NotNull ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @NotNull
+    HeapSnapshotGraph read() throws IOException {
+      for (byte b : MAGIC) {
+        if (buffer.get() != b) {
+          throw new IOException("Not a heap snapshot");
+        }
+      }
+      readUnsigned(); // Flags
+      final String isolateName = readUtf8();
+      readUnsigned(); // Used bytes
+      final long capacity = readUnsigned();
+      readUnsigned(); // External bytes
+
+      final int classCount = readCount();
+      final String[] classNames = new String[classCount + 1];
+      final String[] libraryUris = new String[classCount + 1];
+      classNames[0] = "";
+      libraryUris[0] = "";
+      for (int classId = 1; classId <= classCount; classId++) {
+        readUnsigned(); // Flags
+        classNames[classId] = readUtf8();
+        skipUtf8(); // Library name
+        libraryUris[classId] = readUtf8();
+        skipUtf8(); // Reserved
+        final long fieldCount = readUnsigned();
+        for (long field = 0; field < fieldCount; field++) {
+          readUnsigned(); // Flags
+          readUnsigned(); // Index
+          skipUtf8(); // Name
+          skipUtf8(); // Reserved
+        }
+      }
+
+      int[] references = new int[readCount()];
+      final int objectCount = readCount();
+      final int[] classIds = new int[objectCount + 1];
+      final int[] shallowSizes = new int[objectCount + 1];
+      final int[] firstReference = new int[objectCount + 2];
+      int referenceCount = 0;
+      for (int object = 1; object <= objectCount; object++) {
+        final int classId = readCount();
+        classIds[object] = classId <= classCount ? classId : 0;
+        shallowSizes[object] = readCount();
+        skipData();
+
+        final int count = readCount();
+        firstReference[object] = referenceCount;
+        if (referenceCount + count > references.length) {
+          references = Arrays.copyOf(references, Math.max(referenceCount + count, references.length * 2));
+        }
+        for (int i = 0; i < count; i++) {
+          final int reference = readCount();
+          // Drop references to objects missing from the snapshot.
+          if (reference > 0 && reference <= objectCount) {
+            references[referenceCount++] = reference;
+          }
+        }
+      }
+      firstReference[objectCount + 1] = referenceCount;
+      if (referenceCount < references.length) {
+        references = Arrays.copyOf(references, referenceCount);
+      }
+
+      final int[] externalSizes = new int[objectCount + 1];
+      final int externalCount = readCount();
+      for (int i = 0; i < externalCount; i++) {
+        final int object = readCount();
+        final long size = readUnsigned();
+        skipUtf8(); // Name
+        if (object > 0 && object <= objectCount) {
+          externalSizes[object] = (int)Math.min(Integer.MAX_VALUE, externalSizes[object] + size);
+        }
+      }
+
+      return new HeapSnapshotGraph(isolateName, capacity, classNames, libraryUris,
+                                   classIds, shallowSizes, externalSizes, firstReference, references);
+    }
+
+    private void skipData() throws IOException {
+      final int tag = readCount();
+      switch (tag) {
+        case NO_DATA:
+        case NULL_DATA:
+          break;
+        case BOOL_DATA:
+        case INT_DATA:
+        case LENGTH_DATA:
+          readUnsigned();
+          break;
+        case DOUBLE_DATA:
+          skip(Double.BYTES);
+          break;
+        case LATIN1_DATA:
+          readUnsigned(); // Length of the string
+          skipUtf8(); // Its prefix
+          break;
+        case UTF16_DATA:
+          readUnsigned(); // Length of the string
+          skip(readCount() * 2L); // Its prefix
+          break;
+        case NAME_DATA:
+          skipUtf8();
+          break;
+        default:
+          throw new IOException("Unknown data tag " + tag);
+      }
+    }
+
+    /**
+     * Reads an unsigned integer, seven bits per byte, least significant first; the last byte has
+     * its high bit set.
+     */
+    private long readUnsigned() {
+      long result = 0;
+      int shift = 0;
+      while (true) {
+        final int part = buffer.get() & 0xff;
+        if (part > 127) {
+          return result | ((long)(part - 128) << shift);
+        }
+        result |= (long)part << shift;
+        shift += 7;
+      }
+    }
+
+    private int readCount() throws IOException {
+      final long value = readUnsigned();
+      if (value > Integer.MAX_VALUE - 2) {
+        throw new IOException("Heap snapshot value out of range: " + value);
+      }
+      return (int)value;
+    }
+
+    @NotNull
+    private String readUtf8() throws IOException {
+      final int length = readCount();
+      final byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void skipUtf8() throws IOException {
+      skip(readCount());
+    }
+
+    private void skip(long count) {
+      if (count > buffer.remaining()) {
+        throw new BufferUnderflowException();
+      }
+      buffer.position(buffer.position() + (int)count);
+    }
+  }
+}
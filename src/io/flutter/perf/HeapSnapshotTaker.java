@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import io.flutter.vmService.VmServiceConsumers;
+import org.dartlang.vm.service.BinaryEventListener;
+import org.dartlang.vm.service.VmService;
+import org.dartlang.vm.service.consumer.RequestHeapSnapshotConsumer;
+import org.dartlang.vm.service.element.Event;
+import org.dartlang.vm.service.element.IsolateRef;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+import org.dartlang.vm.service.element.Success;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes a heap snapshot of an isolate.
+ * <p>
+ * The VM sends the snapshot as binary events on the {@link VmService#HEAPSNAPSHOT_STREAM_ID}
+ * stream. Each chunk is appended to a temporary file as it arrives, and once the last one is in the
+ * file is mapped and read into a {@link HeapSnapshotGraph} on a pooled thread.
+ */
+public class HeapSnapshotTaker implements BinaryEventListener {
+  private static final Logger LOG = Logger.getInstance(HeapSnapshotTaker.class);
+
+  private static final long TIMEOUT_MINUTES = 5;
+
+  @NotNull private final VmService vmService;
+  @NotNull private final String isolateId;
+  @NotNull private final HeapSnapshotFile file;
+  @NotNull private final CompletableFuture<HeapSnapshotGraph> result = new CompletableFuture<>();
+
+  private HeapSnapshotTaker(@NotNull VmService vmService, @NotNull String isolateId, @NotNull HeapSnapshotFile file) {
+    this.vmService = vmService;
+    this.isolateId = isolateId;
+    this.file = file;
+  }
+
+  /**
+   * Requests a snapshot of the isolate, completing with its graph or exceptionally if it could not
+   * be taken.
+   */
+  @NotNull
+  public static CompletableFuture<HeapSnapshotGraph> takeSnapshot(@NotNull VmService vmService, @NotNull String isolateId) {
+    final HeapSnapshotFile file;
+    try {
+      final File tempFile = FileUtil.createTempFile("flutter_heap_snapshot", ".bin", true);
+      file = new HeapSnapshotFile(tempFile);
+    }
+    catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    final HeapSnapshotTaker taker = new HeapSnapshotTaker(vmService, isolateId, file);
+    taker.start();
+    return taker.result;
+  }
+
+  private void start() {
+    vmService.addBinaryEventListener(this);
+    result.orTimeout(TIMEOUT_MINUTES, TimeUnit.MINUTES).whenComplete((graph, error) -> {
+      vmService.removeBinaryEventListener(this);
+      synchronized (file) {
+        file.close();
+      }
+    });
+
+    // The stream may already be listened to, which is fine.
+    vmService.streamListen(VmService.HEAPSNAPSHOT_STREAM_ID, VmServiceConsumers.EMPTY_SUCCESS_CONSUMER);
+    vmService.requestHeapSnapshot(isolateId, new RequestHeapSnapshotConsumer() {
+      @Override
+      public void received(Success response) {
+        // The snapshot follows as events.
+      }
+
+      @Override
+      public void received(Sentinel response) {
+        result.completeExceptionally(new IOException("The isolate has exited"));
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        result.completeExceptionally(new IOException("Unable to request a heap snapshot: " + error.getMessage()));
+      }
+    });
+  }
+
+  @Override
+  public void received(String streamId, Event event, byte[] data, int offset, int length) {
+    if (!VmService.HEAPSNAPSHOT_STREAM_ID.equals(streamId) || result.isDone()) {
+      return;
+    }
+    final IsolateRef isolate = event.getIsolate();
+    if (isolate != null && !isolateId.equals(isolate.getId())) {
+      return;
+    }
+
+    synchronized (file) {
+      try {
+        file.append(data, offset, length);
+      }
+      catch (IOException | IllegalStateException e) {
+        result.completeExceptionally(e);
+        return;
+      }
+    }
+    if (event.getLast()) {
+      AppExecutorUtil.getAppExecutorService().execute(this::readSnapshot);
+    }
+  }
+
+  private void readSnapshot() {
+    try {
+      final HeapSnapshotGraph graph;
+      synchronized (file) {
+        graph = HeapSnapshotGraph.read(file.map());
+      }
+      result.complete(graph);
+    }
+    catch (IOException | RuntimeException e) {
+      LOG.warn("Unable to read the heap snapshot", e);
+      result.completeExceptionally(e);
+    }
+  }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+/**
+ * A {@link SlidingWindowStats} that answers the time interval metrics without walking the window.
+ * <p>
+ * The counts of the past second are kept in a queue with a running sum, and the counts of the
+ * {@link PerfMetric#peakRecent} window in a queue of decreasing counts whose head is the peak. Both
+ * queues drop entries as the current time moves forward, so each entry is added and removed once
+ * and {@link #getValue} takes amortized constant time.
+ * <p>
+ * The current time passed to {@link #getValue} is expected not to go backwards between calls to
+ * {@link #clear}; when it does, the query falls back to walking the window.
+ */
+class IncrementalSlidingWindowStats extends SlidingWindowStats {
+  static final int PAST_SECOND_MILLIS = 1000;
+  static final int PEAK_RECENT_MILLIS = 500;
+
+  /**
+   * The counts within the past second, oldest first.
+   */
+  private final TimeCountQueue pastSecond = new TimeCountQueue();
+  private int pastSecondSum;
+  private int pastSecondStart = Integer.MIN_VALUE;
+
+  /**
+   * The counts within the peak recent window that are larger than all later counts, oldest first.
+   */
+  private final TimeCountQueue peaks = new TimeCountQueue();
+  private int peakRecentStart = Integer.MIN_VALUE;
+
+  private boolean hasLast;
+  private int lastTimeStamp;
+  private int lastCount;
+
+  @Override
+  void clear() {
+    super.clear();
+    pastSecond.clear();
+    pastSecondSum = 0;
+    pastSecondStart = Integer.MIN_VALUE;
+    peaks.clear();
+    peakRecentStart = Integer.MIN_VALUE;
+    hasLast = false;
+  }
+
+  @Override
+  void add(int count, int timeStamp) {
+    super.add(count, timeStamp);
+
+    if (hasLast && lastTimeStamp == timeStamp) {
+      lastCount += count;
+    }
+    else {
+      hasLast = true;
+      lastTimeStamp = timeStamp;
+      lastCount = count;
+    }
+
+    // Counts older than a window that has already been queried are never needed again.
+    if (timeStamp >= pastSecondStart) {
+      if (!pastSecond.isEmpty() && pastSecond.lastTime() == timeStamp) {
+        pastSecond.addToLast(count);
+      }
+      else {
+        pastSecond.addLast(timeStamp, count);
+      }
+      pastSecondSum += count;
+    }
+    if (timeStamp >= peakRecentStart) {
+      while (!peaks.isEmpty() && (peaks.lastTime() == timeStamp || peaks.lastCount() <= lastCount)) {
+        peaks.removeLast();
+      }
+      peaks.addLast(timeStamp, lastCount);
+    }
+
+    advancePastSecond(timeStamp - PAST_SECOND_MILLIS + 1);
+    advancePeakRecent(timeStamp - PEAK_RECENT_MILLIS + 1);
+  }
+
+  private boolean advancePastSecond(int windowStart) {
+    if (windowStart < pastSecondStart) {
+      return false;
+    }
+    pastSecondStart = windowStart;
+    while (!pastSecond.isEmpty() && pastSecond.firstTime() < windowStart) {
+      pastSecondSum -= pastSecond.firstCount();
+      pastSecond.removeFirst();
+    }
+    return true;
+  }
+
+  private boolean advancePeakRecent(int windowStart) {
+    if (windowStart < peakRecentStart) {
+      return false;
+    }
+    peakRecentStart = windowStart;
+    while (!peaks.isEmpty() && peaks.firstTime() < windowStart) {
+      peaks.removeFirst();
+    }
+    return true;
+  }
+
+  @Override
+  public int getValue(PerfMetric metric, int currentTime) {
+    switch (metric) {
+      case pastSecond:
+        if (advancePastSecond(currentTime - PAST_SECOND_MILLIS + 1)) {
+          return pastSecondSum;
+        }
+        break;
+      case peakRecent:
+        if (advancePeakRecent(currentTime - PEAK_RECENT_MILLIS + 1)) {
+          return peaks.isEmpty() ? 0 : peaks.firstCount();
+        }
+        break;
+      case lastFrame:
+        if (!hasLast || lastTimeStamp < currentTime) {
+          return 0;
+        }
+        if (lastTimeStamp == currentTime) {
+          return lastCount;
+        }
+        break;
+    }
+    return super.getValue(metric, currentTime);
+  }
+
+  /**
+   * A growable ring of time stamp and count pairs.
+   */
+  private static class TimeCountQueue {
+    private int[] times = new int[4];
+    private int[] counts = new int[4];
+    private int head;
+    private int size;
+
+    boolean isEmpty() {
+      return size == 0;
+    }
+
+    void clear() {
+      head = 0;
+      size = 0;
+    }
+
+    int firstTime() {
+      return times[head];
+    }
+
+    int firstCount() {
+      return counts[head];
+    }
+
+    int lastTime() {
+      return times[index(size - 1)];
+    }
+
+    int lastCount() {
+      return counts[index(size - 1)];
+    }
+
+    void addLast(int time, int count) {
+      if (size == times.length) {
+        grow();
+      }
+      final int index = index(size++);
+      times[index] = time;
+      counts[index] = count;
+    }
+
+    void addToLast(int count) {
+      counts[index(size - 1)] += count;
+    }
+
+    void removeFirst() {
+      head = index(1);
+      size--;
+    }
+
+    void removeLast() {
+      size--;
+    }
+
+    private int index(int offset) {
+      return (head + offset) & (times.length - 1);
+    }
+
+    private void grow() {
+      final int[] newTimes = new int[times.length * 2];
+      final int[] newCounts = new int[counts.length * 2];
+      for (int i = 0; i < size; i++) {
+        newTimes[i] = times[index(i)];
+        newCounts[i] = counts[index(i)];
+      }
+      times = newTimes;
+      counts = newCounts;
+      head = 0;
+    }
+  }
+}
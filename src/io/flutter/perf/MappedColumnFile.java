@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file of append-only columns of fixed width values, mapped into memory.
+ * <p>
+ * The file is carved into fixed size segments that are handed out to columns as they grow, so each
+ * column is stored contiguously within its segments and reading a range of one column only pages in
+ * that column. Values are not kept on the Java heap.
+ * <p>
+ * Not thread safe; callers synchronize access.
+ */
+class MappedColumnFile implements Closeable {
+  static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+
+  @NotNull private final File file;
+  private final int segmentBytes;
+  private RandomAccessFile randomAccessFile;
+  private FileChannel channel;
+  private long nextSegmentOffset;
+
+  MappedColumnFile(@NotNull File file) throws IOException {
+    this(file, DEFAULT_SEGMENT_BYTES);
+  }
+
+  MappedColumnFile(@NotNull File file, int segmentBytes) throws IOException {
+    assert segmentBytes % Long.BYTES == 0;
+    this.file = file;
+    this.segmentBytes = segmentBytes;
+    randomAccessFile = new RandomAccessFile(file, "rw");
+    randomAccessFile.setLength(0);
+    channel = randomAccessFile.getChannel();
+  }
+
+  @NotNull
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Return the number of bytes of the file handed out to columns.
+   */
+  long getMappedBytes() {
+    return nextSegmentOffset;
+  }
+
+  @NotNull
+  Column newIntColumn() {
+    return new Column(Integer.BYTES);
+  }
+
+  @NotNull
+  Column newLongColumn() {
+    return new Column(Long.BYTES);
+  }
+
+  private MappedByteBuffer allocateSegment() {
+    if (channel == null) {
+      throw new IllegalStateException("closed");
+    }
+    try {
+      // Mapping past the end of the file grows it.
+      final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, nextSegmentOffset, segmentBytes);
+      nextSegmentOffset += segmentBytes;
+      return segment;
+    }
+    catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Close the file and delete it.
+   * <p>
+   * The mapped segments are released when they are garbage collected; on platforms that do not allow
+   * deleting a mapped file the file is deleted when the IDE exits instead.
+   */
+  @Override
+  public void close() {
+    if (channel == null) {
+      return;
+    }
+    try {
+      randomAccessFile.close();
+    }
+    catch (IOException ignored) {
+    }
+    channel = null;
+    randomAccessFile = null;
+    if (!file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+
+  /**
+   * A column of 32 or 64 bit values.
+   */
+  class Column {
+    private final int width;
+    private final int valuesPerSegment;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private int size;
+
+    private Column(int width) {
+      this.width = width;
+      this.valuesPerSegment = segmentBytes / width;
+    }
+
+    int size() {
+      return size;
+    }
+
+    /**
+     * Append a value, returning its index. Values are truncated to the width of the column.
+     */
+    int add(long value) {
+      if (size == segments.size() * valuesPerSegment) {
+        segments.add(allocateSegment());
+      }
+      final int index = size++;
+      set(index, value);
+      return index;
+    }
+
+    void set(int index, long value) {
+      final MappedByteBuffer segment = segments.get(index / valuesPerSegment);
+      final int offset = (index % valuesPerSegment) * width;
+      if (width == Integer.BYTES) {
+        segment.putInt(offset, (int)value);
+      }
+      else {
+        segment.putLong(offset, value);
+      }
+    }
+
+    long get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException(index + " of " + size);
+      }
+      final MappedByteBuffer segment = segments.get(index / valuesPerSegment);
+      final int offset = (index % valuesPerSegment) * width;
+      return width == Integer.BYTES ? segment.getInt(offset) : segment.getLong(offset);
+    }
+
+    int getInt(int index) {
+      return (int)get(index);
+    }
+  }
+}
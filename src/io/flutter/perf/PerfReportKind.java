@@ -6,11 +6,13 @@
 package io.flutter.perf;
 
 /**
- * Kinds of performance reports supported by package:flutter.
+ * Kinds of performance reports supported by package:flutter, and the CPU samples of each function
+ * from the VM's profiler.
  */
 public enum PerfReportKind {
   repaint("repaint"),
-  rebuild("rebuild");
+  rebuild("rebuild"),
+  cpu("cpu");
 
   public final String name;
 
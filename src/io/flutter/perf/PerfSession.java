@@ -0,0 +1,362 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import gnu.trove.TIntIntHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The frame timings, widget rebuild counts and heap samples of one run of an app, stored in a
+ * {@link MappedColumnFile} so that a long session does not grow the Java heap.
+ * <p>
+ * Besides the raw samples, the session keeps rollups at each {@link Resolution}. A rollup has one
+ * bucket per interval of session time, including intervals where nothing was recorded, so that a
+ * view can read just the buckets it displays.
+ * <p>
+ * Times are milliseconds since the start of the session. Samples are expected in time order; a
+ * sample that arrives out of order is recorded at the time of the latest sample.
+ */
+public class PerfSession implements Closeable {
+  public enum Resolution {
+    SECOND(1000, "1s"),
+    TEN_SECONDS(10 * 1000, "10s"),
+    MINUTE(60 * 1000, "1min");
+
+    public final int millis;
+    private final String label;
+
+    Resolution(int millis, String label) {
+      this.millis = millis;
+      this.label = label;
+    }
+
+    @Override
+    public String toString() {
+      return label;
+    }
+  }
+
+  /**
+   * A reusable, caller owned copy of a range of rollup buckets.
+   */
+  public static class Buckets {
+    int start;
+    int size;
+    int[] frameCount = new int[0];
+    int[] slowFrameCount = new int[0];
+    long[] frameMicrosSum = new long[0];
+    int[] frameMicrosMax = new int[0];
+    long[] rebuildCount = new long[0];
+    long[] heapUsedMax = new long[0];
+    long[] heapCapacityMax = new long[0];
+
+    void ensureCapacity(int capacity) {
+      if (frameCount.length < capacity) {
+        frameCount = new int[capacity];
+        slowFrameCount = new int[capacity];
+        frameMicrosSum = new long[capacity];
+        frameMicrosMax = new int[capacity];
+        rebuildCount = new long[capacity];
+        heapUsedMax = new long[capacity];
+        heapCapacityMax = new long[capacity];
+      }
+    }
+
+    /**
+     * Return the index of the first bucket copied.
+     */
+    public int getStart() {
+      return start;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public int getFrameCount(int index) {
+      return frameCount[index];
+    }
+
+    public int getSlowFrameCount(int index) {
+      return slowFrameCount[index];
+    }
+
+    public long getAverageFrameMicros(int index) {
+      return frameCount[index] == 0 ? 0 : frameMicrosSum[index] / frameCount[index];
+    }
+
+    public int getMaxFrameMicros(int index) {
+      return frameMicrosMax[index];
+    }
+
+    public long getRebuildCount(int index) {
+      return rebuildCount[index];
+    }
+
+    /**
+     * Return the largest heap usage sampled in the bucket, or 0 if the heap was not sampled.
+     */
+    public long getHeapUsedMax(int index) {
+      return heapUsedMax[index];
+    }
+
+    public long getHeapCapacityMax(int index) {
+      return heapCapacityMax[index];
+    }
+  }
+
+  private final MappedColumnFile file;
+
+  private final MappedColumnFile.Column frameTimes;
+  private final MappedColumnFile.Column frameMicros;
+
+  private final MappedColumnFile.Column rebuildTimes;
+  private final MappedColumnFile.Column rebuildLocationIds;
+  private final MappedColumnFile.Column rebuildCounts;
+
+  private final MappedColumnFile.Column heapTimes;
+  private final MappedColumnFile.Column heapUsed;
+  private final MappedColumnFile.Column heapCapacity;
+  private final MappedColumnFile.Column heapExternal;
+
+  private final Rollup[] rollups;
+
+  private int lastTimeMillis;
+  private boolean closed;
+
+  public PerfSession(@NotNull File file) throws IOException {
+    this(new MappedColumnFile(file, 64 * 1024));
+  }
+
+  PerfSession(@NotNull MappedColumnFile file) {
+    this.file = file;
+    frameTimes = file.newIntColumn();
+    frameMicros = file.newIntColumn();
+    rebuildTimes = file.newIntColumn();
+    rebuildLocationIds = file.newIntColumn();
+    rebuildCounts = file.newIntColumn();
+    heapTimes = file.newIntColumn();
+    heapUsed = file.newLongColumn();
+    heapCapacity = file.newLongColumn();
+    heapExternal = file.newLongColumn();
+
+    final Resolution[] resolutions = Resolution.values();
+    rollups = new Rollup[resolutions.length];
+    for (Resolution resolution : resolutions) {
+      rollups[resolution.ordinal()] = new Rollup(resolution);
+    }
+  }
+
+  public synchronized void recordFrame(long timeMillis, long elapsedMicros, boolean slowFrame) {
+    if (closed) {
+      return;
+    }
+    final int time = advanceTo(timeMillis);
+    final int micros = (int)Math.min(Integer.MAX_VALUE, elapsedMicros);
+    frameTimes.add(time);
+    frameMicros.add(micros);
+    for (Rollup rollup : rollups) {
+      rollup.addFrame(micros, slowFrame);
+    }
+  }
+
+  public synchronized void recordRebuild(long timeMillis, int locationId, int count) {
+    if (closed) {
+      return;
+    }
+    final int time = advanceTo(timeMillis);
+    rebuildTimes.add(time);
+    rebuildLocationIds.add(locationId);
+    rebuildCounts.add(count);
+    for (Rollup rollup : rollups) {
+      rollup.addRebuilds(count);
+    }
+  }
+
+  public synchronized void recordHeapSample(long timeMillis, long used, long capacity, long external) {
+    if (closed) {
+      return;
+    }
+    final int time = advanceTo(timeMillis);
+    heapTimes.add(time);
+    heapUsed.add(used);
+    heapCapacity.add(capacity);
+    heapExternal.add(external);
+    for (Rollup rollup : rollups) {
+      rollup.addHeapSample(used, capacity);
+    }
+  }
+
+  /**
+   * Move the session clock forward to the given time, adding empty rollup buckets as needed.
+   */
+  private int advanceTo(long timeMillis) {
+    final int time = (int)Math.min(Integer.MAX_VALUE, Math.max(lastTimeMillis, timeMillis));
+    lastTimeMillis = time;
+    for (Rollup rollup : rollups) {
+      rollup.ensureBucket(time / rollup.resolution.millis);
+    }
+    return time;
+  }
+
+  /**
+   * Return the time of the latest sample, in milliseconds since the start of the session.
+   */
+  public synchronized int getDurationMillis() {
+    return lastTimeMillis;
+  }
+
+  public synchronized int getFrameCount() {
+    return frameTimes.size();
+  }
+
+  public synchronized int getHeapSampleCount() {
+    return heapTimes.size();
+  }
+
+  public synchronized int getBucketCount(@NotNull Resolution resolution) {
+    return rollups[resolution.ordinal()].frameCount.size();
+  }
+
+  /**
+   * Copy the buckets in {@code [from, to)} at the given resolution. The range is clipped to the
+   * buckets recorded so far.
+   */
+  public synchronized void readBuckets(@NotNull Resolution resolution, int from, int to, @NotNull Buckets into) {
+    final Rollup rollup = rollups[resolution.ordinal()];
+    from = Math.max(0, from);
+    to = Math.min(to, rollup.frameCount.size());
+    final int count = Math.max(0, to - from);
+    into.ensureCapacity(count);
+    for (int i = 0; i < count; i++) {
+      final int bucket = from + i;
+      into.frameCount[i] = rollup.frameCount.getInt(bucket);
+      into.slowFrameCount[i] = rollup.slowFrameCount.getInt(bucket);
+      into.frameMicrosSum[i] = rollup.frameMicrosSum.get(bucket);
+      into.frameMicrosMax[i] = rollup.frameMicrosMax.getInt(bucket);
+      into.rebuildCount[i] = rollup.rebuildCount.get(bucket);
+      into.heapUsedMax[i] = rollup.heapUsedMax.get(bucket);
+      into.heapCapacityMax[i] = rollup.heapCapacityMax.get(bucket);
+    }
+    into.start = from;
+    into.size = count;
+  }
+
+  /**
+   * Add the number of rebuilds of each location id in the buckets {@code [from, to)} at the given
+   * resolution to the given map. Only the rebuild samples within the range are read.
+   */
+  public synchronized void readRebuildCounts(@NotNull Resolution resolution, int from, int to, @NotNull TIntIntHashMap into) {
+    final Rollup rollup = rollups[resolution.ordinal()];
+    final int buckets = rollup.frameCount.size();
+    from = Math.max(0, from);
+    to = Math.min(to, buckets);
+    if (from >= to) {
+      return;
+    }
+    final int firstRow = rollup.firstRebuildRow.getInt(from);
+    final int endRow = to == buckets ? rebuildTimes.size() : rollup.firstRebuildRow.getInt(to);
+    for (int row = firstRow; row < endRow; row++) {
+      final int count = rebuildCounts.getInt(row);
+      final int locationId = rebuildLocationIds.getInt(row);
+      if (!into.adjustValue(locationId, count)) {
+        into.put(locationId, count);
+      }
+    }
+  }
+
+  /**
+   * Return the number of bytes of the session file in use.
+   */
+  public synchronized long getMappedBytes() {
+    return file.getMappedBytes();
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    file.close();
+  }
+
+  /**
+   * The buckets of one resolution, stored as columns of the session file.
+   */
+  private class Rollup {
+    final Resolution resolution;
+    final MappedColumnFile.Column frameCount;
+    final MappedColumnFile.Column slowFrameCount;
+    final MappedColumnFile.Column frameMicrosSum;
+    final MappedColumnFile.Column frameMicrosMax;
+    final MappedColumnFile.Column rebuildCount;
+    final MappedColumnFile.Column heapUsedMax;
+    final MappedColumnFile.Column heapCapacityMax;
+
+    /**
+     * The index of the first rebuild sample of each bucket.
+     */
+    final MappedColumnFile.Column firstRebuildRow;
+
+    Rollup(@NotNull Resolution resolution) {
+      this.resolution = resolution;
+      frameCount = file.newIntColumn();
+      slowFrameCount = file.newIntColumn();
+      frameMicrosSum = file.newLongColumn();
+      frameMicrosMax = file.newIntColumn();
+      rebuildCount = file.newLongColumn();
+      heapUsedMax = file.newLongColumn();
+      heapCapacityMax = file.newLongColumn();
+      firstRebuildRow = file.newIntColumn();
+    }
+
+    void ensureBucket(int bucket) {
+      while (frameCount.size() <= bucket) {
+        frameCount.add(0);
+        slowFrameCount.add(0);
+        frameMicrosSum.add(0);
+        frameMicrosMax.add(0);
+        rebuildCount.add(0);
+        heapUsedMax.add(0);
+        heapCapacityMax.add(0);
+        firstRebuildRow.add(rebuildTimes.size());
+      }
+    }
+
+    private int current() {
+      return frameCount.size() - 1;
+    }
+
+    void addFrame(int micros, boolean slowFrame) {
+      final int bucket = current();
+      frameCount.set(bucket, frameCount.get(bucket) + 1);
+      if (slowFrame) {
+        slowFrameCount.set(bucket, slowFrameCount.get(bucket) + 1);
+      }
+      frameMicrosSum.set(bucket, frameMicrosSum.get(bucket) + micros);
+      if (micros > frameMicrosMax.get(bucket)) {
+        frameMicrosMax.set(bucket, micros);
+      }
+    }
+
+    void addRebuilds(int count) {
+      final int bucket = current();
+      rebuildCount.set(bucket, rebuildCount.get(bucket) + count);
+    }
+
+    void addHeapSample(long used, long capacity) {
+      final int bucket = current();
+      if (used > heapUsedMax.get(bucket)) {
+        heapUsedMax.set(bucket, used);
+      }
+      if (capacity > heapCapacityMax.get(bucket)) {
+        heapCapacityMax.set(bucket, capacity);
+      }
+    }
+  }
+}
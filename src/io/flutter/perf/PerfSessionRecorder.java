@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import io.flutter.run.daemon.FlutterApp;
+import io.flutter.utils.VmServiceListenerAdapter;
+import io.flutter.vmService.FlutterFramesMonitor;
+import io.flutter.vmService.HeapMonitor;
+import io.flutter.vmService.VMServiceManager;
+import org.dartlang.vm.service.VmService;
+import org.dartlang.vm.service.VmServiceListener;
+import org.dartlang.vm.service.element.Event;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Records the frames, widget rebuilds and heap samples of a running app into a {@link PerfSession}.
+ * <p>
+ * Recording does not start heap polling. Heap samples are only recorded while the heap is being
+ * sampled for something else, such as the memory panel of the performance view.
+ */
+public class PerfSessionRecorder implements Disposable {
+  private static final Logger LOG = Logger.getInstance(PerfSessionRecorder.class);
+
+  @NotNull private final PerfSession session;
+  @NotNull private final VmService vmService;
+  @NotNull private final VMServiceManager vmServiceManager;
+  private final long startTimeMillis = System.currentTimeMillis();
+
+  private final FlutterFramesMonitor.Listener framesListener;
+  private final HeapMonitor.HeapListener heapListener;
+  private final VmServiceListener vmServiceListener;
+
+  /**
+   * Start recording the given app, until the parent disposable is disposed.
+   * <p>
+   * Returns null if the app is not connected or the session file could not be created.
+   */
+  @Nullable
+  public static PerfSessionRecorder start(@NotNull FlutterApp app, @NotNull Disposable parentDisposable) {
+    final VmService vmService = app.getVmService();
+    final VMServiceManager vmServiceManager = app.getVMServiceManager();
+    if (vmService == null || vmServiceManager == null) {
+      return null;
+    }
+
+    final PerfSession session;
+    try {
+      final File file = FileUtil.createTempFile("flutter_perf_session", ".bin", true);
+      session = new PerfSession(file);
+    }
+    catch (IOException e) {
+      LOG.warn("Unable to create the performance session file", e);
+      return null;
+    }
+
+    final PerfSessionRecorder recorder = new PerfSessionRecorder(session, vmService, vmServiceManager);
+    Disposer.register(parentDisposable, recorder);
+    return recorder;
+  }
+
+  private PerfSessionRecorder(@NotNull PerfSession session, @NotNull VmService vmService, @NotNull VMServiceManager vmServiceManager) {
+    this.session = session;
+    this.vmService = vmService;
+    this.vmServiceManager = vmServiceManager;
+
+    framesListener = event -> session.recordFrame(now(), event.elapsedMicros, event.isSlowFrame());
+    vmServiceManager.getFlutterFramesMonitor().addListener(framesListener);
+
+    heapListener = this::onHeapSample;
+    vmServiceManager.addPassiveHeapListener(heapListener);
+
+    vmServiceListener = new VmServiceListenerAdapter() {
+      @Override
+      public void received(String streamId, Event event) {
+        if (StringUtil.equals(streamId, VmService.EXTENSION_STREAM_ID) &&
+            StringUtil.equals("Flutter.RebuiltWidgets", event.getExtensionKind())) {
+          onRebuiltWidgets(event.getExtensionData().getJson());
+        }
+      }
+    };
+    vmService.addVmServiceListener(vmServiceListener);
+  }
+
+  @NotNull
+  public PerfSession getSession() {
+    return session;
+  }
+
+  private long now() {
+    return System.currentTimeMillis() - startTimeMillis;
+  }
+
+  private void onRebuiltWidgets(@NotNull JsonObject json) {
+    final JsonArray events = json.getAsJsonArray("events");
+    if (events == null) {
+      return;
+    }
+    final long time = now();
+    // The events are pairs of location id and rebuild count.
+    for (int i = 0; i + 1 < events.size(); i += 2) {
+      session.recordRebuild(time, events.get(i).getAsInt(), events.get(i + 1).getAsInt());
+    }
+  }
+
+  private void onHeapSample(@NotNull HeapMonitor.HeapSample sample) {
+    session.recordHeapSample(now(), sample.getBytes(), sample.getCapacity(), sample.getExternal());
+  }
+
+  @Override
+  public void dispose() {
+    vmServiceManager.getFlutterFramesMonitor().removeListener(framesListener);
+    vmServiceManager.removePassiveHeapListener(heapListener);
+    vmService.removeVmServiceListener(vmServiceListener);
+    session.close();
+  }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import gnu.trove.TIntObjectHashMap;
+import gnu.trove.TLongHashSet;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An append-only store of timeline duration events, in the Chrome trace format returned by
+ * {@code getVMTimeline}, that answers which events of a thread overlap a range of time.
+ * <p>
+ * Events are rows of parallel primitive arrays, with their names and categories interned. Each
+ * thread has an index of its events sorted by start time, along with the latest end time of the
+ * events up to each position. As the latest end never decreases, the first event that can overlap
+ * a range is found with a binary search, and a query costs O(log n) plus the events it scans.
+ * <p>
+ * {@code getVMTimeline} returns its events in no particular order. New events are appended to the
+ * end of the index of their thread, and merged into its sorted part on the next query.
+ * <p>
+ * Responses for overlapping ranges of time may contain the same events; events already in the
+ * current or previous batch are skipped (see {@link #startBatch()}).
+ */
+public class TimelineEventStore {
+  private static final int INITIAL_CAPACITY = 4096;
+
+  private final TObjectIntHashMap<String> stringIds = new TObjectIntHashMap<>();
+  private final List<String> strings = new ArrayList<>();
+
+  private final TIntObjectHashMap<String> threadNames = new TIntObjectHashMap<>();
+  private final TIntObjectHashMap<ThreadIndex> threads = new TIntObjectHashMap<>();
+
+  /**
+   * The begin events of each thread that have not yet ended, innermost last.
+   */
+  private final TIntObjectHashMap<OpenEvents> openEvents = new TIntObjectHashMap<>();
+
+  private TLongHashSet batchFingerprints = new TLongHashSet();
+  private TLongHashSet previousFingerprints = new TLongHashSet();
+
+  private int size;
+  private long[] starts = new long[INITIAL_CAPACITY];
+  private long[] ends = new long[INITIAL_CAPACITY];
+  private int[] threadIds = new int[INITIAL_CAPACITY];
+  private int[] names = new int[INITIAL_CAPACITY];
+  private int[] categories = new int[INITIAL_CAPACITY];
+
+  /**
+   * Starts a new batch of events. An event is skipped if it was added in this batch or the previous
+   * one, so successive requests may overlap by up to one request.
+   */
+  public void startBatch() {
+    final TLongHashSet recycled = previousFingerprints;
+    previousFingerprints = batchFingerprints;
+    recycled.clear();
+    batchFingerprints = recycled;
+  }
+
+  /**
+   * Adds the events of a {@code traceEvents} array.
+   * <p>
+   * Complete ({@code X}) events, matched begin and end ({@code B}/{@code E}) events, and instant
+   * events are stored; thread names are taken from {@code thread_name} metadata events. Other
+   * events, such as async and flow events, are ignored.
+   *
+   * @return the number of events stored
+   */
+  public int addTraceEvents(@NotNull JsonArray traceEvents) {
+    final int before = size;
+    for (JsonElement element : traceEvents) {
+      if (element.isJsonObject()) {
+        addTraceEvent(element.getAsJsonObject());
+      }
+    }
+    return size - before;
+  }
+
+  private void addTraceEvent(@NotNull JsonObject event) {
+    final String phase = getString(event, "ph");
+    final String name = getString(event, "name");
+    if (phase == null || (name == null && !phase.equals("E"))) {
+      return;
+    }
+    final int thread = getInt(event, "tid");
+    if (phase.equals("M")) {
+      final JsonElement args = event.get("args");
+      if (name.equals("thread_name") && args != null && args.isJsonObject()) {
+        final String threadName = getString(args.getAsJsonObject(), "name");
+        if (threadName != null) {
+          threadNames.put(thread, threadName);
+        }
+      }
+      return;
+    }
+
+    final long start = getLong(event, "ts");
+    final String category = getString(event, "cat");
+    switch (phase) {
+      case "X":
+        if (isNew(phase, thread, start, name)) {
+          add(thread, start, start + getLong(event, "dur"), name, category);
+        }
+        break;
+      case "i":
+      case "I":
+        if (isNew(phase, thread, start, name)) {
+          add(thread, start, start, name, category);
+        }
+        break;
+      case "B":
+        if (isNew(phase, thread, start, name)) {
+          OpenEvents open = openEvents.get(thread);
+          if (open == null) {
+            open = new OpenEvents();
+            openEvents.put(thread, open);
+          }
+          open.push(start, intern(name), intern(category));
+        }
+        break;
+      case "E":
+        // End events do not always repeat the name of the begin event.
+        if (isNew(phase, thread, start, name == null ? "" : name)) {
+          final OpenEvents open = openEvents.get(thread);
+          if (open != null && open.size > 0) {
+            open.size--;
+            add(thread, open.starts[open.size], start, open.names[open.size], open.categories[open.size]);
+          }
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private boolean isNew(@NotNull String phase, int thread, long start, @NotNull String name) {
+    long fingerprint = start * 31 + thread;
+    fingerprint = fingerprint * 31 + phase.hashCode();
+    fingerprint = fingerprint * 31 + name.hashCode();
+    if (previousFingerprints.contains(fingerprint)) {
+      return false;
+    }
+    return batchFingerprints.add(fingerprint);
+  }
+
+  private void add(int thread, long start, long end, @NotNull String name, @Nullable String category) {
+    add(thread, start, end, intern(name), intern(category));
+  }
+
+  private void add(int thread, long start, long end, int name, int category) {
+    if (size == starts.length) {
+      final int capacity = size * 2;
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      threadIds = Arrays.copyOf(threadIds, capacity);
+      names = Arrays.copyOf(names, capacity);
+      categories = Arrays.copyOf(categories, capacity);
+    }
+    final int event = size++;
+    starts[event] = start;
+    ends[event] = Math.max(start, end);
+    threadIds[event] = thread;
+    names[event] = name;
+    categories[event] = category;
+
+    ThreadIndex index = threads.get(thread);
+    if (index == null) {
+      index = new ThreadIndex();
+      threads.put(thread, index);
+    }
+    index.add(event);
+  }
+
+  private int intern(@Nullable String value) {
+    if (value == null) {
+      return -1;
+    }
+    final int id = stringIds.get(value) - 1;
+    if (id >= 0) {
+      return id;
+    }
+    strings.add(value);
+    stringIds.put(value, strings.size());
+    return strings.size() - 1;
+  }
+
+  /**
+   * Returns the events of the thread that overlap the range from start to end inclusive, ordered by
+   * their start time.
+   */
+  @NotNull
+  public int[] findOverlapping(int thread, long start, long end) {
+    final ThreadIndex index = threads.get(thread);
+    if (index == null) {
+      return new int[0];
+    }
+    return index.findOverlapping(start, end);
+  }
+
+  /**
+   * The ids of the threads whose names end with the suffix, such as {@code ".ui"} for the Flutter
+   * UI thread.
+   */
+  @NotNull
+  public int[] findThreads(@NotNull String nameSuffix) {
+    final int[] ids = threadNames.keys();
+    int count = 0;
+    for (int id : ids) {
+      if (threadNames.get(id).endsWith(nameSuffix)) {
+        ids[count++] = id;
+      }
+    }
+    final int[] found = Arrays.copyOf(ids, count);
+    Arrays.sort(found);
+    return found;
+  }
+
+  @Nullable
+  public String getThreadName(int thread) {
+    return threadNames.get(thread);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long getStartMicros(int event) {
+    return starts[event];
+  }
+
+  public long getEndMicros(int event) {
+    return ends[event];
+  }
+
+  public int getThread(int event) {
+    return threadIds[event];
+  }
+
+  @NotNull
+  public String getName(int event) {
+    return strings.get(names[event]);
+  }
+
+  @Nullable
+  public String getCategory(int event) {
+    return categories[event] < 0 ? null : strings.get(categories[event]);
+  }
+
+  @Nullable
+  private static String getString(@NotNull JsonObject json, @NotNull String name) {
+    final JsonElement element = json.get(name);
+    return element == null || !element.isJsonPrimitive() ? null : element.getAsString();
+  }
+
+  private static int getInt(@NotNull JsonObject json, @NotNull String name) {
+    final JsonElement element = json.get(name);
+    return element == null || !element.isJsonPrimitive() ? 0 : element.getAsInt();
+  }
+
+  private static long getLong(@NotNull JsonObject json, @NotNull String name) {
+    final JsonElement element = json.get(name);
+    return element == null || !element.isJsonPrimitive() ? 0 : element.getAsLong();
+  }
+
+  private static class OpenEvents {
+    int size;
+    long[] starts = new long[8];
+    int[] names = new int[8];
+    int[] categories = new int[8];
+
+    void push(long start, int name, int category) {
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, size * 2);
+        names = Arrays.copyOf(names, size * 2);
+        categories = Arrays.copyOf(categories, size * 2);
+      }
+      starts[size] = start;
+      names[size] = name;
+      categories[size] = category;
+      size++;
+    }
+  }
+
+  /**
+   * The events of one thread; the first {@code sortedSize} are sorted by start time, and the rest
+   * are in the order they were added.
+   */
+  private class ThreadIndex {
+    int size;
+    int sortedSize;
+    int[] events = new int[256];
+
+    /**
+     * The latest end time of the sorted events up to each position.
+     */
+    long[] maxEnds = new long[256];
+
+    void add(int event) {
+      if (size == events.length) {
+        events = Arrays.copyOf(events, size * 2);
+        maxEnds = Arrays.copyOf(maxEnds, size * 2);
+      }
+      events[size++] = event;
+    }
+
+    @NotNull
+    int[] findOverlapping(long start, long end) {
+      sort();
+      // The first position whose latest end reaches the range.
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (maxEnds[mid] < start) {
+          low = mid + 1;
+        }
+        else {
+          high = mid;
+        }
+      }
+      int[] found = new int[16];
+      int count = 0;
+      for (int i = low; i < size; i++) {
+        final int event = events[i];
+        if (starts[event] > end) {
+          break;
+        }
+        if (ends[event] >= start) {
+          if (count == found.length) {
+            found = Arrays.copyOf(found, count * 2);
+          }
+          found[count++] = event;
+        }
+      }
+      return Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Sorts the unsorted events and merges them into the sorted ones.
+     */
+    private void sort() {
+      if (sortedSize == size) {
+        return;
+      }
+      final int[] added = sortByStart(Arrays.copyOfRange(events, sortedSize, size));
+      final int[] sorted = Arrays.copyOf(events, sortedSize);
+      int i = 0;
+      int j = 0;
+      int firstAdded = -1;
+      for (int k = 0; k < size; k++) {
+        if (j == added.length || (i < sorted.length && starts[sorted[i]] <= starts[added[j]])) {
+          events[k] = sorted[i++];
+        }
+        else {
+          if (firstAdded < 0) {
+            firstAdded = k;
+          }
+          events[k] = added[j++];
+        }
+      }
+      // Only the latest ends from the first added event on can change.
+      long maxEnd = firstAdded == 0 ? Long.MIN_VALUE : maxEnds[firstAdded - 1];
+      for (int k = firstAdded; k < size; k++) {
+        maxEnd = Math.max(maxEnd, ends[events[k]]);
+        maxEnds[k] = maxEnd;
+      }
+      sortedSize = size;
+    }
+  }
+
+  /**
+   * Sorts events by start time, then by the order they were added.
+   */
+  @NotNull
+  private int[] sortByStart(@NotNull int[] events) {
+    // Sort the events by their start time relative to the earliest, packed with their position.
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int event : events) {
+      min = Math.min(min, starts[event]);
+      max = Math.max(max, starts[event]);
+    }
+    if (events.length >= 1 << 24 || max - min >= 1L << 39) {
+      // Spans of more than six days; not worth packing.
+      final Integer[] boxed = new Integer[events.length];
+      for (int i = 0; i < events.length; i++) {
+        boxed[i] = events[i];
+      }
+      Arrays.sort(boxed, (a, b) -> Long.compare(starts[a], starts[b]));
+      for (int i = 0; i < events.length; i++) {
+        events[i] = boxed[i];
+      }
+      return events;
+    }
+    final long[] keys = new long[events.length];
+    for (int i = 0; i < events.length; i++) {
+      keys[i] = (starts[events[i]] - min) << 24 | i;
+    }
+    Arrays.sort(keys);
+    final int[] sorted = new int[events.length];
+    for (int i = 0; i < events.length; i++) {
+      sorted[i] = events[(int)(keys[i] & 0xFFFFFF)];
+    }
+    return sorted;
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.google.gson.JsonArray;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.dartlang.vm.service.VmService;
+import org.dartlang.vm.service.consumer.SuccessConsumer;
+import org.dartlang.vm.service.consumer.TimelineConsumer;
+import org.dartlang.vm.service.consumer.TimelineFlagsConsumer;
+import org.dartlang.vm.service.consumer.TimestampConsumer;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Success;
+import org.dartlang.vm.service.element.Timeline;
+import org.dartlang.vm.service.element.TimelineFlags;
+import org.dartlang.vm.service.element.Timestamp;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the VM timeline into a {@link TimelineEventStore} until disposed, so that the work done
+ * on the UI and raster threads for a frame can be shown.
+ * <p>
+ * The Dart and Embedder timeline streams are enabled while recording, and the streams that were
+ * recorded before are restored afterwards. Each request covers the time since the previous one,
+ * plus one poll period before it, as the VM only returns events that lie entirely within the
+ * requested range; the store skips the events it has already seen.
+ */
+public class TimelineRecorder implements Disposable {
+  private static final Logger LOG = Logger.getInstance(TimelineRecorder.class);
+
+  private static final List<String> RECORDED_STREAMS = Arrays.asList("Dart", "Embedder", "GC");
+
+  private static final int POLL_PERIOD_MS = 1000;
+  private static final int REQUEST_TIMEOUT_MS = 10000;
+
+  /**
+   * The number of events kept before the store is started over.
+   */
+  private static final int MAX_EVENTS = 500000;
+
+  @NotNull private final VmService vmService;
+  @NotNull private final ScheduledFuture<?> scheduler;
+  private final Executor batchExecutor = AppExecutorUtil.createBoundedApplicationPoolExecutor("Flutter timeline", 1);
+
+  @NotNull private TimelineEventStore store = new TimelineEventStore();
+
+  /**
+   * The streams recorded before this recorder enabled its own, or null if they are not known.
+   */
+  @Nullable private List<String> previousStreams;
+
+  /**
+   * The end of the range of the previous request, or -1 before the first.
+   */
+  private long nextOrigin = -1;
+
+  private boolean requestInFlight;
+  private boolean disposed;
+
+  public TimelineRecorder(@NotNull VmService vmService) {
+    this.vmService = vmService;
+
+    vmService.getVMTimelineFlags(new TimelineFlagsConsumer() {
+      @Override
+      public void received(TimelineFlags response) {
+        final List<String> recordedStreams = response.getRecordedStreams();
+        final Set<String> streams = new LinkedHashSet<>(recordedStreams);
+        streams.addAll(RECORDED_STREAMS);
+        synchronized (TimelineRecorder.this) {
+          if (disposed) {
+            return;
+          }
+          previousStreams = new ArrayList<>(recordedStreams);
+        }
+        if (streams.size() > recordedStreams.size()) {
+          vmService.setVMTimelineFlags(new ArrayList<>(streams), ignoringResponse());
+        }
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        LOG.info("Unable to read the VM timeline flags: " + error.getMessage());
+      }
+    });
+
+    scheduler = AppExecutorUtil.getAppScheduledExecutorService()
+      .scheduleWithFixedDelay(this::requestEvents, POLL_PERIOD_MS, POLL_PERIOD_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the breakdown of the work done on the UI and raster threads during the given frame.
+   */
+  @NotNull
+  public FrameTimelineBreakdown getFrameBreakdown(long startMicros, long elapsedMicros, int maxDepth) {
+    final TimelineEventStore store = getStore();
+    synchronized (store) {
+      return FrameTimelineBreakdown.compute(store, startMicros, startMicros + elapsedMicros, maxDepth);
+    }
+  }
+
+  private synchronized TimelineEventStore getStore() {
+    return store;
+  }
+
+  private void requestEvents() {
+    synchronized (this) {
+      if (disposed || requestInFlight) {
+        return;
+      }
+      requestInFlight = true;
+    }
+
+    vmService.getVMTimelineMicros(new TimestampConsumer() {
+      @Override
+      public void received(Timestamp response) {
+        final long now = response.getTimestamp();
+        final long origin;
+        synchronized (TimelineRecorder.this) {
+          origin = (nextOrigin < 0 ? now : nextOrigin) - TimeUnit.MILLISECONDS.toMicros(POLL_PERIOD_MS);
+        }
+        requestEvents(Math.max(0, origin), now);
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        requestDone();
+      }
+    });
+  }
+
+  private void requestEvents(long origin, long end) {
+    vmService.getVMTimeline(origin, end - origin, REQUEST_TIMEOUT_MS, new TimelineConsumer() {
+      @Override
+      public void received(Timeline response) {
+        batchExecutor.execute(() -> {
+          try {
+            final JsonArray traceEvents = response.getJson().getAsJsonArray("traceEvents");
+            final TimelineEventStore store;
+            synchronized (TimelineRecorder.this) {
+              if (TimelineRecorder.this.store.size() > MAX_EVENTS) {
+                TimelineRecorder.this.store = new TimelineEventStore();
+              }
+              store = TimelineRecorder.this.store;
+              nextOrigin = end;
+            }
+            if (traceEvents != null) {
+              synchronized (store) {
+                store.startBatch();
+                store.addTraceEvents(traceEvents);
+              }
+            }
+          }
+          catch (RuntimeException e) {
+            LOG.warn("Unable to read the VM timeline", e);
+          }
+          finally {
+            requestDone();
+          }
+        });
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        requestDone();
+      }
+    });
+  }
+
+  private synchronized void requestDone() {
+    requestInFlight = false;
+  }
+
+  @NotNull
+  private static SuccessConsumer ignoringResponse() {
+    return new SuccessConsumer() {
+      @Override
+      public void received(Success response) {
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        LOG.info("Unable to set the VM timeline flags: " + error.getMessage());
+      }
+    };
+  }
+
+  @Override
+  public void dispose() {
+    final List<String> streams;
+    synchronized (this) {
+      disposed = true;
+      streams = previousStreams;
+    }
+    scheduler.cancel(false);
+    if (streams != null) {
+      vmService.setVMTimelineFlags(streams, ignoringResponse());
+    }
+  }
+}
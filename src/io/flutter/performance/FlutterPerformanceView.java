@@ -30,6 +30,7 @@ import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
 import icons.FlutterIcons;
 import io.flutter.devtools.DevToolsUtils;
+import io.flutter.perf.PerfSessionRecorder;
 import io.flutter.run.FlutterDevice;
 import io.flutter.run.FlutterLaunchMode;
 import io.flutter.run.daemon.DevToolsService;
@@ -232,17 +233,34 @@ public class FlutterPerformanceView implements Disposable {
     // If the inspector is available (non-release mode), then show it.
     if (debugConnectionAvailable) {
       state.disposable = Disposer.newDisposable();
+      // Disposed when the app's connection closes, or with the view if that comes first.
+      Disposer.register(this, state.disposable);
 
-      // Create the three FPS, memory, and widget recount areas.
-      final PerfFPSPanel fpsPanel = new PerfFPSPanel(app, this);
+      // Create the FPS, memory, class allocation, heap snapshot, CPU profile, and widget recount areas.
+      final PerfFPSPanel fpsPanel = new PerfFPSPanel(app, state.disposable);
       perfViewsPanel.add(fpsPanel);
 
       final PerfMemoryPanel memoryPanel = new PerfMemoryPanel(app, this);
       perfViewsPanel.add(memoryPanel);
 
+      final PerfAllocationPanel allocationPanel = new PerfAllocationPanel(app, state.disposable);
+      perfViewsPanel.add(allocationPanel);
+
+      final PerfHeapSnapshotPanel heapSnapshotPanel = new PerfHeapSnapshotPanel(app, state.disposable);
+      perfViewsPanel.add(heapSnapshotPanel);
+
+      final PerfCpuProfilePanel cpuProfilePanel = new PerfCpuProfilePanel(app, state.disposable);
+      perfViewsPanel.add(cpuProfilePanel);
+
       final PerfWidgetRebuildsPanel widgetRebuildsPanel = new PerfWidgetRebuildsPanel(app, this);
       perfViewsPanel.add(widgetRebuildsPanel);
 
+      // Record the whole session so that it can be scrubbed after the live views have moved on.
+      final PerfSessionRecorder recorder = PerfSessionRecorder.start(app, state.disposable);
+      if (recorder != null) {
+        perfViewsPanel.add(new PerfSessionPanel(recorder.getSession(), state.disposable));
+      }
+
       // If in profile mode, auto-open the performance tool window.
       if (isInProfileMode) {
         activateToolWindow();
@@ -6,12 +6,19 @@
 package io.flutter.performance;
 
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.ui.popup.JBPopupFactory;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.ui.JBColor;
+import com.intellij.ui.awt.RelativePoint;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBPanel;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
+import gnu.trove.TIntHashSet;
+import gnu.trove.TIntObjectHashMap;
+import io.flutter.perf.FrameTimelineBreakdown;
+import io.flutter.perf.TimelineRecorder;
 import io.flutter.run.daemon.FlutterApp;
 import io.flutter.vmService.DisplayRefreshRateManager;
 import io.flutter.vmService.FlutterFramesMonitor;
@@ -20,10 +27,13 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.geom.Path2D;
 import java.text.DecimalFormat;
 import java.util.List;
 import java.util.*;
+import java.util.function.Supplier;
 
 // TODO(devoncarew): We have a drawing artifacts issue - tall frame columns can be left behind
 // as artifacts when they scroll off the screen.
@@ -35,14 +45,23 @@ public class FrameRenderingDisplay {
     df.setMaximumFractionDigits(1);
   }
 
-  public static JPanel createJPanelView(@NotNull Disposable parentDisposable, @NotNull FlutterApp app) {
+  /**
+   * Creates the view of the frame rendering times of the app.
+   * <p>
+   * Clicking a frame breaks it down into its UI and raster work using the recorder returned by
+   * timelineRecorder, which returns null while the timeline is not being recorded.
+   */
+  public static JPanel createJPanelView(@NotNull Disposable parentDisposable,
+                                        @NotNull FlutterApp app,
+                                        @NotNull Supplier<TimelineRecorder> timelineRecorder) {
     final JPanel panel = new JPanel(new StackLayout());
     panel.setDoubleBuffered(true);
 
     assert app.getVMServiceManager() != null;
     final FlutterFramesMonitor flutterFramesMonitor = app.getVMServiceManager().getFlutterFramesMonitor();
 
-    final FrameRenderingPanel frameRenderingPanel = new FrameRenderingPanel(flutterFramesMonitor, app.getDisplayRefreshRateManager());
+    final FrameRenderingPanel frameRenderingPanel =
+      new FrameRenderingPanel(flutterFramesMonitor, app.getDisplayRefreshRateManager(), timelineRecorder);
 
     final JBLabel targetFrameTimeLabel = new JBLabel();
     targetFrameTimeLabel.setFont(UIUtil.getLabelFont(UIUtil.FontSize.SMALL));
@@ -105,13 +124,20 @@ class FrameRenderingPanel extends JPanel {
 
   private final DisplayRefreshRateManager displayRefreshRateManager;
 
-  private final Map<FlutterFramesMonitor.FlutterFrameEvent, JComponent> frameWidgets = new HashMap<>();
+  @NotNull private final Supplier<TimelineRecorder> timelineRecorder;
+
+  private final TIntObjectHashMap<JComponent> frameWidgets = new TIntObjectHashMap<>();
+
+  private final FlutterFramesMonitor.FrameHistory frameHistory = new FlutterFramesMonitor.FrameHistory();
 
   private Rectangle lastSavedBounds;
 
-  FrameRenderingPanel(@NotNull FlutterFramesMonitor framesMonitor, @NotNull DisplayRefreshRateManager displayRefreshRateManager) {
+  FrameRenderingPanel(@NotNull FlutterFramesMonitor framesMonitor,
+                      @NotNull DisplayRefreshRateManager displayRefreshRateManager,
+                      @NotNull Supplier<TimelineRecorder> timelineRecorder) {
     this.framesMonitor = framesMonitor;
     this.displayRefreshRateManager = displayRefreshRateManager;
+    this.timelineRecorder = timelineRecorder;
 
     setLayout(null);
     final Color color = UIUtil.getLabelDisabledForeground();
@@ -165,7 +191,7 @@ class FrameRenderingPanel extends JPanel {
   }
 
   void updateFromFramesMonitor() {
-    final Set<FlutterFramesMonitor.FlutterFrameEvent> frames = new HashSet<>(frameWidgets.keySet());
+    final TIntHashSet staleFrames = new TIntHashSet(frameWidgets.keys());
 
     final Rectangle bounds = getBounds();
     lastSavedBounds = bounds;
@@ -177,55 +203,109 @@ class FrameRenderingPanel extends JPanel {
 
     final int widgetWidth = Math.min(Math.max(Math.round(height / 8.0f), 2), 5);
 
-    synchronized (framesMonitor) {
-      for (FlutterFramesMonitor.FlutterFrameEvent frame : framesMonitor.frames) {
-        if (x + widgetWidth < 0) {
-          break;
-        }
-
-        x -= (widgetWidth + inc);
-
-        final float msPerPixel = (2.0f * 1000000.0f / 60.0f) / height;
-        JComponent widget = frameWidgets.get(frame);
-        if (widget != null) {
-          frames.remove(frame);
-        }
-        else {
-          widget = new JLabel();
-          widget.setOpaque(true);
-          widget.setBackground(frame.isSlowFrame() ? JBColor.RED : UIUtil.getLabelForeground());
-          widget.setToolTipText(frame.isSlowFrame()
-                                ? "This frame took " +
-                                  FrameRenderingDisplay.df.format(frame.elapsedMicros / 1000.0d) +
-                                  "ms to render, which\ncan cause frame rate to drop below " +
-                                  Math.round(displayRefreshRateManager.getCurrentDisplayRefreshRateRaw()) + " FPS."
-                                : "This frame took " + FrameRenderingDisplay.df.format(frame.elapsedMicros / 1000.0d) + "ms to render.");
-          frameWidgets.put(frame, widget);
-          add(widget);
-        }
-
-        int pixelHeight = Math.round(frame.elapsedMicros / msPerPixel);
-        if (pixelHeight > height) {
-          pixelHeight = height;
-        }
-        pixelHeight = Math.max(1, pixelHeight);
-        widget.setPreferredSize(new Dimension(widgetWidth, pixelHeight));
-        widget.setBounds(x, height - pixelHeight, widgetWidth, pixelHeight);
-
-        // Add a gap between sets of frames.
-        if (frame.frameSetStart) {
-          x -= widgetWidth;
-        }
+    framesMonitor.copyFrames(frameHistory);
+
+    for (int i = 0; i < frameHistory.size(); i++) {
+      if (x + widgetWidth < 0) {
+        break;
+      }
+
+      x -= (widgetWidth + inc);
+
+      final int frameId = frameHistory.getFrameId(i);
+      final long startTimeMicros = frameHistory.getStartTimeMicros(i);
+      final long elapsedMicros = frameHistory.getElapsedMicros(i);
+      final boolean slowFrame = frameHistory.isSlowFrame(i);
+
+      final float msPerPixel = (2.0f * 1000000.0f / 60.0f) / height;
+      JComponent widget = frameWidgets.get(frameId);
+      if (widget != null) {
+        staleFrames.remove(frameId);
+      }
+      else {
+        widget = new JLabel();
+        widget.setOpaque(true);
+        widget.setBackground(slowFrame ? JBColor.RED : UIUtil.getLabelForeground());
+        widget.setToolTipText(slowFrame
+                              ? "This frame took " +
+                                FrameRenderingDisplay.df.format(elapsedMicros / 1000.0d) +
+                                "ms to render, which\ncan cause frame rate to drop below " +
+                                Math.round(displayRefreshRateManager.getCurrentDisplayRefreshRateRaw()) + " FPS."
+                              : "This frame took " + FrameRenderingDisplay.df.format(elapsedMicros / 1000.0d) + "ms to render.");
+        widget.setToolTipText(widget.getToolTipText() + "\nClick to see the work done on the UI and raster threads.");
+        widget.addMouseListener(new MouseAdapter() {
+          @Override
+          public void mouseClicked(MouseEvent e) {
+            showFrameBreakdown(e, frameId, startTimeMicros, elapsedMicros);
+          }
+        });
+        frameWidgets.put(frameId, widget);
+        add(widget);
+      }
+
+      int pixelHeight = Math.round(elapsedMicros / msPerPixel);
+      if (pixelHeight > height) {
+        pixelHeight = height;
+      }
+      pixelHeight = Math.max(1, pixelHeight);
+      widget.setPreferredSize(new Dimension(widgetWidth, pixelHeight));
+      widget.setBounds(x, height - pixelHeight, widgetWidth, pixelHeight);
+
+      // Add a gap between sets of frames.
+      if (frameHistory.isFrameSetStart(i)) {
+        x -= widgetWidth;
       }
     }
 
-    if (!frames.isEmpty()) {
-      for (FlutterFramesMonitor.FlutterFrameEvent frame : frames) {
-        final JComponent widget = frameWidgets.remove(frame);
+    if (!staleFrames.isEmpty()) {
+      for (int frameId : staleFrames.toArray()) {
+        final JComponent widget = frameWidgets.remove(frameId);
         remove(widget);
       }
     }
   }
+
+  /**
+   * The deepest nesting of timeline events shown for a frame.
+   */
+  private static final int BREAKDOWN_DEPTH = 2;
+
+  private void showFrameBreakdown(@NotNull MouseEvent e, int frameId, long startTimeMicros, long elapsedMicros) {
+    final TimelineRecorder recorder = timelineRecorder.get();
+    final FrameTimelineBreakdown breakdown =
+      recorder == null ? null : recorder.getFrameBreakdown(startTimeMicros, elapsedMicros, BREAKDOWN_DEPTH);
+
+    final StringBuilder text = new StringBuilder("<html><b>Frame #").append(frameId).append("</b> ")
+      .append(FrameRenderingDisplay.df.format(elapsedMicros / 1000.0d)).append("ms");
+    if (breakdown == null) {
+      text.append("<br>Record the timeline to see the work done on the UI and raster threads.");
+    }
+    else if (breakdown.isEmpty()) {
+      text.append("<br>No timeline events were recorded for this frame.");
+    }
+    else {
+      appendEvents(text, "UI", breakdown.getUiEvents());
+      appendEvents(text, "Raster", breakdown.getRasterEvents());
+    }
+    text.append("</html>");
+
+    final JBLabel label = new JBLabel(text.toString());
+    label.setBorder(JBUI.Borders.empty(5));
+    JBPopupFactory.getInstance().createComponentPopupBuilder(label, null)
+      .setRequestFocus(false)
+      .createPopup()
+      .show(new RelativePoint(e));
+  }
+
+  private static void appendEvents(@NotNull StringBuilder text, @NotNull String thread, @NotNull List<FrameTimelineBreakdown.Entry> events) {
+    text.append("<br><br><b>").append(thread).append("</b> ")
+      .append(FrameRenderingDisplay.df.format(FrameTimelineBreakdown.getTopLevelMicros(events) / 1000.0d)).append("ms");
+    for (FrameTimelineBreakdown.Entry entry : events) {
+      text.append("<br>").append(StringUtil.repeat("&nbsp;&nbsp;", entry.depth + 1))
+        .append(StringUtil.escapeXmlEntities(entry.name)).append(" ")
+        .append(FrameRenderingDisplay.df.format(entry.durationMicros / 1000.0d)).append("ms");
+    }
+  }
 }
 
 class StackLayout implements LayoutManager2 {
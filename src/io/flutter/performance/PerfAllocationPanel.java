@@ -0,0 +1,234 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.performance;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBPanel;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+import io.flutter.perf.AllocationProfileSampler;
+import io.flutter.perf.ClassHeapHistogram;
+import io.flutter.run.daemon.FlutterApp;
+import org.dartlang.vm.service.VmService;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.util.Collections;
+
+/**
+ * A sortable table of the heap usage of each class of the Flutter isolate, and how fast it grows.
+ * <p>
+ * Rows are updated in place as allocation profiles arrive, so that the sort order and selection
+ * are kept.
+ */
+public class PerfAllocationPanel extends JBPanel<PerfAllocationPanel> {
+  private static final String ALLOCATIONS_TAB_LABEL = "Class allocations";
+
+  private static final int TOP_GROWING_COUNT = 3;
+
+  private final ClassHeapHistogram histogram = new ClassHeapHistogram();
+  private final ClassHistogramTableModel model = new ClassHistogramTableModel(histogram);
+  private final JBLabel summaryLabel;
+
+  PerfAllocationPanel(@NotNull FlutterApp app, @NotNull Disposable parentDisposable) {
+    setLayout(new BorderLayout(0, 3));
+    setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), ALLOCATIONS_TAB_LABEL));
+    setMinimumSize(new Dimension(0, PerfMemoryPanel.HEIGHT));
+    setPreferredSize(new Dimension(Short.MAX_VALUE, PerfMemoryPanel.HEIGHT * 2));
+
+    summaryLabel = new JBLabel(" ");
+    summaryLabel.setForeground(UIUtil.getLabelDisabledForeground());
+    summaryLabel.setBorder(JBUI.Borders.empty(0, 5));
+
+    final JButton resetButton = new JButton("Reset growth");
+    resetButton.addActionListener(e -> {
+      histogram.resetGrowth();
+      if (histogram.getRowCount() > 0) {
+        model.fireTableRowsUpdated(0, histogram.getRowCount() - 1);
+      }
+      updateSummary();
+    });
+
+    final JPanel header = new JPanel(new BorderLayout());
+    header.add(summaryLabel, BorderLayout.CENTER);
+    header.add(resetButton, BorderLayout.EAST);
+    add(header, BorderLayout.NORTH);
+
+    final JBTable table = new JBTable(model);
+    table.getTableHeader().setReorderingAllowed(false);
+    final TableRowSorter<ClassHistogramTableModel> sorter = new TableRowSorter<>(model);
+    sorter.setSortsOnUpdates(true);
+    sorter.setSortKeys(Collections.singletonList(new RowSorter.SortKey(ClassHistogramTableModel.GROWTH, SortOrder.DESCENDING)));
+    table.setRowSorter(sorter);
+    table.setDefaultRenderer(Long.class, new BytesRenderer());
+    table.getColumnModel().getColumn(ClassHistogramTableModel.INSTANCES).setCellRenderer(new DefaultTableCellRenderer() {
+      {
+        setHorizontalAlignment(SwingConstants.RIGHT);
+      }
+    });
+    table.setDefaultRenderer(Double.class, new BytesRenderer());
+    add(ScrollPaneFactory.createScrollPane(table), BorderLayout.CENTER);
+
+    final VmService vmService = app.getVmService();
+    if (vmService != null && app.getVMServiceManager() != null) {
+      final AllocationProfileSampler sampler = new AllocationProfileSampler(
+        vmService, app.getVMServiceManager(), (sample) -> SwingUtilities.invokeLater(() -> addSample(sample)));
+      Disposer.register(parentDisposable, sampler);
+    }
+  }
+
+  private void addSample(@NotNull ClassHeapHistogram.Sample sample) {
+    final String previousIsolateId = histogram.getIsolateId();
+    final int previousRowCount = histogram.getRowCount();
+    final int[] changedRows = histogram.addSample(sample);
+    if (previousIsolateId != null && !previousIsolateId.equals(sample.getIsolateId())) {
+      // The histogram started over.
+      model.rowsReplaced();
+    }
+    else {
+      model.rowsChanged(previousRowCount, changedRows);
+    }
+    updateSummary();
+  }
+
+  private void updateSummary() {
+    final int[] top = histogram.getTopGrowing(TOP_GROWING_COUNT);
+    if (top.length == 0) {
+      summaryLabel.setText("No classes have grown");
+      return;
+    }
+    final StringBuilder text = new StringBuilder("Top growing: ");
+    for (int i = 0; i < top.length; i++) {
+      if (i > 0) {
+        text.append(", ");
+      }
+      text.append(histogram.getClassName(top[i])).append(" +").append(StringUtil.formatFileSize(histogram.getGrowth(top[i])));
+    }
+    summaryLabel.setText(text.toString());
+  }
+
+  private static class BytesRenderer extends DefaultTableCellRenderer {
+    BytesRenderer() {
+      setHorizontalAlignment(SwingConstants.RIGHT);
+    }
+
+    @Override
+    protected void setValue(Object value) {
+      if (value instanceof Double) {
+        setText(formatSignedSize(Math.round((Double)value)) + "/s");
+      }
+      else if (value instanceof Long) {
+        setText(formatSignedSize((Long)value));
+      }
+      else {
+        super.setValue(value);
+      }
+    }
+
+    private static String formatSignedSize(long bytes) {
+      return bytes < 0 ? "-" + StringUtil.formatFileSize(-bytes) : StringUtil.formatFileSize(bytes);
+    }
+  }
+}
+
+/**
+ * The rows of a {@link ClassHeapHistogram}, which never move, so table events can name the rows that changed.
+ */
+class ClassHistogramTableModel extends AbstractTableModel {
+  static final int CLASS = 0;
+  static final int INSTANCES = 1;
+  static final int BYTES = 2;
+  static final int GROWTH = 3;
+  static final int RATE = 4;
+
+  private static final String[] COLUMN_NAMES = {"Class", "Instances", "Size", "Growth", "Rate"};
+
+  @NotNull private final ClassHeapHistogram histogram;
+  private int rowCount;
+
+  ClassHistogramTableModel(@NotNull ClassHeapHistogram histogram) {
+    this.histogram = histogram;
+  }
+
+  /**
+   * Notifies the table of the rows a sample added and changed, as a single event of each kind so
+   * that the table is only sorted once or twice per sample.
+   */
+  void rowsChanged(int previousRowCount, @NotNull int[] changedRows) {
+    final int newRowCount = histogram.getRowCount();
+    rowCount = newRowCount;
+    if (newRowCount > previousRowCount) {
+      fireTableRowsInserted(previousRowCount, newRowCount - 1);
+    }
+    // Changed rows are in order, and the new rows come last.
+    if (changedRows.length > 0 && changedRows[0] < previousRowCount) {
+      int last = changedRows.length - 1;
+      while (changedRows[last] >= previousRowCount) {
+        last--;
+      }
+      fireTableRowsUpdated(changedRows[0], changedRows[last]);
+    }
+  }
+
+  void rowsReplaced() {
+    rowCount = histogram.getRowCount();
+    fireTableDataChanged();
+  }
+
+  @Override
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public Class<?> getColumnClass(int column) {
+    switch (column) {
+      case CLASS:
+        return String.class;
+      case INSTANCES:
+      case BYTES:
+      case GROWTH:
+        return Long.class;
+      default:
+        return Double.class;
+    }
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    switch (column) {
+      case CLASS:
+        return histogram.getClassName(row);
+      case INSTANCES:
+        return histogram.getInstances(row);
+      case BYTES:
+        return histogram.getBytes(row);
+      case GROWTH:
+        return histogram.getGrowth(row);
+      default:
+        return histogram.getBytesPerSecond(row);
+    }
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.performance;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.ColoredTreeCellRenderer;
+import com.intellij.ui.DoubleClickListener;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBPanel;
+import com.intellij.ui.treeStructure.Tree;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+import com.intellij.util.ui.tree.TreeUtil;
+import com.intellij.xdebugger.impl.XSourcePositionImpl;
+import io.flutter.perf.CallTree;
+import io.flutter.perf.CpuProfile;
+import io.flutter.perf.CpuProfileSampler;
+import io.flutter.perf.FlutterWidgetPerfManager;
+import io.flutter.run.daemon.FlutterApp;
+import org.dartlang.vm.service.VmService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the CPU samples of the Flutter isolate, and shows them as a top-down or bottom-up call
+ * tree. While recording, the hottest functions are also shown in the gutter of the editors, the way
+ * widget rebuild counts are.
+ */
+public class PerfCpuProfilePanel extends JBPanel<PerfCpuProfilePanel> {
+  private static final String CPU_PROFILE_TAB_LABEL = "CPU profile";
+
+  private static final String[] WINDOW_LABELS = {"From now", "From 10 seconds ago", "From 1 minute ago"};
+  private static final long[] WINDOW_MICROS = {0, TimeUnit.SECONDS.toMicros(10), TimeUnit.MINUTES.toMicros(1)};
+
+  @NotNull private final FlutterApp app;
+  @NotNull private final Disposable parentDisposable;
+  @NotNull private final CpuProfile profile = new CpuProfile();
+  @NotNull private final JBLabel summaryLabel;
+  @NotNull private final JComboBox<String> windowCombo;
+  @NotNull private final JComboBox<String> viewCombo;
+  @NotNull private final Tree tree;
+
+  @Nullable private CpuProfileSampler sampler;
+  private boolean refreshPending;
+
+  PerfCpuProfilePanel(@NotNull FlutterApp app, @NotNull Disposable parentDisposable) {
+    this.app = app;
+    this.parentDisposable = parentDisposable;
+
+    setLayout(new BorderLayout(0, 3));
+    setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), CPU_PROFILE_TAB_LABEL));
+    setMinimumSize(new Dimension(0, PerfMemoryPanel.HEIGHT));
+    setPreferredSize(new Dimension(Short.MAX_VALUE, PerfMemoryPanel.HEIGHT * 2));
+
+    summaryLabel = new JBLabel("Not recording");
+    summaryLabel.setForeground(UIUtil.getLabelDisabledForeground());
+    summaryLabel.setBorder(JBUI.Borders.empty(0, 5));
+
+    windowCombo = new JComboBox<>(WINDOW_LABELS);
+    viewCombo = new JComboBox<>(new String[]{"Top down", "Bottom up"});
+    viewCombo.addActionListener(e -> showTree());
+    final JToggleButton recordButton = new JToggleButton("Record");
+    recordButton.addActionListener(e -> setRecording(recordButton.isSelected()));
+
+    final JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 3, 0));
+    buttons.add(viewCombo);
+    buttons.add(windowCombo);
+    buttons.add(recordButton);
+
+    final JPanel header = new JPanel(new BorderLayout());
+    header.add(summaryLabel, BorderLayout.CENTER);
+    header.add(buttons, BorderLayout.EAST);
+    add(header, BorderLayout.NORTH);
+
+    tree = new Tree();
+    tree.setRootVisible(false);
+    tree.setShowsRootHandles(true);
+    tree.setCellRenderer(new CallTreeCellRenderer());
+    new DoubleClickListener() {
+      @Override
+      protected boolean onDoubleClick(MouseEvent event) {
+        return navigateToSelection();
+      }
+    }.installOn(tree);
+    add(ScrollPaneFactory.createScrollPane(tree), BorderLayout.CENTER);
+
+    Disposer.register(parentDisposable, () -> setRecording(false));
+  }
+
+  private void setRecording(boolean recording) {
+    final FlutterWidgetPerfManager perfManager = FlutterWidgetPerfManager.getInstance(app.getProject());
+    if (sampler != null) {
+      Disposer.dispose(sampler);
+      sampler = null;
+      perfManager.setTrackCpuSamples(false);
+      synchronized (profile) {
+        summaryLabel.setText("Recorded " + profile.getSampleCount() + " samples");
+      }
+    }
+    windowCombo.setEnabled(!recording);
+    if (!recording) {
+      return;
+    }
+
+    final VmService vmService = app.getVmService();
+    if (vmService == null || app.getVMServiceManager() == null) {
+      summaryLabel.setText("The app is not running");
+      return;
+    }
+    synchronized (profile) {
+      profile.clear();
+    }
+    showTree();
+    perfManager.setTrackCpuSamples(true);
+    sampler = new CpuProfileSampler(vmService, app.getVMServiceManager(), profile, WINDOW_MICROS[windowCombo.getSelectedIndex()],
+                                    (lineReport) -> {
+                                      perfManager.onCpuSamples(lineReport);
+                                      scheduleRefresh();
+                                    });
+    Disposer.register(parentDisposable, sampler);
+    summaryLabel.setText("Recording...");
+  }
+
+  private void scheduleRefresh() {
+    synchronized (this) {
+      if (refreshPending) {
+        return;
+      }
+      refreshPending = true;
+    }
+    SwingUtilities.invokeLater(() -> {
+      synchronized (this) {
+        refreshPending = false;
+      }
+      refresh();
+    });
+  }
+
+  private void refresh() {
+    final CallTreeModel model = (CallTreeModel)tree.getModel();
+    final List<TreePath> expanded = TreeUtil.collectExpandedPaths(tree);
+    model.fireStructureChanged();
+    TreeUtil.restoreExpandedPaths(tree, expanded);
+    synchronized (profile) {
+      summaryLabel.setText((sampler == null ? "Recorded " : "Recording, ") + profile.getSampleCount() + " samples");
+    }
+  }
+
+  private void showTree() {
+    final CallTree callTree = viewCombo.getSelectedIndex() == 0 ? profile.getTopDown() : profile.getBottomUp();
+    tree.setModel(new CallTreeModel(profile, callTree));
+  }
+
+  private boolean navigateToSelection() {
+    final Object selected = tree.getLastSelectedPathComponent();
+    if (!(selected instanceof CallTreeNode)) {
+      return false;
+    }
+    final String path;
+    final int line;
+    synchronized (profile) {
+      final int function = ((CallTreeNode)selected).getFunction();
+      path = profile.getPath(function);
+      line = profile.getLine(function);
+    }
+    final VirtualFile file = path == null ? null : LocalFileSystem.getInstance().findFileByPath(path);
+    if (file == null || line <= 0) {
+      return false;
+    }
+    XSourcePositionImpl.create(file, line - 1).createNavigatable(app.getProject()).navigate(true);
+    return true;
+  }
+
+  private static class CallTreeCellRenderer extends ColoredTreeCellRenderer {
+    @Override
+    public void customizeCellRenderer(@NotNull JTree tree,
+                                      Object value,
+                                      boolean selected,
+                                      boolean expanded,
+                                      boolean leaf,
+                                      int row,
+                                      boolean hasFocus) {
+      if (!(value instanceof CallTreeNode)) {
+        return;
+      }
+      final CallTreeNode node = (CallTreeNode)value;
+      synchronized (node.profile) {
+        final CallTree callTree = node.callTree;
+        final int rootSamples = Math.max(1, callTree.getTotalSamples(CallTree.ROOT));
+        append(node.profile.getFunctionName(callTree.getFunction(node.node)));
+        append(String.format("  %.1f%%", 100.0 * callTree.getTotalSamples(node.node) / rootSamples),
+               SimpleTextAttributes.GRAYED_ATTRIBUTES);
+        if (callTree.getSelfSamples(node.node) > 0) {
+          append(String.format(" (self %.1f%%)", 100.0 * callTree.getSelfSamples(node.node) / rootSamples),
+                 SimpleTextAttributes.GRAYED_ATTRIBUTES);
+        }
+      }
+    }
+  }
+}
+
+/**
+ * A node of a {@link CallTree}. Nodes are never renumbered while samples are added, so a node keeps
+ * its place in the Swing tree across refreshes.
+ */
+class CallTreeNode {
+  @NotNull final CpuProfile profile;
+  @NotNull final CallTree callTree;
+  final int node;
+
+  CallTreeNode(@NotNull CpuProfile profile, @NotNull CallTree callTree, int node) {
+    this.profile = profile;
+    this.callTree = callTree;
+    this.node = node;
+  }
+
+  int getFunction() {
+    return callTree.getFunction(node);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof CallTreeNode && ((CallTreeNode)obj).callTree == callTree && ((CallTreeNode)obj).node == node;
+  }
+
+  @Override
+  public int hashCode() {
+    return node;
+  }
+}
+
+/**
+ * A Swing view of a {@link CallTree} that reads the tree as it is displayed, with the children of
+ * each node sorted by their samples.
+ */
+class CallTreeModel implements TreeModel {
+  @NotNull private final CpuProfile profile;
+  @NotNull private final CallTree callTree;
+  @NotNull private final CallTreeNode root;
+  private final List<TreeModelListener> listeners = new ArrayList<>();
+
+  CallTreeModel(@NotNull CpuProfile profile, @NotNull CallTree callTree) {
+    this.profile = profile;
+    this.callTree = callTree;
+    root = new CallTreeNode(profile, callTree, CallTree.ROOT);
+  }
+
+  void fireStructureChanged() {
+    final TreeModelEvent event = new TreeModelEvent(this, new Object[]{root});
+    for (TreeModelListener listener : listeners) {
+      listener.treeStructureChanged(event);
+    }
+  }
+
+  @Override
+  public Object getRoot() {
+    return root;
+  }
+
+  @Override
+  public Object getChild(Object parent, int index) {
+    synchronized (profile) {
+      final int[] children = callTree.getChildren(((CallTreeNode)parent).node);
+      return index < children.length ? new CallTreeNode(profile, callTree, children[index]) : null;
+    }
+  }
+
+  @Override
+  public int getChildCount(Object parent) {
+    synchronized (profile) {
+      return callTree.getChildCount(((CallTreeNode)parent).node);
+    }
+  }
+
+  @Override
+  public boolean isLeaf(Object node) {
+    return getChildCount(node) == 0;
+  }
+
+  @Override
+  public void valueForPathChanged(TreePath path, Object newValue) {
+  }
+
+  @Override
+  public int getIndexOfChild(Object parent, Object child) {
+    synchronized (profile) {
+      final int[] children = callTree.getChildren(((CallTreeNode)parent).node);
+      for (int i = 0; i < children.length; i++) {
+        if (children[i] == ((CallTreeNode)child).node) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  @Override
+  public void addTreeModelListener(TreeModelListener listener) {
+    listeners.add(listener);
+  }
+
+  @Override
+  public void removeTreeModelListener(TreeModelListener listener) {
+    listeners.remove(listener);
+  }
+}
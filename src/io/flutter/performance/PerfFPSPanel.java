@@ -11,9 +11,12 @@ import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBPanel;
 import com.intellij.util.ui.JBUI;
 import com.intellij.util.ui.UIUtil;
+import io.flutter.perf.TimelineRecorder;
 import io.flutter.run.daemon.FlutterApp;
 import io.flutter.vmService.FlutterFramesMonitor;
+import org.dartlang.vm.service.VmService;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
@@ -33,6 +36,12 @@ public class PerfFPSPanel extends JBPanel<PerfFPSPanel> {
   private final Disposable parentDisposable;
   private final @NotNull FlutterApp app;
 
+  /**
+   * Records the VM timeline while the user has asked for it, as recording enables timeline
+   * streams in the VM and polls it, which adds overhead to the app being measured.
+   */
+  private volatile @Nullable TimelineRecorder timelineRecorder;
+
   PerfFPSPanel(@NotNull FlutterApp app, @NotNull Disposable parentDisposable) {
     this.app = app;
     this.parentDisposable = parentDisposable;
@@ -59,12 +68,35 @@ public class PerfFPSPanel extends JBPanel<PerfFPSPanel> {
     Disposer.register(parentDisposable, () -> flutterFramesMonitor.removeListener(listener));
     fpsLabel.setBorder(JBUI.Borders.empty(0, 5));
 
+    final JToggleButton recordButton = new JToggleButton("Record timeline");
+    recordButton.setToolTipText("Record the VM timeline to see the work done on the UI and raster threads for each frame");
+    recordButton.addActionListener(e -> setRecordingTimeline(recordButton.isSelected()));
+    Disposer.register(parentDisposable, () -> setRecordingTimeline(false));
+
+    final JPanel header = new JPanel(new BorderLayout());
+    header.add(fpsLabel, BorderLayout.CENTER);
+    header.add(recordButton, BorderLayout.EAST);
+
     // Frame Rendering
     final JPanel frameRenderingPanel = new JPanel(new BorderLayout());
-    final JPanel frameRenderingDisplay = FrameRenderingDisplay.createJPanelView(parentDisposable, app);
-    frameRenderingPanel.add(fpsLabel, BorderLayout.NORTH);
+    final JPanel frameRenderingDisplay = FrameRenderingDisplay.createJPanelView(parentDisposable, app, () -> timelineRecorder);
+    frameRenderingPanel.add(header, BorderLayout.NORTH);
     frameRenderingPanel.add(frameRenderingDisplay, BorderLayout.CENTER);
 
     add(frameRenderingPanel, BorderLayout.CENTER);
   }
+
+  private void setRecordingTimeline(boolean recording) {
+    final TimelineRecorder recorder = timelineRecorder;
+    if (recorder != null) {
+      // Restores the timeline streams that were recorded before.
+      timelineRecorder = null;
+      Disposer.dispose(recorder);
+    }
+    final VmService vmService = app.getVmService();
+    if (recording && vmService != null) {
+      timelineRecorder = new TimelineRecorder(vmService);
+      Disposer.register(parentDisposable, timelineRecorder);
+    }
+  }
 }
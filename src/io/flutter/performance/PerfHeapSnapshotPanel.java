@@ -0,0 +1,271 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.performance;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.ScrollPaneFactory;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBPanel;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+import io.flutter.perf.HeapSnapshotDiff;
+import io.flutter.perf.HeapSnapshotGraph;
+import io.flutter.perf.HeapSnapshotTaker;
+import io.flutter.run.daemon.FlutterApp;
+import org.dartlang.vm.service.VmService;
+import org.dartlang.vm.service.element.IsolateRef;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Takes heap snapshots of the Flutter isolate on demand, and shows the objects that retain the
+ * most memory in the latest one, or how each class changed since the one before.
+ * <p>
+ * Only the last two snapshots are kept.
+ */
+public class PerfHeapSnapshotPanel extends JBPanel<PerfHeapSnapshotPanel> {
+  private static final String HEAP_SNAPSHOT_TAB_LABEL = "Heap snapshot";
+
+  private static final int RETAINER_COUNT = 100;
+
+  @NotNull private final FlutterApp app;
+  @NotNull private final JBLabel summaryLabel;
+  @NotNull private final JButton snapshotButton;
+  @NotNull private final JToggleButton compareButton;
+  @NotNull private final JBTable table;
+
+  @Nullable private HeapSnapshotGraph previous;
+  @Nullable private HeapSnapshotGraph current;
+  @Nullable private CompletableFuture<HeapSnapshotGraph> pendingSnapshot;
+  private boolean disposed;
+
+  PerfHeapSnapshotPanel(@NotNull FlutterApp app, @NotNull Disposable parentDisposable) {
+    this.app = app;
+
+    setLayout(new BorderLayout(0, 3));
+    setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), HEAP_SNAPSHOT_TAB_LABEL));
+    setMinimumSize(new Dimension(0, PerfMemoryPanel.HEIGHT));
+    setPreferredSize(new Dimension(Short.MAX_VALUE, PerfMemoryPanel.HEIGHT * 2));
+
+    summaryLabel = new JBLabel("No snapshot taken");
+    summaryLabel.setForeground(UIUtil.getLabelDisabledForeground());
+    summaryLabel.setBorder(JBUI.Borders.empty(0, 5));
+
+    snapshotButton = new JButton("Take snapshot");
+    snapshotButton.addActionListener(e -> takeSnapshot());
+    compareButton = new JToggleButton("Compare with previous");
+    compareButton.setEnabled(false);
+    compareButton.addActionListener(e -> showSnapshot());
+
+    final JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 3, 0));
+    buttons.add(compareButton);
+    buttons.add(snapshotButton);
+
+    final JPanel header = new JPanel(new BorderLayout());
+    header.add(summaryLabel, BorderLayout.CENTER);
+    header.add(buttons, BorderLayout.EAST);
+    add(header, BorderLayout.NORTH);
+
+    table = new JBTable();
+    table.getTableHeader().setReorderingAllowed(false);
+    table.setDefaultRenderer(Long.class, new SizeRenderer());
+    add(ScrollPaneFactory.createScrollPane(table), BorderLayout.CENTER);
+
+    Disposer.register(parentDisposable, () -> {
+      disposed = true;
+      previous = null;
+      current = null;
+      // Stops listening for the snapshot's events and deletes its file.
+      if (pendingSnapshot != null) {
+        pendingSnapshot.cancel(false);
+        pendingSnapshot = null;
+      }
+    });
+  }
+
+  private void takeSnapshot() {
+    final VmService vmService = app.getVmService();
+    final IsolateRef isolateRef = app.getVMServiceManager() == null ? null : app.getVMServiceManager().getCurrentFlutterIsolateRaw();
+    if (vmService == null || isolateRef == null) {
+      summaryLabel.setText("The app is not running");
+      return;
+    }
+
+    snapshotButton.setEnabled(false);
+    summaryLabel.setText("Taking snapshot...");
+    final CompletableFuture<HeapSnapshotGraph> snapshot = HeapSnapshotTaker.takeSnapshot(vmService, isolateRef.getId());
+    pendingSnapshot = snapshot;
+    snapshot.whenComplete(
+      (graph, error) -> SwingUtilities.invokeLater(() -> {
+        if (disposed || pendingSnapshot != snapshot) {
+          return;
+        }
+        pendingSnapshot = null;
+        snapshotButton.setEnabled(true);
+        if (graph == null) {
+          summaryLabel.setText("Unable to take a snapshot");
+          return;
+        }
+        previous = current;
+        current = graph;
+        compareButton.setEnabled(previous != null);
+        showSnapshot();
+      }));
+  }
+
+  private void showSnapshot() {
+    if (current == null) {
+      return;
+    }
+    if (compareButton.isSelected() && previous != null) {
+      final HeapSnapshotDiff diff = new HeapSnapshotDiff(previous, current);
+      table.setModel(new HeapSnapshotDiffTableModel(diff));
+      final long growth = current.getReachableSize() - previous.getReachableSize();
+      summaryLabel.setText("Reachable size changed by " + (growth < 0 ? "-" : "+") + StringUtil.formatFileSize(Math.abs(growth)));
+    }
+    else {
+      table.setModel(new LargestRetainersTableModel(current, current.getLargestRetainers(RETAINER_COUNT)));
+      summaryLabel.setText(StringUtil.formatFileSize(current.getReachableSize()) + " reachable in " +
+                           (current.getObjectCount() - 1) + " objects");
+    }
+  }
+
+  private static class SizeRenderer extends DefaultTableCellRenderer {
+    SizeRenderer() {
+      setHorizontalAlignment(SwingConstants.RIGHT);
+    }
+
+    @Override
+    protected void setValue(Object value) {
+      if (value instanceof Long) {
+        final long bytes = (Long)value;
+        setText(bytes < 0 ? "-" + StringUtil.formatFileSize(-bytes) : StringUtil.formatFileSize(bytes));
+      }
+      else {
+        super.setValue(value);
+      }
+    }
+  }
+}
+
+/**
+ * The objects of a snapshot that retain the most memory.
+ */
+class LargestRetainersTableModel extends AbstractTableModel {
+  private static final String[] COLUMN_NAMES = {"Class", "Library", "Shallow size", "Retained size"};
+
+  @NotNull private final HeapSnapshotGraph graph;
+  @NotNull private final int[] objects;
+
+  LargestRetainersTableModel(@NotNull HeapSnapshotGraph graph, @NotNull int[] objects) {
+    this.graph = graph;
+    this.objects = objects;
+  }
+
+  @Override
+  public int getRowCount() {
+    return objects.length;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public Class<?> getColumnClass(int column) {
+    return column < 2 ? String.class : Long.class;
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    final int object = objects[row];
+    switch (column) {
+      case 0:
+        return graph.getClassName(graph.getClassId(object));
+      case 1:
+        return graph.getLibraryUri(graph.getClassId(object));
+      case 2:
+        return graph.getShallowSize(object);
+      default:
+        return graph.getRetainedSize(object);
+    }
+  }
+}
+
+/**
+ * How the instances of each class changed between two snapshots.
+ */
+class HeapSnapshotDiffTableModel extends AbstractTableModel {
+  private static final String[] COLUMN_NAMES = {"Class", "Library", "Instances", "Instance change", "Size", "Size change"};
+
+  @NotNull private final HeapSnapshotDiff diff;
+
+  HeapSnapshotDiffTableModel(@NotNull HeapSnapshotDiff diff) {
+    this.diff = diff;
+  }
+
+  @Override
+  public int getRowCount() {
+    return diff.getRowCount();
+  }
+
+  @Override
+  public int getColumnCount() {
+    return COLUMN_NAMES.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return COLUMN_NAMES[column];
+  }
+
+  @Override
+  public Class<?> getColumnClass(int column) {
+    switch (column) {
+      case 0:
+      case 1:
+        return String.class;
+      case 2:
+      case 3:
+        return Integer.class;
+      default:
+        return Long.class;
+    }
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    switch (column) {
+      case 0:
+        return diff.getClassName(row);
+      case 1:
+        return diff.getLibraryUri(row);
+      case 2:
+        return (int)diff.getAfterCount(row);
+      case 3:
+        return (int)diff.getCountDelta(row);
+      case 4:
+        return diff.getAfterBytes(row);
+      default:
+        return diff.getBytesDelta(row);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.performance;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.ui.JBColor;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBPanel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+import gnu.trove.TIntIntHashMap;
+import io.flutter.perf.PerfSession;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+
+/**
+ * A scrollable timeline of the whole recorded session at a selectable resolution.
+ * <p>
+ * Only the buckets in view are read from the session when painting.
+ */
+public class PerfSessionPanel extends JBPanel<PerfSessionPanel> {
+  private static final String SESSION_TAB_LABEL = "Session timeline";
+
+  private static final int REFRESH_PERIOD_MS = 1000;
+
+  @NotNull private final PerfSession session;
+  @NotNull private final SessionChart chart;
+  @NotNull private final JBScrollPane scrollPane;
+  @NotNull private final JBLabel summaryLabel;
+
+  PerfSessionPanel(@NotNull PerfSession session, @NotNull Disposable parentDisposable) {
+    this.session = session;
+
+    setLayout(new BorderLayout(0, 3));
+    setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(), SESSION_TAB_LABEL));
+    setMinimumSize(new Dimension(0, PerfMemoryPanel.HEIGHT));
+    setPreferredSize(new Dimension(Short.MAX_VALUE, PerfMemoryPanel.HEIGHT));
+
+    final ComboBox<PerfSession.Resolution> resolutionCombo = new ComboBox<>(PerfSession.Resolution.values());
+    summaryLabel = new JBLabel(" ");
+    summaryLabel.setForeground(UIUtil.getLabelDisabledForeground());
+    summaryLabel.setBorder(JBUI.Borders.empty(0, 5));
+
+    final JPanel header = new JPanel(new BorderLayout());
+    header.add(summaryLabel, BorderLayout.CENTER);
+    header.add(resolutionCombo, BorderLayout.EAST);
+    add(header, BorderLayout.NORTH);
+
+    chart = new SessionChart(session);
+    scrollPane = new JBScrollPane(chart, ScrollPaneConstants.VERTICAL_SCROLLBAR_NEVER,
+                                  ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+    scrollPane.setBorder(JBUI.Borders.empty());
+    add(scrollPane, BorderLayout.CENTER);
+
+    resolutionCombo.addActionListener(e -> {
+      final PerfSession.Resolution resolution = (PerfSession.Resolution)resolutionCombo.getSelectedItem();
+      if (resolution != null) {
+        chart.setResolution(resolution);
+        refresh();
+      }
+    });
+
+    final Timer timer = new Timer(REFRESH_PERIOD_MS, e -> refresh());
+    timer.start();
+    Disposer.register(parentDisposable, timer::stop);
+  }
+
+  private void refresh() {
+    final JScrollBar scrollBar = scrollPane.getHorizontalScrollBar();
+    // Keep following the latest data unless the user has scrolled back.
+    final boolean following = scrollBar.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum();
+    chart.updateSize();
+    if (following) {
+      scrollBar.setValue(scrollBar.getMaximum());
+    }
+    chart.repaint();
+
+    summaryLabel.setText(session.getFrameCount() + " frames recorded over " +
+                         StringUtil.formatDuration(session.getDurationMillis()));
+  }
+}
+
+class SessionChart extends JComponent {
+  private static final int BAR_WIDTH = 6;
+  private static final JBColor FRAME_COLOR = new JBColor(new Color(0x4b9fea), new Color(0x3d87c4));
+  private static final JBColor SLOW_FRAME_COLOR = new JBColor(new Color(0xee6666), new Color(0xc74d4d));
+  private static final JBColor HEAP_COLOR = new JBColor(new Color(0x6aaf6a), new Color(0x5e9e5e));
+
+  @NotNull private final PerfSession session;
+  private final PerfSession.Buckets buckets = new PerfSession.Buckets();
+  private final TIntIntHashMap rebuildCounts = new TIntIntHashMap();
+  @NotNull private PerfSession.Resolution resolution = PerfSession.Resolution.SECOND;
+
+  SessionChart(@NotNull PerfSession session) {
+    this.session = session;
+    setToolTipText("");
+  }
+
+  void setResolution(@NotNull PerfSession.Resolution resolution) {
+    this.resolution = resolution;
+  }
+
+  void updateSize() {
+    final Dimension size = new Dimension(session.getBucketCount(resolution) * BAR_WIDTH, PerfMemoryPanel.HEIGHT - 60);
+    if (!size.equals(getPreferredSize())) {
+      setPreferredSize(size);
+      revalidate();
+    }
+  }
+
+  @Override
+  protected void paintComponent(Graphics g) {
+    final Rectangle clip = g.getClipBounds();
+    if (clip == null) {
+      return;
+    }
+    final int height = getHeight();
+    final int from = clip.x / BAR_WIDTH;
+    final int to = (clip.x + clip.width) / BAR_WIDTH + 1;
+    session.readBuckets(resolution, from, to, buckets);
+
+    // Scale frame times to the largest average frame time and the heap to the largest heap size in view.
+    long maxFrameMicros = 1;
+    long maxHeap = 1;
+    for (int i = 0; i < buckets.size(); i++) {
+      maxFrameMicros = Math.max(maxFrameMicros, buckets.getAverageFrameMicros(i));
+      maxHeap = Math.max(maxHeap, buckets.getHeapCapacityMax(i));
+    }
+
+    int lastHeapY = -1;
+    for (int i = 0; i < buckets.size(); i++) {
+      final int x = (buckets.getStart() + i) * BAR_WIDTH;
+      if (buckets.getFrameCount(i) > 0) {
+        final int barHeight = Math.max(1, (int)(buckets.getAverageFrameMicros(i) * (height - 2) / maxFrameMicros));
+        g.setColor(buckets.getSlowFrameCount(i) > 0 ? SLOW_FRAME_COLOR : FRAME_COLOR);
+        g.fillRect(x, height - barHeight, BAR_WIDTH - 1, barHeight);
+      }
+      if (buckets.getHeapUsedMax(i) > 0) {
+        final int heapY = height - 1 - (int)(buckets.getHeapUsedMax(i) * (height - 2) / maxHeap);
+        g.setColor(HEAP_COLOR);
+        if (lastHeapY >= 0) {
+          g.drawLine(x - BAR_WIDTH / 2, lastHeapY, x + BAR_WIDTH / 2, heapY);
+        }
+        lastHeapY = heapY;
+      }
+      else {
+        lastHeapY = -1;
+      }
+    }
+  }
+
+  @Override
+  public String getToolTipText(MouseEvent event) {
+    final int bucket = event.getX() / BAR_WIDTH;
+    session.readBuckets(resolution, bucket, bucket + 1, buckets);
+    if (buckets.size() == 0) {
+      return null;
+    }
+    rebuildCounts.clear();
+    session.readRebuildCounts(resolution, bucket, bucket + 1, rebuildCounts);
+
+    final long startMillis = (long)bucket * resolution.millis;
+    final StringBuilder text = new StringBuilder("<html>");
+    text.append(StringUtil.formatDuration(startMillis)).append(" - ")
+      .append(StringUtil.formatDuration(startMillis + resolution.millis)).append("<br>");
+    text.append(buckets.getFrameCount(0)).append(" frames, ").append(buckets.getSlowFrameCount(0)).append(" slow");
+    if (buckets.getFrameCount(0) > 0) {
+      text.append("<br>average ").append(FrameRenderingDisplay.df.format(buckets.getAverageFrameMicros(0) / 1000.0))
+        .append("ms, max ").append(FrameRenderingDisplay.df.format(buckets.getMaxFrameMicros(0) / 1000.0)).append("ms");
+    }
+    if (buckets.getRebuildCount(0) > 0) {
+      text.append("<br>").append(buckets.getRebuildCount(0)).append(" widget rebuilds at ")
+        .append(rebuildCounts.size()).append(" locations");
+    }
+    if (buckets.getHeapUsedMax(0) > 0) {
+      text.append("<br>heap ").append(StringUtil.formatFileSize(buckets.getHeapUsedMax(0))).append(" of ")
+        .append(StringUtil.formatFileSize(buckets.getHeapCapacityMax(0)));
+    }
+    return text.append("</html>").toString();
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.preview;
+
+import io.flutter.dart.PackedFlutterOutline;
+import io.flutter.utils.IntervalIndex;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * An index of the document ranges of the nodes of one outline, so the nodes at an offset can be
+ * found without walking the whole outline.
+ * <p>
+ * Nodes are identified by their number in the outline. As nodes are numbered in pre-order, a node
+ * always comes before its descendants and its later siblings.
+ */
+public class OutlineIndex {
+  @NotNull private final PackedFlutterOutline outline;
+  private final int[] starts;
+  private final int[] ends;
+  private final IntervalIndex ranges;
+
+  /**
+   * Indexes the outline, converting its offsets to document offsets with the converter.
+   */
+  public OutlineIndex(@NotNull PackedFlutterOutline outline, @NotNull IntUnaryOperator converter) {
+    this.outline = outline;
+    final int count = outline.getNodeCount();
+    starts = new int[count];
+    ends = new int[count];
+    final IntervalIndex.Builder builder = new IntervalIndex.Builder();
+    for (int node = 0; node < count; node++) {
+      final int start = converter.applyAsInt(outline.getOffset(node));
+      final int end = converter.applyAsInt(outline.getOffset(node) + outline.getLength(node));
+      final int id = builder.add(Math.max(start, 0), Math.max(start, end));
+      assert (id == node);
+      starts[node] = start;
+      ends[node] = end;
+    }
+    ranges = builder.build();
+  }
+
+  @NotNull
+  public PackedFlutterOutline getOutline() {
+    return outline;
+  }
+
+  /**
+   * Returns the innermost node containing the offset, or {@link PackedFlutterOutline#NONE} if the
+   * outline does not contain it.
+   * <p>
+   * Where the ranges of siblings touch, the earlier sibling wins.
+   */
+  public int findOutlineAtOffset(int offset) {
+    final int[] path = findPathAtOffset(offset);
+    return path.length == 0 ? PackedFlutterOutline.NONE : path[path.length - 1];
+  }
+
+  /**
+   * Returns the nodes from the root to the innermost node containing the offset, which is empty if
+   * the outline does not contain it.
+   */
+  @NotNull
+  public int[] findPathAtOffset(int offset) {
+    final int[] containing = ranges.findContaining(offset);
+    int length = 0;
+    // The containing nodes come in pre-order, so the first child containing
+    // the offset of each node on the path comes before its later siblings.
+    int current = PackedFlutterOutline.NONE;
+    for (int node : containing) {
+      if (outline.getParent(node) == current && starts[node] <= offset && offset <= ends[node]) {
+        containing[length++] = node;
+        current = node;
+      }
+    }
+    return Arrays.copyOf(containing, length);
+  }
+
+  /**
+   * Returns the outermost nodes covered by the range from start to end that can be reached from
+   * the root through nodes covering the range, in pre-order.
+   */
+  @NotNull
+  public int[] findOutlinesCoveredByRange(int start, int end) {
+    final int[] intersecting = ranges.findIntersecting(start, end);
+    int length = 0;
+    for (int node : intersecting) {
+      if (isCovered(node, start, end) && isReachable(outline.getParent(node), start, end)) {
+        intersecting[length++] = node;
+      }
+    }
+    return Arrays.copyOf(intersecting, length);
+  }
+
+  private boolean isCovered(int node, int start, int end) {
+    return starts[node] >= start && ends[node] <= end;
+  }
+
+  private boolean isReachable(int node, int start, int end) {
+    for (; node != PackedFlutterOutline.NONE; node = outline.getParent(node)) {
+      if (isCovered(node, start, end) || starts[node] > start || end > ends[node]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
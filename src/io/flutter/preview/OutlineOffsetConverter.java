@@ -5,15 +5,32 @@
  */
 package io.flutter.preview;
 
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileEditor.FileDocumentManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.jetbrains.lang.dart.analyzer.DartAnalysisServerService;
+import io.flutter.dart.PackedFlutterOutline;
 import org.dartlang.analysis.server.protocol.FlutterOutline;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class OutlineOffsetConverter {
   private final VirtualFile currentFile;
   private final Project project;
 
+  /**
+   * Index of the last outline searched, which is reused while neither the outline nor the document
+   * changes.
+   */
+  private OutlineIndex index;
+
+  /**
+   * The modification stamp of the document when {@link #index} was built, as editing the document
+   * changes how outline offsets convert to document offsets.
+   */
+  private long indexStamp;
+
   public OutlineOffsetConverter(Project project, VirtualFile currentFile) {
     this.project = project;
     this.currentFile = currentFile;
@@ -33,22 +50,37 @@ public class OutlineOffsetConverter {
     return getConvertedFileOffset(end);
   }
 
+  public VirtualFile getFile() {
+    return currentFile;
+  }
+
+  /**
+   * Returns the index of the outline with converted offsets, building it if
+   * the outline differs from the last one or the document has been edited
+   * since.
+   */
+  @NotNull
+  public OutlineIndex getIndex(@NotNull PackedFlutterOutline outline) {
+    final long stamp = getModificationStamp();
+    OutlineIndex result = index;
+    if (result == null || result.getOutline() != outline || indexStamp != stamp) {
+      result = new OutlineIndex(outline, this::getConvertedFileOffset);
+      index = result;
+      indexStamp = stamp;
+    }
+    return result;
+  }
+
+  private long getModificationStamp() {
+    final Document document = FileDocumentManager.getInstance().getCachedDocument(currentFile);
+    return document != null ? document.getModificationStamp() : currentFile.getModificationStamp();
+  }
+
   // TODO(jacobr): move this method to a different class or rename this class.
-  public FlutterOutline findOutlineAtOffset(FlutterOutline outline, int offset) {
+  public int findOutlineAtOffset(@Nullable PackedFlutterOutline outline, int offset) {
     if (outline == null) {
-      return null;
-    }
-    if (getConvertedOutlineOffset(outline) <= offset && offset <= getConvertedOutlineEnd(outline)) {
-      if (outline.getChildren() != null) {
-        for (FlutterOutline child : outline.getChildren()) {
-          final FlutterOutline foundChild = findOutlineAtOffset(child, offset);
-          if (foundChild != null) {
-            return foundChild;
-          }
-        }
-      }
-      return outline;
+      return PackedFlutterOutline.NONE;
     }
-    return null;
+    return getIndex(outline).findOutlineAtOffset(offset);
   }
 }
@@ -22,14 +22,12 @@ import io.flutter.editor.WidgetViewModelData;
 import io.flutter.inspector.InspectorGroupManagerService;
 import io.flutter.inspector.InspectorService;
 import org.dartlang.analysis.server.protocol.FlutterOutline;
-import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
-import java.util.List;
-import java.util.Set;
 
 /**
  * Class that manages displaying the DeviceMirror.
@@ -47,13 +45,10 @@ public class PreviewArea {
 
   private final PreviewViewController preview;
   private final WidgetEditingContext context;
-  private final Set<FlutterOutline> outlinesWithWidgets;
 
   private final InspectorGroupManagerService.Client inspectorClient;
 
-  public PreviewArea(Project project, Set<FlutterOutline> outlinesWithWidgets, Disposable parent) {
-    this.outlinesWithWidgets = outlinesWithWidgets;
-
+  public PreviewArea(Project project, Disposable parent) {
     context = new WidgetEditingContext(
       project,
       FlutterDartAnalysisServer.getInstance(project),
@@ -99,41 +94,17 @@ public class PreviewArea {
   // TODO(jacobr): switch the previewArea to listen on the event stream of
   // selected outlines and editors instead like the PropertyEditPanel
   // already does.
-  public void select(@NotNull List<FlutterOutline> outlines, Editor editor) {
+  public void select(@Nullable FlutterOutline widget, Editor editor) {
     if (editor.isDisposed()) return;
 
     final InspectorService.ObjectGroup group = getObjectGroup();
-    if (group != null && outlines.size() > 0) {
-      final FlutterOutline outline = findWidgetToHighlight(outlines.get(0));
-      if (outline == null) return;
-      final InspectorService.Location location = InspectorService.Location.outlineToLocation(editor, outline);
+    if (group != null && widget != null) {
+      final InspectorService.Location location = InspectorService.Location.outlineToLocation(editor, widget);
       if (location == null) return;
       group.setSelection(location, false, true);
     }
   }
 
-  /**
-   * Find the first descendant of the outline that is a widget as long as there
-   * is only one path down the tree that leeds to a widget.
-   */
-  private FlutterOutline findWidgetToHighlight(FlutterOutline outline) {
-    if (outline == null || outline.getClassName() != null) return outline;
-    if (!outlinesWithWidgets.contains(outline)) return null;
-    FlutterOutline candidate = null;
-    for (FlutterOutline child : outline.getChildren()) {
-      if (outlinesWithWidgets.contains(child)) {
-        if (candidate != null) {
-          // It is ambiguous which candidate to show so don't show anything.
-          // TODO(jacobr): consider showing multiple locations instead if the
-          // inspector on device protocol is enhanced to support that.
-          return null;
-        }
-        candidate = findWidgetToHighlight(child);
-      }
-    }
-    return candidate;
-  }
-
   public Dimension getRenderSize() {
     final int width = layeredPanel.getWidth();
     final int height = layeredPanel.getHeight();
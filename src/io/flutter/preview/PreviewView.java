@@ -6,8 +6,6 @@
 package io.flutter.preview;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
 import com.intellij.icons.AllIcons;
 import com.intellij.ide.CommonActionsManager;
 import com.intellij.ide.DefaultTreeExpander;
@@ -40,6 +38,7 @@ import io.flutter.FlutterInitializer;
 import io.flutter.FlutterUtils;
 import io.flutter.dart.FlutterDartAnalysisServer;
 import io.flutter.dart.FlutterOutlineListener;
+import io.flutter.dart.PackedFlutterOutline;
 import io.flutter.editor.PropertyEditorPanel;
 import io.flutter.inspector.InspectorGroupManagerService;
 import io.flutter.settings.FlutterSettings;
@@ -94,22 +93,44 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState> {
   private OutlineTree tree;
   private @Nullable PreviewArea previewArea;
 
-  private final Set<FlutterOutline> outlinesWithWidgets = Sets.newHashSet();
-  private final Map<FlutterOutline, DefaultMutableTreeNode> outlineToNodeMap = Maps.newHashMap();
+  /**
+   * The nodes of the current outline that are widgets or have widgets below them.
+   */
+  private final BitSet outlinesWithWidgets = new BitSet();
+
+  /**
+   * The tree node showing each node of the current outline, by node number, or null for nodes that
+   * are not shown.
+   */
+  private DefaultMutableTreeNode[] outlineToNodeMap = new DefaultMutableTreeNode[0];
 
   private final EventStream<VirtualFile> currentFile;
   private String currentFilePath;
   FileEditor currentFileEditor;
   private Editor currentEditor;
-  private FlutterOutline currentOutline;
+  private PackedFlutterOutline currentOutline;
+  private OutlineOffsetConverter outlineOffsetConverter;
+
+  /**
+   * The selected nodes of the current outline, without their children.
+   */
   private final EventStream<List<FlutterOutline>> activeOutlines;
 
+  /**
+   * The objects in {@link #activeOutlines} by node number, so a node that stays selected is
+   * published as the same object until the outline changes.
+   */
+  private Map<Integer, FlutterOutline> activeOutlineNodes = new HashMap<>();
+
   private final WidgetEditToolbar widgetEditToolbar;
   private final FlutterOutlineListener outlineListener = new FlutterOutlineListener() {
     @Override
     public void outlineUpdated(@NotNull String filePath, @NotNull FlutterOutline outline, @Nullable String instrumentedCode) {
       if (Objects.equals(currentFilePath, filePath)) {
-        ApplicationManager.getApplication().invokeLater(() -> updateOutline(outline));
+        // Only the packed copy is kept, so the outline can be collected once
+        // the other listeners are done with it.
+        final PackedFlutterOutline packed = PackedFlutterOutline.pack(outline);
+        ApplicationManager.getApplication().invokeLater(() -> updateOutline(packed));
       }
     }
   };
@@ -282,12 +303,12 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState> {
     tree.addMouseListener(new PopupHandler() {
       public void invokePopup(Component comp, int x, int y) {
         // Ensure that at least one Widget item is selected.
-        final List<FlutterOutline> selectedOutlines = getOutlinesSelectedInTree();
-        if (selectedOutlines.isEmpty()) {
+        final int[] selectedNodes = getNodesSelectedInTree();
+        if (selectedNodes.length == 0) {
           return;
         }
-        for (FlutterOutline outline : selectedOutlines) {
-          if (outline.getDartElement() != null) {
+        for (int node : selectedNodes) {
+          if (currentOutline.getDartElement(node) != null) {
             return;
           }
         }
@@ -298,7 +319,13 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState> {
   }
 
   private OutlineOffsetConverter getOutlineOffsetConverter() {
-    return new OutlineOffsetConverter(project, currentFile.getValue());
+    // The converter is kept while the file does not change, so the index of
+    // the current outline is only built once.
+    final VirtualFile file = currentFile.getValue();
+    if (outlineOffsetConverter == null || outlineOffsetConverter.getFile() != file) {
+      outlineOffsetConverter = new OutlineOffsetConverter(project, file);
+    }
+    return outlineOffsetConverter;
   }
 
   private void handleTreeSelectionEvent(TreeSelectionEvent e) {
@@ -307,19 +334,19 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState> {
       ApplicationManager.getApplication().invokeLater(() -> selectPath(selectionPath, false));
     }
 
-    activeOutlines.setValue(getOutlinesSelectedInTree());
+    activeOutlines.setValue(getActiveOutlines(getNodesSelectedInTree()));
   }
 
   private void selectPath(TreePath selectionPath, boolean focusEditor) {
-    final FlutterOutline outline = getOutlineOfPath(selectionPath);
-    jumpToOutlineInEditor(outline, focusEditor);
+    final OutlineObject object = getOutlineObjectOfPath(selectionPath);
+    if (object != null) {
+      jumpToOutlineInEditor(object.outline, object.node, focusEditor);
+    }
   }
 
-  private void jumpToOutlineInEditor(FlutterOutline outline, boolean focusEditor) {
-    if (outline == null) {
-      return;
-    }
-    final int offset = outline.getDartElement() != null ? outline.getDartElement().getLocation().getOffset() : outline.getOffset();
+  private void jumpToOutlineInEditor(@NotNull PackedFlutterOutline outline, int node, boolean focusEditor) {
+    final Element dartElement = outline.getDartElement(node);
+    final int offset = dartElement != null ? dartElement.getLocation().getOffset() : outline.getOffset(node);
     final int editorOffset = getOutlineOffsetConverter().getConvertedFileOffset(offset);
 
     sendAnalyticEvent("jumpToSource");
@@ -336,29 +363,40 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState> {
 
     // TODO(jacobr): refactor the previewArea to listen on the stream of
     // selected outlines instead.
-    if (previewArea != null) {
-      previewArea.select(ImmutableList.of(outline), currentEditor);
+    if (previewArea != null && outline == currentOutline) {
+      previewArea.select(getWidgetToHighlight(node), currentEditor);
     }
   }
 
-  // TODO: Add parent relationship info to FlutterOutline instead of this O(n^2) traversal.
-  private Element getElementParentFor(@Nullable Element element) {
-    if (element == null) {
-      return null;
-    }
-
-    for (FlutterOutline outline : outlineToNodeMap.keySet()) {
-      final List<FlutterOutline> children = outline.getChildren();
-      if (children != null) {
-        for (FlutterOutline child : children) {
-          if (child.getDartElement() == element) {
-            return outline.getDartElement();
-          }
+  /**
+   * Returns the widget to select on the device for the node of the current outline: the node itself
+   * if it is a widget, or else its one descendant that is a widget as long as there is only one path
+   * down the tree that leads to a widget.
+   */
+  @Nullable
+  private FlutterOutline getWidgetToHighlight(int node) {
+    final int widget = findWidgetToHighlight(node);
+    return widget == PackedFlutterOutline.NONE ? null : currentOutline.toFlutterOutlineNode(widget);
+  }
+
+  private int findWidgetToHighlight(int node) {
+    if (currentOutline.getClassName(node) != null) return node;
+    if (!outlinesWithWidgets.get(node)) return PackedFlutterOutline.NONE;
+    boolean found = false;
+    int candidate = PackedFlutterOutline.NONE;
+    for (int child = currentOutline.getFirstChild(node); child != PackedFlutterOutline.NONE; child = currentOutline.getNextSibling(child)) {
+      if (outlinesWithWidgets.get(child)) {
+        if (found) {
+          // It is ambiguous which candidate to show so don't show anything.
+          // TODO(jacobr): consider showing multiple locations instead if the
+          // inspector on device protocol is enhanced to support that.
+          return PackedFlutterOutline.NONE;
         }
+        candidate = findWidgetToHighlight(child);
+        found = true;
       }
     }
-
-    return null;
+    return candidate;
   }
 
   private DefaultTreeModel getTreeModel() {
@@ -369,18 +407,19 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState> {
     return (DefaultMutableTreeNode)getTreeModel().getRoot();
   }
 
-  private void updateOutline(@NotNull FlutterOutline outline) {
+  private void updateOutline(@NotNull PackedFlutterOutline outline) {
+    if (outline != currentOutline) {
+      activeOutlineNodes = new HashMap<>();
+    }
     currentOutline = outline;
 
     final DefaultMutableTreeNode rootNode = getRootNode();
     rootNode.removeAllChildren();
 
     outlinesWithWidgets.clear();
-    outlineToNodeMap.clear();
-    if (outline.getChildren() != null) {
-      computeOutlinesWithWidgets(outline);
-      updateOutlineImpl(rootNode, outline.getChildren());
-    }
+    outlineToNodeMap = new DefaultMutableTreeNode[outline.getNodeCount()];
+    computeOutlinesWithWidgets(outline);
+    updateOutlineImpl(rootNode, 0);
 
     getTreeModel().reload(rootNode);
     tree.expandAll();
@@ -411,7 +450,7 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState> {
           if (getInspectorService() != null && getInspectorService().isHotUiScreenMirrorSupported()) {
             // Wait to create the preview area until it is needed.
             if (previewArea == null) {
-              previewArea = new PreviewArea(project, outlinesWithWidgets, project);
+              previewArea = new PreviewArea(project, project);
             }
             propertyEditSplitter.setSecondComponent(previewArea.getComponent());
           }
@@ -433,94 +472,87 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState> {
     }
   }
 
-  private boolean computeOutlinesWithWidgets(FlutterOutline outline) {
-    boolean hasWidget = false;
-    if (outline.getDartElement() == null) {
-      outlinesWithWidgets.add(outline);
-      hasWidget = true;
-    }
-
-    final List<FlutterOutline> children = outline.getChildren();
-    if (children != null) {
-      for (final FlutterOutline child : children) {
-        if (computeOutlinesWithWidgets(child)) {
-          outlinesWithWidgets.add(outline);
-          hasWidget = true;
+  private void computeOutlinesWithWidgets(@NotNull PackedFlutterOutline outline) {
+    // Nodes come after their ancestors, so visiting them backwards reaches
+    // every child before its parent.
+    for (int node = outline.getNodeCount() - 1; node >= 0; node--) {
+      if (outline.getDartElement(node) == null || outlinesWithWidgets.get(node)) {
+        outlinesWithWidgets.set(node);
+        final int parent = outline.getParent(node);
+        if (parent != PackedFlutterOutline.NONE) {
+          outlinesWithWidgets.set(parent);
         }
       }
     }
-    return hasWidget;
   }
 
-  private void updateOutlineImpl(@NotNull DefaultMutableTreeNode parent, @NotNull List<FlutterOutline> outlines) {
+  private void updateOutlineImpl(@NotNull DefaultMutableTreeNode parent, int parentNode) {
     int index = 0;
-    for (final FlutterOutline outline : outlines) {
-      if (FlutterSettings.getInstance().isShowOnlyWidgets() && !outlinesWithWidgets.contains(outline)) {
+    for (int child = currentOutline.getFirstChild(parentNode);
+         child != PackedFlutterOutline.NONE;
+         child = currentOutline.getNextSibling(child)) {
+      if (FlutterSettings.getInstance().isShowOnlyWidgets() && !outlinesWithWidgets.get(child)) {
         continue;
       }
 
-      final OutlineObject object = new OutlineObject(outline);
+      final OutlineObject object = new OutlineObject(currentOutline, child);
       final DefaultMutableTreeNode node = new DefaultMutableTreeNode(object);
-      outlineToNodeMap.put(outline, node);
+      outlineToNodeMap[child] = node;
 
       getTreeModel().insertNodeInto(node, parent, index++);
 
-      if (outline.getChildren() != null) {
-        updateOutlineImpl(node, outline.getChildren());
-      }
+      updateOutlineImpl(node, child);
     }
   }
 
+  /**
+   * Returns the nodes of the current outline that are selected in the tree.
+   */
   @NotNull
-  private List<FlutterOutline> getOutlinesSelectedInTree() {
-    final List<FlutterOutline> selectedOutlines = new ArrayList<>();
+  private int[] getNodesSelectedInTree() {
     final DefaultMutableTreeNode[] selectedNodes = tree.getSelectedNodes(DefaultMutableTreeNode.class, null);
+    final int[] nodes = new int[selectedNodes.length];
+    int count = 0;
     for (DefaultMutableTreeNode selectedNode : selectedNodes) {
-      final FlutterOutline outline = getOutlineOfNode(selectedNode);
-      selectedOutlines.add(outline);
+      final OutlineObject object = getOutlineObjectOfNode(selectedNode);
+      if (object.outline == currentOutline) {
+        nodes[count++] = object.node;
+      }
     }
-    return selectedOutlines;
+    return Arrays.copyOf(nodes, count);
   }
 
-  static private FlutterOutline getOutlineOfNode(DefaultMutableTreeNode node) {
-    final OutlineObject object = (OutlineObject)node.getUserObject();
-    return object.outline;
+  /**
+   * Returns the nodes of the current outline as objects for {@link #activeOutlines}.
+   */
+  @NotNull
+  private List<FlutterOutline> getActiveOutlines(@NotNull int[] nodes) {
+    final Map<Integer, FlutterOutline> outlineNodes = new HashMap<>();
+    final List<FlutterOutline> outlines = new ArrayList<>(nodes.length);
+    for (int node : nodes) {
+      FlutterOutline outline = activeOutlineNodes.get(node);
+      if (outline == null) {
+        outline = currentOutline.toFlutterOutlineNode(node);
+      }
+      outlineNodes.put(node, outline);
+      outlines.add(outline);
+    }
+    activeOutlineNodes = outlineNodes;
+    return outlines;
+  }
+
+  static private OutlineObject getOutlineObjectOfNode(DefaultMutableTreeNode node) {
+    return (OutlineObject)node.getUserObject();
   }
 
   @Nullable
-  private FlutterOutline getOutlineOfPath(@Nullable TreePath path) {
+  private OutlineObject getOutlineObjectOfPath(@Nullable TreePath path) {
     if (path == null) {
       return null;
     }
 
     final DefaultMutableTreeNode node = (DefaultMutableTreeNode)path.getLastPathComponent();
-    return getOutlineOfNode(node);
-  }
-
-  private void addOutlinesCoveredByRange(List<FlutterOutline> covered, int start, int end, @Nullable FlutterOutline outline) {
-    if (outline == null) {
-      return;
-    }
-    final OutlineOffsetConverter converter = getOutlineOffsetConverter();
-    final int outlineStart = converter.getConvertedOutlineOffset(outline);
-    final int outlineEnd = converter.getConvertedOutlineEnd(outline);
-    // The outline ends before, or starts after the selection.
-    if (outlineEnd < start || outlineStart > end) {
-      return;
-    }
-    // The outline is covered by the selection.
-    if (outlineStart >= start && outlineEnd <= end) {
-      covered.add(outline);
-      return;
-    }
-    // The outline covers the selection.
-    if (outlineStart <= start && end <= outlineEnd) {
-      if (outline.getChildren() != null) {
-        for (FlutterOutline child : outline.getChildren()) {
-          addOutlinesCoveredByRange(covered, start, end, child);
-        }
-      }
-    }
+    return getOutlineObjectOfNode(node);
   }
 
   private void setSelectedFile(VirtualFile newFile) {
@@ -572,36 +604,40 @@ public class PreviewView implements PersistentStateComponent<PreviewViewState> {
   }
 
   private void applyEditorSelectionToTree(Caret caret) {
-    final List<FlutterOutline> selectedOutlines = new ArrayList<>();
+    int[] selectedNodes = new int[0];
 
-    // Try to find outlines covered by the selection.
-    addOutlinesCoveredByRange(selectedOutlines, caret.getSelectionStart(), caret.getSelectionEnd(), currentOutline);
+    if (currentOutline != null) {
+      final OutlineIndex index = getOutlineOffsetConverter().getIndex(currentOutline);
 
-    // If no covered outlines, try to find the outline under the caret.
-    if (selectedOutlines.isEmpty()) {
-      final FlutterOutline outline = getOutlineOffsetConverter().findOutlineAtOffset(currentOutline, caret.getOffset());
-      if (outline != null) {
-        selectedOutlines.add(outline);
+      // Try to find outlines covered by the selection.
+      selectedNodes = index.findOutlinesCoveredByRange(caret.getSelectionStart(), caret.getSelectionEnd());
+
+      // If no covered outlines, try to find the outline under the caret.
+      if (selectedNodes.length == 0) {
+        final int node = index.findOutlineAtOffset(caret.getOffset());
+        if (node != PackedFlutterOutline.NONE) {
+          selectedNodes = new int[]{node};
+        }
       }
     }
 
-    activeOutlines.setValue(selectedOutlines);
+    activeOutlines.setValue(getActiveOutlines(selectedNodes));
 
-    applyOutlinesSelectionToTree(selectedOutlines);
+    applyOutlinesSelectionToTree(selectedNodes);
 
     // TODO(jacobr): refactor the previewArea to listen on the stream of
     // selected outlines instead.
-    if (previewArea != null) {
-      previewArea.select(selectedOutlines, currentEditor);
+    if (previewArea != null && selectedNodes.length > 0) {
+      previewArea.select(getWidgetToHighlight(selectedNodes[0]), currentEditor);
     }
   }
 
-  private void applyOutlinesSelectionToTree(List<FlutterOutline> outlines) {
+  private void applyOutlinesSelectionToTree(int[] nodes) {
     final List<TreePath> selectedPaths = new ArrayList<>();
     TreeNode[] lastNodePath = null;
     TreePath lastTreePath = null;
-    for (FlutterOutline outline : outlines) {
-      final DefaultMutableTreeNode selectedNode = outlineToNodeMap.get(outline);
+    for (int node : nodes) {
+      final DefaultMutableTreeNode selectedNode = outlineToNodeMap[node];
       if (selectedNode != null) {
         lastNodePath = selectedNode.getPath();
         lastTreePath = new TreePath(lastNodePath);
@@ -736,20 +772,22 @@ class OutlineObject {
   private static final CustomIconMaker iconMaker = new CustomIconMaker();
   private static final Map<Icon, LayeredIcon> flutterDecoratedIcons = new HashMap<>();
 
-  final FlutterOutline outline;
+  @NotNull final PackedFlutterOutline outline;
+  final int node;
   private Icon icon;
 
-  OutlineObject(FlutterOutline outline) {
+  OutlineObject(@NotNull PackedFlutterOutline outline, int node) {
     this.outline = outline;
+    this.node = node;
   }
 
   Icon getIcon() {
-    if (outline.getKind().equals(FlutterOutlineKind.DART_ELEMENT)) {
+    if (outline.getKind(node).equals(FlutterOutlineKind.DART_ELEMENT)) {
       return null;
     }
 
     if (icon == null) {
-      final String className = outline.getClassName();
+      final String className = outline.getClassName(node);
       if (icon == null) {
         icon = iconMaker.fromWidgetName(className);
       }
@@ -765,25 +803,23 @@ class OutlineObject {
   @NotNull
   String getSpeedSearchString() {
     final StringBuilder builder = new StringBuilder();
-    final Element dartElement = outline.getDartElement();
+    final Element dartElement = outline.getDartElement(node);
     if (dartElement != null) {
       builder.append(dartElement.getName());
     }
     else {
-      builder.append(outline.getClassName());
+      builder.append(outline.getClassName(node));
     }
-    if (outline.getVariableName() != null) {
+    if (outline.getVariableName(node) != null) {
       builder.append('|');
-      builder.append(outline.getVariableName());
+      builder.append(outline.getVariableName(node));
     }
 
-    final List<FlutterOutlineAttribute> attributes = outline.getAttributes();
-    if (attributes != null) {
-      for (FlutterOutlineAttribute attribute : attributes) {
-        builder.append(attribute.getName());
-        builder.append(':');
-        builder.append(attribute.getLabel());
-      }
+    for (int i = 0; i < outline.getAttributeCount(node); i++) {
+      final FlutterOutlineAttribute attribute = outline.getAttribute(node, i);
+      builder.append(attribute.getName());
+      builder.append(':');
+      builder.append(attribute.getLabel());
     }
 
     return builder.toString();
@@ -807,79 +843,74 @@ class OutlineTreeCellRenderer extends ColoredTreeCellRenderer {
     if (!(userObject instanceof OutlineObject)) {
       return;
     }
-    final OutlineObject node = (OutlineObject)userObject;
-    final FlutterOutline outline = node.outline;
+    final OutlineObject object = (OutlineObject)userObject;
+    final PackedFlutterOutline outline = object.outline;
+    final int node = object.node;
 
     this.tree = tree;
     this.selected = selected;
 
     // Render a Dart element.
-    final Element dartElement = outline.getDartElement();
+    final Element dartElement = outline.getDartElement(node);
     if (dartElement != null) {
       final Icon icon = DartElementPresentationUtil.getIcon(dartElement);
       setIcon(icon);
 
-      final boolean renderInBold = hasWidgetChild(outline) && ModelUtils.isBuildMethod(dartElement);
+      final boolean renderInBold = hasWidgetChild(outline, node) && ModelUtils.isBuildMethod(dartElement);
       DartElementPresentationUtil.renderElement(dartElement, this, renderInBold);
       return;
     }
 
-    final Icon icon = node.getIcon();
+    final Icon icon = object.getIcon();
     if (icon != null) {
       setIcon(icon);
     }
 
     // Render the widget class.
-    appendSearch(outline.getClassName(), SimpleTextAttributes.REGULAR_ATTRIBUTES);
+    appendSearch(outline.getClassName(node), SimpleTextAttributes.REGULAR_ATTRIBUTES);
 
     // Render the variable.
-    if (outline.getVariableName() != null) {
+    if (outline.getVariableName(node) != null) {
       append(" ");
-      appendSearch(outline.getVariableName(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+      appendSearch(outline.getVariableName(node), SimpleTextAttributes.GRAYED_ATTRIBUTES);
     }
 
     // Render a generic label.
-    if (outline.getKind().equals(FlutterOutlineKind.GENERIC) && outline.getLabel() != null) {
+    if (outline.getKind(node).equals(FlutterOutlineKind.GENERIC) && outline.getLabel(node) != null) {
       append(" ");
-      final String label = outline.getLabel();
+      final String label = outline.getLabel(node);
       appendSearch(label, SimpleTextAttributes.GRAYED_ATTRIBUTES);
     }
 
     // Append all attributes.
-    final List<FlutterOutlineAttribute> attributes = outline.getAttributes();
-    if (attributes != null) {
-      if (attributes.size() == 1 && isAttributeElidable(attributes.get(0).getName())) {
-        final FlutterOutlineAttribute attribute = attributes.get(0);
-        append(" ");
-        appendSearch(attribute.getLabel(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
-      }
-      else {
-        for (int i = 0; i < attributes.size(); i++) {
-          final FlutterOutlineAttribute attribute = attributes.get(i);
-
-          if (i > 0) {
-            append(",");
-          }
-          append(" ");
+    final int attributeCount = outline.getAttributeCount(node);
+    if (attributeCount == 1 && isAttributeElidable(outline.getAttribute(node, 0).getName())) {
+      final FlutterOutlineAttribute attribute = outline.getAttribute(node, 0);
+      append(" ");
+      appendSearch(attribute.getLabel(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+    }
+    else {
+      for (int i = 0; i < attributeCount; i++) {
+        final FlutterOutlineAttribute attribute = outline.getAttribute(node, i);
 
-          if (!StringUtil.equals("data", attribute.getName())) {
-            appendSearch(attribute.getName(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
-            append(": ", SimpleTextAttributes.GRAYED_ATTRIBUTES);
-          }
+        if (i > 0) {
+          append(",");
+        }
+        append(" ");
 
-          appendSearch(attribute.getLabel(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+        if (!StringUtil.equals("data", attribute.getName())) {
+          appendSearch(attribute.getName(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+          append(": ", SimpleTextAttributes.GRAYED_ATTRIBUTES);
         }
+
+        appendSearch(attribute.getLabel(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
       }
     }
   }
 
-  private boolean hasWidgetChild(FlutterOutline outline) {
-    if (outline.getChildren() == null) {
-      return false;
-    }
-
-    for (FlutterOutline child : outline.getChildren()) {
-      if (child.getDartElement() == null) {
+  private boolean hasWidgetChild(@NotNull PackedFlutterOutline outline, int node) {
+    for (int child = outline.getFirstChild(node); child != PackedFlutterOutline.NONE; child = outline.getNextSibling(child)) {
+      if (outline.getDartElement(child) == null) {
         return true;
       }
     }
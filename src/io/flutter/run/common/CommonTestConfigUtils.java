@@ -19,10 +19,12 @@ import com.intellij.psi.PsiFile;
 import com.jetbrains.lang.dart.psi.DartCallExpression;
 import com.jetbrains.lang.dart.psi.DartStringLiteralExpression;
 import io.flutter.dart.DartSyntax;
+import io.flutter.dart.PackedFlutterOutline;
 import io.flutter.editor.ActiveEditorsOutlineService;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.commons.lang.StringEscapeUtils;
+import org.dartlang.analysis.server.protocol.Element;
 import org.dartlang.analysis.server.protocol.ElementKind;
 import org.dartlang.analysis.server.protocol.FlutterOutline;
 import org.jetbrains.annotations.NotNull;
@@ -86,7 +88,7 @@ public abstract class CommonTestConfigUtils {
       return new HashMap<>();
     }
 
-    final FlutterOutline outline = outlineService.getIfUpdated(file);
+    final PackedFlutterOutline outline = outlineService.getIfUpdated(file);
     final String path = file.getVirtualFile().getPath();
     final boolean outlineOutdated;
     synchronized (this) {
@@ -177,9 +179,9 @@ public abstract class CommonTestConfigUtils {
 
   private static class OutlineCache {
     final Map<Integer, TestType> callToTestType;
-    final FlutterOutline outline;
+    final PackedFlutterOutline outline;
 
-    private OutlineCache(FlutterOutline outline, PsiFile file) {
+    private OutlineCache(PackedFlutterOutline outline, PsiFile file) {
       this.callToTestType = new HashMap<>();
       this.outline = outline;
 
@@ -187,16 +189,20 @@ public abstract class CommonTestConfigUtils {
     }
 
     /**
-     * Traverses the {@param outline} tree and adds to {@link OutlineCache#callToTestType } the {@link DartCallExpression}s that are tests or test groups.
+     * Visits the nodes of the {@param outline} and adds to {@link OutlineCache#callToTestType } the {@link DartCallExpression}s that are tests or test groups.
      */
-    private void populateTestTypeMap(@NotNull FlutterOutline outline, @NotNull PsiFile file) {
-      if (outline.getDartElement() != null) {
+    private void populateTestTypeMap(@NotNull PackedFlutterOutline outline, @NotNull PsiFile file) {
+      for (int node = 0; node < outline.getNodeCount(); node++) {
+        final Element dartElement = outline.getDartElement(node);
+        if (dartElement == null) {
+          continue;
+        }
         final PsiElement element;
 
-        switch (outline.getDartElement().getKind()) {
+        switch (dartElement.getKind()) {
           case UNIT_TEST_GROUP: {
             // We found a test group.
-            element = file.findElementAt(outline.getOffset());
+            element = file.findElementAt(outline.getOffset(node));
             final DartCallExpression enclosingCall = DartSyntax.findClosestEnclosingFunctionCall(element);
             if (enclosingCall != null) {
               callToTestType.put(enclosingCall.getTextOffset(), TestType.GROUP);
@@ -206,7 +212,7 @@ public abstract class CommonTestConfigUtils {
 
           case UNIT_TEST_TEST: {
             // We found a unit test.
-            element = file.findElementAt(outline.getOffset());
+            element = file.findElementAt(outline.getOffset(node));
             final DartCallExpression enclosingCall = DartSyntax.findClosestEnclosingFunctionCall(element);
             if (enclosingCall != null) {
               callToTestType.put(enclosingCall.getTextOffset(), TestType.SINGLE);
@@ -219,12 +225,6 @@ public abstract class CommonTestConfigUtils {
             break;
         }
       }
-
-      if (outline.getChildren() != null) {
-        for (FlutterOutline child : outline.getChildren()) {
-          populateTestTypeMap(child, file);
-        }
-      }
     }
   }
 
@@ -249,7 +249,7 @@ public abstract class CommonTestConfigUtils {
     }
 
     @Override
-    public void onOutlineChanged(@NotNull String filePath, @Nullable FlutterOutline outline) {
+    public void onOutlineChanged(@NotNull String filePath, @Nullable PackedFlutterOutline outline) {
       commonTestConfigUtils.clearCachedInfo(filePath);
       forceFileAnnotation();
       service.removeListener(this);
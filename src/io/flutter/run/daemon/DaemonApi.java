@@ -7,6 +7,8 @@ package io.flutter.run.daemon;
 
 import com.google.common.base.Charsets;
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.intellij.execution.process.ProcessAdapter;
 import com.intellij.execution.process.ProcessEvent;
 import com.intellij.execution.process.ProcessHandler;
@@ -28,7 +30,6 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
-import java.util.function.Function;
 
 /**
  * Sends JSON commands to a flutter daemon process, assigning a new id to each one.
@@ -49,7 +50,6 @@ public class DaemonApi {
   @NotNull private final Consumer<String> callback;
   private final AtomicInteger nextId = new AtomicInteger();
   private final Map<Integer, Command> pending = new LinkedHashMap<>();
-  private final StdoutJsonParser stdoutParser = new StdoutJsonParser();
   /**
    * A ring buffer holding the last few lines that the process sent to stderr.
    */
@@ -118,6 +118,7 @@ public class DaemonApi {
    * Receive responses and events from a process until it shuts down.
    */
   void listen(@NotNull ProcessHandler process, @NotNull DaemonEvent.Listener listener) {
+    final StdoutJsonParser stdoutParser = new StdoutJsonParser((String line) -> dispatchLine(line, listener));
     process.addProcessListener(new ProcessAdapter() {
       @Override
       public void onTextAvailable(@NotNull ProcessEvent event, @NotNull Key outputType) {
@@ -145,13 +146,6 @@ public class DaemonApi {
           }
 
           stdoutParser.appendOutput(text);
-
-          for (String line : stdoutParser.getAvailableLines()) {
-            final JsonObject obj = parseAndValidateDaemonEvent(line);
-            if (obj != null) {
-              dispatch(obj, listener);
-            }
-          }
         }
       }
 
@@ -189,13 +183,7 @@ public class DaemonApi {
 
       final JsonElement error = obj.get("error");
       if (error != null) {
-        final JsonElement trace = obj.get("trace");
-        String message = FLUTTER_ERROR_PREFIX + " " + cmd.method + ": " + error;
-        if (trace != null) {
-          message += "\n" + trace;
-        }
-        // Be sure to keep this statement in sync with COMPLETION_EXCEPTION_PREFIX.
-        cmd.completeExceptionally(new IOException(message));
+        cmd.completeWithError(error, obj.get("trace"));
       }
       else {
         cmd.complete(obj.get("result"));
@@ -203,6 +191,162 @@ public class DaemonApi {
     }
   }
 
+  /**
+   * Handles a line of output from a Flutter process if it is a valid daemon message,
+   * the same as dispatching the result of parseAndValidateDaemonEvent.
+   * <p>
+   * Event params and command results are bound directly from the text of the
+   * message rather than from a JSON tree.
+   */
+  void dispatchLine(@NotNull String line, @Nullable DaemonEvent.Listener eventListener) {
+    if (!line.startsWith("[{") || !endsWithJsonMessage(line)) {
+      return;
+    }
+
+    String eventName = null;
+    boolean hasParams = false;
+    DaemonEvent event = null;
+    // Params that came before the event name.
+    JsonObject params = null;
+
+    boolean hasId = false;
+    int id = 0;
+    Command<?> cmd = null;
+    boolean resultRead = false;
+    Object result = null;
+    // A result that came before the id.
+    JsonElement resultTree = null;
+    RuntimeException resultError = null;
+    JsonElement error = null;
+    JsonElement trace = null;
+
+    try (JsonReader reader = DaemonJson.reader(line)) {
+      reader.beginArray();
+      reader.beginObject();
+      fields:
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "event":
+            final JsonToken eventToken = reader.peek();
+            if (eventToken == JsonToken.BEGIN_OBJECT || eventToken == JsonToken.BEGIN_ARRAY) {
+              return;
+            }
+            eventName = DaemonJson.readString(reader);
+            break;
+          case "params":
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+              return;
+            }
+            hasParams = true;
+            if (eventListener == null) {
+              reader.skipValue();
+            }
+            else if (eventName != null && !hasId) {
+              try {
+                event = DaemonEvent.read(eventName, reader);
+              }
+              catch (IllegalStateException | NumberFormatException e) {
+                LOG.info("Unexpected parameters in event from flutter process: " + line);
+                return;
+              }
+            }
+            else {
+              params = DaemonJson.readTree(reader).getAsJsonObject();
+            }
+            break;
+          case "id":
+            if (reader.peek() != JsonToken.NUMBER) {
+              return;
+            }
+            id = reader.nextInt();
+            hasId = true;
+            cmd = peekPending(id);
+            break;
+          case "result":
+            if (cmd == null) {
+              resultTree = DaemonJson.readTree(reader);
+              break;
+            }
+            try {
+              result = cmd.readResult(reader);
+              resultRead = true;
+            }
+            catch (IllegalStateException | NumberFormatException e) {
+              // The rest of the message can't be read, but it is a response to the command.
+              resultError = e;
+              break fields;
+            }
+            break;
+          case "error":
+            error = DaemonJson.readTree(reader);
+            break;
+          case "trace":
+            trace = DaemonJson.readTree(reader);
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      if (resultError == null) {
+        reader.endObject();
+        reader.endArray();
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+          return;
+        }
+      }
+    }
+    catch (IOException | JsonParseException | IllegalStateException | NumberFormatException e) {
+      // Not a valid daemon message.
+      return;
+    }
+
+    if (hasId) {
+      final Command<?> taken = takePending(id);
+      if (taken == null) {
+        return;
+      }
+      if (error != null) {
+        taken.completeWithError(error, trace);
+      }
+      else if (resultError != null) {
+        FlutterUtils.warn(LOG, "Unable to parse response from Flutter daemon. Command was: " + taken, resultError);
+        taken.completeExceptionally(resultError);
+      }
+      else if (resultRead) {
+        taken.completeWithResult(result);
+      }
+      else {
+        taken.complete(resultTree);
+      }
+    }
+    else if (eventName != null && hasParams && eventListener != null) {
+      if (params != null) {
+        event = DaemonEvent.create(eventName, params);
+      }
+      if (event != null) {
+        event.accept(eventListener);
+      }
+    }
+  }
+
+  /**
+   * Whether the line ends with "}]", ignoring trailing whitespace, without copying it.
+   */
+  private static boolean endsWithJsonMessage(@NotNull String line) {
+    int end = line.length();
+    while (end > 0 && line.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return end >= 2 && line.charAt(end - 2) == '}' && line.charAt(end - 1) == ']';
+  }
+
+  @Nullable
+  private Command<?> peekPending(int id) {
+    synchronized (pending) {
+      return pending.get(id);
+    }
+  }
+
   @Nullable
   private Command takePending(int id) {
     final Command cmd;
@@ -348,7 +492,7 @@ public class DaemonApi {
     final @Nullable JsonElement params;
     final int id;
 
-    transient final @Nullable Function<JsonElement, T> parseResult;
+    transient final @Nullable Params<T> resultReader;
     transient final CompletableFuture<T> done = new CompletableFuture<>();
 
     Command(@NotNull String method, @Nullable Params<T> params, int id) {
@@ -357,16 +501,33 @@ public class DaemonApi {
       // But it handles it okay at top-level.
       this.params = GSON.toJsonTree(params);
       this.id = id;
-      this.parseResult = params == null ? null : params::parseResult;
+      this.resultReader = params;
+    }
+
+    /**
+     * Reads the result of this command from a response.
+     */
+    @Nullable
+    T readResult(@NotNull JsonReader result) throws IOException {
+      if (resultReader == null) {
+        result.skipValue();
+        return null;
+      }
+      return resultReader.readResult(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    void completeWithResult(@Nullable Object result) {
+      done.complete((T)result);
     }
 
     void complete(@Nullable JsonElement result) {
-      if (parseResult == null) {
+      if (resultReader == null) {
         done.complete(null);
         return;
       }
       try {
-        done.complete(parseResult.apply(result));
+        done.complete(resultReader.parseResult(result));
       }
       catch (Exception e) {
         FlutterUtils.warn(LOG, "Unable to parse response from Flutter daemon. Command was: " + this, e);
@@ -378,6 +539,15 @@ public class DaemonApi {
       done.completeExceptionally(t);
     }
 
+    void completeWithError(@NotNull JsonElement error, @Nullable JsonElement trace) {
+      String message = FLUTTER_ERROR_PREFIX + " " + method + ": " + error;
+      if (trace != null) {
+        message += "\n" + trace;
+      }
+      // Be sure to keep this statement in sync with COMPLETION_EXCEPTION_PREFIX.
+      completeExceptionally(new IOException(message));
+    }
+
     @Override
     public String toString() {
       return GSON.toJson(this);
@@ -385,8 +555,18 @@ public class DaemonApi {
   }
 
   private abstract static class Params<T> {
+    /**
+     * Reads the result of the command, from null when the response has no result.
+     *
+     * @throws IllegalStateException if the result has an unexpected type.
+     */
     @Nullable
-    abstract T parseResult(@Nullable JsonElement result);
+    abstract T readResult(@Nullable JsonReader result) throws IOException;
+
+    @Nullable
+    final T parseResult(@Nullable JsonElement result) throws IOException {
+      return readResult(result == null ? null : DaemonJson.reader(result));
+    }
   }
 
   private static class AppRestart extends Params<RestartResult> {
@@ -403,15 +583,36 @@ public class DaemonApi {
     }
 
     @Override
-    RestartResult parseResult(JsonElement result) {
-      return GSON.fromJson(result, RestartResult.class);
+    RestartResult readResult(@Nullable JsonReader result) throws IOException {
+      if (DaemonJson.isNull(result)) {
+        return null;
+      }
+      final RestartResult restartResult = new RestartResult();
+      result.beginObject();
+      while (result.hasNext()) {
+        switch (result.nextName()) {
+          case "code":
+            restartResult.code = DaemonJson.readInt(result, restartResult.code);
+            break;
+          case "message":
+            restartResult.message = DaemonJson.readString(result);
+            break;
+          default:
+            result.skipValue();
+        }
+      }
+      result.endObject();
+      return restartResult;
     }
   }
 
   private static class DaemonShutdown extends Params<Boolean> {
     @Nullable
     @Override
-    Boolean parseResult(@Nullable JsonElement result) {
+    Boolean readResult(@Nullable JsonReader result) throws IOException {
+      if (result != null) {
+        result.skipValue();
+      }
       return true;
     }
   }
@@ -424,8 +625,8 @@ public class DaemonApi {
     }
 
     @Override
-    Boolean parseResult(JsonElement result) {
-      return GSON.fromJson(result, Boolean.class);
+    Boolean readResult(@Nullable JsonReader result) throws IOException {
+      return DaemonJson.isNull(result) ? null : DaemonJson.readBoolean(result);
     }
   }
 
@@ -437,8 +638,8 @@ public class DaemonApi {
     }
 
     @Override
-    Boolean parseResult(JsonElement result) {
-      return GSON.fromJson(result, Boolean.class);
+    Boolean readResult(@Nullable JsonReader result) throws IOException {
+      return DaemonJson.isNull(result) ? null : DaemonJson.readBoolean(result);
     }
   }
 
@@ -454,13 +655,15 @@ public class DaemonApi {
     }
 
     @Override
-    JsonObject parseResult(JsonElement result) {
-      if (result instanceof JsonObject) {
-        return (JsonObject)result;
+    JsonObject readResult(@Nullable JsonReader result) {
+      // The result is handed on as JSON.
+      final JsonElement element = result == null ? JsonNull.INSTANCE : DaemonJson.readTree(result);
+      if (element instanceof JsonObject) {
+        return (JsonObject)element;
       }
 
       final JsonObject obj = new JsonObject();
-      obj.add("result", result);
+      obj.add("result", element);
       return obj;
     }
   }
@@ -473,24 +676,37 @@ public class DaemonApi {
     }
 
     @Override
-    List<String> parseResult(JsonElement result) {
+    List<String> readResult(@Nullable JsonReader result) throws IOException {
       // {"platforms":["ios","android"]}
 
-      if (!(result instanceof JsonObject)) {
+      if (result == null) {
         return Collections.emptyList();
       }
-
-      final JsonElement obj = ((JsonObject)result).get("platforms");
-      if (!(obj instanceof JsonArray)) {
+      if (result.peek() != JsonToken.BEGIN_OBJECT) {
+        result.skipValue();
         return Collections.emptyList();
       }
 
-      final List<String> platforms = new ArrayList<>();
-
-      for (int i = 0; i < ((JsonArray)obj).size(); i++) {
-        final JsonElement element = ((JsonArray)obj).get(i);
-        platforms.add(element.getAsString());
+      List<String> platforms = Collections.emptyList();
+      result.beginObject();
+      while (result.hasNext()) {
+        if (!result.nextName().equals("platforms")) {
+          result.skipValue();
+        }
+        else if (result.peek() != JsonToken.BEGIN_ARRAY) {
+          result.skipValue();
+          platforms = Collections.emptyList();
+        }
+        else {
+          platforms = new ArrayList<>();
+          result.beginArray();
+          while (result.hasNext()) {
+            platforms.add(result.nextString());
+          }
+          result.endArray();
+        }
       }
+      result.endObject();
 
       return platforms;
     }
@@ -509,13 +725,35 @@ public class DaemonApi {
 
   private static class DevToolsServe extends Params<DevToolsAddress> {
     @Override
-    DevToolsAddress parseResult(JsonElement result) {
-      if (!(result instanceof JsonObject)) {
+    DevToolsAddress readResult(@Nullable JsonReader result) throws IOException {
+      if (result == null) {
+        return null;
+      }
+      if (result.peek() != JsonToken.BEGIN_OBJECT) {
+        result.skipValue();
         return null;
       }
 
-      final String host = ((JsonObject)result).get("host").getAsString();
-      final int port = ((JsonObject)result).get("port").getAsInt();
+      String host = null;
+      Integer port = null;
+      result.beginObject();
+      while (result.hasNext()) {
+        switch (result.nextName()) {
+          case "host":
+            host = result.nextString();
+            break;
+          case "port":
+            port = result.nextInt();
+            break;
+          default:
+            result.skipValue();
+        }
+      }
+      result.endObject();
+
+      if (host == null || port == null) {
+        throw new IllegalStateException("Missing host or port in devtools.serve result");
+      }
       if (host.isEmpty() || port == 0) {
         return null;
       }
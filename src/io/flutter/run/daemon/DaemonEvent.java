@@ -8,12 +8,18 @@ package io.flutter.run.daemon;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+
+import static io.flutter.run.daemon.DaemonJson.readBoolean;
+import static io.flutter.run.daemon.DaemonJson.readLong;
+import static io.flutter.run.daemon.DaemonJson.readString;
+
 /**
  * <p>A message received from a Flutter process that's not in response to a particular request.
  *
@@ -55,41 +61,76 @@ abstract class DaemonEvent {
   @Nullable
   static DaemonEvent create(@NotNull String eventName, @NotNull JsonObject params) {
     try {
-      switch (eventName) {
-        case "daemon.connected":
-          return GSON.fromJson(params, DaemonConnected.class);
-        case "daemon.log":
-          return GSON.fromJson(params, DaemonLog.class);
-        case "daemon.logMessage":
-          return GSON.fromJson(params, DaemonLogMessage.class);
-        case "daemon.showMessage":
-          return GSON.fromJson(params, DaemonShowMessage.class);
-        case "app.start":
-          return GSON.fromJson(params, AppStarting.class);
-        case "app.debugPort":
-          return GSON.fromJson(params, AppDebugPort.class);
-        case "app.started":
-          return GSON.fromJson(params, AppStarted.class);
-        case "app.log":
-          return GSON.fromJson(params, AppLog.class);
-        case "app.progress":
-          return GSON.fromJson(params, AppProgress.class);
-        case "app.stop":
-          return GSON.fromJson(params, AppStopped.class);
-        case "device.added":
-          return GSON.fromJson(params, DeviceAdded.class);
-        case "device.removed":
-          return GSON.fromJson(params, DeviceRemoved.class);
-        default:
-          return null; // Drop an unknown event.
-      }
+      return read(eventName, DaemonJson.reader(params));
     }
-    catch (JsonSyntaxException e) {
+    catch (IOException | RuntimeException e) {
       LOG.info("Unexpected parameters in event from flutter process: " + params);
       return null;
     }
   }
 
+  /**
+   * Reads the params of an event, or skips them and returns null for an unknown event.
+   * <p>
+   * Each event type binds its own fields so that no intermediate JSON tree or
+   * reflection is needed for the frequent events.
+   *
+   * @throws IllegalStateException if a param has an unexpected type.
+   */
+  @Nullable
+  static DaemonEvent read(@NotNull String eventName, @NotNull JsonReader params) throws IOException {
+    final DaemonEvent event = newEvent(eventName);
+    if (event == null) {
+      params.skipValue(); // Drop an unknown event.
+      return null;
+    }
+    params.beginObject();
+    while (params.hasNext()) {
+      if (!event.readField(params.nextName(), params)) {
+        params.skipValue();
+      }
+    }
+    params.endObject();
+    return event;
+  }
+
+  @Nullable
+  private static DaemonEvent newEvent(@NotNull String eventName) {
+    switch (eventName) {
+      case "daemon.connected":
+        return new DaemonConnected();
+      case "daemon.log":
+        return new DaemonLog();
+      case "daemon.logMessage":
+        return new DaemonLogMessage();
+      case "daemon.showMessage":
+        return new DaemonShowMessage();
+      case "app.start":
+        return new AppStarting();
+      case "app.debugPort":
+        return new AppDebugPort();
+      case "app.started":
+        return new AppStarted();
+      case "app.log":
+        return new AppLog();
+      case "app.progress":
+        return new AppProgress();
+      case "app.stop":
+        return new AppStopped();
+      case "device.added":
+        return new DeviceAdded();
+      case "device.removed":
+        return new DeviceRemoved();
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Reads the value of a field of this event's params, returning false for an unknown field.
+   */
+  abstract boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException;
+
   abstract void accept(Listener listener);
 
   @Override
@@ -163,6 +204,20 @@ abstract class DaemonEvent {
     String version;
     long pid;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "version":
+          version = readString(reader);
+          return true;
+        case "pid":
+          pid = readLong(reader, pid);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onDaemonConnected(this);
     }
@@ -173,6 +228,20 @@ abstract class DaemonEvent {
     String log;
     boolean error;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "log":
+          log = readString(reader);
+          return true;
+        case "error":
+          error = readBoolean(reader, error);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onDaemonLog(this);
     }
@@ -184,6 +253,23 @@ abstract class DaemonEvent {
     String message;
     String stackTrace;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "level":
+          level = readString(reader);
+          return true;
+        case "message":
+          message = readString(reader);
+          return true;
+        case "stackTrace":
+          stackTrace = readString(reader);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onDaemonLogMessage(this);
     }
@@ -195,6 +281,23 @@ abstract class DaemonEvent {
     String title;
     String message;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "level":
+          level = readString(reader);
+          return true;
+        case "title":
+          title = readString(reader);
+          return true;
+        case "message":
+          message = readString(reader);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onDaemonShowMessage(this);
     }
@@ -213,6 +316,29 @@ abstract class DaemonEvent {
     String launchMode;
     boolean supportsRestart;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "appId":
+          appId = readString(reader);
+          return true;
+        case "deviceId":
+          deviceId = readString(reader);
+          return true;
+        case "directory":
+          directory = readString(reader);
+          return true;
+        case "launchMode":
+          launchMode = readString(reader);
+          return true;
+        case "supportsRestart":
+          supportsRestart = readBoolean(reader, supportsRestart);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onAppStarting(this);
     }
@@ -226,6 +352,23 @@ abstract class DaemonEvent {
     String wsUri;
     String baseUri;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "appId":
+          appId = readString(reader);
+          return true;
+        case "wsUri":
+          wsUri = readString(reader);
+          return true;
+        case "baseUri":
+          baseUri = readString(reader);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onAppDebugPort(this);
     }
@@ -235,6 +378,17 @@ abstract class DaemonEvent {
     // "event":"app.started"
     String appId;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "appId":
+          appId = readString(reader);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onAppStarted(this);
     }
@@ -246,6 +400,23 @@ abstract class DaemonEvent {
     String log;
     boolean error;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "appId":
+          appId = readString(reader);
+          return true;
+        case "log":
+          log = readString(reader);
+          return true;
+        case "error":
+          error = readBoolean(reader, error);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onAppLog(this);
     }
@@ -268,6 +439,29 @@ abstract class DaemonEvent {
 
     private Boolean finished;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "appId":
+          appId = readString(reader);
+          return true;
+        case "id":
+          id = readString(reader);
+          return true;
+        case "progressId":
+          progressId = readString(reader);
+          return true;
+        case "message":
+          message = readString(reader);
+          return true;
+        case "finished":
+          finished = readBoolean(reader);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     @NotNull
     String getType() {
       return StringUtil.notNullize(progressId);
@@ -296,6 +490,20 @@ abstract class DaemonEvent {
     String appId;
     String error;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "appId":
+          appId = readString(reader);
+          return true;
+        case "error":
+          error = readString(reader);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onAppStopped(this);
     }
@@ -314,6 +522,35 @@ abstract class DaemonEvent {
     @Nullable String platformType;
     @Nullable Boolean ephemeral;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "id":
+          id = readString(reader);
+          return true;
+        case "name":
+          name = readString(reader);
+          return true;
+        case "platform":
+          platform = readString(reader);
+          return true;
+        case "emulator":
+          emulator = readBoolean(reader);
+          return true;
+        case "category":
+          category = readString(reader);
+          return true;
+        case "platformType":
+          platformType = readString(reader);
+          return true;
+        case "ephemeral":
+          ephemeral = readBoolean(reader);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onDeviceAdded(this);
     }
@@ -326,6 +563,26 @@ abstract class DaemonEvent {
     String platform;
     boolean emulator;
 
+    @Override
+    boolean readField(@NotNull String field, @NotNull JsonReader reader) throws IOException {
+      switch (field) {
+        case "id":
+          id = readString(reader);
+          return true;
+        case "name":
+          name = readString(reader);
+          return true;
+        case "platform":
+          platform = readString(reader);
+          return true;
+        case "emulator":
+          emulator = readBoolean(reader, emulator);
+          return true;
+        default:
+          return false;
+      }
+    }
+
     void accept(Listener listener) {
       listener.onDeviceRemoved(this);
     }
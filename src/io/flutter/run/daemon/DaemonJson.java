@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.run.daemon;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Reads values of daemon messages from a {@link JsonReader}, converting them the
+ * same way Gson does when binding a field of the value's type.
+ * <p>
+ * Readers throw IllegalStateException or NumberFormatException when a value has
+ * the wrong type, and IOException when the JSON is malformed.
+ */
+final class DaemonJson {
+  private DaemonJson() {
+  }
+
+  /**
+   * Creates a lenient reader, as daemon messages have been parsed leniently.
+   */
+  @NotNull
+  static JsonReader reader(@NotNull String json) {
+    final JsonReader reader = new JsonReader(new StringReader(json));
+    reader.setLenient(true);
+    return reader;
+  }
+
+  /**
+   * Creates a reader of a value that has already been parsed.
+   */
+  @NotNull
+  static JsonReader reader(@NotNull JsonElement element) {
+    return reader(element.toString());
+  }
+
+  /**
+   * Consumes a null value, returning whether the value is absent or null.
+   */
+  static boolean isNull(@Nullable JsonReader reader) throws IOException {
+    if (reader == null) {
+      return true;
+    }
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return true;
+    }
+    return false;
+  }
+
+  @Nullable
+  static String readString(@NotNull JsonReader reader) throws IOException {
+    final JsonToken token = reader.peek();
+    if (token == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    if (token == JsonToken.BOOLEAN) {
+      return Boolean.toString(reader.nextBoolean());
+    }
+    return reader.nextString();
+  }
+
+  @Nullable
+  static Boolean readBoolean(@NotNull JsonReader reader) throws IOException {
+    final JsonToken token = reader.peek();
+    if (token == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    if (token == JsonToken.STRING) {
+      return Boolean.parseBoolean(reader.nextString());
+    }
+    return reader.nextBoolean();
+  }
+
+  /**
+   * Reads a boolean for a primitive field, which keeps its value when the JSON value is null.
+   */
+  static boolean readBoolean(@NotNull JsonReader reader, boolean previous) throws IOException {
+    final Boolean value = readBoolean(reader);
+    return value == null ? previous : value;
+  }
+
+  /**
+   * Reads an int for a primitive field, which keeps its value when the JSON value is null.
+   */
+  static int readInt(@NotNull JsonReader reader, int previous) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return previous;
+    }
+    return reader.nextInt();
+  }
+
+  /**
+   * Reads a long for a primitive field, which keeps its value when the JSON value is null.
+   */
+  static long readLong(@NotNull JsonReader reader, long previous) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return previous;
+    }
+    return reader.nextLong();
+  }
+
+  /**
+   * Reads a value as a tree, for values whose structure is not known in advance.
+   */
+  @NotNull
+  static JsonElement readTree(@NotNull JsonReader reader) {
+    return new JsonParser().parse(reader);
+  }
+}
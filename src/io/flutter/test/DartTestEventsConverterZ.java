@@ -1,6 +1,8 @@
 package io.flutter.test;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.intellij.execution.testframework.TestConsoleProperties;
 import com.intellij.execution.testframework.sm.ServiceMessageBuilder;
 import com.intellij.execution.testframework.sm.runner.OutputToGeneralTestEventsConverter;
@@ -11,24 +13,30 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.PathUtil;
 import com.jetbrains.lang.dart.ide.runner.util.DartTestLocationProvider;
 import com.jetbrains.lang.dart.util.DartUrlResolver;
-import gnu.trove.TIntLongHashMap;
+import gnu.trove.TIntIntHashMap;
+import gnu.trove.TIntObjectHashMap;
 import io.flutter.utils.JsonUtils;
 import jetbrains.buildServer.messages.serviceMessages.ServiceMessageVisitor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.StringReader;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Convert events from JSON format generated by package:test to the string format
  * expected by the event processor.
+ * <p>
+ * Events are bound straight from the JSON text, without building a tree. Tests are
+ * forgotten once they are done, apart from what is needed to report the output and
+ * errors that arrive for them later (see below). Consecutive output of a test is
+ * reported as one message, when the next event arrives or the current chunk of
+ * process output has been processed.
  * NOTE: The test runner runs tests asynchronously. It is possible to get a 'testDone'
  * event followed some time later by an 'error' event for that same test. That should
  * convert a successful test into a failure. That case is not being handled.
@@ -72,12 +80,15 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
   private static final String JSON_LINE = "line";
   private static final String JSON_COLUMN = "column";
   private static final String JSON_URL = "url";
+  private static final String JSON_SKIP = "skip";
+  private static final String JSON_SKIP_REASON = "skipReason";
 
   private static final String RESULT_SUCCESS = "success";
   private static final String RESULT_FAILURE = "failure";
   private static final String RESULT_ERROR = "error";
 
   private static final String EXPECTED = "Expected: ";
+  private static final String ACTUAL = "\n  Actual: ";
   private static final Pattern EXPECTED_ACTUAL_RESULT = Pattern.compile("\\nExpected: (.*)\\n  Actual: (.*)\\n *\\^\\n Differ.*\\n");
   private static final String FILE_URL_PREFIX = "dart_location://";
   private static final String LOADING_PREFIX = "loading ";
@@ -92,55 +103,120 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
   private String myLocation;
   private Key myCurrentOutputType;
   private ServiceMessageVisitor myCurrentVisitor;
-  private final TIntLongHashMap myTestIdToTimestamp;
-  private final Map<Integer, Test> myTestData;
-  private final Map<Integer, Group> myGroupData;
-  private final Map<Integer, Suite> mySuiteData;
+  private final TIntObjectHashMap<Test> myTestData;
+  private final TIntObjectHashMap<Group> myGroupData;
+  private final TIntObjectHashMap<Suite> mySuiteData;
+
+  /**
+   * The reported tests that are done, from id to (valid parent id << 1 | 1 if an error was reported).
+   * <p>
+   * Output and errors can arrive for a test after it is done; they are reported by id only.
+   */
+  private final TIntIntHashMap myDoneTests;
   private int mySuitCount;
 
+  /**
+   * The output of a test that has not been reported yet, or -1 for none.
+   */
+  private int myPendingOutputTestId = -1;
+  private int myPendingOutputParentId;
+  private String myPendingOutputName;
+  private final StringBuilder myPendingOutput = new StringBuilder();
+  private Key myPendingOutputType;
+  private ServiceMessageVisitor myPendingOutputVisitor;
+
   public DartTestEventsConverterZ(@NotNull final String testFrameworkName,
                                   @NotNull final TestConsoleProperties consoleProperties,
                                   @NotNull final DartUrlResolver urlResolver) {
     super(testFrameworkName, consoleProperties);
     myUrlResolver = urlResolver;
-    myTestIdToTimestamp = new TIntLongHashMap();
-    myTestData = new HashMap<>();
-    myGroupData = new HashMap<>();
-    mySuiteData = new HashMap<>();
+    myTestData = new TIntObjectHashMap<>();
+    myGroupData = new TIntObjectHashMap<>();
+    mySuiteData = new TIntObjectHashMap<>();
+    myDoneTests = new TIntIntHashMap();
+  }
+
+  @Override
+  public void process(final String text, final Key outputType) {
+    super.process(text, outputType);
+    flushPendingOutput();
+  }
+
+  @Override
+  public void flushBufferOnProcessTermination(final int exitCode) {
+    super.flushBufferOnProcessTermination(exitCode);
+    flushPendingOutput();
   }
 
   @Override
   protected boolean processServiceMessages(final String text, final Key outputType, final ServiceMessageVisitor visitor)
     throws ParseException {
-    LOG.debug("<<< " + text.trim());
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("<<< " + text.trim());
+    }
     myCurrentOutputType = outputType;
     myCurrentVisitor = visitor;
     // service message parser expects line like "##teamcity[ .... ]" without whitespaces in the end.
     return processEventText(text);
   }
 
-  @SuppressWarnings("SimplifiableIfStatement")
   private boolean processEventText(final String text) throws JsonSyntaxException, ParseException {
+    if (startsWithObject(text)) {
+      final Event event;
+      try {
+        event = readEvent(text);
+      }
+      catch (IOException ex) {
+        return processMalformedText(text);
+      }
+      catch (IllegalStateException | NumberFormatException ex) {
+        throw new ParseException("Unexpected value in " + text.trim() + ": " + ex.getMessage(), 0);
+      }
+      if (!TYPE_PRINT.equals(event.type)) {
+        flushPendingOutput();
+      }
+      return process(event);
+    }
+
+    flushPendingOutput();
+
     JsonElement elem;
     try {
       elem = JsonUtils.parseString(text);
     }
     catch (JsonSyntaxException ex) {
-      if (text.contains("\"json\" is not an allowed value for option \"reporter\"")) {
-        final ServiceMessageBuilder testStarted = ServiceMessageBuilder.testStarted("Failed to start");
-        final ServiceMessageBuilder testFailed = ServiceMessageBuilder.testFailed("Failed to start");
-        testFailed.addAttribute("message", "Please update your pubspec.yaml dependency on package:test to version 0.12.9 or later.");
-        final ServiceMessageBuilder testFinished = ServiceMessageBuilder.testFinished("Failed to start");
-        return finishMessage(testStarted, 1, 0) & finishMessage(testFailed, 1, 0) & finishMessage(testFinished, 1, 0);
-      }
-
-      return doProcessServiceMessages(text);
+      return processMalformedText(text);
     }
 
     if (elem != null && elem.isJsonArray()) return process(elem.getAsJsonArray());
 
-    if (elem == null || !elem.isJsonObject()) return false;
-    return process(elem.getAsJsonObject());
+    // Objects are bound by readEvent(); this is a primitive or null.
+    return false;
+  }
+
+  private static boolean startsWithObject(@NotNull String text) {
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (!Character.isWhitespace(c)) {
+        return c == '{';
+      }
+    }
+    return false;
+  }
+
+  @SuppressWarnings("SimplifiableIfStatement")
+  private boolean processMalformedText(final String text) throws ParseException {
+    flushPendingOutput();
+
+    if (text.contains("\"json\" is not an allowed value for option \"reporter\"")) {
+      final ServiceMessageBuilder testStarted = ServiceMessageBuilder.testStarted("Failed to start");
+      final ServiceMessageBuilder testFailed = ServiceMessageBuilder.testFailed("Failed to start");
+      testFailed.addAttribute("message", "Please update your pubspec.yaml dependency on package:test to version 0.12.9 or later.");
+      final ServiceMessageBuilder testFinished = ServiceMessageBuilder.testFinished("Failed to start");
+      return finishMessage(testStarted, 1, 0) & finishMessage(testFailed, 1, 0) & finishMessage(testFinished, 1, 0);
+    }
+
+    return doProcessServiceMessages(text);
   }
 
   /**
@@ -151,51 +227,52 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
   }
 
   private boolean doProcessServiceMessages(@NotNull final String text) throws ParseException {
-    LOG.debug(">>> " + text);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(">>> " + text);
+    }
     return super.processServiceMessages(text, myCurrentOutputType, myCurrentVisitor);
   }
 
   @SuppressWarnings("SimplifiableIfStatement")
-  private boolean process(JsonObject obj) throws JsonSyntaxException, ParseException {
-    String type = obj.get(JSON_TYPE).getAsString();
+  private boolean process(Event event) throws ParseException {
+    final String type = event.type;
     if (TYPE_TEST_START.equals(type)) {
-      return handleTestStart(obj);
+      return handleTestStart(event);
     }
     else if (TYPE_TEST_DONE.equals(type)) {
-      return handleTestDone(obj);
+      return handleTestDone(event);
     }
     else if (TYPE_ERROR.equals(type)) {
-      return handleError(obj);
+      return handleError(event);
     }
     else if (TYPE_PRINT.equals(type)) {
-      return handlePrint(obj);
+      return handlePrint(event);
     }
     else if (TYPE_GROUP.equals(type)) {
-      return handleGroup(obj);
+      return handleGroup(event);
     }
     else if (TYPE_SUITE.equals(type)) {
-      return handleSuite(obj);
+      return handleSuite(event);
     }
     else if (TYPE_ALL_SUITES.equals(type)) {
-      return handleAllSuites(obj);
+      return handleAllSuites(event);
     }
     else if (TYPE_START.equals(type)) {
-      return handleStart(obj);
+      return handleStart(event);
     }
     else if (TYPE_DONE.equals(type)) {
-      return handleDone(obj);
+      return handleDone(event);
     }
     else {
       return true;
     }
   }
 
-  private boolean handleTestStart(JsonObject obj) throws ParseException {
-    final JsonObject testObj = obj.getAsJsonObject(DEF_TEST);
-
-    // Not reached if testObj == null.
-    final Test test = getTest(obj);
-    myTestIdToTimestamp.put(test.getId(), getTimestamp(obj));
+  private boolean handleTestStart(Event event) throws ParseException {
+    if (event.test == null) throw new ParseException("No test in json object", 0);
+    final Test test = event.test;
+    myTestData.put(test.getId(), test);
+    test.myStartMillis = getTimestamp(event);
 
     if (shouldTestBeHiddenIfPassed(test)) {
       // Virtual test that represents loading or compiling a test suite. See lib/src/runner/loader.dart -> Loader.loadFile() in pkg/test source code
@@ -223,7 +300,7 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
     addLocationHint(testStarted, test);
     boolean result = finishMessage(testStarted, test.getId(), test.getValidParentId());
 
-    final Metadata metadata = Metadata.from(testObj.getAsJsonObject(DEF_METADATA));
+    final Metadata metadata = test.getMetadata();
     if (metadata.skip) {
       final ServiceMessageBuilder message = ServiceMessageBuilder.testIgnored(test.getBaseName());
       if (metadata.skipReason != null) message.addAttribute("message", metadata.skipReason);
@@ -251,14 +328,15 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
            group != null && group.getDoneTestsCount() > 0 && test.getBaseName().equals(TEAR_DOWN_ALL_VIRTUAL_TEST_NAME);
   }
 
-  private boolean handleTestDone(JsonObject obj) throws ParseException {
-    final Test test = getTest(obj);
+  private boolean handleTestDone(Event event) throws ParseException {
+    final Test test = getTest(event);
+    if (test == null) return true;
 
     if (!test.myTestStartReported) return true;
 
-    String result = getResult(obj);
+    String result = event.result == null ? "<no result>" : event.result;
     if (!result.equals(RESULT_SUCCESS) && !result.equals(RESULT_FAILURE) && !result.equals(RESULT_ERROR)) {
-      throw new ParseException("Unknown result: " + obj, 0);
+      throw new ParseException("Unknown result: " + result, 0);
     }
 
     test.testDone();
@@ -266,10 +344,16 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
     //if (test.getMetadata().skip) return true; // skipped tests are reported as ignored in handleTestStart(). testFinished signal must follow
 
     ServiceMessageBuilder testFinished = ServiceMessageBuilder.testFinished(test.getBaseName());
-    long duration = getTimestamp(obj) - myTestIdToTimestamp.get(test.getId());
+    long duration = getTimestamp(event) - test.myStartMillis;
     testFinished.addAttribute("duration", Long.toString(duration));
 
-    return finishMessage(testFinished, test.getId(), test.getValidParentId()) && checkGroupDone(test.getParent());
+    final boolean finished = finishMessage(testFinished, test.getId(), test.getValidParentId());
+
+    // Only the ids are needed to report later output of the test.
+    myTestData.remove(test.getId());
+    myDoneTests.put(test.getId(), test.getValidParentId() << 1 | (test.myTestErrorReported ? 1 : 0));
+
+    return finished && checkGroupDone(test.getParent());
   }
 
   @SuppressWarnings("SimplifiableIfStatement")
@@ -280,9 +364,10 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
     return true;
   }
 
-  private boolean handleGroup(JsonObject obj) throws ParseException {
-    final Group group = getGroup(obj.getAsJsonObject(DEF_GROUP));
-    return handleGroup(group);
+  private boolean handleGroup(Event event) throws ParseException {
+    if (event.group == null) throw new ParseException("Unexpected null json object", 0);
+    myGroupData.put(event.group.getId(), event.group);
+    return handleGroup(event.group);
   }
 
   protected boolean handleGroup(@NotNull Group group) throws ParseException {
@@ -303,17 +388,23 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
     return finishMessage(groupMsg, group.getId(), group.getValidParentId());
   }
 
-  private boolean handleSuite(JsonObject obj) throws ParseException {
-    Suite suite = getSuite(obj.getAsJsonObject(DEF_SUITE));
-    if (!suite.hasPath()) {
-      mySuiteData.remove(suite.getId());
+  private boolean handleSuite(Event event) throws ParseException {
+    if (event.suite == null) throw new ParseException("Unexpected null json object", 0);
+    if (event.suite.hasPath()) {
+      mySuiteData.put(event.suite.getId(), event.suite);
+    }
+    else {
+      mySuiteData.remove(event.suite.getId());
     }
     return true;
   }
 
-  private boolean handleError(JsonObject obj) throws ParseException {
-    final Test test = getTest(obj);
-    final String message = getErrorMessage(obj);
+  private boolean handleError(Event event) throws ParseException {
+    final String message = event.error == null ? "<no error message>" : event.error;
+    final Test test = getTest(event);
+    if (test == null) {
+      return handleErrorAfterDone(event, message);
+    }
     boolean result = true;
 
     if (!test.myTestStartReported) {
@@ -328,41 +419,71 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
       result &= finishMessage(testErrorMessage, test.getId(), test.getValidParentId());
     }
     else {
-      final ServiceMessageBuilder testError = ServiceMessageBuilder.testFailed(test.getBaseName());
       test.myTestErrorReported = true;
+      result &= finishMessage(createTestFailed(test.getBaseName(), message, getBoolean(event.isFailure)),
+                              test.getId(), test.getValidParentId());
+    }
 
-      String failureMessage = message;
-      int firstExpectedIndex = message.indexOf(EXPECTED);
-      if (firstExpectedIndex >= 0) {
-        Matcher matcher = EXPECTED_ACTUAL_RESULT.matcher(message);
-        if (matcher.find(firstExpectedIndex + EXPECTED.length())) {
-          String expectedText = matcher.group(1);
-          String actualText = matcher.group(2);
-          testError.addAttribute("expected", expectedText);
-          testError.addAttribute("actual", actualText);
-          if (firstExpectedIndex == 0) {
-            failureMessage = "Comparison failed";
-          }
-          else {
-            failureMessage = message.substring(0, firstExpectedIndex);
-          }
-        }
-      }
-
-      if (!getBoolean(obj, JSON_IS_FAILURE)) testError.addAttribute("error", "true");
-      testError.addAttribute("message", appendLineBreakIfNeeded(failureMessage));
+    return result & reportStackTrace(event, test.getBaseName(), test.getId(), test.getValidParentId());
+  }
 
-      result &= finishMessage(testError, test.getId(), test.getValidParentId());
+  /**
+   * Reports an error of a test that is done, which is only known by its ids.
+   */
+  private boolean handleErrorAfterDone(Event event, @NotNull String message) throws ParseException {
+    if (!myDoneTests.containsKey(event.testId)) throw new ParseException("Unknown test: " + event.testId, 0);
+    final int doneTest = myDoneTests.get(event.testId);
+    final int parentId = doneTest >> 1;
+
+    boolean result;
+    if ((doneTest & 1) != 0) {
+      final ServiceMessageBuilder testErrorMessage = ServiceMessageBuilder.testStdErr("");
+      testErrorMessage.addAttribute("out", appendLineBreakIfNeeded(message));
+      result = finishMessage(testErrorMessage, event.testId, parentId);
     }
+    else {
+      myDoneTests.put(event.testId, doneTest | 1);
+      result = finishMessage(createTestFailed("", message, getBoolean(event.isFailure)), event.testId, parentId);
+    }
+
+    return result & reportStackTrace(event, "", event.testId, parentId);
+  }
 
-    final String stackTrace = getStackTrace(obj);
-    if (!StringUtil.isEmptyOrSpaces(stackTrace)) {
-      final ServiceMessageBuilder stackTraceMessage = ServiceMessageBuilder.testStdErr(test.getBaseName());
-      stackTraceMessage.addAttribute("out", appendLineBreakIfNeeded(stackTrace));
-      result &= finishMessage(stackTraceMessage, test.getId(), test.getValidParentId());
+  @NotNull
+  private static ServiceMessageBuilder createTestFailed(@NotNull String name, @NotNull String message, boolean isFailure) {
+    final ServiceMessageBuilder testError = ServiceMessageBuilder.testFailed(name);
+
+    String failureMessage = message;
+    int firstExpectedIndex = message.indexOf(EXPECTED);
+    // Only comparison failures have an actual value; skip the pattern for other messages.
+    if (firstExpectedIndex >= 0 && message.indexOf(ACTUAL, firstExpectedIndex) >= 0) {
+      Matcher matcher = EXPECTED_ACTUAL_RESULT.matcher(message);
+      if (matcher.find(firstExpectedIndex + EXPECTED.length())) {
+        String expectedText = matcher.group(1);
+        String actualText = matcher.group(2);
+        testError.addAttribute("expected", expectedText);
+        testError.addAttribute("actual", actualText);
+        if (firstExpectedIndex == 0) {
+          failureMessage = "Comparison failed";
+        }
+        else {
+          failureMessage = message.substring(0, firstExpectedIndex);
+        }
+      }
     }
 
-    return result;
+    if (!isFailure) testError.addAttribute("error", "true");
+    testError.addAttribute("message", appendLineBreakIfNeeded(failureMessage));
+    return testError;
+  }
+
+  private boolean reportStackTrace(Event event, @NotNull String name, int testId, int parentId) throws ParseException {
+    final String stackTrace = event.stackTrace == null ? "<no stack trace>" : event.stackTrace;
+    if (StringUtil.isEmptyOrSpaces(stackTrace)) return true;
+
+    final ServiceMessageBuilder stackTraceMessage = ServiceMessageBuilder.testStdErr(name);
+    stackTraceMessage.addAttribute("out", appendLineBreakIfNeeded(stackTrace));
+    return finishMessage(stackTraceMessage, testId, parentId);
   }
 
   @NotNull
@@ -370,15 +491,20 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
     return message.endsWith("\n") ? message : message + "\n";
   }
 
-  private boolean handleAllSuites(JsonObject obj) {
-    JsonElement elem = obj.get(JSON_COUNT);
-    if (elem == null || !elem.isJsonPrimitive()) return true;
-    mySuitCount = elem.getAsInt();
+  private boolean handleAllSuites(Event event) {
+    if (event.count < 0) return true;
+    mySuitCount = event.count;
     return true;
   }
 
-  private boolean handlePrint(JsonObject obj) throws ParseException {
-    final Test test = getTest(obj);
+  private boolean handlePrint(Event event) throws ParseException {
+    final String message = event.message == null ? "<no message>" : event.message;
+    final Test test = getTest(event);
+    if (test == null) {
+      if (!myDoneTests.containsKey(event.testId)) throw new ParseException("Unknown test: " + event.testId, 0);
+      addPendingOutput(event.testId, myDoneTests.get(event.testId) >> 1, "", message);
+      return true;
+    }
     boolean result = true;
 
     if (!test.myTestStartReported) {
@@ -386,22 +512,66 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
         return true; // output in successfully passing setUpAll/tearDownAll is not important enough to make these nodes visible
       }
 
+      flushPendingOutput();
       final ServiceMessageBuilder testStarted = ServiceMessageBuilder.testStarted(test.getBaseName());
       test.myTestStartReported = true;
       result = finishMessage(testStarted, test.getId(), test.getValidParentId());
     }
 
-    ServiceMessageBuilder message = ServiceMessageBuilder.testStdOut(test.getBaseName());
-    message.addAttribute("out", appendLineBreakIfNeeded(getMessage(obj)));
+    addPendingOutput(test.getId(), test.getValidParentId(), test.getBaseName(), message);
+    return result;
+  }
 
-    return result & finishMessage(message, test.getId(), test.getValidParentId());
+  /**
+   * Adds output of a test, to be reported along with the output that follows it.
+   */
+  private void addPendingOutput(int testId, int parentId, @NotNull String name, @NotNull String message) {
+    if (myPendingOutputTestId != testId || myPendingOutputVisitor != myCurrentVisitor) {
+      flushPendingOutput();
+      myPendingOutputTestId = testId;
+      myPendingOutputParentId = parentId;
+      myPendingOutputName = name;
+      myPendingOutputType = myCurrentOutputType;
+      myPendingOutputVisitor = myCurrentVisitor;
+    }
+    myPendingOutput.append(message);
+    if (!message.endsWith("\n")) {
+      myPendingOutput.append('\n');
+    }
+  }
+
+  /**
+   * Reports the output of a test that has been held back.
+   */
+  private void flushPendingOutput() {
+    if (myPendingOutputTestId < 0) return;
+
+    final ServiceMessageBuilder message = ServiceMessageBuilder.testStdOut(myPendingOutputName);
+    message.addAttribute("out", myPendingOutput.toString());
+    message.addAttribute("nodeId", String.valueOf(myPendingOutputTestId));
+    message.addAttribute("parentNodeId", String.valueOf(myPendingOutputParentId));
+
+    final Key outputType = myPendingOutputType;
+    final ServiceMessageVisitor visitor = myPendingOutputVisitor;
+    myPendingOutputTestId = -1;
+    myPendingOutputName = null;
+    myPendingOutputType = null;
+    myPendingOutputVisitor = null;
+    myPendingOutput.setLength(0);
+
+    try {
+      super.processServiceMessages(message.toString(), outputType, visitor);
+    }
+    catch (ParseException ex) {
+      LOG.warn(ex);
+    }
   }
 
-  private boolean handleStart(JsonObject obj) throws ParseException {
-    myTestIdToTimestamp.clear();
+  private boolean handleStart(Event event) throws ParseException {
     myTestData.clear();
     myGroupData.clear();
     mySuiteData.clear();
+    myDoneTests.clear();
     mySuitCount = 0;
 
     // TODO: Change to ServiceMessageBuilder.testsStarted() for 2020.1.
@@ -409,7 +579,7 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
   }
 
   @SuppressWarnings("RedundantThrows")
-  private boolean handleDone(JsonObject obj) throws ParseException {
+  private boolean handleDone(Event event) throws ParseException {
     // The test runner has reached the end of the tests.
     processAllTestsDone();
     return true;
@@ -417,7 +587,8 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
 
   private void processAllTestsDone() {
     // All tests are done.
-    for (Group group : myGroupData.values()) {
+    for (int id : myGroupData.keys()) {
+      final Group group = myGroupData.get(id);
       // For package: test prior to v. 0.12.9 there were no Group.testCount field, so need to finish them all at the end.
       // AFAIK the order does not matter. A depth-first post-order traversal of the tree would work
       // if order does matter. Note: Currently, there is no tree representation, just parent links.
@@ -431,10 +602,10 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
         }
       }
     }
-    myTestIdToTimestamp.clear();
     myTestData.clear();
     myGroupData.clear();
     mySuiteData.clear();
+    myDoneTests.clear();
     mySuitCount = 0;
   }
 
@@ -481,101 +652,293 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
     messageBuilder.addAttribute("locationHint", location);
   }
 
-  private static long getTimestamp(JsonObject obj) throws ParseException {
-    return getLong(obj, JSON_MILLIS);
+  private static long getTimestamp(Event event) throws ParseException {
+    if (event.time == null) throw new ParseException("Value is not type long: " + null, 0);
+    return event.time;
   }
 
-  private static long getLong(JsonObject obj, String name) throws ParseException {
-    JsonElement val = obj == null ? null : obj.get(name);
-    if (val == null || !val.isJsonPrimitive()) throw new ParseException("Value is not type long: " + val, 0);
-    return val.getAsLong();
+  private static boolean getBoolean(Boolean value) throws ParseException {
+    if (value == null) throw new ParseException("Value is not type boolean: " + null, 0);
+    return value;
   }
 
-  private static boolean getBoolean(JsonObject obj, String name) throws ParseException {
-    JsonElement val = obj == null ? null : obj.get(name);
-    if (val == null || !val.isJsonPrimitive()) throw new ParseException("Value is not type boolean: " + val, 0);
-    return val.getAsBoolean();
+  /**
+   * Returns the test of an event, or null if it is done.
+   */
+  @Nullable
+  private Test getTest(Event event) throws ParseException {
+    if (event.testId < 0) throw new ParseException("No testId in json object", 0);
+    return myTestData.get(event.testId);
   }
 
+  /**
+   * Reads an event, creating the test, group or suite it defines.
+   */
   @NotNull
-  private Test getTest(JsonObject obj) throws ParseException {
-    return getItem(obj, myTestData);
+  private Event readEvent(@NotNull String text) throws IOException {
+    final JsonReader reader = new JsonReader(new StringReader(text));
+    // Events used to be parsed leniently, by JsonParser.
+    reader.setLenient(true);
+
+    final Event event = new Event();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if (isNull(reader)) continue;
+      switch (name) {
+        case JSON_TYPE:
+          event.type = readString(reader);
+          break;
+        case JSON_MILLIS:
+          event.time = reader.nextLong();
+          break;
+        case JSON_TEST_ID:
+          event.testId = reader.nextInt();
+          break;
+        case JSON_COUNT:
+          event.count = reader.nextInt();
+          break;
+        case JSON_MESSAGE:
+          event.message = readString(reader);
+          break;
+        case JSON_ERROR_MESSAGE:
+          event.error = readString(reader);
+          break;
+        case JSON_STACK_TRACE:
+          event.stackTrace = readString(reader);
+          break;
+        case JSON_IS_FAILURE:
+          event.isFailure = readBoolean(reader);
+          break;
+        case JSON_RESULT:
+          event.result = readString(reader);
+          break;
+        case DEF_TEST:
+          event.test = readTest(reader);
+          if (event.testId < 0) event.testId = event.test.getId();
+          break;
+        case DEF_GROUP:
+          event.group = readGroup(reader);
+          break;
+        case DEF_SUITE:
+          event.suite = readSuite(reader);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+    if (reader.peek() != JsonToken.END_DOCUMENT) {
+      throw new IOException("Did not consume the entire document");
+    }
+    return event;
   }
 
   @NotNull
-  private Group getGroup(JsonObject obj) throws ParseException {
-    return getItem(obj, myGroupData);
-  }
+  private Test readTest(@NotNull JsonReader reader) throws IOException {
+    int id = -1;
+    String name = null;
+    int suiteId = -1;
+    int parentId = -1;
+    Metadata metadata = Metadata.NONE;
+    int line = -1;
+    int column = -1;
+    String url = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String field = reader.nextName();
+      if (isNull(reader)) continue;
+      switch (field) {
+        case JSON_ID:
+          id = reader.nextInt();
+          break;
+        case JSON_NAME:
+          name = readString(reader);
+          break;
+        case JSON_SUITE_ID:
+          suiteId = reader.nextInt();
+          break;
+        case JSON_GROUP_IDS:
+          // The test is in the last, innermost group.
+          parentId = -1;
+          reader.beginArray();
+          while (reader.hasNext()) {
+            parentId = reader.nextInt();
+          }
+          reader.endArray();
+          break;
+        case DEF_METADATA:
+          metadata = readMetadata(reader);
+          break;
+        case JSON_LINE:
+          line = reader.nextInt();
+          break;
+        case JSON_COLUMN:
+          column = reader.nextInt();
+          break;
+        case JSON_URL:
+          url = readString(reader);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
 
-  @NotNull
-  private Suite getSuite(JsonObject obj) throws ParseException {
-    return getItem(obj, mySuiteData);
+    return new Test(id, name == null ? Item.NO_NAME : name, parentId < 0 ? null : myGroupData.get(parentId),
+                    suiteId < 0 ? null : mySuiteData.get(suiteId), metadata,
+                    line < 0 ? -1 : line - 1, column < 0 ? -1 : column - 1, url);
   }
 
   @NotNull
-  private <T extends Item> T getItem(JsonObject obj, Map<Integer, T> items) throws ParseException {
-    if (obj == null) throw new ParseException("Unexpected null json object", 0);
-    T item;
-    JsonElement id = obj.get(JSON_ID);
-    if (id != null) {
-      if (items == myTestData) {
-        @SuppressWarnings("unchecked") T type = (T)Test.from(obj, myGroupData, mySuiteData);
-        item = type;
-      }
-      else if (items == myGroupData) {
-        @SuppressWarnings("unchecked") T group = (T)Group.from(obj, myGroupData, mySuiteData);
-        item = group;
+  private Group readGroup(@NotNull JsonReader reader) throws IOException {
+    int id = -1;
+    String name = null;
+    int suiteId = -1;
+    int parentId = -1;
+    Metadata metadata = Metadata.NONE;
+    int testCount = -1;
+    int line = -1;
+    int column = -1;
+    String url = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String field = reader.nextName();
+      if (isNull(reader)) continue;
+      switch (field) {
+        case JSON_ID:
+          id = reader.nextInt();
+          break;
+        case JSON_NAME:
+          name = readString(reader);
+          break;
+        case JSON_SUITE_ID:
+          suiteId = reader.nextInt();
+          break;
+        case JSON_PARENT_ID:
+          parentId = reader.nextInt();
+          break;
+        case DEF_METADATA:
+          metadata = readMetadata(reader);
+          break;
+        case JSON_TEST_COUNT:
+          testCount = reader.nextInt();
+          break;
+        case JSON_LINE:
+          line = reader.nextInt();
+          break;
+        case JSON_COLUMN:
+          column = reader.nextInt();
+          break;
+        case JSON_URL:
+          url = readString(reader);
+          break;
+        default:
+          reader.skipValue();
       }
-      else {
-        @SuppressWarnings("unchecked") T suite = (T)Suite.from(obj);
-        item = suite;
-      }
-      items.put(id.getAsInt(), item);
     }
-    else {
-      JsonElement testId = obj.get(JSON_TEST_ID);
-      if (testId != null) {
-        int baseId = testId.getAsInt();
-        item = items.get(baseId);
-      }
-      else {
-        JsonElement testObj = obj.get(DEF_TEST);
-        if (testObj != null) {
-          return getItem(testObj.getAsJsonObject(), items);
-        }
-        else {
-          throw new ParseException("No testId in json object", 0);
-        }
+    reader.endObject();
+
+    return new Group(id, name == null || name.isEmpty() ? Item.NO_NAME : name, parentId < 0 ? null : myGroupData.get(parentId),
+                     suiteId < 0 ? null : mySuiteData.get(suiteId), metadata, testCount,
+                     line < 0 ? -1 : line - 1, column < 0 ? -1 : column - 1, url);
+  }
+
+  @NotNull
+  private static Suite readSuite(@NotNull JsonReader reader) throws IOException {
+    int id = -1;
+    String path = Suite.NONE;
+    String platform = Suite.NONE;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String field = reader.nextName();
+      if (isNull(reader)) continue;
+      switch (field) {
+        case JSON_ID:
+          id = reader.nextInt();
+          break;
+        case JSON_PATH:
+          path = readString(reader);
+          break;
+        case JSON_PLATFORM:
+          platform = readString(reader);
+          break;
+        default:
+          reader.skipValue();
       }
     }
-    return item;
+    reader.endObject();
+
+    return new Suite(id, path, platform);
   }
 
   @NotNull
-  private static String getErrorMessage(JsonObject obj) {
-    return nonNullJsonValue(obj, JSON_ERROR_MESSAGE, "<no error message>");
+  private static Metadata readMetadata(@NotNull JsonReader reader) throws IOException {
+    final Metadata metadata = new Metadata();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String field = reader.nextName();
+      if (isNull(reader)) continue;
+      switch (field) {
+        case JSON_SKIP:
+          metadata.skip = readBoolean(reader);
+          break;
+        case JSON_SKIP_REASON:
+          metadata.skipReason = readString(reader);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+    return metadata;
   }
 
-  @NotNull
-  private static String getMessage(JsonObject obj) {
-    return nonNullJsonValue(obj, JSON_MESSAGE, "<no message>");
+  /**
+   * Consumes a null value, returning whether the value was null.
+   */
+  private static boolean isNull(@NotNull JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return true;
+    }
+    return false;
   }
 
   @NotNull
-  private static String getStackTrace(JsonObject obj) {
-    return nonNullJsonValue(obj, JSON_STACK_TRACE, "<no stack trace>");
+  private static String readString(@NotNull JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.BOOLEAN) {
+      return Boolean.toString(reader.nextBoolean());
+    }
+    return reader.nextString();
   }
 
-  @NotNull
-  private static String getResult(JsonObject obj) {
-    return nonNullJsonValue(obj, JSON_RESULT, "<no result>");
+  private static boolean readBoolean(@NotNull JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.STRING) {
+      return Boolean.parseBoolean(reader.nextString());
+    }
+    return reader.nextBoolean();
   }
 
-  @NotNull
-  private static String nonNullJsonValue(JsonObject obj, @NotNull String id, @NotNull String def) {
-    JsonElement val = obj == null ? null : obj.get(id);
-    if (val == null || !val.isJsonPrimitive()) return def;
-    return val.getAsString();
+  /**
+   * The fields of a reporter event that are used, as read by {@link #readEvent}.
+   */
+  private static class Event {
+    String type;
+    Long time;
+    int testId = -1;
+    int count = -1;
+    String message;
+    String error;
+    String stackTrace;
+    Boolean isFailure;
+    String result;
+    Test test;
+    Group group;
+    Suite suite;
   }
 
   protected static class Item {
@@ -592,32 +955,6 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
     private final int myLine;
     private final int myColumn;
 
-    static int extractInt(JsonObject obj, String memberName) {
-      JsonElement elem = obj.get(memberName);
-      if (elem == null || !elem.isJsonPrimitive()) return -1;
-      return elem.getAsInt();
-    }
-
-    static String extractString(JsonObject obj, String memberName, String defaultResult) {
-      JsonElement elem = obj.get(memberName);
-      if (elem == null || elem.isJsonNull()) return defaultResult;
-      return elem.getAsString();
-    }
-
-    static Metadata extractMetadata(JsonObject obj) {
-      return Metadata.from(obj.get(DEF_METADATA));
-    }
-
-    static Suite lookupSuite(JsonObject obj, Map<Integer, Suite> suites) {
-      JsonElement suiteObj = obj.get(JSON_SUITE_ID);
-      Suite suite = null;
-      if (suiteObj != null && suiteObj.isJsonPrimitive()) {
-        int parentId = suiteObj.getAsInt();
-        suite = suites.get(parentId);
-      }
-      return suite;
-    }
-
     Item(int id, String name, Group parent, Suite suite, Metadata metadata, int line, int column, String url) {
       myId = id;
       myName = name;
@@ -740,19 +1077,7 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
   protected static class Test extends Item {
     private boolean myTestStartReported = false;
     private boolean myTestErrorReported = false;
-
-    static Test from(JsonObject obj, Map<Integer, Group> groups, Map<Integer, Suite> suites) {
-      int[] groupIds = GSON.fromJson(obj.get(JSON_GROUP_IDS), (Type)int[].class);
-      Group parent = null;
-      if (groupIds != null && groupIds.length > 0) {
-        parent = groups.get(groupIds[groupIds.length - 1]);
-      }
-      Suite suite = lookupSuite(obj, suites);
-      final int line = extractInt(obj, JSON_LINE);
-      final int column = extractInt(obj, JSON_COLUMN);
-      return new Test(extractInt(obj, JSON_ID), extractString(obj, JSON_NAME, NO_NAME), parent, suite, extractMetadata(obj),
-                      line < 0 ? -1 : line - 1, column < 0 ? -1 : column - 1, extractString(obj, JSON_URL, null));
-    }
+    private long myStartMillis;
 
     Test(int id, String name, Group parent, Suite suite, Metadata metadata, int line, int column, String url) {
       super(id, name, parent, suite, metadata, line, column, url);
@@ -769,25 +1094,6 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
     private int myTestCount;
     private int myDoneTestsCount = 0;
 
-    static Group from(JsonObject obj, Map<Integer, Group> groups, Map<Integer, Suite> suites) {
-      JsonElement parentObj = obj.get(JSON_PARENT_ID);
-      Group parent = null;
-      if (parentObj != null && parentObj.isJsonPrimitive()) {
-        int parentId = parentObj.getAsInt();
-        parent = groups.get(parentId);
-      }
-      Suite suite = lookupSuite(obj, suites);
-      final int line = extractInt(obj, JSON_LINE);
-      final int column = extractInt(obj, JSON_COLUMN);
-      String groupName = extractString(obj, JSON_NAME, "");
-      if (groupName.isEmpty()) {
-        groupName = NO_NAME;
-      }
-      return new Group(extractInt(obj, JSON_ID), groupName, parent, suite, extractMetadata(obj),
-                       extractInt(obj, JSON_TEST_COUNT), line < 0 ? -1 : line - 1, column < 0 ? -1 : column - 1,
-                       extractString(obj, JSON_URL, null));
-    }
-
     Group(int id, String name, Group parent, Suite suite, Metadata metadata, int count, int line, int column, String url) {
       super(id, name, parent, suite, metadata, line, column, url);
       myTestCount = count;
@@ -811,17 +1117,12 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
   }
 
   protected static class Suite extends Item {
-    static Metadata NoMetadata = new Metadata();
     static String NONE = "<none>";
 
-    static Suite from(JsonObject obj) {
-      return new Suite(extractInt(obj, JSON_ID), extractString(obj, JSON_PATH, NONE), extractString(obj, JSON_PLATFORM, NONE));
-    }
-
     private final String myPlatform;
 
     Suite(int id, String path, String platform) {
-      super(id, path, null, null, NoMetadata, -1, -1, "file://" + path);
+      super(id, path, null, null, Metadata.NONE, -1, -1, "file://" + path);
       myPlatform = platform;
     }
 
@@ -840,12 +1141,9 @@ public class DartTestEventsConverterZ extends OutputToGeneralTestEventsConverter
   }
 
   private static class Metadata {
-    @SuppressWarnings("unused") private boolean skip; // assigned by GSON via reflection
-    @SuppressWarnings("unused") private String skipReason; // assigned by GSON via reflection
+    static final Metadata NONE = new Metadata();
 
-    static Metadata from(JsonElement elem) {
-      if (elem == null) return new Metadata();
-      return GSON.fromJson(elem, (Type)Metadata.class);
-    }
+    private boolean skip;
+    private String skipReason;
   }
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable set of closed integer intervals that can be queried for the intervals intersecting
+ * a range without looking at the others, taking O(log n) time for each interval found.
+ * <p>
+ * Intervals are identified by the order they were added to the {@link Builder} in. The intervals
+ * are kept sorted by start in parallel arrays, which are treated as an implicit balanced binary
+ * tree where each node also records the largest end in its subtree.
+ */
+public class IntervalIndex {
+  public static final IntervalIndex EMPTY = new Builder().build();
+
+  private final int[] starts;
+  private final int[] ends;
+  private final int[] ids;
+
+  /**
+   * The largest end of the intervals in the subtree rooted at each position.
+   */
+  private final int[] maxEnds;
+
+  private IntervalIndex(int[] starts, int[] ends, int[] ids) {
+    this.starts = starts;
+    this.ends = ends;
+    this.ids = ids;
+    this.maxEnds = new int[starts.length];
+    computeMaxEnds(0, starts.length);
+  }
+
+  private int computeMaxEnds(int lo, int hi) {
+    if (lo >= hi) {
+      return Integer.MIN_VALUE;
+    }
+    final int mid = (lo + hi) >>> 1;
+    final int max = Math.max(ends[mid], Math.max(computeMaxEnds(lo, mid), computeMaxEnds(mid + 1, hi)));
+    maxEnds[mid] = max;
+    return max;
+  }
+
+  public int size() {
+    return starts.length;
+  }
+
+  /**
+   * Whether any interval intersects the range from start to end, inclusive.
+   */
+  public boolean intersects(int start, int end) {
+    return intersects(0, starts.length, start, end);
+  }
+
+  private boolean intersects(int lo, int hi, int start, int end) {
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (maxEnds[mid] < start) {
+        return false;
+      }
+      if (intersects(lo, mid, start, end)) {
+        return true;
+      }
+      if (starts[mid] > end) {
+        return false;
+      }
+      if (ends[mid] >= start) {
+        return true;
+      }
+      lo = mid + 1;
+    }
+    return false;
+  }
+
+  /**
+   * Calls the consumer with the id of every interval intersecting the range from start to end,
+   * inclusive, in order of their starts.
+   */
+  public void forEachIntersecting(int start, int end, @NotNull IntConsumer consumer) {
+    forEachIntersecting(0, starts.length, start, end, consumer);
+  }
+
+  private void forEachIntersecting(int lo, int hi, int start, int end, @NotNull IntConsumer consumer) {
+    while (lo < hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (maxEnds[mid] < start) {
+        return;
+      }
+      forEachIntersecting(lo, mid, start, end, consumer);
+      if (starts[mid] > end) {
+        return;
+      }
+      if (ends[mid] >= start) {
+        consumer.accept(ids[mid]);
+      }
+      lo = mid + 1;
+    }
+  }
+
+  /**
+   * Returns the ids of the intervals intersecting the range from start to end, inclusive, in
+   * increasing order.
+   */
+  @NotNull
+  public int[] findIntersecting(int start, int end) {
+    final int[][] found = {new int[8]};
+    final int[] count = {0};
+    forEachIntersecting(start, end, (id) -> {
+      if (count[0] == found[0].length) {
+        found[0] = Arrays.copyOf(found[0], count[0] * 2);
+      }
+      found[0][count[0]++] = id;
+    });
+    final int[] result = Arrays.copyOf(found[0], count[0]);
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Returns the ids of the intervals containing the point, in increasing order.
+   */
+  @NotNull
+  public int[] findContaining(int point) {
+    return findIntersecting(point, point);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+  }
+
+  /**
+   * Two indexes are equal if they hold the same intervals, added in the same order.
+   */
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof IntervalIndex)) return false;
+    final IntervalIndex other = (IntervalIndex)o;
+    return Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends);
+  }
+
+  public static class Builder {
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int size;
+
+    /**
+     * Adds the interval from start to end, inclusive, and returns its id.
+     * <p>
+     * Starts must not be negative.
+     */
+    public int add(int start, int end) {
+      assert (start >= 0 && start <= end);
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, size * 2);
+        ends = Arrays.copyOf(ends, size * 2);
+      }
+      starts[size] = start;
+      ends[size] = end;
+      return size++;
+    }
+
+    @NotNull
+    public IntervalIndex build() {
+      // Sort by start and then by id, packing both into one key so no boxing is needed.
+      final long[] keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = ((long)starts[i] << 32) | i;
+      }
+      Arrays.sort(keys);
+      final int[] sortedStarts = new int[size];
+      final int[] sortedEnds = new int[size];
+      final int[] sortedIds = new int[size];
+      for (int i = 0; i < size; i++) {
+        final int id = (int)keys[i];
+        sortedStarts[i] = starts[id];
+        sortedEnds[i] = ends[id];
+        sortedIds[i] = id;
+      }
+      return new IntervalIndex(sortedStarts, sortedEnds, sortedIds);
+    }
+  }
+}
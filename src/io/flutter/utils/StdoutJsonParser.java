@@ -5,8 +5,12 @@
  */
 package io.flutter.utils;
 
+import org.jetbrains.annotations.NotNull;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A class to process regular text output intermixed with newline-delimited JSON.
@@ -15,31 +19,87 @@ import java.util.List;
  * are emitted over the course of multiple calls to appendOutput. Regular lines
  * on the other hand are emitted immediately so users do not have to wait for
  * debug output.
+ * <p>
+ * Output is scanned for the next line break or JSON terminator in bulk, and
+ * only the text of a line split across several calls is buffered.
  */
 public class StdoutJsonParser {
+  /**
+   * The start of a line of JSON output.
+   */
+  private static final String JSON_START = "[{";
+  /**
+   * The end of a line of JSON output.
+   */
+  private static final String JSON_END = "}]";
+
+  /**
+   * Receives each line as soon as it is complete, or null if lines are collected for getAvailableLines.
+   */
+  private final Consumer<String> lineConsumer;
+  private final List<String> lines = new ArrayList<>();
+
+  /**
+   * Text of the current line from previous calls to appendOutput.
+   */
   private final StringBuilder buffer = new StringBuilder();
   private boolean bufferIsJson = false;
-  private final List<String> lines = new ArrayList<>();
   private boolean eatNextEol = false;
   private boolean isPotentialWindowsReturn = false;
 
+  /**
+   * State of the current call to appendOutput.
+   * <p>
+   * The current line is the text in buffer followed by output from lineStart,
+   * and the next line breaks at or after the scan position are cached as the
+   * output is scanned.
+   */
+  private String output;
+  private int lineStart;
+  private int nextNewline;
+  private int nextReturn;
+
+  /**
+   * Creates a parser whose lines are read with getAvailableLines.
+   */
+  public StdoutJsonParser() {
+    lineConsumer = null;
+  }
+
+  /**
+   * Creates a parser that hands each line to lineConsumer as soon as it is complete, on the thread
+   * calling appendOutput.
+   */
+  public StdoutJsonParser(@NotNull Consumer<String> lineConsumer) {
+    this.lineConsumer = lineConsumer;
+  }
+
   /**
    * Write new output to this [StdoutJsonParser].
    */
   public void appendOutput(String string) {
-    for (int i = 0; i < string.length(); ++i) {
+    final int length = string.length();
+    output = string;
+    lineStart = 0;
+    nextNewline = -1;
+    nextReturn = -1;
+
+    int i = 0;
+    while (i < length) {
       final char c = string.charAt(i);
 
       if (eatNextEol) {
         eatNextEol = false;
 
         if (c == '\n') {
+          lineStart = ++i;
           continue;
         }
 
         if (c == '\r' && !isPotentialWindowsReturn) {
           eatNextEol = true;
           isPotentialWindowsReturn = true;
+          lineStart = ++i;
           continue;
         }
       }
@@ -48,70 +108,145 @@ public class StdoutJsonParser {
         isPotentialWindowsReturn = false;
 
         if (c != '\n') {
-          flushLine();
+          flushLine(i);
         }
       }
 
-      buffer.append(c);
+      i = scanLine(i);
+    }
 
-      if (!bufferIsJson && buffer.length() == 2 && buffer.charAt(0) == '[' && c == '{') {
-        bufferIsJson = true;
-      }
-      else if (bufferIsJson && c == ']' && possiblyTerminatesJson(buffer, string, i)) {
-        flushLine();
+    // Eagerly flush if we are not within JSON so regular log text is written as soon as possible.
+    if (!bufferIsJson) {
+      flushLine(length);
+    }
+    else {
+      buffer.append(string, lineStart, length);
+      lineStart = length;
+      final int bufferLength = buffer.length();
+      if (bufferLength >= 2 && buffer.charAt(bufferLength - 2) == '}' && buffer.charAt(bufferLength - 1) == ']') {
+        eatNextEol = true;
+        flushLine(length);
       }
+    }
+    output = null;
+  }
 
-      if (c == '\n') {
-        flushLine();
-      }
+  /**
+   * Consumes output from index up to and including the next character that ends
+   * the current line or might, and returns the index after it.
+   */
+  private int scanLine(int index) {
+    final String string = output;
+    final int length = string.length();
 
-      if (c == '\r') {
-        // Wait and decide whether to flush depending on next character.
-        isPotentialWindowsReturn = true;
+    if (!bufferIsJson && index == lineStart && buffer.length() == 0 && string.startsWith(JSON_START, index)) {
+      bufferIsJson = true;
+    }
+
+    if (nextNewline < index) {
+      nextNewline = indexOrLength(string.indexOf('\n', index), length);
+    }
+    if (nextReturn < index) {
+      nextReturn = indexOrLength(string.indexOf('\r', index), length);
+    }
+    final int lineEnd = Math.min(nextNewline, nextReturn);
+
+    if (bufferIsJson) {
+      final int jsonEnd = findJsonEnd(index, lineEnd);
+      if (jsonEnd >= 0) {
+        flushLine(jsonEnd + 1);
+        return jsonEnd + 1;
       }
     }
 
-    // Eagerly flush if we are not within JSON so regular log text is written as soon as possible.
-    if (!bufferIsJson) {
-      flushLine();
+    if (lineEnd == length) {
+      // The line continues in later output.
+      return length;
+    }
+    if (string.charAt(lineEnd) == '\n') {
+      flushLine(lineEnd + 1);
     }
-    else if (buffer.toString().endsWith("}]")) {
-      eatNextEol = true;
-      flushLine();
+    else {
+      // Wait and decide whether to flush depending on next character.
+      isPotentialWindowsReturn = true;
     }
+    return lineEnd + 1;
   }
 
-  private boolean possiblyTerminatesJson(StringBuilder output, String input, int inputIndex) {
-    // This is an approximate approach to look for json message terminations inside of strings -
-    // where the normally terminating eol gets separated from the json.
+  /**
+   * Returns the index of the first ']' before limit that closes a "}]" followed by a letter.
+   * <p>
+   * This is an approximate approach to look for json message terminations inside of strings -
+   * where the normally terminating eol gets separated from the json.
+   */
+  private int findJsonEnd(int index, int limit) {
+    final String string = output;
+    final int length = string.length();
+
+    // The '}' may have come from earlier output.
+    if (index == lineStart && index < limit && string.charAt(index) == ']' &&
+        buffer.length() > 0 && buffer.charAt(buffer.length() - 1) == '}' &&
+        isLetterAt(index + 1, length)) {
+      return index;
+    }
 
-    if (output.length() < 2 || inputIndex + 1 >= input.length()) {
-      return false;
+    int candidate = string.indexOf(JSON_END, Math.max(lineStart, index - 1));
+    while (candidate >= 0 && candidate + 1 < limit) {
+      if (isLetterAt(candidate + 2, length)) {
+        return candidate + 1;
+      }
+      candidate = string.indexOf(JSON_END, candidate + 1);
     }
+    return -1;
+  }
 
-    // Look for '}', ']', and a letter
-    final char prev = output.charAt(output.length() - 2);
-    final char current = output.charAt(output.length() - 1);
-    final char next = input.charAt(inputIndex + 1);
+  private boolean isLetterAt(int index, int length) {
+    return index < length && Character.isAlphabetic(output.charAt(index));
+  }
 
-    return prev == '}' && current == ']' && Character.isAlphabetic(next);
+  private static int indexOrLength(int index, int length) {
+    return index < 0 ? length : index;
   }
 
-  private void flushLine() {
-    if (buffer.length() > 0) {
-      synchronized (lines) {
-        lines.add(buffer.toString());
-      }
+  /**
+   * Emits the current line, which ends before end in the current output.
+   */
+  private void flushLine(int end) {
+    final String line;
+    if (buffer.length() == 0) {
+      line = lineStart < end ? output.substring(lineStart, end) : null;
+    }
+    else {
+      buffer.append(output, lineStart, end);
+      line = buffer.toString();
       buffer.setLength(0);
     }
+    lineStart = end;
     bufferIsJson = false;
+
+    if (line == null) {
+      return;
+    }
+    if (lineConsumer != null) {
+      lineConsumer.accept(line);
+    }
+    else {
+      synchronized (lines) {
+        lines.add(line);
+      }
+    }
   }
 
   /**
    * Read any lines available from the processed output.
+   * <p>
+   * Always empty for a parser that hands lines to a consumer.
    */
   public List<String> getAvailableLines() {
     synchronized (lines) {
+      if (lines.isEmpty()) {
+        return Collections.emptyList();
+      }
       final List<String> copy = new ArrayList<>(lines);
       lines.clear();
       return copy;
@@ -125,6 +125,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
   private DefaultMutableTreeNode lastExpanded;
   private boolean isActive = false;
   private final Map<InspectorInstanceRef, DefaultMutableTreeNode> valueToTreeNode = new HashMap<>();
+  private final InspectorTreePatcher treePatcher;
 
   /**
    * When visibleToUser is false we should dispose all allocated objects and
@@ -197,6 +198,34 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     myRootsTree.setToggleClickCount(0);
 
     myRootsTree.addTreeExpansionListener(new MyTreeExpansionListener());
+    treePatcher = new InspectorTreePatcher(myRootsTree, valueToTreeNode, new InspectorTreePatcher.Host() {
+      @Override
+      public void setupTreeNode(DefaultMutableTreeNode node, DiagnosticsNode diagnosticsNode) {
+        InspectorPanel.this.setupTreeNode(node, diagnosticsNode, false);
+      }
+
+      @Override
+      public void valueChanged(InspectorInstanceRef valueRef) {
+        if (parentTree != null) {
+          parentTree.maybeUpdateValueUI(valueRef);
+        }
+      }
+
+      @Override
+      public void runProgrammatically(Runnable change) {
+        final boolean selectionChangeInProgress = programaticSelectionChangeInProgress;
+        final boolean expansionInProgress = programaticExpansionInProgress;
+        programaticSelectionChangeInProgress = true;
+        programaticExpansionInProgress = true;
+        try {
+          change.run();
+        }
+        finally {
+          programaticSelectionChangeInProgress = selectionChangeInProgress;
+          programaticExpansionInProgress = expansionInProgress;
+        }
+      }
+    });
     final InspectorTreeMouseListener mouseListener = new InspectorTreeMouseListener(this, myRootsTree);
     myRootsTree.addMouseListener(mouseListener);
     myRootsTree.addMouseMotionListener(mouseListener);
@@ -596,12 +625,18 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
         treeGroups.cancelNext();
         return;
       }
-      // TODO(jacobr): as a performance optimization we should check if the
-      // new tree is identical to the existing tree in which case we should
-      // dispose the new tree and keep the old tree.
       treeGroups.promoteNext();
-      clearValueToTreeNodeMapping();
-      if (n != null) {
+      final DefaultMutableTreeNode oldRoot = getRootNode();
+      if (n != null && oldRoot != null && InspectorTreePatcher.canPatch(oldRoot, n)) {
+        // Refreshing the same tree. Patch the existing tree nodes so that
+        // only what changed is repainted and expansion state is kept.
+        // TODO: this still fetches and decodes the whole tree. Fetch
+        // only the subtrees that changed once the inspector service can
+        // report which ones did.
+        treePatcher.patch(oldRoot, n);
+      }
+      else if (n != null) {
+        clearValueToTreeNodeMapping();
         final DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode(n);
         getTreeModel().setRoot(rootNode);
         setupTreeNode(rootNode, n, true);
@@ -614,6 +649,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
         }
       }
       else {
+        clearValueToTreeNodeMapping();
         getTreeModel().setRoot(null);
       }
       refreshSelection(newSelection, detailsSelection, setSubtreeRoot, textEditorUpdated);
@@ -1197,7 +1233,7 @@ public class InspectorPanel extends JPanel implements Disposable, InspectorServi
     return node.isCreatedByLocalProject();
   }
 
-  boolean hasPlaceholderChildren(DefaultMutableTreeNode node) {
+  static boolean hasPlaceholderChildren(DefaultMutableTreeNode node) {
     return node.getChildCount() == 0 ||
            (node.getChildCount() == 1 && ((DefaultMutableTreeNode)node.getFirstChild()).getUserObject() instanceof String);
   }
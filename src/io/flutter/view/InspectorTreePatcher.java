@@ -0,0 +1,303 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.view;
+
+import com.intellij.openapi.diagnostic.Logger;
+import io.flutter.FlutterUtils;
+import io.flutter.inspector.DiagnosticsNode;
+import io.flutter.inspector.InspectorInstanceRef;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Patches the nodes of an inspector tree in place to show a newer version of
+ * the same tree, so that only what changed is repainted and the expansion and
+ * selection of unchanged nodes are kept.
+ * <p>
+ * InspectorInstanceRef ids are stable for the same Dart object across object
+ * groups, so existing tree nodes are matched to the new diagnostics by value.
+ * Inline properties do not have unique values and are matched by position.
+ * <p>
+ * This only limits the work done on the Swing model. The new tree has
+ * already been fetched and decoded in full by the time it is patched.
+ */
+class InspectorTreePatcher {
+  private static final Logger LOG = Logger.getInstance(InspectorTreePatcher.class);
+
+  interface Host {
+    /**
+     * Sets up a new tree node, and the tree nodes of its children, to show a
+     * value the tree did not show before.
+     */
+    void setupTreeNode(DefaultMutableTreeNode node, DiagnosticsNode diagnosticsNode);
+
+    /**
+     * Called when the tree node showing the value is replaced or removed.
+     */
+    void valueChanged(InspectorInstanceRef valueRef);
+
+    /**
+     * Runs a change to the tree the user did not ask for, such as moving a
+     * node along with its expansion and selection.
+     */
+    void runProgrammatically(Runnable change);
+  }
+
+  private final JTree tree;
+  private final Map<InspectorInstanceRef, DefaultMutableTreeNode> valueToTreeNode;
+  private final Host host;
+
+  InspectorTreePatcher(@NotNull JTree tree,
+                       @NotNull Map<InspectorInstanceRef, DefaultMutableTreeNode> valueToTreeNode,
+                       @NotNull Host host) {
+    this.tree = tree;
+    this.valueToTreeNode = valueToTreeNode;
+    this.host = host;
+  }
+
+  /**
+   * Whether treeNode can be reused to display diagnosticsNode.
+   */
+  static boolean canPatch(DefaultMutableTreeNode treeNode, DiagnosticsNode diagnosticsNode) {
+    if (!(treeNode.getUserObject() instanceof DiagnosticsNode)) {
+      return false;
+    }
+    final DiagnosticsNode previous = (DiagnosticsNode)treeNode.getUserObject();
+    if (previous.isProperty() || diagnosticsNode.isProperty()) {
+      return false;
+    }
+    final InspectorInstanceRef valueRef = diagnosticsNode.getValueRef();
+    return valueRef.getId() != null && valueRef.equals(previous.getValueRef());
+  }
+
+  /**
+   * Update the tree below root, which {@link #canPatch} showing diagnosticsNode,
+   * to show diagnosticsNode.
+   */
+  void patch(DefaultMutableTreeNode root, DiagnosticsNode diagnosticsNode) {
+    final Set<InspectorInstanceRef> previousValues = new HashSet<>(valueToTreeNode.keySet());
+    valueToTreeNode.clear();
+    patchTreeNode(root, diagnosticsNode);
+    for (InspectorInstanceRef v : previousValues) {
+      if (!valueToTreeNode.containsKey(v)) {
+        host.valueChanged(v);
+      }
+    }
+  }
+
+  private DefaultTreeModel getTreeModel() {
+    return (DefaultTreeModel)tree.getModel();
+  }
+
+  /**
+   * Update an existing tree node to display diagnosticsNode, which is a newer
+   * version of the same value, reusing the tree nodes of children that are
+   * still present.
+   * <p>
+   * The refreshed tree only brings the children it includes inline. Other
+   * children are fetched again, through the lazy getChildren, only for the
+   * subtrees the user has expanded; collapsed subtrees go back to a
+   * placeholder.
+   */
+  private void patchTreeNode(DefaultMutableTreeNode treeNode, DiagnosticsNode diagnosticsNode) {
+    final Object previous = treeNode.getUserObject();
+    treeNode.setUserObject(diagnosticsNode);
+    final InspectorInstanceRef valueRef = diagnosticsNode.getValueRef();
+    if (valueRef.getId() != null && !diagnosticsNode.isProperty()) {
+      valueToTreeNode.put(valueRef, treeNode);
+    }
+    if (!(previous instanceof DiagnosticsNode) || !diagnosticsNode.identicalNodeDisplay((DiagnosticsNode)previous)) {
+      getTreeModel().nodeChanged(treeNode);
+    }
+
+    if (diagnosticsNode.childrenReady() || !diagnosticsNode.hasChildren()) {
+      final CompletableFuture<ArrayList<DiagnosticsNode>> childrenFuture = diagnosticsNode.getChildren();
+      assert (childrenFuture.isDone());
+      patchChildren(treeNode, diagnosticsNode, childrenFuture.getNow(null));
+      return;
+    }
+    if (InspectorPanel.hasPlaceholderChildren(treeNode) || !tree.isExpanded(new TreePath(treeNode.getPath()))) {
+      setPlaceholderChild(treeNode);
+      return;
+    }
+    // Keep showing the previous children until the new children have been
+    // fetched. They display the same values so selections can still be
+    // resolved to them in the meantime.
+    registerDescendants(treeNode);
+    diagnosticsNode.safeWhenComplete(diagnosticsNode.getChildren(), (ArrayList<DiagnosticsNode> children, Throwable throwable) -> {
+      if (throwable != null) {
+        FlutterUtils.warn(LOG, throwable);
+        return;
+      }
+      if (treeNode.getUserObject() != diagnosticsNode) {
+        // Node changed, this data is stale.
+        return;
+      }
+      patchChildren(treeNode, diagnosticsNode, children);
+    });
+  }
+
+  private void patchChildren(DefaultMutableTreeNode treeNode, DiagnosticsNode parent, ArrayList<DiagnosticsNode> children) {
+    final DefaultTreeModel model = getTreeModel();
+    final ArrayList<DiagnosticsNode> inlineProperties = parent.getInlineProperties();
+    treeNode.setAllowsChildren(!children.isEmpty() || !inlineProperties.isEmpty());
+
+    // Index the existing children that can be reused.
+    final Map<InspectorInstanceRef, DefaultMutableTreeNode> existingChildren = new HashMap<>();
+    final ArrayList<DefaultMutableTreeNode> existingProperties = new ArrayList<>();
+    for (int i = 0; i < treeNode.getChildCount(); i++) {
+      final DefaultMutableTreeNode child = (DefaultMutableTreeNode)treeNode.getChildAt(i);
+      if (child.getUserObject() instanceof DiagnosticsNode) {
+        final DiagnosticsNode diagnostic = (DiagnosticsNode)child.getUserObject();
+        if (diagnostic.isProperty()) {
+          existingProperties.add(child);
+        }
+        else if (diagnostic.getValueRef().getId() != null) {
+          existingChildren.put(diagnostic.getValueRef(), child);
+        }
+      }
+    }
+
+    final int count = inlineProperties.size() + children.size();
+    final ArrayList<DefaultMutableTreeNode> targets = new ArrayList<>(count);
+    final Set<DefaultMutableTreeNode> reused = new HashSet<>();
+    for (int i = 0; i < count; i++) {
+      final boolean isProperty = i < inlineProperties.size();
+      final DiagnosticsNode diagnostic = isProperty ? inlineProperties.get(i) : children.get(i - inlineProperties.size());
+      DefaultMutableTreeNode target = null;
+      if (isProperty) {
+        if (i < existingProperties.size()) {
+          target = existingProperties.get(i);
+        }
+      }
+      else {
+        target = existingChildren.remove(diagnostic.getValueRef());
+        if (target != null && !canPatch(target, diagnostic)) {
+          target = null;
+        }
+      }
+      if (target != null) {
+        reused.add(target);
+      }
+      else {
+        target = new DefaultMutableTreeNode();
+        host.setupTreeNode(target, diagnostic);
+        if (isProperty) {
+          target.setAllowsChildren(target.getChildCount() > 0);
+        }
+      }
+      targets.add(target);
+    }
+
+    for (int i = treeNode.getChildCount() - 1; i >= 0; i--) {
+      final DefaultMutableTreeNode child = (DefaultMutableTreeNode)treeNode.getChildAt(i);
+      if (!reused.contains(child)) {
+        model.removeNodeFromParent(child);
+        unregisterDescendants(child);
+      }
+    }
+    for (int i = 0; i < count; i++) {
+      final DefaultMutableTreeNode target = targets.get(i);
+      if (i < treeNode.getChildCount() && treeNode.getChildAt(i) == target) {
+        continue;
+      }
+      if (target.getParent() == treeNode) {
+        moveChild(treeNode, target, i);
+      }
+      else {
+        model.insertNodeInto(target, treeNode, i);
+      }
+    }
+
+    for (int i = 0; i < count; i++) {
+      final DefaultMutableTreeNode target = targets.get(i);
+      if (reused.contains(target)) {
+        final boolean isProperty = i < inlineProperties.size();
+        patchTreeNode(target, isProperty ? inlineProperties.get(i) : children.get(i - inlineProperties.size()));
+        if (isProperty) {
+          target.setAllowsChildren(target.getChildCount() > 0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Move a reused child to the index. The tree collapses and deselects nodes
+   * removed from the model, so their state is restored once they are back.
+   */
+  private void moveChild(DefaultMutableTreeNode treeNode, DefaultMutableTreeNode child, int index) {
+    final TreePath path = new TreePath(child.getPath());
+    final Enumeration<TreePath> expandedPaths = tree.getExpandedDescendants(path);
+    final List<TreePath> expanded = expandedPaths == null ? Collections.emptyList() : Collections.list(expandedPaths);
+    final List<TreePath> selected = new ArrayList<>();
+    final TreePath[] selectionPaths = tree.getSelectionPaths();
+    if (selectionPaths != null) {
+      for (TreePath selectionPath : selectionPaths) {
+        if (path.isDescendant(selectionPath)) {
+          selected.add(selectionPath);
+        }
+      }
+    }
+    host.runProgrammatically(() -> {
+      getTreeModel().removeNodeFromParent(child);
+      getTreeModel().insertNodeInto(child, treeNode, index);
+      for (TreePath expandedPath : expanded) {
+        tree.expandPath(expandedPath);
+      }
+      for (TreePath selectedPath : selected) {
+        tree.addSelectionPath(selectedPath);
+      }
+    });
+  }
+
+  private void setPlaceholderChild(DefaultMutableTreeNode treeNode) {
+    if (treeNode.getChildCount() == 1 && ((DefaultMutableTreeNode)treeNode.getFirstChild()).getUserObject() instanceof String) {
+      return;
+    }
+    final DefaultTreeModel model = getTreeModel();
+    for (int i = treeNode.getChildCount() - 1; i >= 0; i--) {
+      final DefaultMutableTreeNode child = (DefaultMutableTreeNode)treeNode.getChildAt(i);
+      model.removeNodeFromParent(child);
+      unregisterDescendants(child);
+    }
+    model.insertNodeInto(new DefaultMutableTreeNode("Loading..."), treeNode, 0);
+  }
+
+  /**
+   * Remove the mappings to a tree node that is no longer in the tree and to its descendants.
+   */
+  private void unregisterDescendants(DefaultMutableTreeNode treeNode) {
+    if (treeNode.getUserObject() instanceof DiagnosticsNode) {
+      final InspectorInstanceRef valueRef = ((DiagnosticsNode)treeNode.getUserObject()).getValueRef();
+      if (valueToTreeNode.get(valueRef) == treeNode) {
+        valueToTreeNode.remove(valueRef);
+        host.valueChanged(valueRef);
+      }
+    }
+    for (int i = 0; i < treeNode.getChildCount(); i++) {
+      unregisterDescendants((DefaultMutableTreeNode)treeNode.getChildAt(i));
+    }
+  }
+
+  private void registerDescendants(DefaultMutableTreeNode treeNode) {
+    for (int i = 0; i < treeNode.getChildCount(); i++) {
+      final DefaultMutableTreeNode child = (DefaultMutableTreeNode)treeNode.getChildAt(i);
+      if (child.getUserObject() instanceof DiagnosticsNode) {
+        final DiagnosticsNode diagnostic = (DiagnosticsNode)child.getUserObject();
+        if (diagnostic.getValueRef().getId() != null && !diagnostic.isProperty()) {
+          valueToTreeNode.put(diagnostic.getValueRef(), child);
+        }
+      }
+      registerDescendants(child);
+    }
+  }
+}
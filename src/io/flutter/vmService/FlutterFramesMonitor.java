@@ -11,38 +11,43 @@ import com.intellij.util.EventDispatcher;
 import io.flutter.utils.VmServiceListenerAdapter;
 import org.dartlang.vm.service.VmService;
 import org.dartlang.vm.service.element.Event;
-import org.dartlang.vm.service.element.ExtensionData;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.EventListener;
-import java.util.LinkedList;
-import java.util.List;
 
 public class FlutterFramesMonitor {
-  static final int maxFrames = 200;
+  /**
+   * The number of frames kept; about three seconds of frames on a 120Hz display.
+   */
+  static final int maxFrames = 400;
 
   private final DisplayRefreshRateManager displayRefreshRateManager;
 
   private final EventDispatcher<Listener> eventDispatcher = EventDispatcher.create(Listener.class);
 
+  private final FrameRingBuffer frames = new FrameRingBuffer(maxFrames);
+
+  private volatile FrameStats stats = FrameStats.EMPTY;
+
   private long lastEventFinished = 0;
 
   public interface Listener extends EventListener {
     void handleFrameEvent(FlutterFrameEvent event);
   }
 
-  public class FlutterFrameEvent {
+  public static class FlutterFrameEvent {
     public final int frameId;
     public final long startTimeMicros;
     public final long elapsedMicros;
     public final boolean frameSetStart;
+    private final boolean slowFrame;
 
-    FlutterFrameEvent(ExtensionData data, long lastEventFinished) {
-      final JsonObject json = data.getJson();
-      frameId = json.get("number").getAsInt();
-      startTimeMicros = json.get("startTime").getAsLong();
-      elapsedMicros = json.get("elapsed").getAsLong();
-      frameSetStart = (startTimeMicros - lastEventFinished) > (displayRefreshRateManager.getTargetMicrosPerFrame() * 2);
+    FlutterFrameEvent(int frameId, long startTimeMicros, long elapsedMicros, boolean frameSetStart, boolean slowFrame) {
+      this.frameId = frameId;
+      this.startTimeMicros = startTimeMicros;
+      this.elapsedMicros = elapsedMicros;
+      this.frameSetStart = frameSetStart;
+      this.slowFrame = slowFrame;
     }
 
     public long getFrameFinishedMicros() {
@@ -50,7 +55,7 @@ public class FlutterFramesMonitor {
     }
 
     public boolean isSlowFrame() {
-      return elapsedMicros > displayRefreshRateManager.getTargetMicrosPerFrame();
+      return slowFrame;
     }
 
     public int hashCode() {
@@ -66,7 +71,93 @@ public class FlutterFramesMonitor {
     }
   }
 
-  public List<FlutterFrameEvent> frames = new LinkedList<>();
+  /**
+   * Frame statistics over the most recent {@link #maxFrames} frames, published after each frame.
+   */
+  public static class FrameStats {
+    static final FrameStats EMPTY = new FrameStats(0, 0.0, 0, 0, 0, 0);
+
+    /**
+     * The number of frames the statistics cover.
+     */
+    public final int frameCount;
+
+    /**
+     * The frame rate of the current set of frames; see {@link FlutterFramesMonitor#getFPS()}.
+     */
+    public final double fps;
+
+    /**
+     * The number of frames that took longer than the target frame time.
+     */
+    public final int slowFrameCount;
+
+    /**
+     * Upper bounds of the 50th, 90th and 99th percentile frame times, within 250 microseconds.
+     */
+    public final long p50ElapsedMicros;
+    public final long p90ElapsedMicros;
+    public final long p99ElapsedMicros;
+
+    FrameStats(int frameCount, double fps, int slowFrameCount, long p50ElapsedMicros, long p90ElapsedMicros, long p99ElapsedMicros) {
+      this.frameCount = frameCount;
+      this.fps = fps;
+      this.slowFrameCount = slowFrameCount;
+      this.p50ElapsedMicros = p50ElapsedMicros;
+      this.p90ElapsedMicros = p90ElapsedMicros;
+      this.p99ElapsedMicros = p99ElapsedMicros;
+    }
+
+    public double getJankPercent() {
+      return frameCount == 0 ? 0.0 : slowFrameCount * 100.0 / frameCount;
+    }
+  }
+
+  /**
+   * A reusable, caller owned copy of the buffered frames, newest first.
+   */
+  public static class FrameHistory {
+    int size;
+    int[] frameIds = new int[0];
+    long[] startTimeMicros = new long[0];
+    long[] elapsedMicros = new long[0];
+    boolean[] frameSetStart = new boolean[0];
+    boolean[] slowFrame = new boolean[0];
+
+    void ensureCapacity(int capacity) {
+      if (frameIds.length < capacity) {
+        frameIds = new int[capacity];
+        startTimeMicros = new long[capacity];
+        elapsedMicros = new long[capacity];
+        frameSetStart = new boolean[capacity];
+        slowFrame = new boolean[capacity];
+      }
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public int getFrameId(int index) {
+      return frameIds[index];
+    }
+
+    public long getStartTimeMicros(int index) {
+      return startTimeMicros[index];
+    }
+
+    public long getElapsedMicros(int index) {
+      return elapsedMicros[index];
+    }
+
+    public boolean isFrameSetStart(int index) {
+      return frameSetStart[index];
+    }
+
+    public boolean isSlowFrame(int index) {
+      return slowFrame[index];
+    }
+  }
 
   public FlutterFramesMonitor(@NotNull DisplayRefreshRateManager displayRefreshRateManager, @NotNull VmService vmService) {
     this.displayRefreshRateManager = displayRefreshRateManager;
@@ -91,40 +182,33 @@ public class FlutterFramesMonitor {
   }
 
   public boolean hasFps() {
-    return !frames.isEmpty();
+    return stats.frameCount > 0;
   }
 
   /**
    * Return the most recent FPS value.
+   * <p>
+   * This is the frame rate of the frames since the start of the current set of frames, where each
+   * frame counts for the number of display refresh intervals it took to render.
    */
   public double getFPS() {
-    int frameCount = 0;
-    int costCount = 0;
-
-    synchronized (this) {
-      for (FlutterFrameEvent frame : frames) {
-        frameCount++;
-
-        final int targetMicrosPerFrame = displayRefreshRateManager.getTargetMicrosPerFrame();
-        long thisCost = frame.elapsedMicros / targetMicrosPerFrame;
-        if (frame.elapsedMicros > (thisCost * targetMicrosPerFrame)) {
-          thisCost++;
-        }
-
-        costCount += thisCost;
-
-        if (frame.frameSetStart) {
-          break;
-        }
-      }
-    }
+    return stats.fps;
+  }
 
-    if (costCount == 0) {
-      return 0.0;
-    }
+  /**
+   * Return the statistics over the most recent frames. This never blocks.
+   */
+  @NotNull
+  public FrameStats getStats() {
+    return stats;
+  }
 
-    final double targetDisplayRefreshRate = displayRefreshRateManager.getCurrentDisplayRefreshRateRaw();
-    return frameCount * targetDisplayRefreshRate / costCount;
+  /**
+   * Copy the most recent frames, newest first, into the given history. This never blocks the
+   * thread receiving frames.
+   */
+  public void copyFrames(@NotNull FrameHistory history) {
+    frames.copyNewestFirst(history);
   }
 
   public void addListener(Listener listener) {
@@ -136,16 +220,42 @@ public class FlutterFramesMonitor {
   }
 
   private void handleFlutterFrame(Event event) {
-    final FlutterFrameEvent frameEvent = new FlutterFrameEvent(event.getExtensionData(), lastEventFinished);
-    lastEventFinished = frameEvent.getFrameFinishedMicros();
+    final JsonObject json = event.getExtensionData().getJson();
+    final int frameId = json.get("number").getAsInt();
+    final long startTimeMicros = json.get("startTime").getAsLong();
+    final long elapsedMicros = json.get("elapsed").getAsLong();
 
-    synchronized (this) {
-      frames.add(0, frameEvent);
-      if (frames.size() > maxFrames) {
-        frames.remove(frames.size() - 1);
-      }
+    final int targetMicrosPerFrame = displayRefreshRateManager.getTargetMicrosPerFrame();
+    final boolean frameSetStart = (startTimeMicros - lastEventFinished) > (targetMicrosPerFrame * 2L);
+    final boolean slowFrame = elapsedMicros > targetMicrosPerFrame;
+    lastEventFinished = startTimeMicros + elapsedMicros;
+
+    // The number of display refresh intervals this frame took, rounded up.
+    int cost = (int)(elapsedMicros / targetMicrosPerFrame);
+    if (elapsedMicros > ((long)cost * targetMicrosPerFrame)) {
+      cost++;
     }
 
-    eventDispatcher.getMulticaster().handleFrameEvent(frameEvent);
+    frames.add(frameId, startTimeMicros, elapsedMicros, frameSetStart, slowFrame, cost);
+    stats = computeStats();
+
+    eventDispatcher.getMulticaster().handleFrameEvent(
+      new FlutterFrameEvent(frameId, startTimeMicros, elapsedMicros, frameSetStart, slowFrame));
+  }
+
+  @NotNull
+  private FrameStats computeStats() {
+    final long cost = frames.getFrameSetCost();
+    final double fps = cost == 0
+                       ? 0.0
+                       : frames.getFrameSetLength() * displayRefreshRateManager.getCurrentDisplayRefreshRateRaw() / cost;
+    return new FrameStats(
+      frames.getSize(),
+      fps,
+      frames.getSlowFrameCount(),
+      frames.getElapsedPercentileMicros(50),
+      frames.getElapsedPercentileMicros(90),
+      frames.getElapsedPercentileMicros(99)
+    );
   }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A fixed capacity ring buffer of frame timings stored as parallel primitive arrays.
+ * <p>
+ * The statistics the performance view displays (the frame rate of the current set of frames, the
+ * number of slow frames and a histogram of frame times) are updated as each frame is added and
+ * evicted, so reading them does not walk the buffer.
+ * <p>
+ * Frames are added by a single thread. Readers copy frames out with an optimistic read that never
+ * blocks the writer; only a read that overlaps a write falls back to a read lock.
+ */
+class FrameRingBuffer {
+  static final int HISTOGRAM_BUCKET_MICROS = 250;
+  static final int HISTOGRAM_BUCKETS = 512;
+
+  private static final byte FRAME_SET_START = 1;
+  private static final byte SLOW_FRAME = 2;
+
+  private final int capacity;
+  private final int[] frameIds;
+  private final long[] startTimeMicros;
+  private final long[] elapsedMicros;
+  private final int[] costs;
+  private final byte[] flags;
+  private final StampedLock lock = new StampedLock();
+
+  /**
+   * The index the next frame is written to.
+   */
+  private int head;
+  private int size;
+
+  // The following are only accessed by the writing thread.
+  private final int[] histogram = new int[HISTOGRAM_BUCKETS];
+  private int slowFrameCount;
+  private int frameSetLength;
+  private long frameSetCost;
+
+  FrameRingBuffer(int capacity) {
+    this.capacity = capacity;
+    frameIds = new int[capacity];
+    startTimeMicros = new long[capacity];
+    elapsedMicros = new long[capacity];
+    costs = new int[capacity];
+    flags = new byte[capacity];
+  }
+
+  /**
+   * Add a frame, evicting the oldest frame if the buffer is full.
+   *
+   * @param cost the number of display refresh intervals the frame took
+   */
+  void add(int frameId, long startMicros, long elapsed, boolean frameSetStart, boolean slowFrame, int cost) {
+    final long stamp = lock.writeLock();
+    try {
+      if (size == capacity) {
+        evict(head);
+      }
+      else {
+        size++;
+      }
+      frameIds[head] = frameId;
+      startTimeMicros[head] = startMicros;
+      elapsedMicros[head] = elapsed;
+      costs[head] = cost;
+      flags[head] = (byte)((frameSetStart ? FRAME_SET_START : 0) | (slowFrame ? SLOW_FRAME : 0));
+      head = (head + 1) % capacity;
+    }
+    finally {
+      lock.unlockWrite(stamp);
+    }
+
+    histogram[histogramBucket(elapsed)]++;
+    if (slowFrame) {
+      slowFrameCount++;
+    }
+    if (frameSetStart) {
+      frameSetLength = 1;
+      frameSetCost = cost;
+    }
+    else {
+      frameSetLength++;
+      frameSetCost += cost;
+    }
+  }
+
+  private void evict(int index) {
+    histogram[histogramBucket(elapsedMicros[index])]--;
+    if ((flags[index] & SLOW_FRAME) != 0) {
+      slowFrameCount--;
+    }
+    // When the current frame set spans the whole buffer, its oldest frame is the one evicted.
+    if (frameSetLength == capacity) {
+      frameSetLength--;
+      frameSetCost -= costs[index];
+    }
+  }
+
+  /**
+   * Return the number of frames since, and including, the most recent frame that started a frame
+   * set. Only called by the writing thread.
+   */
+  int getFrameSetLength() {
+    return frameSetLength;
+  }
+
+  /**
+   * Return the number of display refresh intervals taken by the frames of the current frame set.
+   * Only called by the writing thread.
+   */
+  long getFrameSetCost() {
+    return frameSetCost;
+  }
+
+  /**
+   * Only called by the writing thread.
+   */
+  int getSlowFrameCount() {
+    return slowFrameCount;
+  }
+
+  /**
+   * Only called by the writing thread.
+   */
+  int getSize() {
+    return size;
+  }
+
+  /**
+   * Return an upper bound of the given percentile of the buffered frame times, in microseconds.
+   * Only called by the writing thread.
+   *
+   * @param percentile a value between 0 and 100
+   */
+  long getElapsedPercentileMicros(double percentile) {
+    if (size == 0) {
+      return 0;
+    }
+    final int rank = Math.max(1, (int)Math.ceil(size * percentile / 100.0));
+    int seen = 0;
+    for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+      seen += histogram[i];
+      if (seen >= rank) {
+        return (long)(i + 1) * HISTOGRAM_BUCKET_MICROS;
+      }
+    }
+    return (long)HISTOGRAM_BUCKETS * HISTOGRAM_BUCKET_MICROS;
+  }
+
+  /**
+   * Copy the buffered frames, newest first, into the given history.
+   */
+  void copyNewestFirst(@NotNull FlutterFramesMonitor.FrameHistory into) {
+    into.ensureCapacity(capacity);
+    final long stamp = lock.tryOptimisticRead();
+    copy(into);
+    if (!lock.validate(stamp)) {
+      final long readStamp = lock.readLock();
+      try {
+        copy(into);
+      }
+      finally {
+        lock.unlockRead(readStamp);
+      }
+    }
+  }
+
+  private void copy(@NotNull FlutterFramesMonitor.FrameHistory into) {
+    final int count = size;
+    int index = head;
+    for (int i = 0; i < count; i++) {
+      index = index == 0 ? capacity - 1 : index - 1;
+      into.frameIds[i] = frameIds[index];
+      into.startTimeMicros[i] = startTimeMicros[index];
+      into.elapsedMicros[i] = elapsedMicros[index];
+      into.frameSetStart[i] = (flags[index] & FRAME_SET_START) != 0;
+      into.slowFrame[i] = (flags[index] & SLOW_FRAME) != 0;
+    }
+    into.size = count;
+  }
+
+  private static int histogramBucket(long elapsedMicros) {
+    return (int)Math.min(HISTOGRAM_BUCKETS - 1, Math.max(0, elapsedMicros / HISTOGRAM_BUCKET_MICROS));
+  }
+}
@@ -6,17 +6,29 @@
 package io.flutter.vmService;
 
 import com.intellij.openapi.diagnostic.Logger;
-import org.dartlang.vm.service.consumer.GetMemoryUsageConsumer;
+import org.dartlang.vm.service.VmService;
+import org.dartlang.vm.service.consumer.VMConsumer;
+import org.dartlang.vm.service.element.IsolateGroupRef;
 import org.dartlang.vm.service.element.IsolateRef;
-import org.dartlang.vm.service.element.MemoryUsage;
 import org.dartlang.vm.service.element.RPCError;
-import org.dartlang.vm.service.element.Sentinel;
+import org.dartlang.vm.service.element.VM;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 import java.util.concurrent.*;
-
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Samples the heap of a running app while it has polling clients.
+ * <p>
+ * The monitors of all apps share one scheduler thread, which only sends requests. Responses are
+ * summed as they arrive and each request times out on its own, so a slow or hung app delays
+ * only its own samples. An app has at most one sample in flight, and the next one is sent a
+ * poll period after the previous one was started.
+ * <p>
+ * When the VM supports it, the memory usage of each isolate group is requested instead of the
+ * memory usage of each isolate, which is a single request for most apps.
+ */
 public class HeapMonitor {
   private static final Logger LOG = Logger.getInstance(HeapMonitor.class);
 
@@ -24,13 +36,19 @@ public class HeapMonitor {
 
   private static final int POLL_PERIOD_IN_MS = 1000;
 
+  /**
+   * How long to wait for each request before sampling without its response.
+   */
+  private static final int REQUEST_TIMEOUT_IN_MS = 5000;
+
   public interface HeapListener {
-    void handleMemoryUsage(List<MemoryUsage> memoryUsages);
+    void handleHeapSample(@NotNull HeapSample sample);
   }
 
   public static class HeapSample {
-    final int bytes;
-    final int external;
+    final long bytes;
+    final long capacity;
+    final long external;
 
     public long getSampleTime() {
       return sampleTime;
@@ -38,18 +56,23 @@ public class HeapMonitor {
 
     public final long sampleTime;
 
-    public HeapSample(int bytes, int external) {
+    public HeapSample(long bytes, long capacity, long external) {
       this.bytes = bytes;
+      this.capacity = capacity;
       this.external = external;
 
       this.sampleTime = System.currentTimeMillis();
     }
 
-    public int getBytes() {
+    public long getBytes() {
       return bytes;
     }
 
-    public int getExternal() {
+    public long getCapacity() {
+      return capacity;
+    }
+
+    public long getExternal() {
       return external;
     }
 
@@ -59,11 +82,28 @@ public class HeapMonitor {
     }
   }
 
-  private final List<HeapMonitor.HeapListener> heapListeners = new ArrayList<>();
+  private final List<HeapMonitor.HeapListener> heapListeners = new CopyOnWriteArrayList<>();
   private ScheduledFuture<?> pollingScheduler;
+  private boolean running;
+  /**
+   * Incremented each time polling starts, so that a sample still in flight from before the monitor
+   * was last stopped does not schedule another poll.
+   */
+  private int generation;
 
   @NotNull private final VmServiceWrapper vmServiceWrapper;
 
+  /**
+   * Whether getIsolateGroupMemoryUsage is known not to be supported by the VM.
+   */
+  private volatile boolean isolateGroupsUnsupported;
+
+  /**
+   * The isolate groups of the isolates they were last looked up for.
+   */
+  private Set<String> isolateGroupsFor = Collections.emptySet();
+  private List<String> isolateGroupIds = Collections.emptyList();
+
   public HeapMonitor(@NotNull VmServiceWrapper vmServiceWrapper) {
     this.vmServiceWrapper = vmServiceWrapper;
   }
@@ -73,88 +113,168 @@ public class HeapMonitor {
   }
 
   public void removeListener(@NotNull HeapMonitor.HeapListener listener) {
-    heapListeners.add(listener);
+    heapListeners.remove(listener);
   }
 
   public boolean hasListeners() {
     return !heapListeners.isEmpty();
   }
 
-  public void start() {
-    pollingScheduler = executor.scheduleWithFixedDelay(this::poll, 100, POLL_PERIOD_IN_MS, TimeUnit.MILLISECONDS);
+  public synchronized void start() {
+    if (running) {
+      return;
+    }
+    running = true;
+    schedulePoll(++generation, 100);
   }
 
-  private int pollingClients = 0;
+  private final AtomicInteger pollingClients = new AtomicInteger();
 
   public void addPollingClient() {
-    pollingClients++;
+    pollingClients.incrementAndGet();
   }
 
   public void removePollingClient() {
-    pollingClients--;
+    pollingClients.decrementAndGet();
   }
 
-  private void poll() {
-    if (pollingClients > 0) {
-      collectMemoryUsage();
+  private synchronized void schedulePoll(int pollGeneration, long delayMs) {
+    if (running && pollGeneration == generation) {
+      pollingScheduler = executor.schedule(() -> poll(pollGeneration), delayMs, TimeUnit.MILLISECONDS);
     }
   }
 
-  private void collectMemoryUsage() {
-    final List<IsolateRef> isolateRefs = vmServiceWrapper.getExistingIsolates();
-    if (isolateRefs.isEmpty()) {
+  private synchronized boolean isRunning() {
+    return running;
+  }
+
+  private void poll(int pollGeneration) {
+    final long startTime = System.currentTimeMillis();
+    if (pollingClients.get() <= 0) {
+      schedulePoll(pollGeneration, POLL_PERIOD_IN_MS);
       return;
     }
 
-    final List<MemoryUsage> memoryUsage = new ArrayList<>();
-
-    final CountDownLatch latch = new CountDownLatch(isolateRefs.size());
+    CompletableFuture<HeapSample> sample;
+    try {
+      sample = collectMemoryUsage();
+    }
+    catch (RuntimeException e) {
+      LOG.warn(e);
+      sample = CompletableFuture.completedFuture(null);
+    }
+    sample.whenComplete((result, error) -> {
+      if (result != null && isRunning()) {
+        heapListeners.forEach(listener -> listener.handleHeapSample(result));
+      }
+      schedulePoll(pollGeneration, Math.max(0, POLL_PERIOD_IN_MS - (System.currentTimeMillis() - startTime)));
+    });
+  }
 
-    for (IsolateRef isolateRef : isolateRefs) {
-      vmServiceWrapper.getVmService().getMemoryUsage(isolateRef.getId(), new GetMemoryUsageConsumer() {
-        @Override
-        public void received(MemoryUsage usage) {
-          memoryUsage.add(usage);
-          latch.countDown();
-        }
+  @NotNull
+  private CompletableFuture<HeapSample> collectMemoryUsage() {
+    final List<IsolateRef> isolateRefs = vmServiceWrapper.getExistingIsolates();
+    if (isolateRefs.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
 
-        @Override
-        public void received(Sentinel sentinel) {
-          latch.countDown();
+    if (isolateGroupsUnsupported) {
+      return collectIsolateMemoryUsage(isolateRefs);
+    }
+    return getIsolateGroupIds(isolateRefs).thenCompose((groupIds) -> {
+      if (groupIds == null || groupIds.isEmpty()) {
+        return collectIsolateMemoryUsage(isolateRefs);
+      }
+      return collectIsolateGroupMemoryUsage(groupIds).thenCompose((sample) -> {
+        if (sample == null && isolateGroupsUnsupported) {
+          return collectIsolateMemoryUsage(isolateRefs);
         }
+        return CompletableFuture.completedFuture(sample);
+      });
+    });
+  }
 
-        @Override
-        public void onError(RPCError error) {
-          // TODO(devoncarew): Remove rpcInternalError once https://github.com/dart-lang/webdev/issues/781
-          // lands and rolls into flutter.
-          final int rpcInternalError = -32603;
-          final int rpcMethodNotFound = -32601;
-          // {"jsonrpc":"2.0","error":{"code":-32603,"message":"UnimplementedError..."}}
-          if (error.getCode() == rpcInternalError || error.getCode() == rpcMethodNotFound) {
-            handleMemoryApiNotSupported();
-          }
+  @NotNull
+  private CompletableFuture<HeapSample> collectIsolateMemoryUsage(@NotNull List<IsolateRef> isolateRefs) {
+    final MemoryUsageSum sum = new MemoryUsageSum(isolateRefs.size());
+    final VmService vmService = vmServiceWrapper.getVmService();
+    for (IsolateRef isolateRef : isolateRefs) {
+      vmService.getMemoryUsage(isolateRef.getId(), REQUEST_TIMEOUT_IN_MS, sum);
+    }
+    return sum.done.thenApply((sample) -> {
+      if (sum.isUnsupported()) {
+        handleMemoryApiNotSupported();
+      }
+      return sample;
+    });
+  }
 
-          latch.countDown();
-        }
-      });
+  @NotNull
+  private CompletableFuture<HeapSample> collectIsolateGroupMemoryUsage(@NotNull List<String> groupIds) {
+    final MemoryUsageSum sum = new MemoryUsageSum(groupIds.size());
+    final VmService vmService = vmServiceWrapper.getVmService();
+    for (String groupId : groupIds) {
+      vmService.getIsolateGroupMemoryUsage(groupId, REQUEST_TIMEOUT_IN_MS, sum);
     }
+    return sum.done.thenApply((sample) -> {
+      if (sum.isUnsupported()) {
+        isolateGroupsUnsupported = true;
+      }
+      return sample;
+    });
+  }
 
-    try {
-      latch.await();
+  /**
+   * Returns the ids of the app's isolate groups, which are looked up again when its isolates change,
+   * or null if they could not be looked up.
+   */
+  @NotNull
+  private CompletableFuture<List<String>> getIsolateGroupIds(@NotNull List<IsolateRef> isolateRefs) {
+    final Set<String> isolateIds = new HashSet<>();
+    for (IsolateRef isolateRef : isolateRefs) {
+      isolateIds.add(isolateRef.getId());
     }
-    catch (InterruptedException ignored) {
+    synchronized (this) {
+      if (isolateIds.equals(isolateGroupsFor)) {
+        return CompletableFuture.completedFuture(isolateGroupIds);
+      }
     }
 
-    if (pollingScheduler != null) {
-      heapListeners.forEach(listener -> listener.handleMemoryUsage(memoryUsage));
-    }
+    final CompletableFuture<List<String>> result = new CompletableFuture<>();
+    vmServiceWrapper.getVmService().getVM(REQUEST_TIMEOUT_IN_MS, new VMConsumer() {
+      @Override
+      public void received(VM vm) {
+        final List<String> groupIds = new ArrayList<>();
+        if (vm.getJson().has("isolateGroups")) {
+          for (IsolateGroupRef group : vm.getIsolateGroups()) {
+            groupIds.add(group.getId());
+          }
+        }
+        else {
+          // The VM predates isolate groups.
+          isolateGroupsUnsupported = true;
+        }
+        synchronized (HeapMonitor.this) {
+          isolateGroupsFor = isolateIds;
+          isolateGroupIds = groupIds;
+        }
+        result.complete(groupIds);
+      }
+
+      @Override
+      public void onError(RPCError error) {
+        result.complete(null);
+      }
+    });
+    return result;
   }
 
   private void handleMemoryApiNotSupported() {
     stop();
   }
 
-  public void stop() {
+  public synchronized void stop() {
+    running = false;
     if (pollingScheduler != null) {
       pollingScheduler.cancel(false);
       pollingScheduler = null;
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import com.google.gson.JsonElement;
+import org.dartlang.vm.service.consumer.GetIsolateGroupMemoryUsageConsumer;
+import org.dartlang.vm.service.consumer.GetMemoryUsageConsumer;
+import org.dartlang.vm.service.element.MemoryUsage;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adds up the memory usage of several isolates or isolate groups as their responses arrive.
+ * <p>
+ * The sum completes once every request has been answered, has failed or has timed out, with
+ * null if none of them returned a memory usage.
+ */
+class MemoryUsageSum implements GetMemoryUsageConsumer, GetIsolateGroupMemoryUsageConsumer {
+  static final int RPC_INTERNAL_ERROR = -32603;
+  static final int RPC_METHOD_NOT_FOUND = -32601;
+
+  final CompletableFuture<HeapMonitor.HeapSample> done = new CompletableFuture<>();
+
+  private int remaining;
+  private int received;
+  private long used;
+  private long capacity;
+  private long external;
+  private boolean unsupported;
+
+  MemoryUsageSum(int requests) {
+    remaining = requests;
+    if (requests == 0) {
+      done.complete(null);
+    }
+  }
+
+  /**
+   * Whether a request failed because the VM does not implement the method.
+   */
+  synchronized boolean isUnsupported() {
+    return unsupported;
+  }
+
+  @Override
+  public void received(MemoryUsage usage) {
+    synchronized (this) {
+      used += getBytes(usage, "heapUsage");
+      capacity += getBytes(usage, "heapCapacity");
+      external += getBytes(usage, "externalUsage");
+      received++;
+    }
+    requestDone();
+  }
+
+  @Override
+  public void received(Sentinel sentinel) {
+    // The isolate has exited.
+    requestDone();
+  }
+
+  @Override
+  public void onError(RPCError error) {
+    // TODO(devoncarew): Remove rpcInternalError once https://github.com/dart-lang/webdev/issues/781
+    // lands and rolls into flutter.
+    // {"jsonrpc":"2.0","error":{"code":-32603,"message":"UnimplementedError..."}}
+    if (error.getCode() == RPC_INTERNAL_ERROR || error.getCode() == RPC_METHOD_NOT_FOUND) {
+      synchronized (this) {
+        unsupported = true;
+      }
+    }
+    requestDone();
+  }
+
+  private void requestDone() {
+    final HeapMonitor.HeapSample sample;
+    synchronized (this) {
+      if (remaining == 0 || --remaining > 0) {
+        return;
+      }
+      sample = received == 0 ? null : new HeapMonitor.HeapSample(used, capacity, external);
+    }
+    done.complete(sample);
+  }
+
+  /**
+   * Reads a size from the JSON, as the sizes of large heaps do not fit the int returned by MemoryUsage.
+   */
+  private static long getBytes(@NotNull MemoryUsage usage, @NotNull String name) {
+    final JsonElement element = usage.getJson().get(name);
+    return element == null || element.isJsonNull() ? 0 : element.getAsLong();
+  }
+}
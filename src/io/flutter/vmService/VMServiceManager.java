@@ -39,6 +39,11 @@ public class VMServiceManager implements FlutterApp.FlutterAppListener, Disposab
 
   @NotNull private final FlutterApp app;
   @NotNull private final HeapMonitor heapMonitor;
+
+  /**
+   * The number of listeners added with {@link #addHeapListener}, which keep the heap monitor running.
+   */
+  private int heapListenerCount;
   @NotNull private final FlutterFramesMonitor flutterFramesMonitor;
   @NotNull private final Map<String, EventStream<Boolean>> serviceExtensions = new THashMap<>();
 
@@ -455,26 +460,41 @@ public class VMServiceManager implements FlutterApp.FlutterAppListener, Disposab
   }
 
   /**
-   * Add a listener for heap state updates.
+   * Add a listener for heap state updates, starting the heap monitor if it is not running.
    */
-  public void addHeapListener(@NotNull HeapListener listener) {
-    final boolean hadListeners = heapMonitor.hasListeners();
+  public synchronized void addHeapListener(@NotNull HeapListener listener) {
     heapMonitor.addListener(listener);
-    if (!hadListeners) {
+    if (heapListenerCount++ == 0) {
       startHeapMonitor();
     }
   }
 
   /**
-   * Remove a heap listener.
+   * Remove a heap listener added with {@link #addHeapListener}, stopping the heap monitor if it was
+   * the last one.
    */
-  public void removeHeapListener(@NotNull HeapListener listener) {
+  public synchronized void removeHeapListener(@NotNull HeapListener listener) {
     heapMonitor.removeListener(listener);
-    if (!heapMonitor.hasListeners()) {
+    if (--heapListenerCount == 0) {
       stopHeapMonitor();
     }
   }
 
+  /**
+   * Add a listener for heap state updates that does not start the heap monitor, so it only gets
+   * the samples taken while another listener keeps the monitor running.
+   */
+  public void addPassiveHeapListener(@NotNull HeapListener listener) {
+    heapMonitor.addListener(listener);
+  }
+
+  /**
+   * Remove a heap listener added with {@link #addPassiveHeapListener}.
+   */
+  public void removePassiveHeapListener(@NotNull HeapListener listener) {
+    heapMonitor.removeListener(listener);
+  }
+
   @NotNull
   public StreamSubscription<Boolean> hasServiceExtension(String name, Consumer<Boolean> onData) {
     EventStream<Boolean> stream;
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.benchmark;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Payload corpora used by the benchmarks, checked in under testData/jmh.
+ * <p>
+ * The corpora are synthetic sessions shaped like real ones rather than recorded captures; see
+ * testData/jmh/README.md.
+ */
+public class Corpus {
+  /**
+   * Output of a verbose `flutter run --machine` session, one daemon message or log line per line.
+   */
+  public static final String DAEMON_RUN = "daemon_run.log";
+
+  /**
+   * VM service websocket frames for the Extension, GC and Stdout streams, one frame per line.
+   * The first frame is a Flutter.RebuiltWidgets event carrying newLocations after a hot restart.
+   */
+  public static final String VM_STREAM_EVENTS = "vm_stream_events.jsonl";
+
+  /**
+   * Large getObject responses: a 5000 element List, a 2000 entry Map and a 400 field instance.
+   */
+  public static final String GET_OBJECT_RESPONSES = "get_object_responses.jsonl";
+
+  /**
+   * Output of the package:test json reporter for a 40 suite, 2000 test run.
+   */
+  public static final String TEST_REPORTER = "test_reporter.jsonl";
+
+  private Corpus() {
+  }
+
+  @NotNull
+  public static List<String> lines(@NotNull String name) {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(name), StandardCharsets.UTF_8))) {
+      return reader.lines().collect(Collectors.toList());
+    }
+    catch (IOException e) {
+      throw new IllegalStateException("Unable to read corpus " + name, e);
+    }
+  }
+
+  @NotNull
+  public static String text(@NotNull String name) {
+    return lines(name).stream().map(line -> line + "\n").collect(Collectors.joining());
+  }
+
+  /**
+   * Splits the text into chunks of the given size, the way process output arrives in
+   * onTextAvailable without regard for line boundaries.
+   */
+  @NotNull
+  public static List<String> chunks(@NotNull String text, int chunkSize) {
+    final List<String> chunks = new ArrayList<>();
+    for (int i = 0; i < text.length(); i += chunkSize) {
+      chunks.add(text.substring(i, Math.min(text.length(), i + chunkSize)));
+    }
+    return chunks;
+  }
+
+  @NotNull
+  private static InputStream open(@NotNull String name) throws IOException {
+    final InputStream stream = Corpus.class.getClassLoader().getResourceAsStream(name);
+    if (stream == null) {
+      throw new IOException("Missing corpus " + name);
+    }
+    return stream;
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link SlidingWindowStats} with {@link IncrementalSlidingWindowStats} on the work
+ * FlutterWidgetPerf does: reports of rebuild counts per location, and summaries of every location
+ * for every metric at each UI tick.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlidingWindowStatsBenchmark {
+  private static final PerfMetric[] metrics = PerfMetric.values();
+
+  @Param({"ringWalk", "incremental"})
+  public String implementation;
+
+  @Param({"100", "2000"})
+  public int locations;
+
+  private SlidingWindowStats[] stats;
+  private int[] frameTimes;
+  private int[] frameCounts;
+  private int time;
+  private int frame;
+
+  @Setup
+  public void setUp() {
+    stats = new SlidingWindowStats[locations];
+    for (int i = 0; i < locations; i++) {
+      stats[i] = "incremental".equals(implementation) ? new IncrementalSlidingWindowStats() : new SlidingWindowStats();
+    }
+    // A minute of 60fps frames with some idle gaps.
+    final Random random = new Random(42);
+    frameTimes = new int[3600];
+    frameCounts = new int[3600];
+    int t = 0;
+    for (int i = 0; i < frameTimes.length; i++) {
+      t += random.nextInt(10) == 0 ? 100 : 16;
+      frameTimes[i] = t;
+      frameCounts[i] = 1 + random.nextInt(5);
+    }
+  }
+
+  /**
+   * Fill the windows with a few seconds of frames, as in SlidingWindowStatsTest, before measuring.
+   */
+  @Setup(Level.Iteration)
+  public void fillWindows() {
+    for (SlidingWindowStats s : stats) {
+      s.clear();
+    }
+    time = 0;
+    frame = 0;
+    for (int i = 0; i < 400; i++) {
+      addFrame();
+    }
+  }
+
+  private void addFrame() {
+    final int index = frame++ % frameTimes.length;
+    if (index == 0 && frame > 1) {
+      // Start over as after a hot restart.
+      for (SlidingWindowStats s : stats) {
+        s.clear();
+      }
+    }
+    time = frameTimes[index];
+    final int count = frameCounts[index];
+    // Each frame rebuilds a rotating tenth of the locations.
+    for (int i = index % 10; i < stats.length; i += 10) {
+      stats[i].add(count, time);
+    }
+  }
+
+  /**
+   * One frame of reports followed by one summary of every location.
+   */
+  @Benchmark
+  public void frameAndSummary(Blackhole blackhole) {
+    addFrame();
+    summarize(blackhole);
+  }
+
+  /**
+   * A summary of every location without new reports, as when the UI ticks while the app is idle.
+   */
+  @Benchmark
+  public void summaryOnly(Blackhole blackhole) {
+    summarize(blackhole);
+  }
+
+  private void summarize(Blackhole blackhole) {
+    for (SlidingWindowStats s : stats) {
+      for (PerfMetric metric : metrics) {
+        blackhole.consume(s.getValue(metric, time));
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.run.daemon;
+
+import com.google.gson.JsonObject;
+import io.flutter.benchmark.Corpus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validates every line of a synthetic daemon session, shaped like a recorded one, with
+ * {@link DaemonApi#parseAndValidateDaemonEvent}, and dispatches its events either from the parsed tree or
+ * directly from the line.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaemonEventBenchmark {
+  private List<String> lines;
+  /**
+   * The lines that are events, as responses are only handled while their command is pending.
+   */
+  private List<String> eventLines;
+  private DaemonApi api;
+  private DaemonEvent.Listener listener;
+  private Blackhole events;
+
+  @Setup
+  public void setUp() {
+    lines = Corpus.lines(Corpus.DAEMON_RUN);
+    eventLines = new ArrayList<>();
+    for (String line : lines) {
+      final JsonObject obj = DaemonApi.parseAndValidateDaemonEvent(line);
+      if (obj != null && !obj.has("id")) {
+        eventLines.add(line);
+      }
+    }
+    api = new DaemonApi((String command) -> {
+    });
+    listener = new DaemonEvent.Listener() {
+      @Override
+      public void onAppLog(DaemonEvent.AppLog event) {
+        events.consume(event);
+      }
+
+      @Override
+      public void onAppProgressStarting(DaemonEvent.AppProgress event) {
+        events.consume(event);
+      }
+
+      @Override
+      public void onAppProgressFinished(DaemonEvent.AppProgress event) {
+        events.consume(event);
+      }
+
+      @Override
+      public void onDeviceAdded(DaemonEvent.DeviceAdded event) {
+        events.consume(event);
+      }
+    };
+  }
+
+  @Benchmark
+  public void parseAndValidateDaemonEvent(Blackhole blackhole) {
+    for (String line : lines) {
+      blackhole.consume(DaemonApi.parseAndValidateDaemonEvent(line));
+    }
+  }
+
+  @Benchmark
+  public void dispatchParsedEvents(Blackhole blackhole) {
+    events = blackhole;
+    for (String line : eventLines) {
+      final JsonObject obj = DaemonApi.parseAndValidateDaemonEvent(line);
+      if (obj != null) {
+        api.dispatch(obj, listener);
+      }
+    }
+  }
+
+  @Benchmark
+  public void dispatchEventLines(Blackhole blackhole) {
+    events = blackhole;
+    for (String line : eventLines) {
+      api.dispatchLine(line, listener);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.test;
+
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.execution.testframework.TestConsoleProperties;
+import com.jetbrains.lang.dart.util.DartUrlResolver;
+import io.flutter.benchmark.Corpus;
+import jetbrains.buildServer.messages.serviceMessages.ServiceMessageVisitor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Converts a synthetic package:test json reporter run, shaped like a recorded one, with
+ * {@link DartTestEventsConverterZ}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DartTestEventsConverterBenchmark {
+  private List<String> lines;
+  private TestConsoleProperties consoleProperties;
+  private DartUrlResolver urlResolver;
+  private ServiceMessageVisitor visitor;
+
+  @Setup
+  public void setUp() {
+    lines = Corpus.lines(Corpus.TEST_REPORTER);
+    // Stub-only mocks do not record invocations, so they do not show up in the allocation rate.
+    consoleProperties = mock(TestConsoleProperties.class, withSettings().stubOnly());
+    urlResolver = mock(DartUrlResolver.class, withSettings().stubOnly());
+    visitor = mock(ServiceMessageVisitor.class, withSettings().stubOnly());
+  }
+
+  @Benchmark
+  public void processEventText(Blackhole blackhole) throws ParseException {
+    // A run's converter keeps state for every test, so each invocation converts a whole run.
+    final DartTestEventsConverterZ converter = new DartTestEventsConverterZ("FlutterTestRunner", consoleProperties, urlResolver);
+    for (String line : lines) {
+      blackhole.consume(converter.processServiceMessages(line, ProcessOutputTypes.STDOUT, visitor));
+    }
+  }
+}
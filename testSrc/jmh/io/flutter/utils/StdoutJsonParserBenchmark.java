@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.utils;
+
+import io.flutter.benchmark.Corpus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds a synthetic daemon session, shaped like a recorded one, through {@link StdoutJsonParser}, reading lines
+ * either like the test runners or handing them to a consumer like DaemonApi.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StdoutJsonParserBenchmark {
+  /**
+   * Size of the chunks handed to appendOutput; small chunks split most JSON lines.
+   */
+  @Param({"64", "8192"})
+  public int chunkSize;
+
+  private List<String> chunks;
+
+  @Setup
+  public void setUp() {
+    chunks = Corpus.chunks(Corpus.text(Corpus.DAEMON_RUN), chunkSize);
+  }
+
+  @Benchmark
+  public void appendOutput(Blackhole blackhole) {
+    final StdoutJsonParser parser = new StdoutJsonParser();
+    for (String chunk : chunks) {
+      parser.appendOutput(chunk);
+      for (String line : parser.getAvailableLines()) {
+        blackhole.consume(line);
+      }
+    }
+  }
+
+  @Benchmark
+  public void appendOutputToConsumer(Blackhole blackhole) {
+    final StdoutJsonParser parser = new StdoutJsonParser(blackhole::consume);
+    for (String chunk : chunks) {
+      parser.appendOutput(chunk);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.flutter.benchmark.Corpus;
+import org.dartlang.vm.service.element.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the generated {@link Event} and {@link Instance} accessors over already parsed payloads,
+ * the way the inspector and the frame monitor walk them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElementAccessorBenchmark {
+  private final List<Event> events = new ArrayList<>();
+  private final List<Instance> instances = new ArrayList<>();
+
+  @Setup
+  public void setUp() {
+    final JsonParser parser = new JsonParser();
+    for (String frame : Corpus.lines(Corpus.VM_STREAM_EVENTS)) {
+      final JsonObject message = parser.parse(frame).getAsJsonObject();
+      events.add(new Event(message.getAsJsonObject("params").getAsJsonObject("event")));
+    }
+    for (String response : Corpus.lines(Corpus.GET_OBJECT_RESPONSES)) {
+      final JsonObject message = parser.parse(response).getAsJsonObject();
+      instances.add(new Instance(message.getAsJsonObject("result")));
+    }
+  }
+
+  @Benchmark
+  public void eventAccessors(Blackhole blackhole) {
+    for (Event event : events) {
+      blackhole.consume(event.getKind());
+      blackhole.consume(event.getExtensionKind());
+      blackhole.consume(event.getTimestamp());
+      final IsolateRef isolate = event.getIsolate();
+      blackhole.consume(isolate == null ? null : isolate.getId());
+      final ExtensionData data = event.getExtensionData();
+      blackhole.consume(data == null ? null : data.getJson().get("startTime"));
+    }
+  }
+
+  @Benchmark
+  public void instanceAccessors(Blackhole blackhole) {
+    for (Instance instance : instances) {
+      blackhole.consume(instance.getKind());
+      blackhole.consume(instance.getClassRef().getName());
+      final ElementList<InstanceRef> elements = instance.getElements();
+      if (elements != null) {
+        for (InstanceRef element : elements) {
+          blackhole.consume(element.getValueAsString());
+        }
+      }
+      final ElementList<MapAssociation> associations = instance.getAssociations();
+      if (associations != null) {
+        for (MapAssociation association : associations) {
+          blackhole.consume(association.getKey());
+          blackhole.consume(association.getValue());
+        }
+      }
+      final ElementList<BoundField> fields = instance.getFields();
+      if (fields != null) {
+        for (BoundField field : fields) {
+          blackhole.consume(field.getDecl().getName());
+          blackhole.consume(field.getValue());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import com.google.gson.JsonObject;
+import io.flutter.benchmark.Corpus;
+import org.dartlang.vm.service.element.Event;
+import org.dartlang.vm.service.element.ExtensionData;
+import org.dartlang.vm.service.internal.RequestSink;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes synthetic websocket frames, shaped like recorded ones, through
+ * {@link VmServiceBase#processMessage} to a listener that, like FlutterFramesMonitor, only reads
+ * the body of Flutter.Frame events.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessMessageBenchmark {
+  @Param({"true", "false"})
+  public boolean streamingDecoder;
+
+  private List<String> frames;
+  private VmService vmService;
+  private Blackhole blackhole;
+
+  @Setup
+  public void setUp(Blackhole blackhole) {
+    this.blackhole = blackhole;
+    VmServiceBase.setStreamingDecoder(streamingDecoder);
+    frames = Corpus.lines(Corpus.VM_STREAM_EVENTS);
+    vmService = new VmService();
+    vmService.requestSink = new RequestSink() {
+      @Override
+      public void add(JsonObject json) {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+    vmService.addVmServiceListener(new VmServiceListener() {
+      @Override
+      public void connectionOpened() {
+      }
+
+      @Override
+      public void received(String streamId, Event event) {
+        if (VmService.EXTENSION_STREAM_ID.equals(streamId) && "Flutter.Frame".equals(event.getExtensionKind())) {
+          final ExtensionData data = event.getExtensionData();
+          ProcessMessageBenchmark.this.blackhole.consume(data.getJson().get("elapsed").getAsLong());
+        }
+        else {
+          ProcessMessageBenchmark.this.blackhole.consume(event.getKind());
+        }
+      }
+
+      @Override
+      public void connectionClosed() {
+      }
+    });
+  }
+
+  @TearDown
+  public void tearDown() {
+    VmServiceBase.setStreamingDecoder(true);
+  }
+
+  @Benchmark
+  public void processMessage() {
+    for (String frame : frames) {
+      vmService.processMessage(frame);
+    }
+  }
+}
@@ -58,6 +58,28 @@ public class FlutterConsoleFilterTest {
     assertNotNull(link);
   }
 
+  @Test
+  public void checkEmbeddedPathLink() {
+    final String line = "  • MyApp.build (test/widget_test.dart:6)\n";
+    final Filter.Result link = new FlutterConsoleFilter(fixture.getModule()).applyFilter(line, line.length());
+    assertNotNull(link);
+  }
+
+  @Test
+  public void checkLinePlainText() {
+    final String line = "Running Gradle task 'assembleDebug'...\n";
+    assertNull(new FlutterConsoleFilter(fixture.getModule()).applyFilter(line, line.length()));
+  }
+
+  @Test
+  public void checkLinkToFileCreatedLater() throws Exception {
+    // The missing file is remembered until the file system reports that it was created.
+    final String line = "test/later_test.dart:3:1: Error: Expected ';' after this.";
+    assertNull(new FlutterConsoleFilter(fixture.getModule()).applyFilter(line, line.length()));
+    tmp.writeFile("root/test/later_test.dart", "");
+    assertNotNull(new FlutterConsoleFilter(fixture.getModule()).applyFilter(line, line.length()));
+  }
+
   @Test(timeout=1000)
   public void checkBadErrorMessage() {
     final Filter.Result link = new FlutterConsoleFilter(fixture.getModule()).applyFilter(backtracker, backtracker.length());
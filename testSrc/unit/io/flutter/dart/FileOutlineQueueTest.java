@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.dart;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileOutlineQueueTest {
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final List<String> handled = new ArrayList<>();
+  private final FileOutlineQueue queue = new FileOutlineQueue(tasks::add, (file, notification) -> handled.add(file + ":" + notification));
+
+  @Test
+  public void handlesOnlyTheNewestNotificationOfAFile() {
+    queue.add("a.dart", "1");
+    queue.add("a.dart", "2");
+    queue.add("a.dart", "3");
+    assertEquals(1, tasks.size());
+
+    runTasks();
+    assertEquals(Collections.singletonList("a.dart:3"), handled);
+    assertEquals(2, queue.getDroppedCount());
+  }
+
+  @Test
+  public void handlesFilesSeparately() {
+    queue.add("a.dart", "1");
+    queue.add("b.dart", "1");
+    queue.add("a.dart", "2");
+    assertEquals(2, tasks.size());
+
+    runTasks();
+    assertEquals(Arrays.asList("a.dart:2", "b.dart:1"), handled);
+    assertEquals(1, queue.getDroppedCount());
+  }
+
+  @Test
+  public void handlesNotificationsThatArriveWhileHandling() {
+    final List<String> handled = new ArrayList<>();
+    final FileOutlineQueue[] queue = new FileOutlineQueue[1];
+    queue[0] = new FileOutlineQueue(tasks::add, (file, notification) -> {
+      handled.add(notification);
+      if (notification.equals("1")) {
+        queue[0].add(file, "2");
+      }
+    });
+
+    queue[0].add("a.dart", "1");
+    runTasks();
+    assertEquals(Arrays.asList("1", "2"), handled);
+    queue[0].add("a.dart", "3");
+    runTasks();
+    assertEquals(Arrays.asList("1", "2", "3"), handled);
+  }
+
+  @Test
+  public void dropsNotificationsOfRemovedFiles() {
+    queue.add("a.dart", "1");
+    queue.remove("a.dart");
+    runTasks();
+    assertEquals(Collections.emptyList(), handled);
+    assertEquals(1, queue.getDroppedCount());
+
+    queue.add("a.dart", "2");
+    runTasks();
+    assertEquals(Collections.singletonList("a.dart:2"), handled);
+  }
+
+  private void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+    }
+  }
+}
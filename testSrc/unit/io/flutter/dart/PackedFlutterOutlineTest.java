@@ -0,0 +1,109 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.dart;
+
+import org.dartlang.analysis.server.protocol.FlutterOutline;
+import org.dartlang.analysis.server.protocol.FlutterOutlineAttribute;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PackedFlutterOutlineTest {
+  private final FlutterOutline text = node("NEW_INSTANCE", 20, 10, "Text", Collections.singletonList(attribute("data")), null);
+  private final FlutterOutline icon = node("NEW_INSTANCE", 30, 10, "Icon", null, null);
+  private final FlutterOutline row = node("NEW_INSTANCE", 10, 40, "Row", null, Arrays.asList(text, icon));
+  private final FlutterOutline padding = node("NEW_INSTANCE", 60, 20, "Padding", null, new ArrayList<>());
+  private final FlutterOutline root = node("COMPILATION_UNIT", 0, 100, null, null, Arrays.asList(row, padding));
+
+  @Test
+  public void numbersNodesInPreOrder() {
+    final PackedFlutterOutline packed = PackedFlutterOutline.pack(root);
+    assertEquals(5, packed.getNodeCount());
+    assertEquals("COMPILATION_UNIT", packed.getKind(0));
+    assertEquals("Row", packed.getClassName(1));
+    assertEquals("Text", packed.getClassName(2));
+    assertEquals("Icon", packed.getClassName(3));
+    assertEquals("Padding", packed.getClassName(4));
+
+    assertEquals(1, packed.getFirstChild(0));
+    assertEquals(4, packed.getNextSibling(1));
+    assertEquals(3, packed.getNextSibling(2));
+    assertEquals(PackedFlutterOutline.NONE, packed.getNextSibling(3));
+    assertEquals(PackedFlutterOutline.NONE, packed.getNextSibling(4));
+    assertEquals(PackedFlutterOutline.NONE, packed.getFirstChild(4));
+    assertEquals(1, packed.getParent(3));
+    assertEquals(4, packed.getSubtreeEnd(1));
+    assertEquals(2, packed.getChildCount(1));
+
+    assertEquals(1, packed.getAttributeCount(2));
+    assertEquals("data", packed.getAttribute(2, 0).getName());
+    assertEquals(0, packed.getAttributeCount(3));
+  }
+
+  @Test
+  public void internsNames() {
+    final PackedFlutterOutline first = PackedFlutterOutline.pack(root);
+    final PackedFlutterOutline second = PackedFlutterOutline.pack(node("NEW_INSTANCE", 0, 5, new String("Text"), null, null));
+    assertSame(first.getClassName(2), second.getClassName(0));
+    assertSame(first.getKind(1), second.getKind(0));
+  }
+
+  @Test
+  public void movesCursor() {
+    final PackedFlutterOutline.Cursor cursor = PackedFlutterOutline.pack(root).cursor();
+    assertTrue(cursor.moveToFirstChild());
+    assertEquals("Row", cursor.getClassName());
+    assertTrue(cursor.moveToFirstChild());
+    assertTrue(cursor.moveToNextSibling());
+    assertEquals(30, cursor.getOffset());
+    assertFalse(cursor.moveToNextSibling());
+    assertTrue(cursor.moveToParent());
+    assertTrue(cursor.moveToNextSibling());
+    assertEquals("Padding", cursor.getClassName());
+    assertFalse(cursor.moveToFirstChild());
+  }
+
+  @Test
+  public void rebuildsEqualOutline() {
+    final PackedFlutterOutline packed = PackedFlutterOutline.pack(root);
+    final FlutterOutline rebuilt = packed.toFlutterOutline(0);
+    assertNotSame(root, rebuilt);
+    assertEquals(root, rebuilt);
+    assertEquals(row, packed.toFlutterOutline(1));
+  }
+
+  @Test
+  public void rebuildsNodeWithoutChildren() {
+    final FlutterOutline node = PackedFlutterOutline.pack(root).toFlutterOutlineNode(1);
+    assertEquals("Row", node.getClassName());
+    assertEquals(10, node.getOffset());
+    assertEquals(40, node.getLength());
+    assertNull(node.getChildren());
+  }
+
+  private static FlutterOutline node(String kind,
+                                     int offset,
+                                     int length,
+                                     String className,
+                                     List<FlutterOutlineAttribute> attributes,
+                                     List<FlutterOutline> children) {
+    return new FlutterOutline(kind, offset, length, offset, length, "", null, attributes, className, null, null, children);
+  }
+
+  private static FlutterOutlineAttribute attribute(String name) {
+    return new FlutterOutlineAttribute(name, "'hello'", null, null, "hello", null, null);
+  }
+}
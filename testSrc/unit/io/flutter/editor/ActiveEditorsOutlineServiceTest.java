@@ -14,6 +14,7 @@ import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
 import com.intellij.testFramework.fixtures.EditorTestFixture;
 import io.flutter.dart.FlutterDartAnalysisServer;
 import io.flutter.dart.FlutterOutlineListener;
+import io.flutter.dart.PackedFlutterOutline;
 import io.flutter.testing.CodeInsightProjectFixture;
 import io.flutter.testing.Testing;
 import org.dartlang.analysis.server.protocol.FlutterOutline;
@@ -158,7 +159,7 @@ public class ActiveEditorsOutlineServiceTest {
       flutterDas.updateOutline(mainPath, secondFlutterOutline);
       assertThat(service.getIfUpdated(mainFile), nullValue());
       flutterDas.updateOutline(mainPath, outlineWithCorrectLength);
-      assertThat(service.getIfUpdated(mainFile), equalTo(outlineWithCorrectLength));
+      assertThat(service.getIfUpdated(mainFile).toFlutterOutline(0), equalTo(outlineWithCorrectLength));
     });
   }
 
@@ -169,11 +170,11 @@ public class ActiveEditorsOutlineServiceTest {
     String mostRecentPath = null;
 
     @Override
-    public void onOutlineChanged(@NotNull String path, FlutterOutline outline) {
+    public void onOutlineChanged(@NotNull String path, PackedFlutterOutline outline) {
       final Integer changes = outlineChanged.get(path);
       outlineChanged.put(path, changes == null ? 1 : changes + 1);
       mostRecentPath = path;
-      mostRecentOutline = outline;
+      mostRecentOutline = outline == null ? null : outline.toFlutterOutline(0);
     }
   }
 
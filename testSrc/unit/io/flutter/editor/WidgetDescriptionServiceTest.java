@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.editor;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.dartlang.analysis.server.protocol.FlutterWidgetProperty;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class WidgetDescriptionServiceTest {
+  private final VirtualFile file = mock(VirtualFile.class);
+  private final List<Integer> fetchedOffsets = Collections.synchronizedList(new ArrayList<>());
+  private List<FlutterWidgetProperty> nextResult;
+  private ScheduledExecutorService scheduler;
+
+  @Before
+  public void setUp() {
+    scheduler = new ScheduledThreadPoolExecutor(1);
+    nextResult = Collections.singletonList(property("child"));
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void cachesByVersionAndOffset() throws Exception {
+    final WidgetDescriptionService service = new WidgetDescriptionService(this::fetch, scheduler, 0);
+    final List<FlutterWidgetProperty> first = service.getWidgetDescription(file, 1, 10).get();
+    assertSame(nextResult, first);
+
+    final CompletableFuture<List<FlutterWidgetProperty>> cached = service.getWidgetDescription(file, 1, 10);
+    assertTrue(cached.isDone());
+    assertSame(first, cached.get());
+
+    service.getWidgetDescription(file, 2, 10).get();
+    service.getWidgetDescription(file, 2, 20).get();
+    assertEquals(List.of(10, 10, 20), fetchedOffsets);
+  }
+
+  @Test
+  public void fetchesAgainAfterAnotherWidget() throws Exception {
+    // The server only accepts the property ids of its latest description.
+    final WidgetDescriptionService service = new WidgetDescriptionService(this::fetch, scheduler, 0);
+    final List<FlutterWidgetProperty> first = service.getWidgetDescription(file, 1, 10).get();
+    service.getWidgetDescription(file, 1, 20).get();
+    nextResult = Collections.singletonList(property("child"));
+    final List<FlutterWidgetProperty> again = service.getWidgetDescription(file, 1, 10).get();
+    assertNotSame(first, again);
+    assertSame(nextResult, again);
+    assertEquals(List.of(10, 20, 10), fetchedOffsets);
+  }
+
+  @Test
+  public void comparesPropertiesWithoutIds() {
+    final List<FlutterWidgetProperty> properties = List.of(property(1, "child", "Text('a')"), property(2, "key", null));
+    assertTrue(WidgetDescriptionService.haveSameValues(properties,
+                                                       List.of(property(3, "child", "Text('a')"), property(4, "key", null))));
+    assertFalse(WidgetDescriptionService.haveSameValues(properties,
+                                                        List.of(property(3, "child", "Text('b')"), property(4, "key", null))));
+    assertFalse(WidgetDescriptionService.haveSameValues(properties, List.of(property(3, "child", "Text('a')"))));
+  }
+
+  @Test
+  public void doesNotSendCancelledRequests() throws Exception {
+    final WidgetDescriptionService service = new WidgetDescriptionService(this::fetch, scheduler, 50);
+    service.getWidgetDescription(file, 1, 10).cancel(false);
+    service.getWidgetDescription(file, 1, 20).cancel(false);
+    service.getWidgetDescription(file, 1, 30).get();
+    assertEquals(List.of(30), fetchedOffsets);
+  }
+
+  @Test
+  public void retriesEmptyResults() throws Exception {
+    final WidgetDescriptionService service = new WidgetDescriptionService(this::fetch, scheduler, 0);
+    nextResult = Collections.emptyList();
+    assertTrue(service.getWidgetDescription(file, 1, 10).get().isEmpty());
+    nextResult = Collections.singletonList(property("child"));
+    assertSame(nextResult, service.getWidgetDescription(file, 1, 10).get());
+    assertEquals(List.of(10, 10), fetchedOffsets);
+  }
+
+  private CompletableFuture<List<FlutterWidgetProperty>> fetch(VirtualFile file, int offset) {
+    fetchedOffsets.add(offset);
+    return CompletableFuture.completedFuture(nextResult);
+  }
+
+  private static FlutterWidgetProperty property(String name) {
+    return property(0, name, null);
+  }
+
+  private static FlutterWidgetProperty property(int id, String name, String expression) {
+    return new FlutterWidgetProperty(null, expression, id, false, true, name, null, null, null);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.editor;
+
+import io.flutter.dart.PackedFlutterOutline;
+import org.dartlang.analysis.server.protocol.FlutterOutline;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class WidgetIndentDescriptorsTest {
+  @Test
+  public void comparesSubtreesByOffsetAndKind() {
+    final PackedFlutterOutline a = pack(node("NEW_INSTANCE", 10, 20, "Row", node("NEW_INSTANCE", 15, 5, "Text")));
+    assertTrue(isSameSubtree(a, node("NEW_INSTANCE", 10, 20, "Row", node("NEW_INSTANCE", 15, 5, "Text"))));
+    assertFalse(isSameSubtree(a, node("NEW_INSTANCE", 10, 20, "Row", node("NEW_INSTANCE", 16, 5, "Text"))));
+    assertFalse(isSameSubtree(a, node("NEW_INSTANCE", 10, 20, "Row", node("VARIABLE", 15, 5, "Text"))));
+    assertFalse(isSameSubtree(a, node("NEW_INSTANCE", 10, 20, "Row", node("NEW_INSTANCE", 15, 5, "Icon"))));
+    assertFalse(isSameSubtree(a, node("NEW_INSTANCE", 10, 20, "Row")));
+  }
+
+  @Test
+  public void comparesSubtreesByShape() {
+    // The same nodes in pre-order, but the second Text is a sibling of the first rather than its child.
+    final PackedFlutterOutline nested = pack(node("NEW_INSTANCE", 10, 20, "Row",
+                                                  node("NEW_INSTANCE", 15, 5, "Text", node("NEW_INSTANCE", 17, 2, "Text")),
+                                                  node("NEW_INSTANCE", 17, 2, "Text")));
+    final PackedFlutterOutline flat = pack(node("NEW_INSTANCE", 10, 20, "Row",
+                                                node("NEW_INSTANCE", 15, 5, "Text"),
+                                                node("NEW_INSTANCE", 17, 2, "Text"),
+                                                node("NEW_INSTANCE", 17, 2, "Text")));
+    assertFalse(WidgetIndentDescriptors.isSameSubtree(nested, 0, flat, 0));
+    assertTrue(WidgetIndentDescriptors.isSameSubtree(nested, 2, flat, 2));
+  }
+
+  @Test
+  public void reusesUnchangedSubtrees() {
+    final FlutterOutline text = node("NEW_INSTANCE", 15, 5, "Text");
+    final FlutterOutline row = node("NEW_INSTANCE", 10, 20, "Row", text);
+    final FlutterOutline icon = node("NEW_INSTANCE", 40, 5, "Icon");
+    final WidgetIndentDescriptors previous = build(pack(node("COMPILATION_UNIT", 0, 50, null, row, icon)));
+    assertEquals(3, previous.descriptors.size());
+
+    // The new outline has a Padding around the same Row.
+    final PackedFlutterOutline next =
+      pack(node("NEW_INSTANCE", 0, 50, "Padding", node("NEW_INSTANCE", 10, 20, "Row", node("NEW_INSTANCE", 15, 5, "Text"))));
+    final WidgetIndentDescriptors.Subtree subtree = previous.findSameSubtree(next, 1);
+    assertNotNull(subtree);
+    assertEquals(previous.descriptors.subList(0, 2), previous.getDescriptors(subtree));
+    assertNull(previous.findSameSubtree(pack(node("NEW_INSTANCE", 10, 20, "Row")), 0));
+
+    // Reusing the subtree after a new descriptor keeps its nested subtrees, shifted along and
+    // renumbered to the nodes of the new outline.
+    final WidgetIndentDescriptors.Builder builder = new WidgetIndentDescriptors.Builder(next);
+    final int first = builder.startNode();
+    builder.add(descriptor(next, 0));
+    builder.reuse(previous, subtree, 1);
+    builder.endNode(0, first);
+    final WidgetIndentDescriptors built = builder.build(1, new ArrayList<>(), previous.hitTester);
+    assertSame(previous.descriptors.get(0), built.descriptors.get(1));
+
+    final WidgetIndentDescriptors.Subtree nested = built.findSameSubtree(pack(node("NEW_INSTANCE", 15, 5, "Text")), 0);
+    assertNotNull(nested);
+    assertEquals(2, nested.node);
+    assertEquals(Collections.singletonList(previous.descriptors.get(1)), built.getDescriptors(nested));
+  }
+
+  private static boolean isSameSubtree(PackedFlutterOutline a, FlutterOutline b) {
+    return WidgetIndentDescriptors.isSameSubtree(a, 0, pack(b), 0);
+  }
+
+  /**
+   * Builds a descriptor for every node but the root, walking the outline the way the indent pass does.
+   */
+  private static WidgetIndentDescriptors build(PackedFlutterOutline outline) {
+    final WidgetIndentDescriptors.Builder builder = new WidgetIndentDescriptors.Builder(outline);
+    addDescriptors(builder, outline, 0);
+    return builder.build(0, new ArrayList<>(), null);
+  }
+
+  private static void addDescriptors(WidgetIndentDescriptors.Builder builder, PackedFlutterOutline outline, int node) {
+    final int first = builder.startNode();
+    if (!"COMPILATION_UNIT".equals(outline.getKind(node))) {
+      builder.add(descriptor(outline, node));
+    }
+    for (int child = outline.getFirstChild(node); child != PackedFlutterOutline.NONE; child = outline.getNextSibling(child)) {
+      addDescriptors(builder, outline, child);
+    }
+    builder.endNode(node, first);
+  }
+
+  private static WidgetIndentGuideDescriptor descriptor(PackedFlutterOutline outline, int node) {
+    return new WidgetIndentGuideDescriptor(null, 0, 0, 1, new ArrayList<>(), null, outline.toFlutterOutlineNode(node));
+  }
+
+  private static PackedFlutterOutline pack(FlutterOutline outline) {
+    return PackedFlutterOutline.pack(outline);
+  }
+
+  private static FlutterOutline node(String kind, int offset, int length, String className, FlutterOutline... children) {
+    final List<FlutterOutline> list = Arrays.asList(children);
+    return new FlutterOutline(kind, offset, length, offset, length, "", null, null, className, null, null, list);
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class ObjectGroupRequestsTest {
+  private final AtomicBoolean disposed = new AtomicBoolean();
+  private final ObjectGroupRequests requests = new ObjectGroupRequests(disposed::get, 2);
+  private final List<CompletableFuture<String>> sent = new ArrayList<>();
+
+  private Supplier<CompletableFuture<String>> request() {
+    return () -> {
+      final CompletableFuture<String> future = new CompletableFuture<>();
+      sent.add(future);
+      return future;
+    };
+  }
+
+  @Test
+  public void identicalPendingRequestsShareOneRoundTrip() {
+    final String key = ObjectGroupRequests.getKey("getProperties", "{a}");
+    final CompletableFuture<String> first = requests.send(key, request());
+    final CompletableFuture<String> second = requests.send(key, request());
+    assertEquals(1, sent.size());
+
+    // Cancelling one caller's future does not affect the other.
+    second.cancel(false);
+    sent.get(0).complete("props");
+    assertEquals("props", first.getNow(null));
+    assertEquals(0, requests.getPendingCount());
+
+    // Once completed, the same request is sent again.
+    requests.send(key, request());
+    assertEquals(2, sent.size());
+  }
+
+  @Test
+  public void onlySharesReadOnlyGetters() {
+    assertEquals("getProperties{a}", ObjectGroupRequests.getKey("getProperties", "{a}"));
+    assertEquals("ext.flutter.inspector.getChildrenSummaryTree{a}",
+                 ObjectGroupRequests.getKey("ext.flutter.inspector.getChildrenSummaryTree", "{a}"));
+    assertNull(ObjectGroupRequests.getKey("setSelectionById", "{a}"));
+    assertNull(ObjectGroupRequests.getKey("getRootWidgetSummaryTree", "{}"));
+    assertNull(ObjectGroupRequests.getKey("ext.flutter.inspector.hitTest", "{a}"));
+  }
+
+  @Test
+  public void selectionRequestsAreSentInOrder() {
+    final List<String> selections = new ArrayList<>();
+    for (String id : new String[]{"a", "b", "a"}) {
+      requests.send(ObjectGroupRequests.getKey("setSelectionById", "{" + id + "}"), () -> {
+        selections.add(id);
+        return request().get();
+      });
+    }
+    // Selecting a again while the first selection of a is in flight still
+    // sends it, so a ends up selected.
+    assertEquals(3, sent.size());
+    assertEquals(List.of("a", "b", "a"), selections);
+  }
+
+  @Test
+  public void refreshesAreNotShared() {
+    final String key = ObjectGroupRequests.getKey("getRootWidgetSummaryTree", "{}");
+    final CompletableFuture<String> stale = requests.send(key, request());
+    final CompletableFuture<String> fresh = requests.send(key, request());
+    assertEquals(2, sent.size());
+    sent.get(0).complete("old tree");
+    sent.get(1).complete("new tree");
+    assertEquals("old tree", stale.getNow(null));
+    assertEquals("new tree", fresh.getNow(null));
+    assertEquals(0, requests.getPendingCount());
+  }
+
+  @Test
+  public void limitsRequestsInFlight() {
+    final CompletableFuture<String> first = requests.submit("hitTest{1}", request());
+    requests.submit("hitTest{2}", request());
+    final CompletableFuture<String> third = requests.submit("hitTest{3}", request());
+    assertEquals(2, sent.size());
+
+    sent.get(0).complete("one");
+    assertEquals("one", first.getNow(null));
+    assertEquals(3, sent.size());
+    sent.get(2).complete("three");
+    assertEquals("three", third.getNow(null));
+  }
+
+  @Test
+  public void disposeSkipsQueuedRequests() {
+    requests.submit("a", request());
+    requests.submit("b", request());
+    final CompletableFuture<String> queued = requests.submit("c", request());
+    disposed.set(true);
+    requests.dispose();
+    assertTrue(queued.isDone());
+    assertNull(queued.getNow("not null"));
+
+    sent.get(0).complete("a");
+    assertEquals(2, sent.size());
+  }
+
+  @Test
+  public void batchesRequestsWaitingForTheirTurn() {
+    final List<Supplier<CompletableFuture<Void>>> scheduled = new ArrayList<>();
+    final AtomicInteger scheduledCount = new AtomicInteger();
+    final List<CompletableFuture<Void>> scheduledDone = new ArrayList<>();
+    final CompletableFuture<String> a = requests.batch("getProperties{a}", request(), (batch) -> {
+      scheduledCount.incrementAndGet();
+      scheduled.add(batch);
+      final CompletableFuture<Void> done = new CompletableFuture<>();
+      scheduledDone.add(done);
+      return done;
+    });
+    final CompletableFuture<String> b = requests.batch("getProperties{b}", request(), (batch) -> {
+      scheduledCount.incrementAndGet();
+      return new CompletableFuture<>();
+    });
+    assertEquals(1, scheduledCount.get());
+    assertEquals(0, sent.size());
+
+    // Both requests are sent once the batch gets its turn.
+    final CompletableFuture<Void> batchDone = scheduled.get(0).get();
+    assertEquals(2, sent.size());
+    sent.get(0).complete("a");
+    assertFalse(batchDone.isDone());
+    sent.get(1).complete("b");
+    assertTrue(batchDone.isDone());
+    scheduledDone.get(0).complete(null);
+    assertEquals("a", a.getNow(null));
+    assertEquals("b", b.getNow(null));
+  }
+
+  @Test
+  public void skippedBatchCompletesWithNull() {
+    final CompletableFuture<Void> skipped = new CompletableFuture<>();
+    final CompletableFuture<String> a = requests.batch("getChildren{a}", request(), (batch) -> skipped);
+    skipped.complete(null);
+    assertTrue(a.isDone());
+    assertNull(a.getNow("not null"));
+    assertEquals(0, sent.size());
+    assertEquals(0, requests.getPendingCount());
+  }
+}
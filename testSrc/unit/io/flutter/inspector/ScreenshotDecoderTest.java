@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class ScreenshotDecoderTest {
+  // Released images are shared by all decodes, so each test uses its own image sizes.
+
+  @Test
+  public void decodesPng() throws IOException {
+    final BufferedImage source = new BufferedImage(3, 2, BufferedImage.TYPE_INT_ARGB);
+    source.setRGB(0, 0, 0xffff0000);
+    source.setRGB(1, 0, 0xff00ff00);
+    source.setRGB(2, 0, 0xff0000ff);
+    source.setRGB(0, 1, 0x80ffffff);
+    source.setRGB(1, 1, 0x00000000);
+    source.setRGB(2, 1, 0xff123456);
+
+    final BufferedImage image = ScreenshotDecoder.decode(encode(source, "png"));
+    assertEquals(3, image.getWidth());
+    assertEquals(2, image.getHeight());
+    for (int y = 0; y < 2; y++) {
+      for (int x = 0; x < 3; x++) {
+        assertEquals("pixel " + x + "," + y, source.getRGB(x, y), image.getRGB(x, y));
+      }
+    }
+  }
+
+  @Test
+  public void reusesReleasedImageOfSameSize() throws IOException {
+    final BufferedImage first = ScreenshotDecoder.decode(encode(filled(5, 4, 0xff336699), "png"));
+    ScreenshotDecoder.release(first);
+
+    final BufferedImage second = ScreenshotDecoder.decode(encode(filled(5, 4, 0xffcc9933), "png"));
+    assertSame(first, second);
+    // Every pixel of the reused image is overwritten by the new screenshot.
+    for (int y = 0; y < 4; y++) {
+      for (int x = 0; x < 5; x++) {
+        assertEquals(0xffcc9933, second.getRGB(x, y));
+      }
+    }
+
+    // The image is not handed out again until it is released again.
+    final BufferedImage third = ScreenshotDecoder.decode(encode(filled(5, 4, 0xff000000), "png"));
+    assertNotSame(second, third);
+  }
+
+  @Test
+  public void doesNotReuseImageOfOtherSize() throws IOException {
+    final BufferedImage first = ScreenshotDecoder.decode(encode(filled(7, 6, 0xff336699), "png"));
+    ScreenshotDecoder.release(first);
+
+    final BufferedImage second = ScreenshotDecoder.decode(encode(filled(6, 7, 0xff336699), "png"));
+    assertNotSame(first, second);
+    assertEquals(6, second.getWidth());
+    assertEquals(7, second.getHeight());
+  }
+
+  @Test
+  public void doesNotReuseIndexedImage() throws IOException {
+    final IndexColorModel colors =
+      new IndexColorModel(8, 2, new byte[]{0, (byte)0xff}, new byte[]{0, 0}, new byte[]{0, (byte)0xff});
+    final BufferedImage source = new BufferedImage(9, 8, BufferedImage.TYPE_BYTE_INDEXED, colors);
+    source.setRGB(1, 1, 0xffff00ff);
+
+    final BufferedImage first = ScreenshotDecoder.decode(encode(source, "png"));
+    assertEquals(0xffff00ff, first.getRGB(1, 1));
+    assertEquals(0xff000000, first.getRGB(0, 0));
+    ScreenshotDecoder.release(first);
+
+    final BufferedImage second = ScreenshotDecoder.decode(encode(source, "png"));
+    assertNotSame(first, second);
+  }
+
+  @Test
+  public void releasingTwiceDoesNotShareTheImage() throws IOException {
+    final BufferedImage image = ScreenshotDecoder.decode(encode(filled(11, 10, 0xff336699), "png"));
+    ScreenshotDecoder.release(image);
+    ScreenshotDecoder.release(image);
+
+    final BufferedImage first = ScreenshotDecoder.decode(encode(filled(11, 10, 0xff336699), "png"));
+    final BufferedImage second = ScreenshotDecoder.decode(encode(filled(11, 10, 0xff336699), "png"));
+    assertSame(image, first);
+    assertNotSame(first, second);
+  }
+
+  @Test
+  public void rejectsMalformedInput() {
+    try {
+      ScreenshotDecoder.decode("not*base64!");
+      fail();
+    }
+    catch (IOException expected) {
+    }
+
+    try {
+      ScreenshotDecoder.decode(Base64.getEncoder().encodeToString("not an image".getBytes(StandardCharsets.US_ASCII)));
+      fail();
+    }
+    catch (IOException expected) {
+    }
+
+    try {
+      final String base64 = encode(filled(13, 12, 0xff336699), "png");
+      ScreenshotDecoder.decode(base64.substring(0, base64.length() / 2 / 4 * 4));
+      fail();
+    }
+    catch (IOException expected) {
+    }
+  }
+
+  private static BufferedImage filled(int width, int height, int argb) {
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        image.setRGB(x, y, argb);
+      }
+    }
+    return image;
+  }
+
+  private static String encode(BufferedImage image, String format) throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    assertTrue(ImageIO.write(image, format, bytes));
+    return Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.inspector;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.*;
+
+public class SupersedingRequestTest {
+  private final SupersedingRequest hover = new SupersedingRequest();
+  private final List<String> sent = new ArrayList<>();
+  private final List<CompletableFuture<String>> responses = new ArrayList<>();
+
+  private Supplier<CompletableFuture<String>> request(String name) {
+    return () -> {
+      sent.add(name);
+      final CompletableFuture<String> future = new CompletableFuture<>();
+      responses.add(future);
+      return future;
+    };
+  }
+
+  @Test
+  public void onlyLatestWaitingRequestIsSent() {
+    final CompletableFuture<String> first = hover.submit(request("first"));
+    final CompletableFuture<String> second = hover.submit(request("second"));
+    final CompletableFuture<String> third = hover.submit(request("third"));
+    assertEquals(1, sent.size());
+
+    // The second request was superseded before it was sent.
+    assertTrue(second.isDone());
+    assertNull(second.getNow("not null"));
+
+    responses.get(0).complete("first hits");
+    assertEquals("first hits", first.getNow(null));
+    assertEquals(2, sent.size());
+    assertEquals("third", sent.get(1));
+
+    responses.get(1).complete("third hits");
+    assertEquals("third hits", third.getNow(null));
+
+    // Nothing is in flight so the next request is sent right away.
+    hover.submit(request("fourth"));
+    assertEquals(3, sent.size());
+  }
+
+  @Test
+  public void failedRequestStartsWaitingRequest() {
+    final CompletableFuture<String> first = hover.submit(request("first"));
+    final CompletableFuture<String> second = hover.submit(request("second"));
+    responses.get(0).completeExceptionally(new RuntimeException("lost connection"));
+    assertTrue(first.isCompletedExceptionally());
+    assertEquals(2, sent.size());
+    responses.get(1).complete("hits");
+    assertEquals("hits", second.getNow(null));
+  }
+}
@@ -5,6 +5,8 @@
  */
 package io.flutter.logging;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.intellij.execution.filters.Filter;
 import com.intellij.execution.filters.HyperlinkInfo;
 import com.intellij.execution.process.ProcessHandler;
@@ -129,7 +131,7 @@ public class FlutterConsoleLogManagerTest {
 
     console.clear();
 
-    logManager.handleFlutterErrorEvent(event);
+    logManager.handleFlutterErrorEvent(createFlutterErrorEvent("Another assertion failed"));
     logManager.flushFlutterErrorQueue();
 
     // Assert that the second error has abridged text.
@@ -138,6 +140,31 @@ public class FlutterConsoleLogManagerTest {
                not(containsString("PlanetWidget.build (package:planets/main.dart:229:5)")));
   }
 
+  @Test
+  public void testRepeatedFlutterErrors() {
+    final ConsoleViewMock console = new ConsoleViewMock();
+    final FlutterConsoleLogManager logManager = new FlutterConsoleLogManager(console, createFlutterApp());
+    final Event event = createFlutterErrorEvent("Assertion failed");
+
+    final FlutterSettings settings = PowerMockito.mock(FlutterSettings.class);
+    PowerMockito.when(settings.isShowStructuredErrors()).thenReturn(true);
+    FlutterSettings.setInstance(settings);
+
+    logManager.handleFlutterErrorEvent(event);
+    logManager.flushFlutterErrorQueue();
+    console.clear();
+
+    logManager.handleFlutterErrorEvent(event);
+    logManager.handleFlutterErrorEvent(event);
+    logManager.flushFlutterErrorQueue();
+
+    // Assert that the repeats are counted rather than printed.
+    assertEquals("Assertion failed (repeated 2 times)\n", console.getText());
+    assertEquals(1, logManager.getQueuedErrorCount());
+    assertEquals(2, logManager.getCollapsedErrorCount());
+    assertEquals(0, logManager.getDroppedErrorCount());
+  }
+
   @Test
   public void testWithStacktrace() {
     final ConsoleViewMock console = new ConsoleViewMock();
@@ -169,6 +196,17 @@ public class FlutterConsoleLogManagerTest {
                  "      #18     _dispatchPointerDataPacket (dart:ui/hooks.dart:159:5)\n", console.getText());
   }
 
+  private Event createFlutterErrorEvent(String summary) {
+    final JsonObject json = JsonUtils.parseReader(
+      new InputStreamReader(FlutterConsoleLogManagerTest.class.getResourceAsStream("flutter_error.json"))).getAsJsonObject();
+    for (JsonElement property : json.getAsJsonObject("extensionData").getAsJsonArray("properties")) {
+      if ("ErrorSummary".equals(property.getAsJsonObject().get("type").getAsString())) {
+        property.getAsJsonObject().addProperty("description", summary);
+      }
+    }
+    return new Event(json);
+  }
+
   private FlutterApp createFlutterApp() {
     final FlutterApp app = PowerMockito.mock(FlutterApp.class);
 
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.logging;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlutterErrorQueueTest {
+  @Test
+  public void collapsesQueuedRepeats() {
+    final FlutterErrorQueue<String> queue = new FlutterErrorQueue<>(10);
+    assertTrue(queue.add("a", "A", "a1"));
+    assertFalse(queue.add("a", "A", "a2"));
+    assertTrue(queue.add("b", "B", "b1"));
+
+    final FlutterErrorQueue.Batch<String> batch = queue.drain();
+    assertEquals(Arrays.asList("a1", "b1"), batch.errors);
+    assertEquals(Collections.singletonMap("A", 1), batch.repeats);
+    assertEquals(0, batch.dropped);
+    assertTrue(queue.drain().isEmpty());
+  }
+
+  @Test
+  public void collapsesRepeatsOfPrintedErrors() {
+    final FlutterErrorQueue<String> queue = new FlutterErrorQueue<>(10);
+    queue.add("a", "A", "a1");
+    queue.drain();
+
+    assertFalse(queue.add("a", "A", "a2"));
+    assertFalse(queue.add("a", "A", "a3"));
+
+    final FlutterErrorQueue.Batch<String> batch = queue.drain();
+    assertTrue(batch.errors.isEmpty());
+    assertEquals(Collections.singletonMap("A", 2), batch.repeats);
+    assertEquals(1, queue.getQueuedCount());
+    assertEquals(2, queue.getCollapsedCount());
+  }
+
+  @Test
+  public void printsAgainAfterForgetting() {
+    final FlutterErrorQueue<String> queue = new FlutterErrorQueue<>(10);
+    queue.add("a", "A", "a1");
+    queue.drain();
+    queue.forgetRecent();
+
+    assertTrue(queue.add("a", "A", "a2"));
+    assertEquals(Collections.singletonList("a2"), queue.drain().errors);
+  }
+
+  @Test
+  public void dropsErrorsOverCapacity() {
+    final FlutterErrorQueue<String> queue = new FlutterErrorQueue<>(2);
+    assertTrue(queue.add("a", "A", "a1"));
+    assertTrue(queue.add("b", "B", "b1"));
+    assertFalse(queue.add("c", "C", "c1"));
+    // Repeats of queued errors are still counted.
+    assertFalse(queue.add("a", "A", "a2"));
+
+    FlutterErrorQueue.Batch<String> batch = queue.drain();
+    assertEquals(Arrays.asList("a1", "b1"), batch.errors);
+    assertEquals(1, batch.dropped);
+    assertEquals(1, queue.getDroppedCount());
+
+    assertTrue(queue.add("c", "C", "c2"));
+    batch = queue.drain();
+    assertEquals(Collections.singletonList("c2"), batch.errors);
+    assertEquals(0, batch.dropped);
+  }
+
+  @Test
+  public void forgetsLeastRecentlyRepeatedErrors() {
+    final FlutterErrorQueue<String> queue = new FlutterErrorQueue<>(FlutterErrorQueue.RECENT_ERRORS + 1);
+    for (int i = 0; i <= FlutterErrorQueue.RECENT_ERRORS; i++) {
+      queue.add("e" + i, "E" + i, "e" + i);
+    }
+    queue.drain();
+
+    assertTrue(queue.add("e0", "E0", "e0"));
+    assertFalse(queue.add("e1", "E1", "e1"));
+  }
+}
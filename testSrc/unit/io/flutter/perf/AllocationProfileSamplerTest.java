@@ -0,0 +1,41 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AllocationProfileSamplerTest {
+  @Test
+  public void readsCurrentUsageOfEachClass() {
+    final JsonObject profile = new JsonParser().parse(
+      "{\"type\":\"AllocationProfile\",\"members\":[" +
+      "{\"type\":\"ClassHeapStats\",\"class\":{\"type\":\"@Class\",\"id\":\"classes/5\",\"name\":\"Foo\"}," +
+      "\"bytesCurrent\":5000000000,\"instancesCurrent\":3,\"accumulatedSize\":0,\"instancesAccumulated\":0}," +
+      "{\"type\":\"ClassHeapStats\",\"class\":{\"type\":\"@Class\",\"id\":\"classes/7\",\"name\":\"Bar\"}}" +
+      "]}").getAsJsonObject();
+
+    final ClassHeapHistogram.Sample sample = AllocationProfileSampler.readSample("isolates/1", 10, profile);
+    assertNotNull(sample);
+    assertEquals(2, sample.size());
+
+    final ClassHeapHistogram histogram = new ClassHeapHistogram();
+    histogram.addSample(sample);
+    assertEquals("Foo", histogram.getClassName(0));
+    assertEquals(5000000000L, histogram.getBytes(0));
+    assertEquals(3, histogram.getInstances(0));
+    assertEquals("Bar", histogram.getClassName(1));
+    assertEquals(0, histogram.getBytes(1));
+  }
+
+  @Test
+  public void ignoresProfilesWithoutMembers() {
+    assertNull(AllocationProfileSampler.readSample("isolates/1", 10, new JsonObject()));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class CallTreeTest {
+  @Test
+  public void mergesSharedPrefixes() {
+    final CallTree tree = new CallTree();
+    tree.addStack(new int[]{1, 2, 3}, 0, 2);
+    tree.addStack(new int[]{1, 2, 4}, 0, 2);
+    tree.addStack(new int[]{1, 2}, 0, 1);
+
+    assertEquals(5, tree.getNodeCount());
+    assertEquals(3, tree.getTotalSamples(CallTree.ROOT));
+
+    final int[] roots = tree.getChildren(CallTree.ROOT);
+    assertEquals(1, roots.length);
+    assertEquals(1, tree.getFunction(roots[0]));
+
+    final int two = tree.getChildren(roots[0])[0];
+    assertEquals(2, tree.getFunction(two));
+    assertEquals(roots[0], tree.getParent(two));
+    assertEquals(3, tree.getTotalSamples(two));
+    assertEquals(1, tree.getSelfSamples(two));
+    assertEquals(2, tree.getChildCount(two));
+  }
+
+  @Test
+  public void followsStacksInEitherDirection() {
+    final CallTree tree = new CallTree();
+    tree.addStack(new int[]{3, 2, 1}, 2, 0);
+
+    final int one = tree.getChildren(CallTree.ROOT)[0];
+    final int two = tree.getChildren(one)[0];
+    final int three = tree.getChildren(two)[0];
+    assertEquals(1, tree.getFunction(one));
+    assertEquals(3, tree.getFunction(three));
+    assertEquals(1, tree.getSelfSamples(three));
+  }
+
+  @Test
+  public void sortsChildrenBySamples() {
+    final CallTree tree = new CallTree();
+    tree.addStack(new int[]{7}, 0, 0);
+    for (int i = 0; i < 3; i++) {
+      tree.addStack(new int[]{8}, 0, 0);
+    }
+    tree.addStack(new int[]{9}, 0, 0);
+    tree.addStack(new int[]{9}, 0, 0);
+
+    final int[] children = tree.getChildren(CallTree.ROOT);
+    assertArrayEquals(new int[]{8, 9, 7}, new int[]{
+      tree.getFunction(children[0]), tree.getFunction(children[1]), tree.getFunction(children[2])});
+  }
+
+  @Test
+  public void growsAndClears() {
+    final CallTree tree = new CallTree();
+    final int[] stack = new int[5000];
+    for (int i = 0; i < stack.length; i++) {
+      stack[i] = i;
+    }
+    tree.addStack(stack, 0, stack.length - 1);
+    assertEquals(stack.length + 1, tree.getNodeCount());
+
+    tree.clear();
+    assertEquals(1, tree.getNodeCount());
+    assertEquals(0, tree.getChildCount(CallTree.ROOT));
+    tree.addStack(new int[]{42}, 0, 0);
+    assertEquals(42, tree.getFunction(tree.getChildren(CallTree.ROOT)[0]));
+    assertEquals(1, tree.getTotalSamples(CallTree.ROOT));
+  }
+}
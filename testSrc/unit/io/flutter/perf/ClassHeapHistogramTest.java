@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ClassHeapHistogramTest {
+  @Test
+  public void diffsSuccessiveSamples() {
+    final ClassHeapHistogram histogram = new ClassHeapHistogram();
+    final ClassHeapHistogram.Sample first = new ClassHeapHistogram.Sample("isolates/1", 1000);
+    first.add("classes/1", "Foo", 100, 1);
+    first.add("classes/2", "Bar", 200, 2);
+    assertArrayEquals(new int[]{0, 1}, histogram.addSample(first));
+    assertEquals(0, histogram.getGrowth(0));
+    assertEquals(0.0, histogram.getBytesPerSecond(0), 0);
+
+    // Classes keep their rows whatever order they come in, and missing classes have no instances.
+    final ClassHeapHistogram.Sample second = new ClassHeapHistogram.Sample("isolates/1", 3000);
+    second.add("classes/3", "Baz", 50, 1);
+    second.add("classes/1", "Foo", 500, 5);
+    assertArrayEquals(new int[]{0, 1, 2}, histogram.addSample(second));
+    assertEquals(3, histogram.getRowCount());
+    assertEquals("Foo", histogram.getClassName(0));
+    assertEquals(500, histogram.getBytes(0));
+    assertEquals(5, histogram.getInstances(0));
+    assertEquals(400, histogram.getGrowth(0));
+    assertEquals(200.0, histogram.getBytesPerSecond(0), 0);
+    assertEquals(0, histogram.getBytes(1));
+    assertEquals(-200, histogram.getGrowth(1));
+    assertEquals(-100.0, histogram.getBytesPerSecond(1), 0);
+    assertEquals("Baz", histogram.getClassName(2));
+    assertEquals(50, histogram.getGrowth(2));
+
+    // Only rows whose values changed are reported.
+    final ClassHeapHistogram.Sample third = new ClassHeapHistogram.Sample("isolates/1", 4000);
+    third.add("classes/1", "Foo", 500, 5);
+    third.add("classes/3", "Baz", 80, 2);
+    assertArrayEquals(new int[]{0, 1, 2}, histogram.addSample(third));
+    final ClassHeapHistogram.Sample fourth = new ClassHeapHistogram.Sample("isolates/1", 5000);
+    fourth.add("classes/1", "Foo", 500, 5);
+    fourth.add("classes/3", "Baz", 90, 2);
+    assertArrayEquals(new int[]{2}, histogram.addSample(fourth));
+  }
+
+  @Test
+  public void topGrowingSinceReset() {
+    final ClassHeapHistogram histogram = new ClassHeapHistogram();
+    final ClassHeapHistogram.Sample first = new ClassHeapHistogram.Sample("isolates/1", 0);
+    for (int i = 0; i < 10; i++) {
+      first.add("classes/" + i, "C" + i, 1000, 1);
+    }
+    histogram.addSample(first);
+
+    final ClassHeapHistogram.Sample second = new ClassHeapHistogram.Sample("isolates/1", 1000);
+    for (int i = 0; i < 10; i++) {
+      second.add("classes/" + i, "C" + i, 1000 + (i % 4) * 100 + i, 1);
+    }
+    histogram.addSample(second);
+    assertArrayEquals(new int[]{7, 3, 6}, histogram.getTopGrowing(3));
+    assertArrayEquals(new int[0], histogram.getTopGrowing(0));
+
+    histogram.resetGrowth();
+    assertArrayEquals(new int[0], histogram.getTopGrowing(3));
+  }
+
+  @Test
+  public void startsOverForAnotherIsolate() {
+    final ClassHeapHistogram histogram = new ClassHeapHistogram();
+    final ClassHeapHistogram.Sample first = new ClassHeapHistogram.Sample("isolates/1", 0);
+    first.add("classes/1", "Foo", 100, 1);
+    histogram.addSample(first);
+
+    final ClassHeapHistogram.Sample restarted = new ClassHeapHistogram.Sample("isolates/2", 1000);
+    restarted.add("classes/2", "Bar", 300, 1);
+    assertArrayEquals(new int[]{0}, histogram.addSample(restarted));
+    assertEquals(1, histogram.getRowCount());
+    assertEquals("Bar", histogram.getClassName(0));
+    assertEquals(0, histogram.getGrowth(0));
+  }
+
+  @Test
+  public void growsPastInitialCapacity() {
+    final ClassHeapHistogram histogram = new ClassHeapHistogram();
+    final ClassHeapHistogram.Sample sample = new ClassHeapHistogram.Sample("isolates/1", 0);
+    for (int i = 0; i < 1000; i++) {
+      sample.add("classes/" + i, "C" + i, i, 1);
+    }
+    assertEquals(1000, histogram.addSample(sample).length);
+    assertEquals(999, histogram.getBytes(999));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.flutter.utils.JsonUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CpuProfileTest {
+  private static final String FUNCTIONS = "\"functions\": [" +
+                                          function("build", "MyWidget", "file:///app/lib/main.dart", 12) + "," +
+                                          function("layout", "RenderBox", "dart:ui", 0) + "," +
+                                          function("main", null, "file:///app/lib/main.dart", 3) +
+                                          "]";
+
+  @Test
+  public void readsSamples() {
+    final CpuProfile.Batch batch = batch("[{\"timestamp\": 10, \"stack\": [0, 2]}, {\"timestamp\": 11, \"stack\": [1, 0, 2]}]");
+    assertEquals(2, batch.size());
+
+    final CpuProfile profile = new CpuProfile();
+    profile.addBatch(batch);
+    assertEquals("isolates/1", profile.getIsolateId());
+    assertEquals(2, profile.getSampleCount());
+    assertEquals(11, profile.getLastTimestamp());
+    assertEquals(3, profile.getFunctionCount());
+
+    final int build = profile.getHottestFunctions(1)[0];
+    assertEquals("MyWidget.build", profile.getFunctionName(build));
+    assertEquals("/app/lib/main.dart", profile.getPath(build));
+    assertEquals(12, profile.getLine(build));
+    assertEquals(1, profile.getSelfSamples(build));
+
+    // The top-down tree starts at main, and the bottom-up tree at the running functions.
+    final CallTree topDown = profile.getTopDown();
+    final int main = topDown.getChildren(CallTree.ROOT)[0];
+    assertEquals("main", profile.getFunctionName(topDown.getFunction(main)));
+    assertEquals(2, topDown.getTotalSamples(main));
+    final CallTree bottomUp = profile.getBottomUp();
+    assertEquals(2, bottomUp.getChildCount(CallTree.ROOT));
+  }
+
+  @Test
+  public void skipsSamplesAlreadyAdded() {
+    final CpuProfile profile = new CpuProfile();
+    profile.addBatch(batch("[{\"timestamp\": 10, \"stack\": [0, 2]}, {\"timestamp\": 20, \"stack\": [0, 2]}]"));
+    profile.addBatch(batch("[{\"timestamp\": 20, \"stack\": [0, 2]}, {\"timestamp\": 30, \"stack\": [0, 2]}]"));
+    assertEquals(3, profile.getSampleCount());
+    assertEquals(3, profile.getTopDown().getTotalSamples(CallTree.ROOT));
+  }
+
+  @Test
+  public void countsRecursiveFunctionsOnce() {
+    final CpuProfile profile = new CpuProfile();
+    profile.addBatch(batch("[{\"timestamp\": 10, \"stack\": [0, 0, 0, 2]}]"));
+    final int build = profile.getHottestFunctions(1)[0];
+    assertEquals("MyWidget.build", profile.getFunctionName(build));
+    assertEquals(1, profile.getTotalSamples(build));
+    assertEquals(5, profile.getTopDown().getNodeCount());
+  }
+
+  @Test
+  public void reportsLinesOfLocalFunctions() {
+    final CpuProfile profile = new CpuProfile();
+    profile.addBatch(batch("[{\"timestamp\": 10, \"stack\": [1, 0, 2]}, {\"timestamp\": 11, \"stack\": [0, 2]}]"));
+
+    final JsonObject report = profile.takeLineReport(10);
+    assertEquals(11, report.get("startTime").getAsLong());
+    // dart:ui has no file, so only the two functions in main.dart are reported.
+    final JsonArray events = report.getAsJsonArray("events");
+    assertEquals(4, events.size());
+    assertEquals(2, events.get(1).getAsInt());
+    final JsonArray locations = report.getAsJsonObject("newLocations").getAsJsonArray("/app/lib/main.dart");
+    assertEquals(6, locations.size());
+    assertTrue(locations.get(0).getAsInt() < 0);
+
+    // Locations are only sent once, and counts only cover the samples since the last report.
+    profile.addBatch(batch("[{\"timestamp\": 12, \"stack\": [0, 2]}]"));
+    final JsonObject next = profile.takeLineReport(10);
+    assertNull(next.get("newLocations"));
+    assertEquals(1, next.getAsJsonArray("events").get(1).getAsInt());
+    assertEquals(0, profile.takeLineReport(10).getAsJsonArray("events").size());
+  }
+
+  @Test
+  public void startsOverForAnotherIsolate() {
+    final CpuProfile profile = new CpuProfile();
+    profile.addBatch(batch("[{\"timestamp\": 10, \"stack\": [0, 2]}]"));
+    profile.addBatch(CpuProfile.readBatch("isolates/2", JsonUtils.parseString(
+      "{" + FUNCTIONS + ", \"samples\": [{\"timestamp\": 5, \"stack\": [2]}]}").getAsJsonObject()));
+    assertEquals("isolates/2", profile.getIsolateId());
+    assertEquals(1, profile.getSampleCount());
+    assertEquals(1, profile.getTopDown().getTotalSamples(CallTree.ROOT));
+  }
+
+  @Test
+  public void convertsFileUrls() {
+    assertEquals("/app/lib/main.dart", CpuProfile.toPath("file:///app/lib/main.dart"));
+    assertNull(CpuProfile.toPath("package:flutter/widgets.dart"));
+    assertNull(CpuProfile.toPath(null));
+  }
+
+  private static CpuProfile.Batch batch(String samples) {
+    return CpuProfile.readBatch("isolates/1", JsonUtils.parseString("{" + FUNCTIONS + ", \"samples\": " + samples + "}")
+      .getAsJsonObject());
+  }
+
+  private static String function(String name, String owner, String url, int line) {
+    return "{\"resolvedUrl\": \"" + url + "\", \"function\": {\"type\": \"@Function\", \"name\": \"" + name + "\"" +
+           (owner == null ? "" : ", \"owner\": {\"type\": \"@Class\", \"name\": \"" + owner + "\"}") +
+           (line == 0 ? "" : ", \"location\": {\"line\": " + line + ", \"column\": 3, \"tokenPos\": " + line * 10 + "}") +
+           "}}";
+  }
+}
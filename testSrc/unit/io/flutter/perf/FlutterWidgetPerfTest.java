@@ -548,4 +548,75 @@ public class FlutterWidgetPerfTest {
     flutterWidgetPerf.removePerfListener(perfModel);
     flutterWidgetPerf.dispose();
   }
+
+  @Test
+  public void testResolvesNewLocationsOncePerFile() {
+    final Map<String, Integer> resolvedLocations = new HashMap<>();
+    final MockWidgetPerfProvider widgetPerfProvider = new MockWidgetPerfProvider();
+    final FlutterWidgetPerf flutterWidgetPerf = new FlutterWidgetPerf(
+      true,
+      widgetPerfProvider,
+      textEditor -> null,
+      path -> new CountingFileLocationMapper(path, resolvedLocations)
+    );
+
+    widgetPerfProvider.simulateWidgetPerfEvent(PerfReportKind.rebuild,
+                                               "{\"startTime\":1000,\"events\":[1,1,2,1,96,1,97,6],\"newLocations\":{\"/sample/project/main.dart\":[1,11,14,2,18,16],\"/sample/project/clock.dart\":[96,33,12,97,52,12,100,53,16]}}");
+
+    // Each file is resolved once, with all of its new locations.
+    final Map<String, Integer> expected = new HashMap<>();
+    expected.put("/sample/project/main.dart", 2);
+    expected.put("/sample/project/clock.dart", 3);
+    assertEquals(expected, resolvedLocations);
+
+    final ArrayList<PerfMetric> metrics = new ArrayList<>();
+    metrics.add(PerfMetric.total);
+    final ArrayList<SlidingWindowStatsSummary> stats = flutterWidgetPerf.getStatsForMetric(metrics, PerfReportKind.rebuild);
+    assertEquals(4, stats.size());
+    for (SlidingWindowStatsSummary stat : stats) {
+      assertEquals("Widget:" + stat.getLocation().line + ":" + stat.getLocation().column, stat.getLocation().name);
+    }
+
+    flutterWidgetPerf.dispose();
+  }
+
+  @Test
+  public void testDisposeStopsLocationDelivery() {
+    final Map<String, Integer> resolvedLocations = new HashMap<>();
+    final MockWidgetPerfProvider widgetPerfProvider = new MockWidgetPerfProvider();
+    final FlutterWidgetPerf flutterWidgetPerf = new FlutterWidgetPerf(
+      true,
+      widgetPerfProvider,
+      textEditor -> null,
+      path -> new CountingFileLocationMapper(path, resolvedLocations)
+    );
+    flutterWidgetPerf.dispose();
+    assertTrue(widgetPerfProvider.isDisposed);
+
+    widgetPerfProvider.simulateWidgetPerfEvent(PerfReportKind.rebuild,
+                                               "{\"startTime\":1000,\"events\":[1,1],\"newLocations\":{\"/sample/project/main.dart\":[1,11,14]}}");
+    assertTrue(resolvedLocations.isEmpty());
+
+    final ArrayList<PerfMetric> metrics = new ArrayList<>();
+    metrics.add(PerfMetric.total);
+    assertTrue(flutterWidgetPerf.getStatsForMetric(metrics, PerfReportKind.rebuild).isEmpty());
+  }
+
+  /**
+   * Counts the locations resolved for each file, failing if a file is resolved twice.
+   */
+  private static class CountingFileLocationMapper extends FakeFileLocationMapper {
+    private final Map<String, Integer> resolvedLocations;
+
+    CountingFileLocationMapper(String path, Map<String, Integer> resolvedLocations) {
+      super(path);
+      this.resolvedLocations = resolvedLocations;
+    }
+
+    @Override
+    public void resolve(int[] lines, int[] columns, TextRange[] ranges, String[] names) {
+      assertNull(resolvedLocations.put(getPath(), lines.length));
+      super.resolve(lines, columns, ranges, names);
+    }
+  }
 }
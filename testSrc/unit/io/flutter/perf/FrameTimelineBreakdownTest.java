@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static io.flutter.perf.TimelineEventStoreTest.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FrameTimelineBreakdownTest {
+  @Test
+  public void splitsFrameIntoUiAndRasterWork() {
+    final TimelineEventStore store = new TimelineEventStore();
+    store.addTraceEvents(events(
+      threadName(1, "1.ui"),
+      threadName(2, "1.raster"),
+      threadName(3, "1.io"),
+      complete(1, "Animator::BeginFrame", 1000, 6000),
+      complete(1, "Build", 1500, 3000),
+      complete(1, "Layout", 2000, 500),
+      complete(1, "Deeper", 2100, 100),
+      complete(1, "PreviousFrame", 0, 900),
+      complete(2, "GPURasterizer::Draw", 7500, 4000),
+      complete(3, "ImageDecode", 2000, 1000)));
+
+    final FrameTimelineBreakdown breakdown = FrameTimelineBreakdown.compute(store, 1000, 12000, 2);
+    final List<FrameTimelineBreakdown.Entry> ui = breakdown.getUiEvents();
+    assertEquals(3, ui.size());
+    assertEquals("Animator::BeginFrame", ui.get(0).name);
+    assertEquals(0, ui.get(0).depth);
+    assertEquals("Build", ui.get(1).name);
+    assertEquals(1, ui.get(1).depth);
+    assertEquals("Layout", ui.get(2).name);
+    assertEquals(2, ui.get(2).depth);
+    assertEquals(6000, FrameTimelineBreakdown.getTopLevelMicros(ui));
+
+    assertEquals(1, breakdown.getRasterEvents().size());
+    assertEquals(4000, breakdown.getRasterEvents().get(0).durationMicros);
+  }
+
+  @Test
+  public void isEmptyWithoutFlutterThreads() {
+    final TimelineEventStore store = new TimelineEventStore();
+    store.addTraceEvents(events(complete(1, "Build", 1000, 100)));
+    assertTrue(FrameTimelineBreakdown.compute(store, 0, 2000, 2).isEmpty());
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HeapSnapshotDiffTest {
+  @Test
+  public void matchesClassesByLibraryAndName() {
+    // Class ids differ between the snapshots, and Bar is only in the second.
+    final HeapSnapshotGraph before = graph(new String[]{"", "Foo", "Baz"},
+                                           new int[]{0, 0, 1, 1, 2},
+                                           new int[]{0, 0, 10, 10, 100});
+    final HeapSnapshotGraph after = graph(new String[]{"", "Baz", "Bar", "Foo"},
+                                          new int[]{0, 0, 3, 2, 2, 2},
+                                          new int[]{0, 0, 10, 40, 40, 40});
+    final HeapSnapshotDiff diff = new HeapSnapshotDiff(before, after);
+
+    assertEquals(3, diff.getRowCount());
+    assertEquals("Bar", diff.getClassName(0));
+    assertEquals(0, diff.getBeforeCount(0));
+    assertEquals(3, diff.getAfterCount(0));
+    assertEquals(120, diff.getBytesDelta(0));
+
+    assertEquals("Foo", diff.getClassName(1));
+    assertEquals(-1, diff.getCountDelta(1));
+    assertEquals(20, diff.getBeforeBytes(1));
+    assertEquals(10, diff.getAfterBytes(1));
+
+    assertEquals("Baz", diff.getClassName(2));
+    assertEquals(1, diff.getBeforeCount(2));
+    assertEquals(0, diff.getAfterCount(2));
+    assertEquals(-100, diff.getBytesDelta(2));
+  }
+
+  /**
+   * Returns a graph where the root references every other object.
+   */
+  private static HeapSnapshotGraph graph(String[] classNames, int[] classIds, int[] shallowSizes) {
+    final String[] libraryUris = new String[classNames.length];
+    for (int i = 0; i < classNames.length; i++) {
+      libraryUris[i] = i == 0 ? "" : "package:app/main.dart";
+    }
+    final int objectCount = classIds.length;
+    final int[] references = new int[objectCount - 2];
+    for (int i = 0; i < references.length; i++) {
+      references[i] = i + 2;
+    }
+    final int[] firstReference = new int[objectCount + 1];
+    for (int object = 2; object <= objectCount; object++) {
+      firstReference[object] = references.length;
+    }
+    return new HeapSnapshotGraph("main", 0, classNames, libraryUris, classIds, shallowSizes,
+                                 new int[objectCount], firstReference, references);
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HeapSnapshotGraphTest {
+  @Test
+  public void readsSnapshot() throws IOException {
+    final SnapshotWriter writer = new SnapshotWriter();
+    writer.writeHeader("main", 4096, 2);
+    writer.writeClass("Foo", "package:app/foo.dart", "bar");
+    writer.writeClass("_OneByteString", "dart:core");
+    writer.unsigned(3); // References
+    writer.unsigned(3); // Objects
+    // The root references both others, and the Foo references the string.
+    writer.unsigned(0).unsigned(0).unsigned(0).unsigned(2).unsigned(2).unsigned(3);
+    writer.unsigned(1).unsigned(32).unsigned(3).unsigned(-1L >>> 1).unsigned(1).unsigned(3);
+    writer.unsigned(2).unsigned(24).unsigned(5).unsigned(5).utf8("hello").unsigned(0);
+    writer.unsigned(1); // External properties
+    writer.unsigned(2).unsigned(100).utf8("buffer");
+
+    final HeapSnapshotGraph graph = HeapSnapshotGraph.read(ByteBuffer.wrap(writer.toByteArray()));
+    assertEquals("main", graph.getIsolateName());
+    assertEquals(4096, graph.getCapacity());
+    assertEquals(3, graph.getClassCount());
+    assertEquals("Foo", graph.getClassName(1));
+    assertEquals("package:app/foo.dart", graph.getLibraryUri(1));
+    assertEquals(4, graph.getObjectCount());
+    assertEquals(1, graph.getClassId(2));
+    assertEquals(132, graph.getShallowSize(2));
+    assertEquals(2, graph.getReferenceCount(1));
+    assertEquals(3, graph.getReference(2, 0));
+
+    // The string is referenced by both the root and the Foo, so only the root retains it.
+    assertEquals(156, graph.getReachableSize());
+    assertEquals(132, graph.getRetainedSize(2));
+    assertEquals(24, graph.getRetainedSize(3));
+    assertEquals(1, graph.getDominator(3));
+    assertArrayEquals(new int[]{2, 3}, graph.getLargestRetainers(5));
+    assertArrayEquals(new int[]{2}, graph.getLargestRetainers(1));
+  }
+
+  @Test
+  public void rejectsOtherData() {
+    try {
+      HeapSnapshotGraph.read(ByteBuffer.wrap("{\"jsonrpc\":\"2.0\"}".getBytes(StandardCharsets.UTF_8)));
+      fail();
+    }
+    catch (IOException expected) {
+    }
+
+    final SnapshotWriter writer = new SnapshotWriter();
+    writer.writeHeader("main", 0, 0);
+    writer.unsigned(10).unsigned(10);
+    try {
+      HeapSnapshotGraph.read(ByteBuffer.wrap(writer.toByteArray()));
+      fail();
+    }
+    catch (IOException expected) {
+    }
+  }
+
+  @Test
+  public void computesDominators() {
+    // The graph from the Lengauer-Tarjan paper, with R as object 1 and A to L as objects 2 to 13.
+    final int[][] edges = {
+      {},
+      {2, 3, 4}, // R
+      {5}, // A
+      {2, 5, 6}, // B
+      {7, 8}, // C
+      {13}, // D
+      {9}, // E
+      {10}, // F
+      {10, 11}, // G
+      {6, 12}, // H
+      {12}, // I
+      {10}, // J
+      {10, 1}, // K
+      {9}, // L
+    };
+    final HeapSnapshotGraph graph = graph(edges, 1);
+
+    final int[] expected = {0, 0, 1, 1, 1, 1, 1, 4, 4, 1, 1, 8, 1, 5};
+    for (int object = 1; object < edges.length; object++) {
+      assertEquals("dominator of " + object, expected[object], graph.getDominator(object));
+    }
+    assertEquals(13, graph.getRetainedSize(1));
+    assertEquals(4, graph.getRetainedSize(4));
+    assertEquals(2, graph.getRetainedSize(5));
+    assertEquals(1, graph.getRetainedSize(9));
+  }
+
+  @Test
+  public void handlesDeepAndUnreachableObjects() {
+    // A long chain, which would overflow a recursive search, and an object nothing references.
+    final int length = 200000;
+    final int[][] edges = new int[length + 2][];
+    edges[0] = new int[0];
+    for (int object = 1; object < length; object++) {
+      edges[object] = new int[]{object + 1};
+    }
+    edges[length] = new int[0];
+    edges[length + 1] = new int[]{1};
+    final HeapSnapshotGraph graph = graph(edges, 8);
+
+    assertEquals(8L * length, graph.getReachableSize());
+    assertEquals(8, graph.getRetainedSize(length));
+    assertEquals(length - 1, graph.getDominator(length));
+    assertEquals(0, graph.getRetainedSize(length + 1));
+    assertEquals(0, graph.getDominator(length + 1));
+  }
+
+  /**
+   * Returns a graph of objects of the same class and size with the given references.
+   */
+  static HeapSnapshotGraph graph(int[][] edges, int size) {
+    final int[] classIds = new int[edges.length];
+    final int[] shallowSizes = new int[edges.length];
+    final int[] firstReference = new int[edges.length + 1];
+    int referenceCount = 0;
+    for (int object = 0; object < edges.length; object++) {
+      referenceCount += edges[object].length;
+    }
+    final int[] references = new int[referenceCount];
+    int next = 0;
+    for (int object = 1; object < edges.length; object++) {
+      classIds[object] = 1;
+      shallowSizes[object] = size;
+      firstReference[object] = next;
+      for (int reference : edges[object]) {
+        references[next++] = reference;
+      }
+    }
+    firstReference[edges.length] = next;
+    return new HeapSnapshotGraph("main", 0, new String[]{"", "Node"}, new String[]{"", "package:app/node.dart"},
+                                 classIds, shallowSizes, new int[edges.length], firstReference, references);
+  }
+
+  /**
+   * Writes the parts of a heap snapshot in the format of the Dart VM.
+   */
+  static class SnapshotWriter {
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    void writeHeader(String isolateName, long capacity, int classCount) {
+      out.writeBytes("dartheap".getBytes(StandardCharsets.US_ASCII));
+      unsigned(0); // Flags
+      utf8(isolateName);
+      unsigned(capacity / 2); // Used bytes
+      unsigned(capacity);
+      unsigned(0); // External bytes
+      unsigned(classCount);
+    }
+
+    void writeClass(String name, String libraryUri, String... fields) {
+      unsigned(0); // Flags
+      utf8(name);
+      utf8(libraryUri.substring(libraryUri.lastIndexOf('/') + 1));
+      utf8(libraryUri);
+      utf8("");
+      unsigned(fields.length);
+      for (int i = 0; i < fields.length; i++) {
+        unsigned(0).unsigned(i).utf8(fields[i]).utf8("");
+      }
+    }
+
+    SnapshotWriter unsigned(long value) {
+      while (value > 127) {
+        out.write((int)(value & 127));
+        value >>>= 7;
+      }
+      out.write((int)(value + 128));
+      return this;
+    }
+
+    SnapshotWriter utf8(String value) {
+      final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      unsigned(bytes.length);
+      out.writeBytes(bytes);
+      return this;
+    }
+
+    byte[] toByteArray() {
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class IncrementalSlidingWindowStatsTest {
+  private static final PerfMetric[] metrics = PerfMetric.values();
+
+  private static void assertSameValues(SlidingWindowStats expected, SlidingWindowStats actual, int currentTime) {
+    for (PerfMetric metric : metrics) {
+      assertEquals(metric + " at " + currentTime, expected.getValue(metric, currentTime), actual.getValue(metric, currentTime));
+    }
+  }
+
+  @Test
+  public void pastSecondAndPeaks() {
+    final IncrementalSlidingWindowStats stats = new IncrementalSlidingWindowStats();
+    stats.add(5, 0);
+    stats.add(2, 300);
+    stats.add(3, 300);
+    assertEquals(5, stats.getValue(PerfMetric.lastFrame, 300));
+    assertEquals(5, stats.getValue(PerfMetric.peakRecent, 300));
+    stats.add(1, 800);
+    assertEquals(1, stats.getValue(PerfMetric.lastFrame, 800));
+    assertEquals(1, stats.getValue(PerfMetric.peakRecent, 800));
+    assertEquals(11, stats.getValue(PerfMetric.pastSecond, 800));
+
+    assertEquals(0, stats.getValue(PerfMetric.lastFrame, 1000));
+    assertEquals(1, stats.getValue(PerfMetric.peakRecent, 1000));
+    assertEquals(6, stats.getValue(PerfMetric.pastSecond, 1000));
+
+    assertEquals(0, stats.getValue(PerfMetric.peakRecent, 1400));
+    assertEquals(1, stats.getValue(PerfMetric.pastSecond, 1400));
+    assertEquals(11, stats.getValue(PerfMetric.total, 1400));
+  }
+
+  @Test
+  public void clearResetsWindows() {
+    final IncrementalSlidingWindowStats stats = new IncrementalSlidingWindowStats();
+    stats.add(4, 1000);
+    assertEquals(4, stats.getValue(PerfMetric.pastSecond, 1000));
+    stats.clear();
+
+    // Time stamps go backwards after a hot restart.
+    stats.add(2, 10);
+    assertEquals(2, stats.getValue(PerfMetric.pastSecond, 10));
+    assertEquals(2, stats.getValue(PerfMetric.peakRecent, 10));
+    assertEquals(2, stats.getValue(PerfMetric.lastFrame, 10));
+  }
+
+  @Test
+  public void queriesBackInTimeFallBack() {
+    final IncrementalSlidingWindowStats stats = new IncrementalSlidingWindowStats();
+    stats.add(1, 0);
+    stats.add(1, 600);
+    stats.add(1, 1200);
+    assertEquals(2, stats.getValue(PerfMetric.pastSecond, 1200));
+    // Like SlidingWindowStats, counts after the current time are included.
+    assertEquals(3, stats.getValue(PerfMetric.pastSecond, 600));
+    assertEquals(1, stats.getValue(PerfMetric.lastFrame, 600));
+  }
+
+  @Test
+  public void matchesSlidingWindowStats() {
+    final Random random = new Random(42);
+    for (int run = 0; run < 20; run++) {
+      final SlidingWindowStats expected = new SlidingWindowStats();
+      final IncrementalSlidingWindowStats actual = new IncrementalSlidingWindowStats();
+      int time = 0;
+      for (int frame = 0; frame < 1000; frame++) {
+        time += random.nextInt(40);
+        // Several reports may share a time stamp.
+        final int reports = 1 + random.nextInt(3);
+        for (int i = 0; i < reports; i++) {
+          final int count = random.nextInt(50);
+          expected.add(count, time);
+          actual.add(count, time);
+        }
+        if (random.nextInt(50) == 0) {
+          expected.onNavigation();
+          actual.onNavigation();
+        }
+        // The current time is the latest report of any location, so it may be ahead of this one.
+        final int currentTime = time + (random.nextBoolean() ? 0 : random.nextInt(600));
+        assertSameValues(expected, actual, currentTime);
+      }
+    }
+  }
+
+  @Test
+  public void matchesSlidingWindowStatsWithDuplicateTimestamps() {
+    final SlidingWindowStats expected = new SlidingWindowStats();
+    final IncrementalSlidingWindowStats actual = new IncrementalSlidingWindowStats();
+    for (int time = 0; time < 12; time++) {
+      for (int i = 0; i < 1000; i++) {
+        expected.add(1, time);
+        actual.add(1, time);
+      }
+      assertSameValues(expected, actual, time);
+    }
+  }
+}
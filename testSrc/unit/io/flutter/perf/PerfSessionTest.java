@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import gnu.trove.TIntIntHashMap;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PerfSessionTest {
+  private File file;
+  private PerfSession session;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile("perf_session_test", ".bin");
+    // Small segments so that columns span several segments.
+    session = new PerfSession(new MappedColumnFile(file, 64));
+  }
+
+  @After
+  public void tearDown() {
+    session.close();
+  }
+
+  @Test
+  public void rollsUpFramesAtEachResolution() {
+    session.recordFrame(100, 10000, false);
+    session.recordFrame(900, 30000, true);
+    session.recordFrame(1500, 20000, false);
+    session.recordFrame(12500, 5000, false);
+
+    assertEquals(13, session.getBucketCount(PerfSession.Resolution.SECOND));
+    assertEquals(2, session.getBucketCount(PerfSession.Resolution.TEN_SECONDS));
+    assertEquals(1, session.getBucketCount(PerfSession.Resolution.MINUTE));
+
+    final PerfSession.Buckets buckets = new PerfSession.Buckets();
+    session.readBuckets(PerfSession.Resolution.SECOND, 0, 13, buckets);
+    assertEquals(13, buckets.size());
+    assertEquals(2, buckets.getFrameCount(0));
+    assertEquals(1, buckets.getSlowFrameCount(0));
+    assertEquals(20000, buckets.getAverageFrameMicros(0));
+    assertEquals(30000, buckets.getMaxFrameMicros(0));
+    assertEquals(1, buckets.getFrameCount(1));
+    assertEquals(0, buckets.getFrameCount(5));
+    assertEquals(1, buckets.getFrameCount(12));
+
+    session.readBuckets(PerfSession.Resolution.TEN_SECONDS, 0, 2, buckets);
+    assertEquals(3, buckets.getFrameCount(0));
+    assertEquals(1, buckets.getFrameCount(1));
+
+    session.readBuckets(PerfSession.Resolution.MINUTE, 0, 1, buckets);
+    assertEquals(4, buckets.getFrameCount(0));
+    assertEquals(30000, buckets.getMaxFrameMicros(0));
+  }
+
+  @Test
+  public void readsOnlyRequestedBuckets() {
+    for (int i = 0; i < 100; i++) {
+      session.recordFrame(i * 1000L, i, false);
+    }
+    final PerfSession.Buckets buckets = new PerfSession.Buckets();
+    session.readBuckets(PerfSession.Resolution.SECOND, 40, 45, buckets);
+    assertEquals(40, buckets.getStart());
+    assertEquals(5, buckets.size());
+    assertEquals(42, buckets.getMaxFrameMicros(2));
+
+    // Ranges are clipped to the recorded buckets.
+    session.readBuckets(PerfSession.Resolution.SECOND, 98, 200, buckets);
+    assertEquals(2, buckets.size());
+  }
+
+  @Test
+  public void rebuildCountsByLocation() {
+    session.recordRebuild(100, 1, 3);
+    session.recordRebuild(100, 2, 1);
+    session.recordRebuild(2100, 1, 5);
+    session.recordRebuild(3100, 2, 7);
+
+    final TIntIntHashMap counts = new TIntIntHashMap();
+    session.readRebuildCounts(PerfSession.Resolution.SECOND, 0, 3, counts);
+    assertEquals(8, counts.get(1));
+    assertEquals(1, counts.get(2));
+
+    counts.clear();
+    session.readRebuildCounts(PerfSession.Resolution.SECOND, 3, 4, counts);
+    assertEquals(1, counts.size());
+    assertEquals(7, counts.get(2));
+
+    final PerfSession.Buckets buckets = new PerfSession.Buckets();
+    session.readBuckets(PerfSession.Resolution.TEN_SECONDS, 0, 1, buckets);
+    assertEquals(16, buckets.getRebuildCount(0));
+  }
+
+  @Test
+  public void heapSamplesKeepMaximum() {
+    session.recordHeapSample(100, 5L << 32, 6L << 32, 0);
+    session.recordHeapSample(600, 3L << 32, 7L << 32, 0);
+
+    final PerfSession.Buckets buckets = new PerfSession.Buckets();
+    session.readBuckets(PerfSession.Resolution.SECOND, 0, 1, buckets);
+    assertEquals(5L << 32, buckets.getHeapUsedMax(0));
+    assertEquals(7L << 32, buckets.getHeapCapacityMax(0));
+  }
+
+  @Test
+  public void outOfOrderSamplesUseLatestTime() {
+    session.recordFrame(5000, 1, false);
+    session.recordFrame(1000, 1, false);
+    assertEquals(5000, session.getDurationMillis());
+
+    final PerfSession.Buckets buckets = new PerfSession.Buckets();
+    session.readBuckets(PerfSession.Resolution.SECOND, 5, 6, buckets);
+    assertEquals(2, buckets.getFrameCount(0));
+  }
+
+  @Test
+  public void closeDeletesFile() {
+    session.recordFrame(0, 1, false);
+    session.close();
+    assertFalse(file.exists());
+
+    // Recording after close is ignored.
+    session.recordFrame(10, 1, false);
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.perf;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimelineEventStoreTest {
+  @Test
+  public void storesCompleteAndInstantEvents() {
+    final TimelineEventStore store = new TimelineEventStore();
+    assertEquals(2, store.addTraceEvents(events(
+      complete(1, "Build", 100, 50),
+      instant(1, "Mark", 120),
+      event("s", 1, "Async", 100))));
+
+    final int[] found = store.findOverlapping(1, 0, 1000);
+    assertEquals(2, found.length);
+    assertEquals("Build", store.getName(found[0]));
+    assertEquals("Dart", store.getCategory(found[0]));
+    assertEquals(100, store.getStartMicros(found[0]));
+    assertEquals(150, store.getEndMicros(found[0]));
+    assertEquals("Mark", store.getName(found[1]));
+    assertEquals(120, store.getEndMicros(found[1]));
+  }
+
+  @Test
+  public void matchesBeginAndEndAcrossBatches() {
+    final TimelineEventStore store = new TimelineEventStore();
+    store.startBatch();
+    store.addTraceEvents(events(event("B", 1, "Outer", 100), event("B", 1, "Inner", 110), event("E", 1, "Inner", 120)));
+    assertEquals(1, store.size());
+
+    store.startBatch();
+    store.addTraceEvents(events(event("E", 1, "Outer", 200)));
+    final int[] found = store.findOverlapping(1, 150, 160);
+    assertEquals(1, found.length);
+    assertEquals("Outer", store.getName(found[0]));
+    assertEquals(100, store.getStartMicros(found[0]));
+    assertEquals(200, store.getEndMicros(found[0]));
+  }
+
+  @Test
+  public void skipsEventsOfThePreviousBatch() {
+    final TimelineEventStore store = new TimelineEventStore();
+    store.startBatch();
+    store.addTraceEvents(events(complete(1, "A", 100, 10), complete(1, "B", 200, 10)));
+    store.startBatch();
+    assertEquals(1, store.addTraceEvents(events(complete(1, "B", 200, 10), complete(1, "C", 300, 10))));
+    store.startBatch();
+    // Batches only overlap the one before them.
+    assertEquals(1, store.addTraceEvents(events(complete(1, "A", 100, 10), complete(1, "C", 300, 10))));
+    assertEquals(4, store.size());
+  }
+
+  @Test
+  public void findsThreadsByName() {
+    final TimelineEventStore store = new TimelineEventStore();
+    store.addTraceEvents(events(threadName(7, "1.raster"), threadName(3, "1.ui"), threadName(5, "io.flutter.2.ui")));
+    assertArrayEquals(new int[]{3, 5}, store.findThreads(".ui"));
+    assertArrayEquals(new int[]{7}, store.findThreads(".raster"));
+    assertEquals("1.raster", store.getThreadName(7));
+    assertEquals(0, store.findOverlapping(3, 0, 100).length);
+  }
+
+  @Test
+  public void findsOverlappingEventsInAnyOrder() {
+    final Random random = new Random(17);
+    final TimelineEventStore store = new TimelineEventStore();
+    final List<long[]> added = new ArrayList<>();
+    for (int batch = 0; batch < 20; batch++) {
+      final JsonArray events = new JsonArray();
+      for (int i = 0; i < 500; i++) {
+        final int thread = random.nextInt(3);
+        final long start = random.nextInt(1000000);
+        final long duration = random.nextInt(10) == 0 ? random.nextInt(100000) : random.nextInt(1000);
+        events.add(complete(thread, "e" + added.size(), start, duration));
+        added.add(new long[]{thread, start, start + duration});
+      }
+      store.startBatch();
+      store.addTraceEvents(events);
+
+      for (int query = 0; query < 20; query++) {
+        final int thread = random.nextInt(3);
+        final long start = random.nextInt(1000000);
+        final long end = start + random.nextInt(20000);
+        final int[] found = store.findOverlapping(thread, start, end);
+
+        int expected = 0;
+        for (long[] event : added) {
+          if (event[0] == thread && event[1] <= end && event[2] >= start) {
+            expected++;
+          }
+        }
+        assertEquals(expected, found.length);
+        for (int i = 0; i < found.length; i++) {
+          assertEquals(thread, store.getThread(found[i]));
+          assertTrue(store.getStartMicros(found[i]) <= end && store.getEndMicros(found[i]) >= start);
+          if (i > 0) {
+            assertTrue(store.getStartMicros(found[i - 1]) <= store.getStartMicros(found[i]));
+          }
+        }
+      }
+    }
+  }
+
+  static JsonArray events(JsonObject... events) {
+    final JsonArray array = new JsonArray();
+    for (JsonObject event : events) {
+      array.add(event);
+    }
+    return array;
+  }
+
+  static JsonObject complete(int thread, String name, long start, long duration) {
+    final JsonObject event = event("X", thread, name, start);
+    event.addProperty("dur", duration);
+    return event;
+  }
+
+  static JsonObject instant(int thread, String name, long start) {
+    return event("i", thread, name, start);
+  }
+
+  static JsonObject event(String phase, int thread, String name, long start) {
+    final JsonObject event = new JsonObject();
+    event.addProperty("ph", phase);
+    event.addProperty("name", name);
+    event.addProperty("cat", "Dart");
+    event.addProperty("tid", thread);
+    event.addProperty("pid", 1);
+    event.addProperty("ts", start);
+    return event;
+  }
+
+  static JsonObject threadName(int thread, String name) {
+    final JsonObject args = new JsonObject();
+    args.addProperty("name", name);
+    final JsonObject event = new JsonObject();
+    event.addProperty("ph", "M");
+    event.addProperty("name", "thread_name");
+    event.addProperty("tid", thread);
+    event.addProperty("pid", 1);
+    event.add("args", args);
+    return event;
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.preview;
+
+import io.flutter.dart.PackedFlutterOutline;
+import org.dartlang.analysis.server.protocol.FlutterOutline;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class OutlineIndexTest {
+  // Nodes are numbered in pre-order: root 0, row 1, text 2, icon 3 and padding 4.
+  private static final int ROOT = 0;
+  private static final int ROW = 1;
+  private static final int TEXT = 2;
+  private static final int ICON = 3;
+
+  private final PackedFlutterOutline outline =
+    PackedFlutterOutline.pack(node(0, 100, node(10, 40, node(20, 10), node(30, 10)), node(60, 20)));
+  private final OutlineIndex index = new OutlineIndex(outline, (offset) -> offset);
+
+  @Test
+  public void findsInnermostOutlineAtOffset() {
+    assertEquals(TEXT, index.findOutlineAtOffset(25));
+    assertEquals(ROW, index.findOutlineAtOffset(45));
+    assertEquals(ROOT, index.findOutlineAtOffset(55));
+    assertEquals(PackedFlutterOutline.NONE, index.findOutlineAtOffset(101));
+    // The earlier sibling wins where ranges touch.
+    assertEquals(TEXT, index.findOutlineAtOffset(30));
+    assertArrayEquals(new int[]{ROOT, ROW, TEXT}, index.findPathAtOffset(30));
+  }
+
+  @Test
+  public void findsOutlinesCoveredByRange() {
+    assertArrayEquals(new int[]{TEXT, ICON}, index.findOutlinesCoveredByRange(15, 45));
+    assertArrayEquals(new int[]{ROW}, index.findOutlinesCoveredByRange(5, 55));
+    assertArrayEquals(new int[]{ROOT}, index.findOutlinesCoveredByRange(0, 100));
+    // Outlines inside a node the range only partly covers are not reached.
+    assertArrayEquals(new int[0], index.findOutlinesCoveredByRange(25, 65));
+  }
+
+  @Test
+  public void convertsOffsets() {
+    final OutlineIndex shifted = new OutlineIndex(outline, (offset) -> offset + 5);
+    assertEquals(ROW, shifted.findOutlineAtOffset(20));
+    assertEquals(TEXT, shifted.findOutlineAtOffset(25));
+    assertEquals(PackedFlutterOutline.NONE, shifted.findOutlineAtOffset(2));
+  }
+
+  private static FlutterOutline node(int offset, int length, FlutterOutline... children) {
+    final List<FlutterOutline> list = Arrays.asList(children);
+    return new FlutterOutline("NEW_INSTANCE", offset, length, offset, length, "", null, null, null, null, null, list);
+  }
+}
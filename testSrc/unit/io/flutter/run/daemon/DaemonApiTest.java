@@ -110,6 +110,68 @@ public class DaemonApiTest {
     assertNull(result);
   }
 
+  @Test
+  public void dispatchLineCompletesCommand() throws Exception {
+    final Future<DaemonApi.RestartResult> result = api.restartApp("foo", false, false, "manual");
+    checkSent(result, "app.restart",
+              curly("appId:\"foo\"", "fullRestart:false", "pause:false", "reason:\"manual\""));
+
+    // The result may come before the id.
+    api.dispatchLine("[{\"result\":{\"code\":0,\"message\":\"ok\"},\"id\":0}]\n", null);
+    assertTrue(result.isDone());
+    assertTrue(result.get().ok());
+    assertEquals("ok", result.get().getMessage());
+  }
+
+  @Test
+  public void dispatchLineReportsErrors() {
+    final Future<List<String>> result = api.daemonGetSupportedPlatforms("foo/bar");
+    log.clear();
+
+    api.dispatchLine("[{\"id\":0,\"error\":\"oops\",\"trace\":\"here\"}]", null);
+    assertTrue(result.isDone());
+    try {
+      result.get();
+      fail("expected an error");
+    }
+    catch (Exception e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("daemon.getSupportedPlatforms: \"oops\"\n\"here\""));
+    }
+  }
+
+  @Test
+  public void dispatchLineIgnoresInvalidMessages() {
+    final Future<Boolean> result = api.stopApp("foo");
+    log.clear();
+
+    api.dispatchLine("[{\"id\":\"0\",\"result\":true}]", null);
+    api.dispatchLine("[{\"id\":0,\"result\":true}] trailing", null);
+    api.dispatchLine("[{\"id\":0,\"result\":tr", null);
+    api.dispatchLine("[{\"id\":0,\"result\":true}][{\"id\":0}]", null);
+    assertFalse(result.isDone());
+
+    api.dispatchLine("[{\"id\":0,\"result\":true}]", null);
+    assertTrue(result.isDone());
+  }
+
+  @Test
+  public void dispatchLineSendsEvents() {
+    final List<String> events = new ArrayList<>();
+    final DaemonEvent.Listener listener = new DaemonEvent.Listener() {
+      @Override
+      public void onAppLog(DaemonEvent.AppLog event) {
+        events.add(event.appId + ":" + event.log);
+      }
+    };
+
+    api.dispatchLine("[{\"event\":\"app.log\",\"params\":{\"appId\":\"foo\",\"log\":\"hello\"}}]", listener);
+    // The params may come before the event name.
+    api.dispatchLine("[{\"params\":{\"appId\":\"bar\",\"log\":\"bye\"},\"event\":\"app.log\"}]", listener);
+    api.dispatchLine("[{\"event\":\"app.log\",\"params\":\"foo\"}]", listener);
+    api.dispatchLine("[{\"event\":\"app.log\"}]", listener);
+    assertEquals(Arrays.asList("foo:hello", "bar:bye"), events);
+  }
+
   // helpers
 
   private void checkSent(Future<?> result, String expectedMethod, String expectedParamsJson) {
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.test;
+
+import com.intellij.execution.process.ProcessOutputTypes;
+import com.intellij.execution.testframework.TestConsoleProperties;
+import com.jetbrains.lang.dart.util.DartUrlResolver;
+import jetbrains.buildServer.messages.serviceMessages.ServiceMessageVisitor;
+import jetbrains.buildServer.messages.serviceMessages.TestFailed;
+import jetbrains.buildServer.messages.serviceMessages.TestFinished;
+import jetbrains.buildServer.messages.serviceMessages.TestStarted;
+import jetbrains.buildServer.messages.serviceMessages.TestStdOut;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.text.ParseException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DartTestEventsConverterZTest {
+  private static final String[] RUN_START = {
+    "{\"protocolVersion\":\"0.1.1\",\"runnerVersion\":\"1.15.7\",\"pid\":3901,\"type\":\"start\",\"time\":0}",
+    "{\"suite\":{\"id\":0,\"platform\":\"vm\",\"path\":\"test/widget_test.dart\"},\"type\":\"suite\",\"time\":0}",
+    "{\"group\":{\"id\":2,\"suiteID\":0,\"parentID\":null,\"name\":null,\"metadata\":{\"skip\":false,\"skipReason\":null}," +
+    "\"testCount\":1,\"line\":null,\"column\":null,\"url\":null},\"type\":\"group\",\"time\":0}",
+    "{\"test\":{\"id\":4,\"name\":\"renders\",\"suiteID\":0,\"groupIDs\":[2],\"metadata\":{\"skip\":false,\"skipReason\":null}," +
+    "\"line\":15,\"column\":5,\"url\":null,\"root_line\":15},\"type\":\"testStart\",\"time\":31}",
+  };
+
+  private ServiceMessageVisitor visitor;
+  private DartTestEventsConverterZ converter;
+
+  @Before
+  public void setUp() {
+    visitor = mock(ServiceMessageVisitor.class);
+    converter = new DartTestEventsConverterZ("DartTestRunner", mock(TestConsoleProperties.class), mock(DartUrlResolver.class));
+  }
+
+  @Test
+  public void reportsTestStartAndDone() throws ParseException {
+    send(RUN_START);
+    send("{\"testID\":4,\"result\":\"success\",\"skipped\":false,\"hidden\":false,\"type\":\"testDone\",\"time\":34}");
+
+    final ArgumentCaptor<TestStarted> started = ArgumentCaptor.forClass(TestStarted.class);
+    verify(visitor).visitTestStarted(started.capture());
+    assertEquals("renders", started.getValue().getTestName());
+    assertEquals("4", started.getValue().getAttributes().get("nodeId"));
+    assertTrue(started.getValue().getAttributes().get("locationHint").startsWith("dart_location://test/widget_test.dart,-1,-1,"));
+
+    final ArgumentCaptor<TestFinished> finished = ArgumentCaptor.forClass(TestFinished.class);
+    verify(visitor).visitTestFinished(finished.capture());
+    assertEquals(3, finished.getValue().getTestDuration());
+  }
+
+  @Test
+  public void reportsConsecutiveOutputOfATestTogether() throws ParseException {
+    send(RUN_START);
+    send("{\"testID\":4,\"messageType\":\"print\",\"message\":\"one\",\"type\":\"print\",\"time\":32}",
+         "{\"testID\":4,\"messageType\":\"print\",\"message\":\"two\\n\",\"type\":\"print\",\"time\":33}",
+         "{\"testID\":4,\"result\":\"success\",\"skipped\":false,\"hidden\":false,\"type\":\"testDone\",\"time\":34}");
+
+    final ArgumentCaptor<TestStdOut> output = ArgumentCaptor.forClass(TestStdOut.class);
+    verify(visitor, times(1)).visitTestStdOut(output.capture());
+    assertEquals("one\ntwo\n", output.getValue().getStdOut());
+  }
+
+  @Test
+  public void reportsErrorAfterTestDone() throws ParseException {
+    send(RUN_START);
+    send("{\"testID\":4,\"result\":\"success\",\"skipped\":false,\"hidden\":false,\"type\":\"testDone\",\"time\":34}",
+         "{\"testID\":4,\"error\":\"late failure\",\"stackTrace\":\"\",\"isFailure\":true,\"type\":\"error\",\"time\":35}");
+
+    final ArgumentCaptor<TestFailed> failed = ArgumentCaptor.forClass(TestFailed.class);
+    verify(visitor).visitTestFailed(failed.capture());
+    assertEquals("late failure\n", failed.getValue().getFailureMessage());
+    assertEquals("4", failed.getValue().getAttributes().get("nodeId"));
+  }
+
+  private void send(String... lines) throws ParseException {
+    for (String line : lines) {
+      converter.processServiceMessages(line, ProcessOutputTypes.STDOUT, visitor);
+    }
+  }
+}
@@ -6,6 +6,7 @@
 package io.flutter.testing;
 
 import com.intellij.openapi.project.Project;
+import io.flutter.dart.PackedFlutterOutline;
 import io.flutter.editor.ActiveEditorsOutlineService;
 import io.flutter.utils.JsonUtils;
 import org.dartlang.analysis.server.protocol.FlutterOutline;
@@ -23,7 +24,7 @@ import java.util.Map;
  * A fake implementation of the {@link ActiveEditorsOutlineService} that always returns a golden {@link FlutterOutline} from a file.
  */
 public class FakeActiveEditorsOutlineService extends ActiveEditorsOutlineService {
-  private Map<String, FlutterOutline> pathToFlutterOutline = new HashMap<>();
+  private Map<String, PackedFlutterOutline> pathToFlutterOutline = new HashMap<>();
 
   public FakeActiveEditorsOutlineService(Project project, @NotNull String filePath, @NotNull String flutterOutlinePath) {
     super(project);
@@ -40,9 +41,9 @@ public class FakeActiveEditorsOutlineService extends ActiveEditorsOutlineService
       e.printStackTrace();
       outlineContents = null;
     }
-    FlutterOutline flutterOutline = null;
+    PackedFlutterOutline flutterOutline = null;
     if (outlineContents != null) {
-      flutterOutline = FlutterOutline.fromJson(JsonUtils.parseString(outlineContents).getAsJsonObject());
+      flutterOutline = PackedFlutterOutline.pack(FlutterOutline.fromJson(JsonUtils.parseString(outlineContents).getAsJsonObject()));
     }
     pathToFlutterOutline.put(filePath, flutterOutline);
 
@@ -50,7 +51,7 @@ public class FakeActiveEditorsOutlineService extends ActiveEditorsOutlineService
 
   @Nullable
   @Override
-  public FlutterOutline getOutline(String path) {
+  public PackedFlutterOutline getPackedOutline(String path) {
     // The path string that we get will be prepended with a '/' character, compared to how the cache was initialized.
     return pathToFlutterOutline.get(path);
   }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.utils;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class IntervalIndexTest {
+  @Test
+  public void findsIntersectingIntervals() {
+    final IntervalIndex.Builder builder = new IntervalIndex.Builder();
+    assertEquals(0, builder.add(10, 20));
+    assertEquals(1, builder.add(0, 5));
+    assertEquals(2, builder.add(15, 15));
+    final IntervalIndex index = builder.build();
+
+    assertArrayEquals(new int[]{0, 2}, index.findContaining(15));
+    assertArrayEquals(new int[]{0, 1}, index.findIntersecting(5, 10));
+    assertArrayEquals(new int[]{}, index.findIntersecting(6, 9));
+    assertTrue(index.intersects(20, 30));
+    assertFalse(index.intersects(21, 30));
+    assertFalse(IntervalIndex.EMPTY.intersects(0, Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void matchesBruteForce() {
+    final Random random = new Random(42);
+    final int count = 500;
+    final int[] starts = new int[count];
+    final int[] ends = new int[count];
+    final IntervalIndex.Builder builder = new IntervalIndex.Builder();
+    for (int i = 0; i < count; i++) {
+      starts[i] = random.nextInt(1000);
+      ends[i] = starts[i] + random.nextInt(random.nextBoolean() ? 10 : 300);
+      builder.add(starts[i], ends[i]);
+    }
+    final IntervalIndex index = builder.build();
+
+    for (int query = 0; query < 1000; query++) {
+      final int start = random.nextInt(1400) - 50;
+      final int end = start + random.nextInt(20);
+      final int[] expected = IntStream.range(0, count).filter((i) -> starts[i] <= end && ends[i] >= start).toArray();
+      assertArrayEquals(expected, index.findIntersecting(start, end));
+      assertEquals(expected.length > 0, index.intersects(start, end));
+    }
+  }
+
+  @Test
+  public void comparesIntervals() {
+    final IntervalIndex.Builder a = new IntervalIndex.Builder();
+    a.add(1, 2);
+    a.add(3, 4);
+    final IntervalIndex.Builder b = new IntervalIndex.Builder();
+    b.add(1, 2);
+    b.add(3, 4);
+    assertEquals(a.build(), b.build());
+    assertEquals(a.build().hashCode(), b.build().hashCode());
+
+    b.add(5, 6);
+    assertNotEquals(a.build(), b.build());
+  }
+}
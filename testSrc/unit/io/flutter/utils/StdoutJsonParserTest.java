@@ -7,7 +7,11 @@ package io.flutter.utils;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
 
 public class StdoutJsonParserTest {
   @Test
@@ -129,4 +133,33 @@ public class StdoutJsonParserTest {
       parser.getAvailableLines().toArray()
     );
   }
+
+  @Test
+  public void jsonTerminatorSplitAcrossOutput() {
+    final StdoutJsonParser parser = new StdoutJsonParser();
+    parser.appendOutput("[{'foo':'bar'}");
+    parser.appendOutput("]Performing hot reload\n");
+
+    assertArrayEquals(
+      "validating parser results",
+      new String[]{"[{'foo':'bar'}]", "Performing hot reload\n"},
+      parser.getAvailableLines().toArray()
+    );
+  }
+
+  @Test
+  public void handsLinesToConsumer() {
+    final List<String> lines = new ArrayList<>();
+    final StdoutJsonParser parser = new StdoutJsonParser(lines::add);
+    parser.appendOutput("hello\n[{'foo':");
+    assertArrayEquals(new String[]{"hello\n"}, lines.toArray());
+
+    parser.appendOutput("'bar'}]\r\nbye\n");
+    assertArrayEquals(
+      "validating parser results",
+      new String[]{"hello\n", "[{'foo':'bar'}]\r\n", "bye\n"},
+      lines.toArray()
+    );
+    assertTrue(parser.getAvailableLines().isEmpty());
+  }
 }
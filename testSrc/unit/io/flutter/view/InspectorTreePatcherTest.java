@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.view;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import io.flutter.inspector.DiagnosticsNode;
+import io.flutter.inspector.InspectorInstanceRef;
+import org.junit.Test;
+
+import javax.swing.*;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class InspectorTreePatcherTest {
+  private final Map<InspectorInstanceRef, DefaultMutableTreeNode> valueToTreeNode = new HashMap<>();
+  private final List<String> changedValues = new ArrayList<>();
+  private final List<String> modelEvents = new ArrayList<>();
+  private int nextObjectId = 0;
+
+  private DefaultTreeModel model;
+  private JTree tree;
+  private InspectorTreePatcher patcher;
+
+  @Test
+  public void insertsNewChildren() {
+    load(node("root", "Root", node("a", "A"), node("b", "B")));
+    final DefaultMutableTreeNode a = treeNode("a");
+    final DefaultMutableTreeNode b = treeNode("b");
+
+    refresh(node("root", "Root", node("a", "A"), node("c", "C"), node("b", "B")));
+    assertEquals(3, getRoot().getChildCount());
+    assertSame(a, getRoot().getChildAt(0));
+    assertSame(treeNode("c"), getRoot().getChildAt(1));
+    assertSame(b, getRoot().getChildAt(2));
+    assertEquals(List.of("inserted [1]"), modelEvents);
+  }
+
+  @Test
+  public void removesMissingChildren() {
+    load(node("root", "Root", node("a", "A"), node("b", "B", node("d", "D")), node("c", "C")));
+    final DefaultMutableTreeNode c = treeNode("c");
+
+    refresh(node("root", "Root", node("a", "A"), node("c", "C")));
+    assertEquals(2, getRoot().getChildCount());
+    assertSame(c, getRoot().getChildAt(1));
+    assertNull(valueToTreeNode.get(new InspectorInstanceRef("b")));
+    assertNull(valueToTreeNode.get(new InspectorInstanceRef("d")));
+    assertTrue(changedValues.contains("b"));
+    assertTrue(changedValues.contains("d"));
+    assertEquals(List.of("removed [1]"), modelEvents);
+  }
+
+  @Test
+  public void reordersChildrenKeepingSelectionAndExpansion() {
+    load(node("root", "Root", node("b", "B"), node("a", "A", node("x", "X"))));
+    final DefaultMutableTreeNode a = treeNode("a");
+    final DefaultMutableTreeNode b = treeNode("b");
+    final DefaultMutableTreeNode x = treeNode("x");
+    tree.expandPath(new TreePath(a.getPath()));
+    tree.setSelectionPath(new TreePath(x.getPath()));
+
+    // Moving the expanded node removes it from the model and inserts it again.
+    refresh(node("root", "Root", node("a", "A", node("x", "X")), node("b", "B")));
+    assertSame(a, getRoot().getChildAt(0));
+    assertSame(b, getRoot().getChildAt(1));
+    assertSame(x, a.getChildAt(0));
+    assertTrue(tree.isExpanded(new TreePath(a.getPath())));
+    assertEquals(new TreePath(x.getPath()), tree.getSelectionPath());
+  }
+
+  @Test
+  public void repaintsOnlyChangedNodes() {
+    load(node("root", "Root", node("a", "A"), node("b", "B")));
+    final DefaultMutableTreeNode b = treeNode("b");
+
+    refresh(node("root", "Root", node("a", "A"), node("b", "B changed")));
+    assertSame(b, treeNode("b"));
+    assertEquals("B changed", ((DiagnosticsNode)b.getUserObject()).getDescription());
+    assertEquals(List.of("changed [1]"), modelEvents);
+  }
+
+  @Test
+  public void onlyPatchesTheSameValue() {
+    load(node("root", "Root"));
+    assertTrue(InspectorTreePatcher.canPatch(getRoot(), diagnostics(node("root", "Root"))));
+    assertFalse(InspectorTreePatcher.canPatch(getRoot(), diagnostics(node("other", "Root"))));
+    assertFalse(InspectorTreePatcher.canPatch(getRoot(), diagnostics(node(null, "Root"))));
+  }
+
+  private void load(JsonObject json) {
+    final DefaultMutableTreeNode root = new DefaultMutableTreeNode();
+    setupTreeNode(root, diagnostics(json));
+    model = new DefaultTreeModel(root);
+    tree = new JTree(model);
+    patcher = new InspectorTreePatcher(tree, valueToTreeNode, new InspectorTreePatcher.Host() {
+      @Override
+      public void setupTreeNode(DefaultMutableTreeNode node, DiagnosticsNode diagnosticsNode) {
+        InspectorTreePatcherTest.this.setupTreeNode(node, diagnosticsNode);
+      }
+
+      @Override
+      public void valueChanged(InspectorInstanceRef valueRef) {
+        changedValues.add(valueRef.getId());
+      }
+
+      @Override
+      public void runProgrammatically(Runnable change) {
+        change.run();
+      }
+    });
+  }
+
+  private void refresh(JsonObject json) {
+    model.addTreeModelListener(new TreeModelListener() {
+      @Override
+      public void treeNodesChanged(TreeModelEvent e) {
+        modelEvents.add("changed " + Arrays.toString(e.getChildIndices()));
+      }
+
+      @Override
+      public void treeNodesInserted(TreeModelEvent e) {
+        modelEvents.add("inserted " + Arrays.toString(e.getChildIndices()));
+      }
+
+      @Override
+      public void treeNodesRemoved(TreeModelEvent e) {
+        modelEvents.add("removed " + Arrays.toString(e.getChildIndices()));
+      }
+
+      @Override
+      public void treeStructureChanged(TreeModelEvent e) {
+        modelEvents.add("structure");
+      }
+    });
+    final DiagnosticsNode root = diagnostics(json);
+    assertTrue(InspectorTreePatcher.canPatch(getRoot(), root));
+    patcher.patch(getRoot(), root);
+  }
+
+  private void setupTreeNode(DefaultMutableTreeNode node, DiagnosticsNode diagnosticsNode) {
+    node.setUserObject(diagnosticsNode);
+    valueToTreeNode.put(diagnosticsNode.getValueRef(), node);
+    for (DiagnosticsNode child : diagnosticsNode.getChildren().getNow(null)) {
+      final DefaultMutableTreeNode childNode = new DefaultMutableTreeNode();
+      setupTreeNode(childNode, child);
+      node.add(childNode);
+    }
+  }
+
+  private DefaultMutableTreeNode getRoot() {
+    return (DefaultMutableTreeNode)model.getRoot();
+  }
+
+  private DefaultMutableTreeNode treeNode(String valueId) {
+    return valueToTreeNode.get(new InspectorInstanceRef(valueId));
+  }
+
+  private static DiagnosticsNode diagnostics(JsonObject json) {
+    return new DiagnosticsNode(json, CompletableFuture.completedFuture(null), null, false, null);
+  }
+
+  /**
+   * Returns the json of a node. Each call gets a new object id, as refreshing the tree does.
+   */
+  private JsonObject node(String valueId, String description, JsonObject... children) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("valueId", valueId);
+    json.addProperty("objectId", "object-" + nextObjectId++);
+    json.addProperty("description", description);
+    json.addProperty("hasChildren", children.length > 0);
+    final JsonArray array = new JsonArray();
+    for (JsonObject child : children) {
+      array.add(child);
+    }
+    json.add("children", array);
+    return json;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameRingBufferTest {
+  @Test
+  public void copiesNewestFirst() {
+    final FrameRingBuffer buffer = new FrameRingBuffer(4);
+    for (int i = 0; i < 6; i++) {
+      buffer.add(i, i * 16000L, 1000L + i, i == 0, false, 1);
+    }
+
+    final FlutterFramesMonitor.FrameHistory history = new FlutterFramesMonitor.FrameHistory();
+    buffer.copyNewestFirst(history);
+    assertEquals(4, history.size());
+    assertEquals(5, history.getFrameId(0));
+    assertEquals(1005L, history.getElapsedMicros(0));
+    assertEquals(2, history.getFrameId(3));
+    assertEquals(32000L, history.getStartTimeMicros(3));
+  }
+
+  @Test
+  public void tracksFrameSet() {
+    final FrameRingBuffer buffer = new FrameRingBuffer(4);
+    buffer.add(0, 0, 1000, true, false, 1);
+    buffer.add(1, 16000, 20000, false, true, 2);
+    assertEquals(2, buffer.getFrameSetLength());
+    assertEquals(3, buffer.getFrameSetCost());
+
+    buffer.add(2, 100000, 1000, true, false, 1);
+    assertEquals(1, buffer.getFrameSetLength());
+    assertEquals(1, buffer.getFrameSetCost());
+
+    // A frame set longer than the buffer only counts the buffered frames.
+    for (int i = 3; i < 10; i++) {
+      buffer.add(i, 100000 + i * 16000, 1000, false, false, 1);
+    }
+    assertEquals(4, buffer.getFrameSetLength());
+    assertEquals(4, buffer.getFrameSetCost());
+  }
+
+  @Test
+  public void evictsSlowFramesAndPercentiles() {
+    final FrameRingBuffer buffer = new FrameRingBuffer(4);
+    buffer.add(0, 0, 40000, true, true, 3);
+    buffer.add(1, 50000, 2000, false, false, 1);
+    assertEquals(1, buffer.getSlowFrameCount());
+    assertEquals(40250, buffer.getElapsedPercentileMicros(99));
+
+    for (int i = 2; i < 6; i++) {
+      buffer.add(i, 50000 + i * 16000, 2000, false, false, 1);
+    }
+    assertEquals(0, buffer.getSlowFrameCount());
+    assertEquals(2250, buffer.getElapsedPercentileMicros(99));
+    assertEquals(4, buffer.getSize());
+  }
+
+  @Test
+  public void historyReusesArrays() {
+    final FrameRingBuffer buffer = new FrameRingBuffer(4);
+    final FlutterFramesMonitor.FrameHistory history = new FlutterFramesMonitor.FrameHistory();
+    buffer.copyNewestFirst(history);
+    assertEquals(0, history.size());
+
+    buffer.add(7, 0, 1000, true, false, 1);
+    final int[] ids = history.frameIds;
+    buffer.copyNewestFirst(history);
+    assertTrue(history.isFrameSetStart(0));
+    assertFalse(history.isSlowFrame(0));
+    assertSame(ids, history.frameIds);
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package io.flutter.vmService;
+
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.element.MemoryUsage;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Sentinel;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MemoryUsageSumTest {
+  private static MemoryUsage usage(long used, long capacity, long external) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("type", "MemoryUsage");
+    json.addProperty("heapUsage", used);
+    json.addProperty("heapCapacity", capacity);
+    json.addProperty("externalUsage", external);
+    return new MemoryUsage(json);
+  }
+
+  private static RPCError error(int code) {
+    final JsonObject json = new JsonObject();
+    json.addProperty("code", code);
+    json.addProperty("message", "error");
+    return new RPCError(json);
+  }
+
+  @Test
+  public void sumsLargeHeapsOnceAllRequestsAreDone() {
+    final MemoryUsageSum sum = new MemoryUsageSum(3);
+    sum.received(usage(3L << 30, 4L << 30, 1));
+    sum.received(usage(2L << 30, 3L << 30, 2));
+    assertFalse(sum.done.isDone());
+
+    final JsonObject sentinel = new JsonObject();
+    sentinel.addProperty("type", "Sentinel");
+    sum.received(new Sentinel(sentinel));
+
+    final HeapMonitor.HeapSample sample = sum.done.getNow(null);
+    assertNotNull(sample);
+    assertEquals(5L << 30, sample.getBytes());
+    assertEquals(7L << 30, sample.getCapacity());
+    assertEquals(3, sample.getExternal());
+  }
+
+  @Test
+  public void skipsFailedRequests() {
+    final MemoryUsageSum sum = new MemoryUsageSum(2);
+    sum.onError(error(RPCError.REQUEST_TIMED_OUT));
+    sum.received(usage(10, 20, 0));
+    assertEquals(10, sum.done.getNow(null).getBytes());
+    assertFalse(sum.isUnsupported());
+  }
+
+  @Test
+  public void completesWithNullWithoutUsage() {
+    assertTrue(new MemoryUsageSum(0).done.isDone());
+    assertNull(new MemoryUsageSum(0).done.getNow(null));
+
+    final MemoryUsageSum sum = new MemoryUsageSum(1);
+    sum.onError(error(MemoryUsageSum.RPC_METHOD_NOT_FOUND));
+    assertTrue(sum.done.isDone());
+    assertNull(sum.done.getNow(null));
+    assertTrue(sum.isUnsupported());
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service;
+
+import com.google.gson.JsonObject;
+import org.dartlang.vm.service.consumer.VersionConsumer;
+import org.dartlang.vm.service.element.Event;
+import org.dartlang.vm.service.element.EventKind;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.element.Version;
+import org.dartlang.vm.service.internal.RequestSink;
+import org.dartlang.vm.service.logging.Logger;
+import org.dartlang.vm.service.logging.Logging;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests routing of incoming messages with the streaming decoder.
+ */
+public class VmServiceBaseTest {
+  private final List<JsonObject> requests = new ArrayList<>();
+  private final List<String> errors = new ArrayList<>();
+  private VmService vmService;
+  private boolean wasStreamingDecoder;
+
+  @Before
+  public void setUp() {
+    wasStreamingDecoder = VmServiceBase.isStreamingDecoder();
+    VmServiceBase.setStreamingDecoder(true);
+    Logging.setLogger(new RecordingLogger());
+
+    vmService = new VmService();
+    vmService.requestSink = new RequestSink() {
+      @Override
+      public void add(JsonObject request) {
+        requests.add(request);
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    VmServiceBase.setStreamingDecoder(wasStreamingDecoder);
+    Logging.setLogger(null);
+  }
+
+  @Test
+  public void deliversResponseToConsumer() {
+    final RecordingVersionConsumer consumer = new RecordingVersionConsumer();
+    vmService.getVersion(consumer);
+    final String id = getLastRequestId();
+
+    // The result comes before the id, which the decoder has to handle.
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"result\":{\"type\":\"Version\",\"major\":3,\"minor\":44},\"id\":\"" + id + "\"}");
+    assertNotNull(consumer.version);
+    assertEquals(3, consumer.version.getMajor());
+    assertEquals(44, consumer.version.getMinor());
+    assertTrue(consumer.errors.isEmpty());
+    assertTrue(errors.isEmpty());
+    assertEquals(0, vmService.getRequestMetrics().getInFlightCount());
+  }
+
+  @Test
+  public void deliversErrorResponseToConsumer() {
+    final RecordingVersionConsumer consumer = new RecordingVersionConsumer();
+    vmService.getVersion(consumer);
+    final String id = getLastRequestId();
+
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"id\":\"" + id + "\",\"error\":{\"code\":100,\"message\":\"Feature is disabled\"}}");
+    assertNull(consumer.version);
+    assertEquals(1, consumer.errors.size());
+    assertEquals(100, consumer.errors.get(0).getCode());
+    assertEquals("Feature is disabled", consumer.errors.get(0).getMessage());
+    assertEquals(0, vmService.getRequestMetrics().getInFlightCount());
+  }
+
+  @Test
+  public void deliversStreamEventToListeners() {
+    final List<String> streamIds = new ArrayList<>();
+    final List<Event> events = new ArrayList<>();
+    vmService.addVmServiceListener(new VmServiceListener() {
+      @Override
+      public void connectionOpened() {
+      }
+
+      @Override
+      public void received(String streamId, Event event) {
+        streamIds.add(streamId);
+        events.add(event);
+      }
+
+      @Override
+      public void connectionClosed() {
+      }
+    });
+
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":{\"streamId\":\"Extension\",\"event\":" +
+                             "{\"type\":\"Event\",\"kind\":\"Extension\",\"extensionKind\":\"Flutter.Frame\"," +
+                             "\"extensionData\":{\"elapsed\":16000},\"timestamp\":1}}}");
+    assertEquals(1, events.size());
+    assertEquals(VmService.EXTENSION_STREAM_ID, streamIds.get(0));
+    assertEquals(EventKind.Extension, events.get(0).getKind());
+    assertEquals("Flutter.Frame", events.get(0).getExtensionKind());
+    assertEquals(16000, events.get(0).getExtensionData().getJson().get("elapsed").getAsInt());
+    assertTrue(errors.isEmpty());
+  }
+
+  @Test
+  public void logsMalformedInput() {
+    final RecordingVersionConsumer consumer = new RecordingVersionConsumer();
+    vmService.getVersion(consumer);
+    final String id = getLastRequestId();
+
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"id\":\"" + id + "\",\"result\":{\"type\":");
+    vmService.processMessage("[1, 2]");
+    vmService.processMessage("not json");
+    assertEquals(3, errors.size());
+    for (String error : errors) {
+      assertTrue(error, error.startsWith("Parse message failed"));
+    }
+
+    // Responses without a pending request or an id are logged too.
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"id\":\"999\",\"result\":{\"type\":\"Version\"}}");
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"result\":{\"type\":\"Version\"}}");
+    assertEquals(5, errors.size());
+
+    // The request is still waiting for its response.
+    assertNull(consumer.version);
+    assertTrue(consumer.errors.isEmpty());
+    vmService.processMessage("{\"jsonrpc\":\"2.0\",\"id\":\"" + id + "\",\"result\":{\"type\":\"Version\",\"major\":3,\"minor\":44}}");
+    assertNotNull(consumer.version);
+  }
+
+  private String getLastRequestId() {
+    assertFalse(requests.isEmpty());
+    return requests.get(requests.size() - 1).get("id").getAsString();
+  }
+
+  private static class RecordingVersionConsumer implements VersionConsumer {
+    Version version;
+    final List<RPCError> errors = new ArrayList<>();
+
+    @Override
+    public void received(Version response) {
+      version = response;
+    }
+
+    @Override
+    public void onError(RPCError error) {
+      errors.add(error);
+    }
+  }
+
+  private class RecordingLogger implements Logger {
+    @Override
+    public void logError(String message) {
+      errors.add(message);
+    }
+
+    @Override
+    public void logError(String message, Throwable exception) {
+      errors.add(message);
+    }
+
+    @Override
+    public void logInformation(String message) {
+    }
+
+    @Override
+    public void logInformation(String message, Throwable exception) {
+    }
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service.internal;
+
+import org.dartlang.vm.service.element.Element;
+import org.dartlang.vm.service.element.Event;
+import org.dartlang.vm.service.element.EventKind;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static org.junit.Assert.*;
+
+public class LazyEventTest {
+  private static final String MESSAGE =
+    "{\"jsonrpc\":\"2.0\",\"method\":\"streamNotify\",\"params\":{\"streamId\":\"Extension\",\"event\":" +
+    "{\"type\":\"Event\",\"kind\":\"Extension\",\"extensionKind\":\"Flutter.Frame\"," +
+    "\"isolate\":{\"type\":\"@Isolate\",\"id\":\"isolates/1\",\"name\":\"main\"}," +
+    "\"extensionData\":{\"elapsed\":16000},\"timestamp\":42}}}";
+
+  @Test
+  public void parsesBodyOnlyWhenRead() throws Exception {
+    final StreamingMessage message = StreamingMessage.decode(MESSAGE);
+    assertTrue(message.isStreamNotification());
+    final LazyEvent event = message.createEvent();
+
+    assertEquals(EventKind.Extension, event.getKind());
+    assertEquals("Flutter.Frame", event.getExtensionKind());
+    assertFalse(event.isMaterialized());
+
+    assertEquals(42, event.getTimestamp());
+    assertTrue(event.isMaterialized());
+    assertEquals("Event", event.getType());
+    assertEquals("isolates/1", event.getIsolate().getId());
+    assertEquals(16000, event.getExtensionData().getJson().get("elapsed").getAsInt());
+    assertEquals(42, event.getJson().get("timestamp").getAsInt());
+  }
+
+  @Test
+  public void overridesEveryGeneratedGetter() {
+    // The generated getters read the JSON field directly, which a LazyEvent never sets.
+    for (Class<?> type = Event.class; type != Object.class; type = type.getSuperclass()) {
+      for (Method method : type.getDeclaredMethods()) {
+        if (!Modifier.isPublic(method.getModifiers()) || Modifier.isStatic(method.getModifiers())) {
+          continue;
+        }
+        try {
+          LazyEvent.class.getDeclaredMethod(method.getName(), method.getParameterTypes());
+        }
+        catch (NoSuchMethodException e) {
+          fail("LazyEvent does not override " + type.getSimpleName() + "." + method.getName());
+        }
+      }
+      if (type == Element.class) {
+        break;
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service.internal;
+
+import org.dartlang.vm.service.consumer.Consumer;
+import org.dartlang.vm.service.element.RPCError;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PendingRequestsTest {
+  private final PendingRequests requests = new PendingRequests();
+
+  @Test
+  public void removesAnsweredRequests() {
+    final RecordingConsumer consumer = new RecordingConsumer();
+    requests.add(1, "getVM", consumer, 0);
+    requests.add(2, "getIsolate", new RecordingConsumer(), 0);
+    assertEquals(2, requests.size());
+
+    final PendingRequest request = requests.remove(1);
+    assertNotNull(request);
+    assertSame(consumer, request.getConsumer());
+    assertEquals("getVM", request.getMethod());
+    assertNull(requests.remove(1));
+    assertEquals(1, requests.size());
+    assertEquals(1, requests.getMetrics().getResponseCount("getVM"));
+  }
+
+  @Test
+  public void keepsRequestsWhoseSlotIsTaken() {
+    // Ids 1 and 1025 share a slot, so the second one overflows.
+    requests.add(1, "a", new RecordingConsumer(), 0);
+    requests.add(1025, "b", new RecordingConsumer(), 0);
+    assertEquals("b", requests.remove(1025).getMethod());
+    assertEquals("a", requests.remove(1).getMethod());
+    assertEquals(0, requests.size());
+  }
+
+  @Test
+  public void timesOutRequestsWithoutResponse() throws Exception {
+    final RecordingConsumer consumer = new RecordingConsumer();
+    requests.add(1, "evaluate", consumer, 50);
+    assertTrue(consumer.failed.await(5, TimeUnit.SECONDS));
+    assertEquals(RPCError.REQUEST_TIMED_OUT, consumer.getErrorCode());
+    assertEquals(0, requests.size());
+    assertEquals(1, requests.getMetrics().getTimedOutCount());
+
+    // A response arriving after the timeout is not delivered again.
+    assertNull(requests.remove(1));
+    assertEquals(0, requests.getMetrics().getResponseCount("evaluate"));
+    assertEquals(1, consumer.errors.size());
+  }
+
+  @Test
+  public void doesNotTimeOutAnsweredRequests() throws Exception {
+    final RecordingConsumer answered = new RecordingConsumer();
+    final RecordingConsumer unanswered = new RecordingConsumer();
+    requests.add(1, "getVM", answered, 50);
+    requests.add(2, "getVM", unanswered, 50);
+    assertNotNull(requests.remove(1));
+
+    assertTrue(unanswered.failed.await(5, TimeUnit.SECONDS));
+    assertTrue(answered.errors.isEmpty());
+    assertEquals(1, requests.getMetrics().getTimedOutCount());
+  }
+
+  @Test
+  public void failsPendingRequestsWhenClosed() {
+    final RecordingConsumer first = new RecordingConsumer();
+    final RecordingConsumer overflowed = new RecordingConsumer();
+    requests.add(1, "getVM", first, 0);
+    requests.add(1025, "getIsolate", overflowed, TimeUnit.MINUTES.toMillis(5));
+
+    requests.failAll();
+    assertEquals(0, requests.size());
+    assertEquals(RPCError.CONNECTION_CLOSED, first.getErrorCode());
+    assertEquals(RPCError.CONNECTION_CLOSED, overflowed.getErrorCode());
+
+    // Responses and timeouts after the close are ignored.
+    assertNull(requests.remove(1));
+    assertNull(requests.remove(1025));
+    assertEquals(1, first.errors.size());
+    assertEquals(0, requests.getMetrics().getTimedOutCount());
+  }
+
+  private static class RecordingConsumer implements Consumer {
+    final List<RPCError> errors = Collections.synchronizedList(new ArrayList<>());
+    final CountDownLatch failed = new CountDownLatch(1);
+
+    @Override
+    public void onError(RPCError error) {
+      errors.add(error);
+      failed.countDown();
+    }
+
+    int getErrorCode() {
+      assertEquals(1, errors.size());
+      return errors.get(0).getCode();
+    }
+  }
+}
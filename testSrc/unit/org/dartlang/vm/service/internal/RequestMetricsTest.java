@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 The Chromium Authors. All rights reserved.
+ * Use of this source code is governed by a BSD-style license that can be
+ * found in the LICENSE file.
+ */
+package org.dartlang.vm.service.internal;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RequestMetricsTest {
+  @Test
+  public void reportsLatencyPercentilesPerMethod() {
+    final RequestMetrics metrics = new RequestMetrics(() -> 3);
+    for (int i = 1; i <= 100; i++) {
+      metrics.recordLatency("getVM", TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    metrics.recordLatency("evaluate", TimeUnit.MILLISECONDS.toNanos(40));
+
+    assertEquals(3, metrics.getInFlightCount());
+    assertEquals(100, metrics.getResponseCount("getVM"));
+    assertEquals(1, metrics.getResponseCount("evaluate"));
+    assertEquals(0, metrics.getResponseCount("getIsolate"));
+    assertEquals(-1, metrics.getLatencyPercentileMillis("getIsolate", 50), 0);
+
+    // Percentiles are upper bounds within 20% of the recorded latencies.
+    assertWithin(50, metrics.getLatencyPercentileMillis("getVM", 50));
+    assertWithin(99, metrics.getLatencyPercentileMillis("getVM", 99));
+    assertWithin(40, metrics.getLatencyPercentileMillis("evaluate", 99));
+  }
+
+  @Test
+  public void countsTimeouts() {
+    final RequestMetrics metrics = new RequestMetrics(() -> 0);
+    metrics.recordTimeout();
+    metrics.recordTimeout();
+    assertEquals(2, metrics.getTimedOutCount());
+  }
+
+  @Test
+  public void summarizesForLogs() {
+    final RequestMetrics metrics = new RequestMetrics(() -> 2);
+    metrics.recordTimeout();
+    metrics.recordLatency("getVM", TimeUnit.MILLISECONDS.toNanos(1));
+    metrics.recordLatency("evaluate", TimeUnit.MILLISECONDS.toNanos(1));
+    final String summary = metrics.getSummary();
+    assertTrue(summary, summary.startsWith("2 in flight, 1 timed out; evaluate: 1 responses, p50 "));
+    assertTrue(summary, summary.contains("; getVM: 1 responses, p50 "));
+  }
+
+  @Test
+  public void bucketsCoverTheirValues() {
+    for (long micros = 1; micros < 1000000; micros = micros * 3 / 2 + 1) {
+      final long bound = RequestMetrics.LatencyHistogram.bucketUpperBound(RequestMetrics.LatencyHistogram.bucketIndex(micros));
+      assertTrue(micros + " <= " + bound, micros <= bound);
+      assertTrue(micros + " within 25% of " + bound, bound <= micros * 1.25 + 1);
+    }
+  }
+
+  private static void assertWithin(double expectedMillis, double actualMillis) {
+    assertTrue(actualMillis + " >= " + expectedMillis, actualMillis >= expectedMillis);
+    assertTrue(actualMillis + " <= 1.2 * " + expectedMillis, actualMillis <= expectedMillis * 1.2);
+  }
+}
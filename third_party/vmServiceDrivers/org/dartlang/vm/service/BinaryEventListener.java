@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service;
+
+import org.dartlang.vm.service.element.Event;
+
+/**
+ * Interface used by {@link VmService} to notify others of VM events that carry binary data, such
+ * as the chunks of a heap snapshot on the {@link VmService#HEAPSNAPSHOT_STREAM_ID} stream.
+ */
+public interface BinaryEventListener {
+  /**
+   * Called when a binary VM event has been received. The data is only valid during the call.
+   *
+   * @param streamId the stream identifier
+   * @param event    the event
+   * @param data     the array holding the data of the event
+   * @param offset   the offset of the data in the array
+   * @param length   the length of the data
+   */
+  void received(String streamId, Event event, byte[] data, int offset, int length);
+}
@@ -17,13 +17,19 @@ import com.google.common.collect.Maps;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.intellij.openapi.util.SystemInfo;
 import de.roderick.weberknecht.WebSocket;
 import de.roderick.weberknecht.WebSocketEventHandler;
 import de.roderick.weberknecht.WebSocketException;
 import de.roderick.weberknecht.WebSocketMessage;
 import org.dartlang.vm.service.consumer.*;
 import org.dartlang.vm.service.element.*;
+import org.dartlang.vm.service.internal.BinaryMessage;
+import org.dartlang.vm.service.internal.PendingRequest;
+import org.dartlang.vm.service.internal.PendingRequests;
+import org.dartlang.vm.service.internal.RequestMetrics;
 import org.dartlang.vm.service.internal.RequestSink;
+import org.dartlang.vm.service.internal.StreamingMessage;
 import org.dartlang.vm.service.internal.VmServiceConst;
 import org.dartlang.vm.service.internal.WebSocketRequestSink;
 import org.dartlang.vm.service.logging.Logging;
@@ -31,6 +37,7 @@ import org.dartlang.vm.service.logging.Logging;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -81,9 +88,23 @@ abstract class VmServiceBase implements VmServiceConst {
 
       @Override
       public void onMessage(WebSocketMessage message) {
-        Logging.getLogger().logInformation("VM message: " + message.getText());
+        final byte[] bytes = BinaryMessage.getBytes(message);
+        final BinaryMessage binaryMessage = bytes == null ? null : BinaryMessage.decode(bytes);
+        if (binaryMessage != null) {
+          try {
+            vmService.processBinaryMessage(binaryMessage);
+          } catch (Exception e) {
+            Logging.getLogger().logError(e.getMessage(), e);
+          }
+          return;
+        }
+
+        final String text = bytes == null ? message.getText() : new String(bytes, StandardCharsets.UTF_8);
+        if (Logging.getLogger().isInformationEnabled()) {
+          Logging.getLogger().logInformation("VM message: " + text);
+        }
         try {
-          vmService.processMessage(message.getText());
+          vmService.processMessage(text);
         } catch (Exception e) {
           Logging.getLogger().logError(e.getMessage(), e);
         }
@@ -165,15 +186,40 @@ abstract class VmServiceBase implements VmServiceConst {
   }
 
   /**
-   * A mapping between {@link String} ids' and the associated {@link Consumer} that was passed when
-   * the request was made. Synchronize against {@link #consumerMapLock} before accessing this field.
+   * Whether incoming messages are routed with {@link StreamingMessage} rather than by parsing each
+   * message into a {@link JsonObject} tree. Set the {@code vm.service.treeDecoder} system property
+   * to use the tree based decoder.
    */
-  private final Map<String, Consumer> consumerMap = Maps.newHashMap();
+  private static volatile boolean streamingDecoder = !Boolean.getBoolean("vm.service.treeDecoder");
 
   /**
-   * The object used to synchronize access to {@link #consumerMap}.
+   * Select how incoming messages are decoded. The streaming decoder routes each message before
+   * building any tree and only parses event bodies when a {@link VmServiceListener} reads them;
+   * the tree based decoder is kept for comparison.
    */
-  private final Object consumerMapLock = new Object();
+  public static void setStreamingDecoder(boolean enabled) {
+    streamingDecoder = enabled;
+  }
+
+  /**
+   * Return {@code true} if incoming messages are decoded with the streaming decoder.
+   */
+  public static boolean isStreamingDecoder() {
+    return streamingDecoder;
+  }
+
+  /**
+   * The requests that have been sent and the {@link Consumer}s waiting for their responses,
+   * indexed by request id.
+   */
+  private final PendingRequests pendingRequests = new PendingRequests();
+
+  /**
+   * The time to wait for the response to a request, or 0 to wait until the connection closes.
+   * Requests have no deadline unless one is set with {@link #setRequestTimeout}, as some requests,
+   * such as evaluations and heap snapshots, can legitimately take a long time.
+   */
+  private volatile long requestTimeoutMillis;
 
   /**
    * The unique ID for the next request.
@@ -185,6 +231,11 @@ abstract class VmServiceBase implements VmServiceConst {
    */
   private final List<VmServiceListener> vmListeners = new ArrayList<>();
 
+  /**
+   * A list of objects to which binary {@link Event}s from the VM are forwarded.
+   */
+  private final List<BinaryEventListener> binaryListeners = new ArrayList<>();
+
   /**
    * A list of objects to which {@link Event}s from the VM are forwarded.
    */
@@ -211,6 +262,20 @@ abstract class VmServiceBase implements VmServiceConst {
     vmListeners.remove(listener);
   }
 
+  /**
+   * Add a listener to receive binary {@link Event}s from the VM, such as heap snapshot chunks.
+   */
+  public void addBinaryEventListener(BinaryEventListener listener) {
+    binaryListeners.add(listener);
+  }
+
+  /**
+   * Remove the given binary event listener from the VM.
+   */
+  public void removeBinaryEventListener(BinaryEventListener listener) {
+    binaryListeners.remove(listener);
+  }
+
   /**
    * Add a VM RemoteServiceRunner.
    */
@@ -232,6 +297,23 @@ abstract class VmServiceBase implements VmServiceConst {
     return runtimeVersion;
   }
 
+  /**
+   * Set the time to wait for the response to a request before failing its consumer with
+   * {@link RPCError#REQUEST_TIMED_OUT}. A timeout of 0, the default, waits until the connection
+   * closes.
+   */
+  public void setRequestTimeout(long timeout, TimeUnit unit) {
+    requestTimeoutMillis = unit.toMillis(timeout);
+  }
+
+  /**
+   * Return the number of requests in flight, the number of requests that timed out and the round
+   * trip latency of each method.
+   */
+  public RequestMetrics getRequestMetrics() {
+    return pendingRequests.getMetrics();
+  }
+
   /**
    * Disconnect from the VM observatory service.
    */
@@ -316,24 +398,160 @@ abstract class VmServiceBase implements VmServiceConst {
     request(method, params, consumer);
   }
 
+  /**
+   * Invoke a specific service protocol extension method, failing the consumer with
+   * {@link RPCError#REQUEST_TIMED_OUT} if no response arrives within the given time.
+   * <p>
+   * See https://api.dart.dev/stable/dart-developer/dart-developer-library.html.
+   */
+  public void callServiceExtension(String isolateId,
+                                   String method,
+                                   JsonObject params,
+                                   long timeoutMillis,
+                                   ServiceExtensionConsumer consumer) {
+    params.addProperty("isolateId", isolateId);
+    request(method, params, consumer, timeoutMillis);
+  }
+
+  /**
+   * Return the VM, failing the consumer with {@link RPCError#REQUEST_TIMED_OUT} if no response
+   * arrives within the given time.
+   */
+  public void getVM(long timeoutMillis, VMConsumer consumer) {
+    request("getVM", new JsonObject(), consumer, timeoutMillis);
+  }
+
+  /**
+   * Return the memory usage of an isolate, failing the consumer with
+   * {@link RPCError#REQUEST_TIMED_OUT} if no response arrives within the given time.
+   */
+  public void getMemoryUsage(String isolateId, long timeoutMillis, GetMemoryUsageConsumer consumer) {
+    final JsonObject params = new JsonObject();
+    params.addProperty("isolateId", isolateId);
+    request("getMemoryUsage", params, consumer, timeoutMillis);
+  }
+
+  /**
+   * Return the memory usage of an isolate group, failing the consumer with
+   * {@link RPCError#REQUEST_TIMED_OUT} if no response arrives within the given time.
+   */
+  public void getIsolateGroupMemoryUsage(String isolateGroupId, long timeoutMillis, GetIsolateGroupMemoryUsageConsumer consumer) {
+    final JsonObject params = new JsonObject();
+    params.addProperty("isolateGroupId", isolateGroupId);
+    request("getIsolateGroupMemoryUsage", params, consumer, timeoutMillis);
+  }
+
+  /**
+   * Return the allocation profile of an isolate, failing the consumer with
+   * {@link RPCError#REQUEST_TIMED_OUT} if no response arrives within the given time.
+   */
+  public void getAllocationProfile(String isolateId, long timeoutMillis, GetAllocationProfileConsumer consumer) {
+    final JsonObject params = new JsonObject();
+    params.addProperty("isolateId", isolateId);
+    request("getAllocationProfile", params, consumer, timeoutMillis);
+  }
+
+  /**
+   * Return the CPU samples of an isolate in the given range of the VM's monotonic clock, failing
+   * the consumer with {@link RPCError#REQUEST_TIMED_OUT} if no response arrives within the given
+   * time. Unlike the generated method, the range is not truncated to 32 bits.
+   */
+  public void getCpuSamples(String isolateId, long timeOriginMicros, long timeExtentMicros, long timeoutMillis, GetCpuSamplesConsumer consumer) {
+    final JsonObject params = new JsonObject();
+    params.addProperty("isolateId", isolateId);
+    params.addProperty("timeOriginMicros", timeOriginMicros);
+    params.addProperty("timeExtentMicros", timeExtentMicros);
+    request("getCpuSamples", params, consumer, timeoutMillis);
+  }
+
+  /**
+   * Return the VM timeline events in the given range of the VM's monotonic clock, failing the
+   * consumer with {@link RPCError#REQUEST_TIMED_OUT} if no response arrives within the given time.
+   * Unlike the generated method, the range is not truncated to 32 bits.
+   */
+  public void getVMTimeline(long timeOriginMicros, long timeExtentMicros, long timeoutMillis, TimelineConsumer consumer) {
+    final JsonObject params = new JsonObject();
+    params.addProperty("timeOriginMicros", timeOriginMicros);
+    params.addProperty("timeExtentMicros", timeExtentMicros);
+    request("getVMTimeline", params, consumer, timeoutMillis);
+  }
+
+  /**
+   * Return the current time stamp of the VM timeline, failing the consumer with
+   * {@link RPCError#REQUEST_TIMED_OUT} if no response arrives within the given time.
+   */
+  public void getVMTimelineMicros(long timeoutMillis, TimestampConsumer consumer) {
+    request("getVMTimelineMicros", new JsonObject(), consumer, timeoutMillis);
+  }
+
+  /**
+   * Evaluate an expression in the context of a target, failing the consumer with
+   * {@link RPCError#REQUEST_TIMED_OUT} if no response arrives within the given time.
+   *
+   * @param scope This parameter is optional and may be null.
+   * @param disableBreakpoints This parameter is optional and may be null.
+   */
+  public void evaluate(String isolateId,
+                       String targetId,
+                       String expression,
+                       Map<String, String> scope,
+                       Boolean disableBreakpoints,
+                       long timeoutMillis,
+                       EvaluateConsumer consumer) {
+    final JsonObject params = new JsonObject();
+    params.addProperty("isolateId", isolateId);
+    params.addProperty("targetId", targetId);
+    params.addProperty("expression", SystemInfo.isWindows
+                                     ? expression.replaceAll("\n", " ").replaceAll("\r", " ")
+                                     : expression.replaceAll("\n", " "));
+    if (scope != null) {
+      final JsonObject scopeJson = new JsonObject();
+      for (Map.Entry<String, String> entry : scope.entrySet()) {
+        scopeJson.addProperty(entry.getKey(), entry.getValue());
+      }
+      params.add("scope", scopeJson);
+    }
+    if (disableBreakpoints != null) params.addProperty("disableBreakpoints", disableBreakpoints);
+    request("evaluate", params, consumer, timeoutMillis);
+  }
+
+  /**
+   * Return the object with the given id, failing the consumer with
+   * {@link RPCError#REQUEST_TIMED_OUT} if no response arrives within the given time.
+   */
+  public void getObject(String isolateId, String objectId, long timeoutMillis, GetObjectConsumer consumer) {
+    final JsonObject params = new JsonObject();
+    params.addProperty("isolateId", isolateId);
+    params.addProperty("objectId", objectId);
+    request("getObject", params, consumer, timeoutMillis);
+  }
+
   /**
    * Sends the request and associates the request with the passed {@link Consumer}.
    */
   protected void request(String method, JsonObject params, Consumer consumer) {
+    request(method, params, consumer, requestTimeoutMillis);
+  }
+
+  /**
+   * Sends the request and associates the request with the passed {@link Consumer}, failing the
+   * consumer if no response arrives within the given time.
+   *
+   * @param timeoutMillis the time to wait for a response, or 0 to wait until the connection closes
+   */
+  protected void request(String method, JsonObject params, Consumer consumer, long timeoutMillis) {
 
     // Assemble the request
-    String id = Integer.toString(nextId.incrementAndGet());
+    int id = nextId.incrementAndGet();
     JsonObject request = new JsonObject();
 
     request.addProperty(JSONRPC, JSONRPC_VERSION);
-    request.addProperty(ID, id);
+    request.addProperty(ID, Integer.toString(id));
     request.addProperty(METHOD, method);
     request.add(PARAMS, params);
 
-    // Cache the consumer to receive the response
-    synchronized (consumerMapLock) {
-      consumerMap.put(id, consumer);
-    }
+    // Register the consumer to receive the response
+    pendingRequests.add(id, method, consumer, timeoutMillis);
 
     // Send the request
     requestSink.add(request);
@@ -359,7 +577,42 @@ abstract class VmServiceBase implements VmServiceConst {
     }
   }
 
+  /**
+   * Forward a binary event to the {@link BinaryEventListener}s. Binary events are only sent on
+   * streams, so the metadata is always a {@code streamNotify} message.
+   */
+  void processBinaryMessage(BinaryMessage binaryMessage) {
+    StreamingMessage message;
+    try {
+      message = StreamingMessage.decode(binaryMessage.getMetadata());
+    } catch (Exception e) {
+      Logging.getLogger().logError("Parse binary message failed: " + binaryMessage.getMetadata(), e);
+      return;
+    }
+    if (!message.isStreamNotification()) {
+      Logging.getLogger().logError("Unexpected binary message: " + binaryMessage.getMetadata());
+      return;
+    }
+
+    final String streamId = message.getStreamId();
+    final Event event = message.createEvent();
+    for (BinaryEventListener listener : new ArrayList<>(binaryListeners)) {
+      try {
+        listener.received(streamId, event, binaryMessage.getBytes(), binaryMessage.getDataOffset(), binaryMessage.getDataLength());
+      } catch (Exception e) {
+        Logging.getLogger().logError("Exception processing binary event: " + streamId, e);
+      }
+    }
+  }
+
   public void connectionClosed() {
+    if (Logging.getLogger().isInformationEnabled()) {
+      Logging.getLogger().logInformation("VM service requests: " + getRequestMetrics().getSummary());
+    }
+
+    // No responses will arrive for the requests still in flight.
+    pendingRequests.failAll();
+
     for (VmServiceListener listener : new ArrayList<>(vmListeners)) {
       try {
         listener.connectionClosed();
@@ -390,7 +643,40 @@ abstract class VmServiceBase implements VmServiceConst {
     if (jsonText == null || jsonText.isEmpty()) {
       return;
     }
+    if (streamingDecoder) {
+      processMessageStreaming(jsonText);
+    } else {
+      processMessageTree(jsonText);
+    }
+  }
+
+  /**
+   * Route the message using only its envelope, falling back to {@link #processMessageTree} for the
+   * rare requests and non-stream notifications sent by the VM.
+   */
+  private void processMessageStreaming(String jsonText) {
+    StreamingMessage message;
+    try {
+      message = StreamingMessage.decode(jsonText);
+    } catch (Exception e) {
+      Logging.getLogger().logError("Parse message failed: " + jsonText, e);
+      return;
+    }
 
+    if (message.isStreamNotification()) {
+      forwardEvent(message.getStreamId(), message.createEvent());
+    } else if (message.isResponse()) {
+      if (!message.hasId()) {
+        Logging.getLogger().logError("Response missing " + ID);
+        return;
+      }
+      processResponse(message.getId(), message.getResult(), message.getError());
+    } else {
+      processMessageTree(jsonText);
+    }
+  }
+
+  private void processMessageTree(String jsonText) {
     // Decode the JSON
     JsonObject json;
     try {
@@ -587,14 +873,29 @@ abstract class VmServiceBase implements VmServiceConst {
       Logging.getLogger().logError("Response missing " + ID, e);
       return;
     }
-    Consumer consumer = consumerMap.remove(id);
-    if (consumer == null) {
+    processResponse(id, json.get(RESULT), json.get(ERROR));
+  }
+
+  private void processResponse(String id, JsonElement resultElem, JsonElement errorElem) {
+    if (id == null) {
+      Logging.getLogger().logError("Response missing " + ID);
+      return;
+    }
+    int requestId;
+    try {
+      requestId = Integer.parseInt(id);
+    } catch (NumberFormatException e) {
       Logging.getLogger().logError("No consumer associated with " + ID + ": " + id);
       return;
     }
+    PendingRequest pending = pendingRequests.remove(requestId);
+    if (pending == null) {
+      Logging.getLogger().logError("No consumer associated with " + ID + ": " + id);
+      return;
+    }
+    Consumer consumer = pending.getConsumer();
 
     // Forward the response if the request was successfully executed
-    JsonElement resultElem = json.get(RESULT);
     if (resultElem != null) {
       JsonObject result;
       try {
@@ -617,11 +918,10 @@ abstract class VmServiceBase implements VmServiceConst {
     }
 
     // Forward an error if the request failed
-    resultElem = json.get(ERROR);
-    if (resultElem != null) {
+    if (errorElem != null) {
       JsonObject error;
       try {
-        error = resultElem.getAsJsonObject();
+        error = errorElem.getAsJsonObject();
       } catch (Exception e) {
         Logging.getLogger().logError("Response has invalid " + RESULT, e);
         return;
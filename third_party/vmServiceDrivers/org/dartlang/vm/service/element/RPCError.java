@@ -59,6 +59,36 @@ public class RPCError extends Element implements VmServiceConst {
    */
   public static final int UNEXPECTED_RESPONSE = 5;
 
+  /**
+   * The response code used by the client when no response to a request arrived before its
+   * deadline.
+   */
+  public static final int REQUEST_TIMED_OUT = 6;
+
+  /**
+   * The response code used by the client when the connection closed before the response to a
+   * request arrived.
+   */
+  public static final int CONNECTION_CLOSED = 7;
+
+  public static RPCError timedOut(String method, long timeoutMillis) {
+    return clientError(REQUEST_TIMED_OUT, "No response to " + method + " within " + timeoutMillis + "ms");
+  }
+
+  public static RPCError connectionClosed(String method) {
+    return clientError(CONNECTION_CLOSED, "Connection closed before the response to " + method + " arrived");
+  }
+
+  private static RPCError clientError(int code, String errMsg) {
+    JsonObject json = new JsonObject();
+    json.addProperty("code", code);
+    json.addProperty("message", errMsg);
+    JsonObject data = new JsonObject();
+    data.addProperty("details", errMsg);
+    json.add("data", data);
+    return new RPCError(json);
+  }
+
   public static RPCError unexpected(String expectedType, Response response) {
     String errMsg = "Expected type " + expectedType + " but received " + response.getType();
     if (response instanceof Sentinel) {
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service.internal;
+
+import de.roderick.weberknecht.WebSocketMessage;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A binary event sent by the VM, such as a chunk of a heap snapshot.
+ * <p>
+ * A binary event starts with the little endian 32 bit offset of its data, followed by the
+ * {@code streamNotify} message describing the event as JSON, followed by the data.
+ * <p>
+ * The websocket library does not report whether a frame was text or binary, and only decodes
+ * frames as UTF-8 text, which corrupts binary data. {@link #getBytes} reads the raw frame instead,
+ * and {@link #decode} tells binary events apart from JSON text messages, which start with
+ * {@code '{'} and so would have an offset far past the end of the frame.
+ */
+public class BinaryMessage {
+  private static final Field MESSAGE_FIELD = findMessageField();
+
+  private final String metadata;
+  private final byte[] bytes;
+  private final int dataOffset;
+
+  private BinaryMessage(String metadata, byte[] bytes, int dataOffset) {
+    this.metadata = metadata;
+    this.bytes = bytes;
+    this.dataOffset = dataOffset;
+  }
+
+  /**
+   * Return the raw bytes of the frame, or {@code null} if they cannot be read.
+   */
+  public static byte[] getBytes(WebSocketMessage message) {
+    if (MESSAGE_FIELD == null) {
+      return null;
+    }
+    final Byte[] boxed;
+    try {
+      boxed = (Byte[]) MESSAGE_FIELD.get(message);
+    } catch (IllegalAccessException e) {
+      return null;
+    }
+    if (boxed == null) {
+      return null;
+    }
+    final byte[] bytes = new byte[boxed.length];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = boxed[i];
+    }
+    return bytes;
+  }
+
+  /**
+   * Return the binary event in the frame, or {@code null} if the frame is a text message.
+   */
+  public static BinaryMessage decode(byte[] bytes) {
+    if (bytes.length < 5) {
+      return null;
+    }
+    final long dataOffset = (bytes[0] & 0xffL)
+                            | (bytes[1] & 0xffL) << 8
+                            | (bytes[2] & 0xffL) << 16
+                            | (bytes[3] & 0xffL) << 24;
+    if (dataOffset > bytes.length || bytes[4] != '{') {
+      return null;
+    }
+    final String metadata = new String(bytes, 4, (int) dataOffset - 4, StandardCharsets.UTF_8);
+    return new BinaryMessage(metadata, bytes, (int) dataOffset);
+  }
+
+  /**
+   * The {@code streamNotify} message describing the event.
+   */
+  public String getMetadata() {
+    return metadata;
+  }
+
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  /**
+   * The offset of the data of the event in {@link #getBytes()}.
+   */
+  public int getDataOffset() {
+    return dataOffset;
+  }
+
+  public int getDataLength() {
+    return bytes.length - dataOffset;
+  }
+
+  private static Field findMessageField() {
+    try {
+      final Field field = WebSocketMessage.class.getDeclaredField("message");
+      field.setAccessible(true);
+      return field;
+    } catch (Exception e) {
+      return null;
+    }
+  }
+}
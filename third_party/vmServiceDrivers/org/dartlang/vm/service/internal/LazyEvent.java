@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service.internal;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.dartlang.vm.service.element.*;
+
+import java.util.List;
+
+/**
+ * An {@link Event} that keeps a reference to the raw {@code streamNotify} message and only parses
+ * it the first time a listener asks for more than the event kind.
+ * <p>
+ * {@link Event} is generated and reads its JSON directly, so every one of its getters is
+ * overridden here to read from the parsed event instead. LazyEventTest checks that none is missed
+ * when the generated classes change.
+ */
+public class LazyEvent extends Event implements VmServiceConst {
+  private final String messageText;
+  private final String kind;
+  private final String extensionKind;
+  private volatile Event event;
+
+  LazyEvent(String messageText, String kind, String extensionKind) {
+    super(null);
+    this.messageText = messageText;
+    this.kind = kind;
+    this.extensionKind = extensionKind;
+  }
+
+  /**
+   * Return {@code true} once the event body has been parsed.
+   */
+  public boolean isMaterialized() {
+    return event != null;
+  }
+
+  private Event materialize() {
+    Event result = event;
+    if (result == null) {
+      synchronized (this) {
+        result = event;
+        if (result == null) {
+          final JsonObject message = (JsonObject) new JsonParser().parse(messageText);
+          result = new Event(message.getAsJsonObject(PARAMS).getAsJsonObject(EVENT));
+          event = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public EventKind getKind() {
+    try {
+      return kind == null ? EventKind.Unknown : EventKind.valueOf(kind);
+    } catch (IllegalArgumentException e) {
+      return EventKind.Unknown;
+    }
+  }
+
+  @Override
+  public String getExtensionKind() {
+    return extensionKind;
+  }
+
+  @Override
+  public JsonObject getJson() {
+    return materialize().getJson();
+  }
+
+  @Override
+  public String getType() {
+    return materialize().getType();
+  }
+
+  @Override
+  public String getAlias() {
+    return materialize().getAlias();
+  }
+
+  @Override
+  public boolean getAtAsyncSuspension() {
+    return materialize().getAtAsyncSuspension();
+  }
+
+  @Override
+  public Breakpoint getBreakpoint() {
+    return materialize().getBreakpoint();
+  }
+
+  @Override
+  public String getBytes() {
+    return materialize().getBytes();
+  }
+
+  @Override
+  public InstanceRef getException() {
+    return materialize().getException();
+  }
+
+  @Override
+  public ExtensionData getExtensionData() {
+    return materialize().getExtensionData();
+  }
+
+  @Override
+  public String getExtensionRPC() {
+    return materialize().getExtensionRPC();
+  }
+
+  @Override
+  public String getFlag() {
+    return materialize().getFlag();
+  }
+
+  @Override
+  public InstanceRef getInspectee() {
+    return materialize().getInspectee();
+  }
+
+  @Override
+  public IsolateRef getIsolate() {
+    return materialize().getIsolate();
+  }
+
+  @Override
+  public boolean getLast() {
+    return materialize().getLast();
+  }
+
+  @Override
+  public LogRecord getLogRecord() {
+    return materialize().getLogRecord();
+  }
+
+  @Override
+  public String getMethod() {
+    return materialize().getMethod();
+  }
+
+  @Override
+  public String getNewValue() {
+    return materialize().getNewValue();
+  }
+
+  @Override
+  public ElementList<Breakpoint> getPauseBreakpoints() {
+    return materialize().getPauseBreakpoints();
+  }
+
+  @Override
+  public String getService() {
+    return materialize().getService();
+  }
+
+  @Override
+  public String getStatus() {
+    return materialize().getStatus();
+  }
+
+  @Override
+  public ElementList<TimelineEvent> getTimelineEvents() {
+    return materialize().getTimelineEvents();
+  }
+
+  @Override
+  public long getTimestamp() {
+    return materialize().getTimestamp();
+  }
+
+  @Override
+  public Frame getTopFrame() {
+    return materialize().getTopFrame();
+  }
+
+  @Override
+  public List<String> getUpdatedStreams() {
+    return materialize().getUpdatedStreams();
+  }
+
+  @Override
+  public VMRef getVm() {
+    return materialize().getVm();
+  }
+}
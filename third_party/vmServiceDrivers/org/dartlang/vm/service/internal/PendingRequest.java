@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service.internal;
+
+import org.dartlang.vm.service.consumer.Consumer;
+
+/**
+ * A request that has been sent to the VM and is waiting for its response.
+ */
+public final class PendingRequest {
+  final int id;
+  final String method;
+  final Consumer consumer;
+  final long startNanos;
+  final long timeoutMillis;
+  final long deadlineNanos;
+  final PendingRequests owner;
+
+  /**
+   * Set once the request has been removed from its table, either because the response arrived,
+   * the request timed out or the connection was closed.
+   */
+  volatile boolean done;
+
+  PendingRequest(PendingRequests owner, int id, String method, Consumer consumer, long timeoutMillis) {
+    this.owner = owner;
+    this.id = id;
+    this.method = method;
+    this.consumer = consumer;
+    this.timeoutMillis = timeoutMillis;
+    this.startNanos = System.nanoTime();
+    this.deadlineNanos = timeoutMillis > 0 ? startNanos + timeoutMillis * 1000000L : 0;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public Consumer getConsumer() {
+    return consumer;
+  }
+}
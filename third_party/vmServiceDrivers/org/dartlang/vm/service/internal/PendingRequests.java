@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service.internal;
+
+import org.dartlang.vm.service.consumer.Consumer;
+import org.dartlang.vm.service.element.RPCError;
+import org.dartlang.vm.service.logging.Logging;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The requests sent to the VM that are waiting for a response, indexed by their integer id.
+ * <p>
+ * Request ids are handed out sequentially, so a request is stored in the slot {@code id & MASK}
+ * of a fixed array and claimed with a compare-and-set when its response arrives. Only when more
+ * than {@link #SLOT_COUNT} requests are outstanding does a request whose slot is still taken go
+ * to a concurrent overflow map.
+ * <p>
+ * Requests with a deadline are failed with {@link RPCError#REQUEST_TIMED_OUT} by the shared
+ * {@link RequestTimeoutWheel} if no response arrives in time.
+ */
+public class PendingRequests {
+  private static final int SLOT_COUNT = 1024;
+  private static final int MASK = SLOT_COUNT - 1;
+
+  private final AtomicReferenceArray<PendingRequest> slots = new AtomicReferenceArray<>(SLOT_COUNT);
+  private final ConcurrentHashMap<Integer, PendingRequest> overflow = new ConcurrentHashMap<>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final RequestMetrics metrics = new RequestMetrics(size::get);
+
+  /**
+   * Record a request that is about to be sent.
+   *
+   * @param timeoutMillis the time to wait for a response, or 0 to wait until the connection closes
+   */
+  public void add(int id, String method, Consumer consumer, long timeoutMillis) {
+    final PendingRequest request = new PendingRequest(this, id, method, consumer, timeoutMillis);
+    size.incrementAndGet();
+    if (!slots.compareAndSet(id & MASK, null, request)) {
+      overflow.put(id, request);
+    }
+    if (request.deadlineNanos != 0) {
+      RequestTimeoutWheel.getInstance().schedule(request);
+    }
+  }
+
+  /**
+   * Remove the request with the given id because its response arrived, recording its round trip.
+   *
+   * @return the request, or {@code null} if there is no such request or it already timed out
+   */
+  public PendingRequest remove(int id) {
+    final PendingRequest request = claim(id);
+    if (request != null) {
+      metrics.recordLatency(request.method, System.nanoTime() - request.startNanos);
+    }
+    return request;
+  }
+
+  /**
+   * Remove all pending requests, failing their consumers with {@link RPCError#CONNECTION_CLOSED}.
+   */
+  public void failAll() {
+    for (int i = 0; i < SLOT_COUNT; i++) {
+      final PendingRequest request = slots.getAndSet(i, null);
+      if (request != null) {
+        fail(finish(request), RPCError.connectionClosed(request.method));
+      }
+    }
+    for (Integer id : overflow.keySet()) {
+      final PendingRequest request = overflow.remove(id);
+      if (request != null) {
+        fail(finish(request), RPCError.connectionClosed(request.method));
+      }
+    }
+  }
+
+  /**
+   * Return the number of requests waiting for a response.
+   */
+  public int size() {
+    return size.get();
+  }
+
+  public RequestMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Fail the given request with a timeout error unless its response arrived in the meantime.
+   */
+  void expire(PendingRequest request) {
+    if (claim(request.id) != request) {
+      return;
+    }
+    metrics.recordTimeout();
+    fail(request, RPCError.timedOut(request.method, request.timeoutMillis));
+  }
+
+  private static void fail(PendingRequest request, RPCError error) {
+    try {
+      request.consumer.onError(error);
+    } catch (Exception e) {
+      Logging.getLogger().logError("Exception notifying consumer of failed request: " + request.method, e);
+    }
+  }
+
+  private PendingRequest claim(int id) {
+    final int index = id & MASK;
+    final PendingRequest request = slots.get(index);
+    if (request != null && request.id == id) {
+      return slots.compareAndSet(index, request, null) ? finish(request) : null;
+    }
+    if (overflow.isEmpty()) {
+      return null;
+    }
+    final PendingRequest overflowed = overflow.remove(id);
+    return overflowed == null ? null : finish(overflowed);
+  }
+
+  private PendingRequest finish(PendingRequest request) {
+    request.done = true;
+    size.decrementAndGet();
+    return request;
+  }
+}
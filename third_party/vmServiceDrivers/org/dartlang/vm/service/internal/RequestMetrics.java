@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+
+/**
+ * Counters for the requests made over a single VM service connection: the number in flight, the
+ * number that timed out and the round trip latency of each method.
+ */
+public class RequestMetrics {
+  private final IntSupplier inFlight;
+  private final AtomicLong timedOut = new AtomicLong();
+  private final ConcurrentHashMap<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+  RequestMetrics(IntSupplier inFlight) {
+    this.inFlight = inFlight;
+  }
+
+  /**
+   * Return the number of requests sent that are still waiting for a response.
+   */
+  public int getInFlightCount() {
+    return inFlight.getAsInt();
+  }
+
+  /**
+   * Return the number of requests that were failed because no response arrived in time.
+   */
+  public long getTimedOutCount() {
+    return timedOut.get();
+  }
+
+  /**
+   * Return the methods for which at least one response has been received.
+   */
+  public Set<String> getMethods() {
+    return latencies.keySet();
+  }
+
+  /**
+   * Return the number of responses received for the given method.
+   */
+  public long getResponseCount(String method) {
+    final LatencyHistogram histogram = latencies.get(method);
+    return histogram == null ? 0 : histogram.getCount();
+  }
+
+  /**
+   * Return an upper bound, within 20%, of the given percentile of round trip latencies of the
+   * given method in milliseconds, or -1 if no response for the method has been received.
+   *
+   * @param percentile a value between 0 and 100, e.g. 50 for the median
+   */
+  public double getLatencyPercentileMillis(String method, double percentile) {
+    final LatencyHistogram histogram = latencies.get(method);
+    return histogram == null ? -1 : histogram.getPercentileMicros(percentile) / 1000.0;
+  }
+
+  /**
+   * Return a one line description of the requests in flight, the requests that timed out and the
+   * median and 99th percentile latency of each method, for logs.
+   */
+  public String getSummary() {
+    final StringBuilder builder = new StringBuilder();
+    builder.append(getInFlightCount()).append(" in flight, ").append(getTimedOutCount()).append(" timed out");
+    final List<String> methods = new ArrayList<>(getMethods());
+    Collections.sort(methods);
+    for (String method : methods) {
+      builder.append("; ").append(method).append(": ").append(getResponseCount(method)).append(" responses, p50 ")
+        .append(getLatencyPercentileMillis(method, 50)).append(" ms, p99 ")
+        .append(getLatencyPercentileMillis(method, 99)).append(" ms");
+    }
+    return builder.toString();
+  }
+
+  void recordLatency(String method, long nanos) {
+    LatencyHistogram histogram = latencies.get(method);
+    if (histogram == null) {
+      histogram = latencies.computeIfAbsent(method, (key) -> new LatencyHistogram());
+    }
+    histogram.record(nanos / 1000);
+  }
+
+  void recordTimeout() {
+    timedOut.incrementAndGet();
+  }
+
+  /**
+   * A lock free histogram of microsecond latencies with four buckets per power of two.
+   */
+  static class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_EXPONENT + 1) * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+
+    void record(long micros) {
+      counts.incrementAndGet(bucketIndex(Math.max(1, micros)));
+      count.incrementAndGet();
+    }
+
+    long getCount() {
+      return count.get();
+    }
+
+    long getPercentileMicros(double percentile) {
+      final long total = count.get();
+      if (total == 0) {
+        return 0;
+      }
+      final long rank = Math.max(1, (long)Math.ceil(total * percentile / 100.0));
+      long seen = 0;
+      for (int i = 0; i < counts.length(); i++) {
+        seen += counts.get(i);
+        if (seen >= rank) {
+          return bucketUpperBound(i);
+        }
+      }
+      return bucketUpperBound(counts.length() - 1);
+    }
+
+    static int bucketIndex(long micros) {
+      final int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(micros));
+      final int subBucket = exponent < SUB_BUCKET_BITS
+                            ? (int)((micros << (SUB_BUCKET_BITS - exponent)) & (SUB_BUCKETS - 1))
+                            : (int)((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+      return exponent * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+      final int exponent = index / SUB_BUCKETS;
+      final int subBucket = index % SUB_BUCKETS;
+      final long bound = (long)(SUB_BUCKETS + subBucket + 1) << exponent;
+      return Math.max(1, bound >>> SUB_BUCKET_BITS);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timer wheel shared by all VM service connections that fails requests whose response
+ * did not arrive before their deadline.
+ * <p>
+ * Scheduling a request is a single queue append; the wheel thread visits one bucket per tick, so
+ * the cost of pending requests does not depend on how many are outstanding. Requests that were
+ * answered in the meantime are dropped from their bucket when it is next visited.
+ */
+public class RequestTimeoutWheel {
+  private static final long TICK_MILLIS = 100;
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+  private static final int WHEEL_SIZE = 512;
+
+  private static RequestTimeoutWheel instance;
+
+  static synchronized RequestTimeoutWheel getInstance() {
+    if (instance == null) {
+      instance = new RequestTimeoutWheel();
+    }
+    return instance;
+  }
+
+  private final long originNanos = System.nanoTime();
+  private final List<ConcurrentLinkedQueue<PendingRequest>> buckets = new ArrayList<>(WHEEL_SIZE);
+  private volatile long currentTick;
+
+  private RequestTimeoutWheel() {
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      buckets.add(new ConcurrentLinkedQueue<>());
+    }
+    final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "VM service request timeouts");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  void schedule(PendingRequest request) {
+    final long deadlineTick = (request.deadlineNanos - originNanos + TICK_NANOS - 1) / TICK_NANOS;
+    final long tick = Math.max(deadlineTick, currentTick + 1);
+    final ConcurrentLinkedQueue<PendingRequest> bucket = buckets.get((int)(tick % WHEEL_SIZE));
+    bucket.add(request);
+    // The wheel may have visited the bucket between reading the current tick and adding the
+    // request, in which case the request would wait for a whole rotation. By then its deadline
+    // has passed, so expire it here unless the wheel has taken it.
+    if (currentTick >= tick && bucket.remove(request)) {
+      request.owner.expire(request);
+    }
+  }
+
+  private void tick() {
+    final long now = System.nanoTime();
+    final long targetTick = (now - originNanos) / TICK_NANOS;
+    // Catch up on ticks missed while the thread was delayed, visiting each bucket at most once.
+    final long firstTick = Math.max(currentTick + 1, targetTick - WHEEL_SIZE + 1);
+    for (long tick = firstTick; tick <= targetTick; tick++) {
+      currentTick = tick;
+      expireBucket(buckets.get((int)(tick % WHEEL_SIZE)), now);
+    }
+  }
+
+  private void expireBucket(ConcurrentLinkedQueue<PendingRequest> bucket, long now) {
+    final List<PendingRequest> notYetDue = new ArrayList<>();
+    PendingRequest request;
+    while ((request = bucket.poll()) != null) {
+      if (request.done) {
+        continue;
+      }
+      if (request.deadlineNanos - now > 0) {
+        notYetDue.add(request);
+      } else {
+        request.owner.expire(request);
+      }
+    }
+    bucket.addAll(notYetDue);
+  }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015, the Dart project authors.
+ *
+ * Licensed under the Eclipse Public License v1.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.dartlang.vm.service.internal;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * The routing information of a single JSON-RPC message, read with a {@link JsonReader} without
+ * building a tree for the message envelope.
+ * <p>
+ * Only the {@code result} or {@code error} of a response is materialized. The {@code event} of a
+ * {@code streamNotify} notification is skipped; its {@code kind} and {@code extensionKind} are
+ * captured so that a {@link LazyEvent} can answer the common routing questions without parsing.
+ */
+public class StreamingMessage implements VmServiceConst {
+  private static final String STREAM_NOTIFY = "streamNotify";
+  private static final String KIND = "kind";
+  private static final String EXTENSION_KIND = "extensionKind";
+
+  /**
+   * Decode the routing information of the given JSON-RPC message.
+   *
+   * @throws IOException if the text is not a well formed JSON object
+   */
+  public static StreamingMessage decode(String jsonText) throws IOException {
+    final StreamingMessage message = new StreamingMessage(jsonText);
+    try (JsonReader reader = new JsonReader(new StringReader(jsonText))) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        final String name = reader.nextName();
+        switch (name) {
+          case ID:
+            message.id = readNullableString(reader);
+            message.hasId = true;
+            break;
+          case METHOD:
+            message.method = readNullableString(reader);
+            break;
+          case PARAMS:
+            message.hasParams = true;
+            message.readParams(reader);
+            break;
+          case RESULT:
+            message.result = new JsonParser().parse(reader);
+            break;
+          case ERROR:
+            message.error = new JsonParser().parse(reader);
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+      reader.endObject();
+    } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+      throw new IOException(e);
+    }
+    return message;
+  }
+
+  private static String readNullableString(JsonReader reader) throws IOException {
+    final JsonToken token = reader.peek();
+    if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+      return reader.nextString();
+    }
+    reader.skipValue();
+    return null;
+  }
+
+  private final String text;
+  private boolean hasId;
+  private String id;
+  private String method;
+  private boolean hasParams;
+  private String streamId;
+  private boolean hasEvent;
+  private String eventKind;
+  private String eventExtensionKind;
+  private JsonElement result;
+  private JsonElement error;
+
+  private StreamingMessage(String text) {
+    this.text = text;
+  }
+
+  private void readParams(JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      reader.skipValue();
+      return;
+    }
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if (STREAM_ID.equals(name)) {
+        streamId = readNullableString(reader);
+      } else if (EVENT.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+        hasEvent = true;
+        readEventHeader(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  private void readEventHeader(JsonReader reader) throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      final String name = reader.nextName();
+      if (KIND.equals(name)) {
+        eventKind = readNullableString(reader);
+      } else if (EXTENSION_KIND.equals(name)) {
+        eventExtensionKind = readNullableString(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+  }
+
+  /**
+   * Return {@code true} if this is a well formed {@code streamNotify} notification that can be
+   * forwarded as a {@link LazyEvent}. Any other request or notification should be handled by
+   * parsing the whole message.
+   */
+  public boolean isStreamNotification() {
+    return STREAM_NOTIFY.equals(method) && !hasId && streamId != null && hasEvent;
+  }
+
+  /**
+   * Return {@code true} if this is a response to a request made by this client.
+   */
+  public boolean isResponse() {
+    return method == null && (result != null || error != null);
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public boolean hasId() {
+    return hasId;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public boolean hasParams() {
+    return hasParams;
+  }
+
+  public String getStreamId() {
+    return streamId;
+  }
+
+  public JsonElement getResult() {
+    return result;
+  }
+
+  public JsonElement getError() {
+    return error;
+  }
+
+  /**
+   * Return an event whose body is only parsed when a listener touches more than its kind.
+   */
+  public LazyEvent createEvent() {
+    return new LazyEvent(text, eventKind, eventExtensionKind);
+  }
+}
@@ -36,7 +36,9 @@ public class WebSocketRequestSink implements RequestSink {
       Logging.getLogger().logInformation("Dropped: " + request);
       return;
     }
-    Logging.getLogger().logInformation("Sent: " + request);
+    if (Logging.getLogger().isInformationEnabled()) {
+      Logging.getLogger().logInformation("Sent: " + request);
+    }
     try {
       webSocket.send(request);
     } catch (WebSocketException e) {